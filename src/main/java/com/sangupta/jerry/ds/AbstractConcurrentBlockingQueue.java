@@ -0,0 +1,252 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.ds;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A base class for unbounded {@link BlockingQueue}s whose non-blocking
+ * offer() and poll() methods are lock-free. The blocking methods are built on
+ * top of these, and a lock is only obtained when a consumer needs to wait for
+ * an element to arrive. Producers call {@link #signalWaiters()} after every
+ * insertion, which takes the lock only if some consumer is waiting.
+ * 
+ * Implementations that publish elements with ordered (lazy) writes instead
+ * of full fences may let a producer miss a consumer that is just starting to
+ * wait. Such implementations bound the time a consumer parks in one go, so
+ * that it checks for new elements again on its own.
+ * 
+ * Implementations need to provide the {@link #offer(Object)},
+ * {@link #poll()}, {@link #peek()}, {@link #size()} and {@link #iterator()}
+ * methods.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ * 
+ * @param <E>
+ *            the type of elements held in this queue
+ */
+public abstract class AbstractConcurrentBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+	
+	/**
+	 * Guards the waiting of consumers
+	 */
+	protected final ReentrantLock waitLock;
+	
+	/**
+	 * Condition on which consumers wait for elements to arrive
+	 */
+	protected final Condition notEmpty;
+	
+	/**
+	 * Number of consumers currently waiting on the queue
+	 */
+	protected final AtomicInteger waiters;
+	
+	/**
+	 * The maximum time in nanoseconds a consumer parks before checking for
+	 * elements again, {@link Long#MAX_VALUE} for no limit
+	 */
+	protected final long maxParkNanos;
+	
+	/**
+	 * Default constructor.
+	 * 
+	 */
+	protected AbstractConcurrentBlockingQueue() {
+		this(Long.MAX_VALUE);
+	}
+	
+	/**
+	 * Constructor that bounds the time a consumer parks in one go.
+	 * 
+	 * @param maxParkNanos
+	 *            the maximum time in nanoseconds a consumer parks before
+	 *            checking for elements again
+	 */
+	protected AbstractConcurrentBlockingQueue(long maxParkNanos) {
+		if(maxParkNanos <= 0) {
+			throw new IllegalArgumentException("Maximum park time must be greater than zero");
+		}
+		
+		this.waitLock = new ReentrantLock();
+		this.notEmpty = this.waitLock.newCondition();
+		this.waiters = new AtomicInteger(0);
+		this.maxParkNanos = maxParkNanos;
+	}
+	
+	/**
+	 * @see java.util.concurrent.BlockingQueue#poll(long, java.util.concurrent.TimeUnit)
+	 */
+	@Override
+	public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+		E element = poll();
+		if(element != null) {
+			return element;
+		}
+		
+		long nanos = unit.toNanos(timeout);
+		if(nanos <= 0) {
+			return null;
+		}
+		
+		final ReentrantLock lock = this.waitLock;
+		lock.lockInterruptibly();
+		this.waiters.incrementAndGet();
+		try {
+			do {
+				element = poll();
+				if(element != null) {
+					return element;
+				}
+				
+				if(nanos <= 0) {
+					return null;
+				}
+				
+				if(nanos <= this.maxParkNanos) {
+					nanos = this.notEmpty.awaitNanos(nanos);
+				} else {
+					nanos -= this.maxParkNanos - this.notEmpty.awaitNanos(this.maxParkNanos);
+				}
+			} while(true);
+		} finally {
+			this.waiters.decrementAndGet();
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * @see java.util.concurrent.BlockingQueue#take()
+	 */
+	@Override
+	public E take() throws InterruptedException {
+		E element = poll();
+		if(element != null) {
+			return element;
+		}
+		
+		final ReentrantLock lock = this.waitLock;
+		lock.lockInterruptibly();
+		this.waiters.incrementAndGet();
+		try {
+			do {
+				element = poll();
+				if(element != null) {
+					return element;
+				}
+				
+				if(this.maxParkNanos == Long.MAX_VALUE) {
+					this.notEmpty.await();
+				} else {
+					this.notEmpty.awaitNanos(this.maxParkNanos);
+				}
+			} while(true);
+		} finally {
+			this.waiters.decrementAndGet();
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * @see java.util.concurrent.BlockingQueue#put(java.lang.Object)
+	 */
+	@Override
+	public void put(E element) throws InterruptedException {
+		offer(element);
+	}
+	
+	/**
+	 * The queue is unbounded and thus this never waits.
+	 * 
+	 * @see java.util.concurrent.BlockingQueue#offer(java.lang.Object, long, java.util.concurrent.TimeUnit)
+	 */
+	@Override
+	public boolean offer(E element, long timeout, TimeUnit unit) throws InterruptedException {
+		return offer(element);
+	}
+	
+	/**
+	 * @see java.util.concurrent.BlockingQueue#remainingCapacity()
+	 */
+	@Override
+	public int remainingCapacity() {
+		return Integer.MAX_VALUE;
+	}
+	
+	/**
+	 * @see java.util.concurrent.BlockingQueue#drainTo(java.util.Collection)
+	 */
+	@Override
+	public int drainTo(Collection<? super E> collection) {
+		return drainTo(collection, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * @see java.util.concurrent.BlockingQueue#drainTo(java.util.Collection, int)
+	 */
+	@Override
+	public int drainTo(Collection<? super E> collection, int maxElements) {
+		if(collection == null) {
+			throw new NullPointerException();
+		}
+		
+		if(collection == this) {
+			throw new IllegalArgumentException();
+		}
+		
+		int count = 0;
+		E element;
+		while(count < maxElements && (element = poll()) != null) {
+			collection.add(element);
+			count++;
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Wake up a waiting consumer, if any. Must be called by implementations
+	 * after every successful insertion.
+	 * 
+	 */
+	protected void signalWaiters() {
+		if(this.waiters.get() == 0) {
+			return;
+		}
+		
+		final ReentrantLock lock = this.waitLock;
+		lock.lock();
+		try {
+			this.notEmpty.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+}
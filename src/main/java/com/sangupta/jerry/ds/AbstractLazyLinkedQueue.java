@@ -0,0 +1,361 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.ds;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Base class for unbounded linked queues specialized for a known number of
+ * producer and consumer threads. Where a side has a single thread, its end of
+ * the list is advanced using ordered (lazy) writes instead of compare-and-set
+ * operations.
+ * 
+ * The list always starts with a stub node whose value has been consumed. The
+ * consumer end points to this node, and the producer end to the last node
+ * added.
+ * 
+ * Every element is claimed with a compare-and-set on its node, by the
+ * consumer that polls it or by a thread that removes it with
+ * {@link #remove(Object)}, so that each element is taken exactly once. A node
+ * whose element was removed stays linked until the consumers pass over it.
+ * {@link #remove(Object)} may be called from any thread, but the other
+ * methods that remove elements, including {@link #clear()} and drainTo(),
+ * must only be called from a consumer thread.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ * 
+ * @param <E>
+ *            the type of elements held in this queue
+ */
+public abstract class AbstractLazyLinkedQueue<E> extends AbstractConcurrentBlockingQueue<E> implements RemovableBlockingQueue<E> {
+	
+	/**
+	 * As producers publish elements with ordered writes, they may miss a
+	 * consumer that is just going to sleep. Consumers thus never sleep longer
+	 * than this before checking again.
+	 */
+	protected static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+	
+	@SuppressWarnings("rawtypes")
+	private static final AtomicReferenceFieldUpdater<AbstractLazyLinkedQueue, LinkedNode> PRODUCER_NODE = AtomicReferenceFieldUpdater.newUpdater(AbstractLazyLinkedQueue.class, LinkedNode.class, "producerNode");
+
+	@SuppressWarnings("rawtypes")
+	private static final AtomicReferenceFieldUpdater<AbstractLazyLinkedQueue, LinkedNode> CONSUMER_NODE = AtomicReferenceFieldUpdater.newUpdater(AbstractLazyLinkedQueue.class, LinkedNode.class, "consumerNode");
+	
+	/**
+	 * The last node in the list
+	 */
+	protected volatile LinkedNode<E> producerNode;
+	
+	/**
+	 * The stub node at the head of the list
+	 */
+	protected volatile LinkedNode<E> consumerNode;
+	
+	/**
+	 * Default constructor.
+	 * 
+	 */
+	protected AbstractLazyLinkedQueue() {
+		super(MAX_PARK_NANOS);
+		
+		LinkedNode<E> stub = new LinkedNode<E>(null);
+		this.producerNode = stub;
+		this.consumerNode = stub;
+	}
+	
+	/**
+	 * Set the producer node with an ordered write.
+	 * 
+	 * @param node
+	 *            the new producer node
+	 */
+	protected final void lazySetProducerNode(LinkedNode<E> node) {
+		PRODUCER_NODE.lazySet(this, node);
+	}
+	
+	/**
+	 * Atomically swap the producer node.
+	 * 
+	 * @param node
+	 *            the new producer node
+	 * 
+	 * @return the previous producer node
+	 */
+	@SuppressWarnings("unchecked")
+	protected final LinkedNode<E> swapProducerNode(LinkedNode<E> node) {
+		return PRODUCER_NODE.getAndSet(this, node);
+	}
+	
+	/**
+	 * Set the consumer node with an ordered write.
+	 * 
+	 * @param node
+	 *            the new consumer node
+	 */
+	protected final void lazySetConsumerNode(LinkedNode<E> node) {
+		CONSUMER_NODE.lazySet(this, node);
+	}
+	
+	/**
+	 * Atomically set the consumer node if it is the expected one.
+	 * 
+	 * @param expected
+	 *            the expected consumer node
+	 * 
+	 * @param node
+	 *            the new consumer node
+	 * 
+	 * @return <code>true</code> if the consumer node was set
+	 */
+	protected final boolean casConsumerNode(LinkedNode<E> expected, LinkedNode<E> node) {
+		return CONSUMER_NODE.compareAndSet(this, expected, node);
+	}
+	
+	/**
+	 * @see java.util.Queue#peek()
+	 */
+	@Override
+	public E peek() {
+		LinkedNode<E> node = this.consumerNode.next;
+		while(node != null) {
+			final E element = node.value;
+			if(element != null) {
+				return element;
+			}
+			
+			// consumed or removed, try the next one
+			node = node.next;
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * @see java.util.AbstractCollection#isEmpty()
+	 */
+	@Override
+	public boolean isEmpty() {
+		return this.peek() == null;
+	}
+	
+	/**
+	 * Counts the elements by walking the list, and thus is O(n).
+	 * 
+	 * @see java.util.AbstractCollection#size()
+	 */
+	@Override
+	public int size() {
+		int size = 0;
+		LinkedNode<E> node = this.consumerNode.next;
+		while(node != null && size < Integer.MAX_VALUE) {
+			if(node.value != null) {
+				size++;
+			}
+			
+			node = node.next;
+		}
+		
+		return size;
+	}
+	
+	/**
+	 * Remove the first element that is equal to the given object, as told by
+	 * the equals() method of the element. May be called from any thread.
+	 * 
+	 * @see java.util.AbstractCollection#remove(java.lang.Object)
+	 */
+	@Override
+	public boolean remove(Object o) {
+		return this.removeElement(o) != null;
+	}
+	
+	/**
+	 * May be called from any thread.
+	 * 
+	 * @see com.sangupta.jerry.ds.RemovableBlockingQueue#removeElement(java.lang.Object)
+	 */
+	@Override
+	public E removeElement(Object o) {
+		if(o == null) {
+			return null;
+		}
+		
+		LinkedNode<E> node = this.consumerNode.next;
+		while(node != null) {
+			final E element = node.value;
+			if(element != null && element.equals(o) && node.casValue(element, null)) {
+				return element;
+			}
+			
+			node = node.next;
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Returns a weakly consistent iterator. Removing an element through it
+	 * fails silently if the element has been taken meanwhile.
+	 * 
+	 * @see java.util.AbstractCollection#iterator()
+	 */
+	@Override
+	public Iterator<E> iterator() {
+		return new Iterator<E>() {
+			
+			private LinkedNode<E> node = consumerNode;
+			
+			private E nextElement = advance();
+			
+			/**
+			 * The node of the element last returned
+			 */
+			private LinkedNode<E> lastNode;
+			
+			private E lastElement;
+			
+			private E advance() {
+				while((this.node = this.node.next) != null) {
+					E element = this.node.value;
+					if(element != null) {
+						return element;
+					}
+				}
+				
+				return null;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return this.nextElement != null;
+			}
+
+			@Override
+			public E next() {
+				if(this.nextElement == null) {
+					throw new NoSuchElementException();
+				}
+				
+				E element = this.nextElement;
+				this.lastNode = this.node;
+				this.lastElement = element;
+				this.nextElement = this.node == null ? null : advance();
+				return element;
+			}
+
+			@Override
+			public void remove() {
+				if(this.lastNode == null) {
+					throw new IllegalStateException();
+				}
+				
+				this.lastNode.casValue(this.lastElement, null);
+				this.lastNode = null;
+				this.lastElement = null;
+			}
+			
+		};
+	}
+	
+	/**
+	 * A node in the linked list.
+	 * 
+	 * @param <E>
+	 *            the type of element held in the node
+	 */
+	protected static final class LinkedNode<E> {
+		
+		@SuppressWarnings("rawtypes")
+		private static final AtomicReferenceFieldUpdater<LinkedNode, LinkedNode> NEXT = AtomicReferenceFieldUpdater.newUpdater(LinkedNode.class, LinkedNode.class, "next");
+		
+		@SuppressWarnings("rawtypes")
+		private static final AtomicReferenceFieldUpdater<LinkedNode, Object> VALUE = AtomicReferenceFieldUpdater.newUpdater(LinkedNode.class, Object.class, "value");
+		
+		/**
+		 * The element, published by the write to the next field of the
+		 * previous node, and set to <code>null</code> once taken
+		 */
+		protected volatile E value;
+		
+		/**
+		 * The next node in the list
+		 */
+		protected volatile LinkedNode<E> next;
+		
+		/**
+		 * Create a node for the given element.
+		 * 
+		 * @param value
+		 *            the element
+		 */
+		protected LinkedNode(E value) {
+			this.value = value;
+		}
+		
+		/**
+		 * Link the next node with an ordered write.
+		 * 
+		 * @param node
+		 *            the next node
+		 */
+		protected void lazySetNext(LinkedNode<E> node) {
+			NEXT.lazySet(this, node);
+		}
+		
+		/**
+		 * Take the element, unless it has already been taken.
+		 * 
+		 * @return the element, or <code>null</code> if it was taken before
+		 */
+		protected E takeValue() {
+			final E element = this.value;
+			if(element != null && VALUE.compareAndSet(this, element, null)) {
+				return element;
+			}
+			
+			// an element is only ever taken once
+			return null;
+		}
+		
+		/**
+		 * Atomically set the element if it is the expected one.
+		 * 
+		 * @param expected
+		 *            the expected element
+		 * 
+		 * @param element
+		 *            the new element
+		 * 
+		 * @return <code>true</code> if the element was set
+		 */
+		protected boolean casValue(E expected, E element) {
+			return VALUE.compareAndSet(this, expected, element);
+		}
+		
+	}
+
+}
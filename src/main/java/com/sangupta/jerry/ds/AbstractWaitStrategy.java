@@ -0,0 +1,100 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.ds;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Base class for {@link WaitStrategy} implementations that keeps count of how
+ * often waits reached each phase of the strategy. A wait is counted once in
+ * every phase it reaches, except for parking which is counted every time the
+ * thread parks.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public abstract class AbstractWaitStrategy implements WaitStrategy {
+	
+	/**
+	 * Number of waits that started spinning
+	 */
+	private final AtomicLong spinPhaseCount = new AtomicLong();
+	
+	/**
+	 * Number of waits that reached yielding
+	 */
+	private final AtomicLong yieldPhaseCount = new AtomicLong();
+	
+	/**
+	 * Number of times a thread was parked
+	 */
+	private final AtomicLong parkPhaseCount = new AtomicLong();
+	
+	/**
+	 * Record that a wait started spinning.
+	 * 
+	 */
+	protected void spinPhaseReached() {
+		this.spinPhaseCount.incrementAndGet();
+	}
+	
+	/**
+	 * Record that a wait reached yielding.
+	 * 
+	 */
+	protected void yieldPhaseReached() {
+		this.yieldPhaseCount.incrementAndGet();
+	}
+	
+	/**
+	 * Record that a thread was parked.
+	 * 
+	 */
+	protected void parkPhaseReached() {
+		this.parkPhaseCount.incrementAndGet();
+	}
+
+	/**
+	 * @see com.sangupta.jerry.ds.WaitStrategy#getSpinPhaseCount()
+	 */
+	@Override
+	public long getSpinPhaseCount() {
+		return this.spinPhaseCount.get();
+	}
+
+	/**
+	 * @see com.sangupta.jerry.ds.WaitStrategy#getYieldPhaseCount()
+	 */
+	@Override
+	public long getYieldPhaseCount() {
+		return this.yieldPhaseCount.get();
+	}
+
+	/**
+	 * @see com.sangupta.jerry.ds.WaitStrategy#getParkPhaseCount()
+	 */
+	@Override
+	public long getParkPhaseCount() {
+		return this.parkPhaseCount.get();
+	}
+
+}
@@ -0,0 +1,64 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.ds;
+
+/**
+ * A {@link WaitStrategy} that keeps the waiting thread spinning. This gives
+ * the lowest latency, at the cost of burning a processor for every waiting
+ * thread. It is best used with threads pinned to dedicated cores.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public class BusySpinWaitStrategy extends AbstractWaitStrategy {
+
+	/**
+	 * @see com.sangupta.jerry.ds.WaitStrategy#await(com.sangupta.jerry.ds.WaitCondition, int, long)
+	 */
+	@Override
+	public void await(WaitCondition condition, int attempt, long remainingNanos) throws InterruptedException {
+		if(attempt == 0) {
+			spinPhaseReached();
+		}
+		
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+	}
+
+	/**
+	 * @see com.sangupta.jerry.ds.WaitStrategy#signalAll()
+	 */
+	@Override
+	public void signalAll() {
+		// nothing to do
+	}
+
+	/**
+	 * @see com.sangupta.jerry.ds.WaitStrategy#signal()
+	 */
+	@Override
+	public void signal() {
+		// nothing to do
+	}
+
+}
@@ -21,10 +21,15 @@
 
 package com.sangupta.jerry.ds;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
 
 
@@ -39,18 +44,47 @@ import java.util.concurrent.locks.ReentrantLock;
  * queue functionality is mostly lock-free. This ensures that the usual operations
  * are faster.
  * 
- * The add() method is usually <code>O(1)</code>. The poll() method is usually
- * <code>O(1)</code>, with worst case complexity of <code>O(m)</code> where <code>m</code>
- * is the maximum priority that has been set for this queue.
+ * The list for a priority level is created when the first element of that
+ * priority is added, and released once poll() has found it empty for the
+ * release interval, by default a second. A level that empties and refills
+ * all the time, such as that of a queue going back and forth between zero and
+ * one element, is thus kept rather than reallocated on every add, while an
+ * idle queue soon holds no lists at all, and sparse priority ranges cost only
+ * as many lists as there are distinct priorities in use. The levels are kept
+ * in a skip list ordered from the highest priority down.
  * 
- * The clear() method is always <code>O(m)</code>, where <code>m</code>
- * is the maximum priority that has been set for this queue.
+ * The add() method is usually <code>O(log l)</code>, where <code>l</code> is
+ * the number of priority levels in use. The poll() method is usually
+ * <code>O(log l)</code>, with worst case complexity of <code>O(l)</code> when
+ * it has to step over levels that have just become empty.
+ * 
+ * The clear() method is always <code>O(l)</code>, where <code>l</code> is the
+ * number of priority levels in use.
+ * 
+ * If an aging interval is specified, the poll() method compares the head of
+ * each priority list, and picks the one with the highest effective priority,
+ * computed as the priority of the list plus one for every aging interval the
+ * head has waited. As each list is FIFO, this ages an entire list in bulk and
+ * the poll() method is <code>O(l)</code>, where <code>l</code> is the number
+ * of priority levels in use, irrespective of the number of elements in the
+ * queue.
  * 
  * @author sangupta
  *
  */
 public class ChangingPriorityQueue<E extends Prioritizable> {
 	
+	/**
+	 * The number of locks that moves of nodes across levels are striped over
+	 */
+	private static final int NODE_LOCK_STRIPES = getNodeLockStripes();
+	
+	/**
+	 * The default time in milliseconds a level must have been found empty
+	 * for before it is released
+	 */
+	public static final long DEFAULT_RELEASE_MILLIS = 1000;
+	
 	protected final Node<E> SENTINEL_NODE = new Node<E>(null);
 
 	/**
@@ -60,15 +94,10 @@ public class ChangingPriorityQueue<E extends Prioritizable> {
 	protected final int maxPriority;
 	
 	/**
-	 * The holder that keeps multiple lists for multiple priorities
-	 */
-	protected final ConcurrentDoublyLinkedList<E> lists[];
-	
-	/**
-	 * Holds the index to the current queue that contains the highest
-	 * priority elements
+	 * The lists for the priority levels currently in use, keyed by priority
+	 * and ordered from the highest priority to the lowest
 	 */
-	protected final AtomicInteger currentQueue;
+	protected final ConcurrentNavigableMap<Integer, PriorityLevel<E>> levels;
 	
 	/**
 	 * All the current items that are in the queue - this makes sure that
@@ -89,23 +118,117 @@ public class ChangingPriorityQueue<E extends Prioritizable> {
 	 */
 	protected final ReentrantLock reentrantLock;
 	
+	/**
+	 * Guard the moves of nodes across levels, so that a node is moved by one
+	 * thread at a time. These are explicit locks rather than monitors on the
+	 * nodes, as a thread waiting to enter a monitor cannot be unmounted from
+	 * its carrier when run on a virtual thread.
+	 */
+	protected final ReentrantLock[] nodeLocks;
+	
+	/**
+	 * The time in milliseconds an element needs to wait to have its effective
+	 * priority raised by one. A value of zero disables aging.
+	 */
+	protected final long agingMillis;
+	
+	/**
+	 * The time in milliseconds a level must have been found empty for before
+	 * it is released. A value of zero releases a level as soon as it is found
+	 * empty.
+	 */
+	protected final long releaseMillis;
+	
 	/**
 	 * Create a new queue where the maximum priority of an element is specified.
 	 * 
 	 * @param maxPriority the maximum priority a message can have
 	 */
-	@SuppressWarnings("unchecked")
 	public ChangingPriorityQueue(int maxPriority) {
-		this.maxPriority = maxPriority + 1; // we add one to make sure that the user supplied value is inclusive
+		this(maxPriority, 0);
+	}
+	
+	/**
+	 * Create a new queue where the maximum priority of an element, and the
+	 * aging interval is specified.
+	 * 
+	 * @param maxPriority
+	 *            the maximum priority a message can have
+	 * 
+	 * @param agingMillis
+	 *            the time in milliseconds after which the effective priority
+	 *            of a waiting element is raised by one, zero to disable aging
+	 */
+	public ChangingPriorityQueue(int maxPriority, long agingMillis) {
+		this(maxPriority, agingMillis, DEFAULT_RELEASE_MILLIS);
+	}
+	
+	/**
+	 * Create a new queue where the maximum priority of an element, the aging
+	 * interval, and the release interval of empty levels is specified.
+	 * 
+	 * @param maxPriority
+	 *            the maximum priority a message can have
+	 * 
+	 * @param agingMillis
+	 *            the time in milliseconds after which the effective priority
+	 *            of a waiting element is raised by one, zero to disable aging
+	 * 
+	 * @param releaseMillis
+	 *            the time in milliseconds a level must have been found empty
+	 *            for before it is released, zero to release it as soon as it
+	 *            is found empty
+	 */
+	public ChangingPriorityQueue(int maxPriority, long agingMillis, long releaseMillis) {
+		if(agingMillis < 0) {
+			throw new IllegalArgumentException("Aging interval cannot be negative");
+		}
 		
-		this.lists = new ConcurrentDoublyLinkedList[this.maxPriority];
-		for(int index = 0; index < this.maxPriority; index++) {
-			this.lists[index] = new ConcurrentDoublyLinkedList<E>();
+		if(releaseMillis < 0) {
+			throw new IllegalArgumentException("Release interval cannot be negative");
 		}
 		
+		this.agingMillis = agingMillis;
+		this.releaseMillis = releaseMillis;
+		this.maxPriority = maxPriority + 1; // we add one to make sure that the user supplied value is inclusive
+		
+		this.levels = new ConcurrentSkipListMap<Integer, PriorityLevel<E>>(Collections.reverseOrder());
 		this.currentItems = new ConcurrentHashMap<E, Node<E>>();
-		this.currentQueue = new AtomicInteger(0);
 		this.reentrantLock = new ReentrantLock();
+		
+		this.nodeLocks = new ReentrantLock[NODE_LOCK_STRIPES];
+		for(int index = 0; index < this.nodeLocks.length; index++) {
+			this.nodeLocks[index] = new ReentrantLock();
+		}
+	}
+	
+	/**
+	 * Return the number of node locks, a power of two that is four times the
+	 * number of processors, and at least sixteen.
+	 * 
+	 * @return the number of node locks
+	 */
+	private static int getNodeLockStripes() {
+		final int wanted = Math.max(16, 4 * Runtime.getRuntime().availableProcessors());
+		
+		int stripes = 1;
+		while(stripes < wanted) {
+			stripes <<= 1;
+		}
+		
+		return stripes;
+	}
+	
+	/**
+	 * Return the lock that guards the moves of the given node.
+	 * 
+	 * @param node
+	 *            the node
+	 * 
+	 * @return the lock for the node
+	 */
+	private ReentrantLock getNodeLock(Node<E> node) {
+		return this.nodeLocks[System.identityHashCode(node) & (this.nodeLocks.length - 1)];
 	}
 
 	/**
@@ -145,19 +268,20 @@ public class ChangingPriorityQueue<E extends Prioritizable> {
 				return incrementPriority(older, element.getPriority());
 			}
 			
-			if(priority > this.maxPriority) {
+			if(priority > (this.maxPriority - 1)) {
 				priority = this.maxPriority - 1;
 			}
 			
 			// add element to right list
-			Node<E> node = this.lists[priority].offerLast(element);
-			
-			if(node != null) {
-				this.currentItems.replace(element, SENTINEL_NODE, node);
-				updateCurrentQueue(priority);
+			PriorityLevel<E> level = getLevel(priority);
+			Node<E> node = level.list.offerLast(element);
+			if(level.released && node.delete()) {
+				// the level was released while we were adding
+				relink(node, priority);
 			}
 			
-			return node != null;
+			this.currentItems.replace(element, SENTINEL_NODE, node);
+			return true;
 		} finally {
 			// clear any previous lock
 			if(locked) {
@@ -186,7 +310,9 @@ public class ChangingPriorityQueue<E extends Prioritizable> {
 			deltaPriority = 1;
 		}
 		
-		synchronized(node) {
+		final ReentrantLock nodeLock = getNodeLock(node);
+		nodeLock.lock();
+		try {
 			// set the node's priority
 			int currentPriority = node.element.getPriority();
 			int newPriority = currentPriority + deltaPriority;
@@ -213,10 +339,9 @@ public class ChangingPriorityQueue<E extends Prioritizable> {
 			}
 			
 			// move this to the new list
-			this.lists[newPriority].add(node);
-			
-			// update the current queue
-			this.updateCurrentQueue(newPriority);
+			relink(node, newPriority);
+		} finally {
+			nodeLock.unlock();
 		}
 		
 		return false;
@@ -237,6 +362,10 @@ public class ChangingPriorityQueue<E extends Prioritizable> {
 		}
 		
 		try {
+			if(this.agingMillis > 0) {
+				return pollAgedUnlocked();
+			}
+			
 			return pollUnlocked();
 		} finally {
 			// clear any previous lock
@@ -253,11 +382,13 @@ public class ChangingPriorityQueue<E extends Prioritizable> {
 	 * @return the element polled, or <code>null</code> otherwise
 	 */
 	private E pollUnlocked() {
-		do {
-			int current = this.currentQueue.get();
+		for(Entry<Integer, PriorityLevel<E>> entry : this.levels.entrySet()) {
+			PriorityLevel<E> level = entry.getValue();
 			
-			E element = this.lists[current].pollFirst();
+			E element = level.list.pollFirst();
 			if(element != null)  {
+				level.markUsed();
+				
 				// remove it form current elements
 				this.currentItems.remove(element);
 				
@@ -265,16 +396,112 @@ public class ChangingPriorityQueue<E extends Prioritizable> {
 				return element;
 			}
 			
-			// check if we have come to the lowest priority queue
-			if(current == 0 && this.currentQueue.get() == 0) {
+			// the level is empty - release it once it stays so
+			releaseIfIdle(entry.getKey(), level);
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Poll this queue and return the element with the highest effective
+	 * priority without locking. The lock must have been obtained by the callee.
+	 * 
+	 * @return the element polled, or <code>null</code> otherwise
+	 */
+	private E pollAgedUnlocked() {
+		do {
+			final long now = System.currentTimeMillis();
+			
+			PriorityLevel<E> best = null;
+			long bestScore = Long.MIN_VALUE;
+			for(Entry<Integer, PriorityLevel<E>> entry : this.levels.entrySet()) {
+				PriorityLevel<E> level = entry.getValue();
+				Node<E> head = level.list.peekFirstNode();
+				if(head == null) {
+					releaseIfIdle(entry.getKey(), level);
+					continue;
+				}
+				
+				level.markUsed();
+				
+				long score = entry.getKey() * this.agingMillis + (now - head.created);
+				if(score > bestScore) {
+					best = level;
+					bestScore = score;
+				}
+			}
+			
+			if(best == null) {
 				return null;
 			}
 			
-			// only switch if the value hasn't changed since then
-			this.currentQueue.compareAndSet(current, current - 1);
+			E element = best.list.pollFirst();
+			if(element != null) {
+				this.currentItems.remove(element);
+				return element;
+			}
 		} while(true);
 	}
 	
+	/**
+	 * Return the highest priority currently present in the queue, by walking
+	 * down the levels in use to the first non-empty list.
+	 * 
+	 * @return the highest priority present in the queue, or zero if the queue
+	 *         is empty
+	 */
+	public int getHighestPriority() {
+		for(Entry<Integer, PriorityLevel<E>> entry : this.levels.entrySet()) {
+			if(entry.getValue().list.peekFirstNode() != null) {
+				return entry.getKey();
+			}
+		}
+		
+		return 0;
+	}
+	
+	/**
+	 * Return the number of priority levels that currently hold a list.
+	 * 
+	 * @return the number of priority levels in use
+	 */
+	public int getLevelCount() {
+		return this.levels.size();
+	}
+	
+	/**
+	 * Check if the queue has no elements.
+	 * 
+	 * @return <code>true</code> if the queue is empty, <code>false</code>
+	 *         otherwise
+	 */
+	public boolean isEmpty() {
+		return this.currentItems.isEmpty();
+	}
+	
+	/**
+	 * Return the age, in milliseconds, of the element at the head of each of
+	 * the non-empty priority lists. This is the longest waiting element of
+	 * the list.
+	 * 
+	 * @return a {@link Map} of priority to the age of the head element in
+	 *         that priority
+	 */
+	public Map<Integer, Long> getOldestAges() {
+		final long now = System.currentTimeMillis();
+		Map<Integer, Long> ages = new TreeMap<Integer, Long>();
+		
+		for(Entry<Integer, PriorityLevel<E>> entry : this.levels.entrySet()) {
+			Node<E> head = entry.getValue().list.peekFirstNode();
+			if(head != null) {
+				ages.put(entry.getKey(), now - head.created);
+			}
+		}
+		
+		return ages;
+	}
+	
 	/**
 	 * Poll and return an element from this queue with the given timeout.
 	 * 
@@ -329,12 +556,13 @@ public class ChangingPriorityQueue<E extends Prioritizable> {
 			// obtain a lock so that nothing else can happen
 			this.reentrantLock.lock();
 			
-			// clear all lists
-			for(int index = 0; index < this.lists.length; index++) {
-				this.lists[index].clear();
+			// release and clear all lists
+			for(PriorityLevel<E> level : this.levels.values()) {
+				level.released = true;
+				level.list.clear();
 			}
 			
-			this.currentQueue.set(0);
+			this.levels.clear();
 			this.currentItems.clear();
 		} finally {
 			this.clearing = false;
@@ -343,23 +571,150 @@ public class ChangingPriorityQueue<E extends Prioritizable> {
 	}
 	
 	/**
-	 * Update the current queue pointer to the right list in case.
+	 * Return the level for the given priority, creating it if it does not
+	 * exist yet.
 	 * 
-	 * @param value
+	 * @param priority
+	 *            the priority of the level
+	 * 
+	 * @return the level for the priority
 	 */
-	private void updateCurrentQueue(final int value) {
+	private PriorityLevel<E> getLevel(int priority) {
+		PriorityLevel<E> level = this.levels.get(priority);
+		if(level != null) {
+			return level;
+		}
+		
+		level = new PriorityLevel<E>();
+		PriorityLevel<E> older = this.levels.putIfAbsent(priority, level);
+		if(older != null) {
+			return older;
+		}
+		
+		return level;
+	}
+	
+	/**
+	 * Link the given unlinked node at the end of the level for the given
+	 * priority. If the level is released while we link, the node is unlinked
+	 * again and moved to a fresh level, unless someone else unlinked it first.
+	 * 
+	 * @param node
+	 *            the node to link
+	 * 
+	 * @param priority
+	 *            the priority of the level to link to
+	 */
+	private void relink(Node<E> node, int priority) {
 		do {
-			int current = this.currentQueue.get();
-			if(current >= value) {
+			PriorityLevel<E> level = getLevel(priority);
+			level.list.add(node);
+			
+			if(!level.released || !node.delete()) {
 				return;
 			}
-			
-			if(current < value) {
-				boolean changed = this.currentQueue.compareAndSet(current, value);
-				if(changed) {
-					return;
+		} while(true);
+	}
+	
+	/**
+	 * Release the given level that was found empty, if it was found empty
+	 * before and has not been polled from since, for at least the release
+	 * interval.
+	 * 
+	 * @param priority
+	 *            the priority of the level
+	 * 
+	 * @param level
+	 *            the level found empty
+	 */
+	private void releaseIfIdle(Integer priority, PriorityLevel<E> level) {
+		if(this.releaseMillis == 0) {
+			release(priority, level);
+			return;
+		}
+		
+		final long now = System.currentTimeMillis();
+		final long emptySince = level.emptySince;
+		if(emptySince == 0) {
+			level.emptySince = now;
+			return;
+		}
+		
+		if(now - emptySince >= this.releaseMillis) {
+			release(priority, level);
+		}
+	}
+	
+	/**
+	 * Release the given level that was found empty. Adders check the release
+	 * flag after linking their node, so any node that makes it to the level
+	 * after the flag is set is moved by its adder. Nodes that were linked
+	 * before are moved here.
+	 * 
+	 * @param priority
+	 *            the priority of the level
+	 * 
+	 * @param level
+	 *            the level to release
+	 */
+	private void release(Integer priority, PriorityLevel<E> level) {
+		if(level.released) {
+			return;
+		}
+		
+		level.released = true;
+		this.levels.remove(priority, level);
+		
+		// move anything that was added in between
+		Node<E> node;
+		while((node = level.list.peekFirstNode()) != null) {
+			final ReentrantLock nodeLock = getNodeLock(node);
+			nodeLock.lock();
+			try {
+				if(node.delete()) {
+					relink(node, priority);
 				}
+			} finally {
+				nodeLock.unlock();
 			}
-		} while(true);
+		}
+	}
+	
+	/**
+	 * The list for a single priority level, along with a flag that marks
+	 * that the list has been released and must not receive new elements.
+	 * 
+	 * @author sangupta
+	 *
+	 * @param <E>
+	 */
+	protected static class PriorityLevel<E> {
+		
+		/**
+		 * The elements in this level
+		 */
+		final ConcurrentDoublyLinkedList<E> list = new ConcurrentDoublyLinkedList<E>();
+		
+		/**
+		 * Whether this level has been released
+		 */
+		volatile boolean released = false;
+		
+		/**
+		 * When this level was first found empty since it was last polled
+		 * from, zero if it has not been
+		 */
+		volatile long emptySince = 0;
+		
+		/**
+		 * Note that the level was found holding elements, only writing to it
+		 * if it was found empty before, so as not to contend on the field.
+		 */
+		void markUsed() {
+			if(this.emptySince != 0) {
+				this.emptySince = 0;
+			}
+		}
+		
 	}
 }
@@ -327,6 +327,17 @@ public class ConcurrentDoublyLinkedList<E> extends AbstractCollection<E> impleme
 		return (n == null) ? null : n.element;
 	}
 
+	/**
+	 * Retrieves, but does not remove, the first node of this deque, or returns
+	 * null if this deque is empty.
+	 * 
+	 * @return the first node of this queue, or <tt>null</tt> if empty.
+	 */
+	Node<E> peekFirstNode() {
+		Node<E> n = header.successor();
+		return usable(n) ? n : null;
+	}
+
 	/**
 	 * Retrieves, but does not remove, the last element of this deque, or
 	 * returns null if this deque is empty.
@@ -722,11 +733,18 @@ class Node<E> extends AtomicReference<Node<E>> {
 
 	final E element;
 	
+	/**
+	 * The time at which this node was created. The node is reused when moved
+	 * across lists, and thus this reflects the time of first insertion.
+	 */
+	final long created;
+	
 	/** Creates a node with given contents */
 	Node(E element, Node<E> next, Node<E> prev) {
 		super(next);
 		this.prev = prev;
 		this.element = element;
+		this.created = (element == null) ? 0 : System.currentTimeMillis();
 	}
 
 	/** Creates a marker node with given successor */
@@ -734,6 +752,7 @@ class Node<E> extends AtomicReference<Node<E>> {
 		super(next);
 		this.prev = this;
 		this.element = null;
+		this.created = 0;
 	}
 	
 	/**
@@ -0,0 +1,495 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.ds;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An unbounded blocking priority queue that keeps one lock-free FIFO list for
+ * every priority level that has been seen. Elements with a higher priority are
+ * served first, and elements with the same priority are served in the order
+ * of their insertion.
+ * 
+ * The offer() method is lock-free and <code>O(1)</code>, except for the very
+ * first insertion at a new priority level which creates the level. The poll()
+ * method is lock-free and <code>O(l)</code> in the worst case, where
+ * <code>l</code> is the number of priority levels seen. Contention between
+ * consumers is limited to the head of a single level. No lock is obtained
+ * unless a consumer needs to wait for an element to arrive, see
+ * {@link AbstractConcurrentBlockingQueue}.
+ * 
+ * Priority levels are created lazily, and thus sparse priority values do not
+ * cost anything.
+ * 
+ * If an aging interval is specified, the poll() method compares the head of
+ * each level and picks the one with the highest effective priority, computed
+ * as the priority of the level plus one for every aging interval the head has
+ * waited. As each level is FIFO, this ages an entire level in bulk without
+ * touching any element.
+ * 
+ * The size() method is <em>NOT</em> a constant-time operation.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ * 
+ * @param <E>
+ *            the type of elements held in this queue
+ */
+public class ConcurrentLevelPriorityQueue<E extends Prioritizable & Timestamped> extends AbstractConcurrentBlockingQueue<E> {
+	
+	/**
+	 * Lookup of all levels by their priority
+	 */
+	protected final ConcurrentMap<Integer, Level<E>> levels;
+	
+	/**
+	 * All levels sorted in decreasing order of priority. A new array is
+	 * published every time a level is created.
+	 */
+	protected volatile Level<E>[] orderedLevels;
+	
+	/**
+	 * The time in milliseconds an element needs to wait to have its effective
+	 * priority raised by one. A value of zero disables aging.
+	 */
+	protected final long agingMillis;
+	
+	/**
+	 * Guards creation of new levels
+	 */
+	protected final ReentrantLock levelLock;
+	
+	/**
+	 * Create a new queue without aging.
+	 * 
+	 */
+	public ConcurrentLevelPriorityQueue() {
+		this(0);
+	}
+	
+	/**
+	 * Create a new queue with the given aging interval.
+	 * 
+	 * @param agingMillis
+	 *            the time in milliseconds after which the effective priority
+	 *            of a waiting element is raised by one, zero to disable aging
+	 */
+	public ConcurrentLevelPriorityQueue(long agingMillis) {
+		if(agingMillis < 0) {
+			throw new IllegalArgumentException("Aging interval cannot be negative");
+		}
+		
+		this.agingMillis = agingMillis;
+		this.levels = new ConcurrentHashMap<Integer, Level<E>>();
+		this.orderedLevels = newLevels(0);
+		this.levelLock = new ReentrantLock();
+	}
+	
+	/**
+	 * Add the element to the level of its priority.
+	 * 
+	 * @see java.util.Queue#offer(java.lang.Object)
+	 */
+	@Override
+	public boolean offer(E element) {
+		if(element == null) {
+			throw new NullPointerException("Element to be added cannot be null");
+		}
+		
+		getLevel(element.getPriority()).queue.offer(element);
+		signalWaiters();
+		return true;
+	}
+	
+	/**
+	 * Remove the element with the highest priority from the queue.
+	 * 
+	 * @see java.util.Queue#poll()
+	 */
+	@Override
+	public E poll() {
+		if(this.agingMillis > 0) {
+			return pollAged();
+		}
+		
+		final Level<E>[] ordered = this.orderedLevels;
+		for(int index = 0; index < ordered.length; index++) {
+			E element = ordered[index].queue.poll();
+			if(element != null) {
+				return element;
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Remove the element with the highest effective priority from the queue.
+	 * 
+	 * @return the element polled, or <code>null</code> if queue is empty
+	 */
+	private E pollAged() {
+		do {
+			Level<E> best = findAgedHead();
+			if(best == null) {
+				return null;
+			}
+			
+			E element = best.queue.poll();
+			if(element != null) {
+				return element;
+			}
+		} while(true);
+	}
+	
+	/**
+	 * Find the level whose head has the highest effective priority.
+	 * 
+	 * @return the level found, or <code>null</code> if all levels are empty
+	 */
+	private Level<E> findAgedHead() {
+		final long now = System.currentTimeMillis();
+		final Level<E>[] ordered = this.orderedLevels;
+		
+		Level<E> best = null;
+		long bestScore = Long.MIN_VALUE;
+		for(int index = 0; index < ordered.length; index++) {
+			E head = ordered[index].queue.peek();
+			if(head == null) {
+				continue;
+			}
+			
+			long score = ordered[index].priority * this.agingMillis + (now - head.getCreated());
+			if(score > bestScore) {
+				best = ordered[index];
+				bestScore = score;
+			}
+		}
+		
+		return best;
+	}
+	
+	/**
+	 * @see java.util.Queue#peek()
+	 */
+	@Override
+	public E peek() {
+		if(this.agingMillis > 0) {
+			Level<E> best = findAgedHead();
+			if(best == null) {
+				return null;
+			}
+			
+			return best.queue.peek();
+		}
+		
+		final Level<E>[] ordered = this.orderedLevels;
+		for(int index = 0; index < ordered.length; index++) {
+			E element = ordered[index].queue.peek();
+			if(element != null) {
+				return element;
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Remove the first element <code>e</code> such that
+	 * <code>e.equals(o)</code>. This allows removal via any key that the
+	 * element considers itself equal to.
+	 * 
+	 * @see java.util.AbstractCollection#remove(java.lang.Object)
+	 */
+	@Override
+	public boolean remove(Object o) {
+		if(o == null) {
+			return false;
+		}
+		
+		final Level<E>[] ordered = this.orderedLevels;
+		for(int index = 0; index < ordered.length; index++) {
+			Iterator<E> iterator = ordered[index].queue.iterator();
+			while(iterator.hasNext()) {
+				if(iterator.next().equals(o)) {
+					iterator.remove();
+					return true;
+				}
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Check if an element <code>e</code> exists such that
+	 * <code>e.equals(o)</code>.
+	 * 
+	 * @see java.util.AbstractCollection#contains(java.lang.Object)
+	 */
+	@Override
+	public boolean contains(Object o) {
+		if(o == null) {
+			return false;
+		}
+		
+		final Level<E>[] ordered = this.orderedLevels;
+		for(int index = 0; index < ordered.length; index++) {
+			for(E element : ordered[index].queue) {
+				if(element.equals(o)) {
+					return true;
+				}
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Clear all levels. Levels once created are retained.
+	 * 
+	 * @see java.util.AbstractQueue#clear()
+	 */
+	@Override
+	public void clear() {
+		final Level<E>[] ordered = this.orderedLevels;
+		for(int index = 0; index < ordered.length; index++) {
+			ordered[index].queue.clear();
+		}
+	}
+	
+	/**
+	 * Returns <code>true</code> if all levels are empty.
+	 * 
+	 * @see java.util.AbstractCollection#isEmpty()
+	 */
+	@Override
+	public boolean isEmpty() {
+		final Level<E>[] ordered = this.orderedLevels;
+		for(int index = 0; index < ordered.length; index++) {
+			if(!ordered[index].queue.isEmpty()) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Returns the number of elements in the queue. This traverses all
+	 * elements of all levels.
+	 * 
+	 * @see java.util.AbstractCollection#size()
+	 */
+	@Override
+	public int size() {
+		long count = 0;
+		final Level<E>[] ordered = this.orderedLevels;
+		for(int index = 0; index < ordered.length; index++) {
+			count += ordered[index].queue.size();
+		}
+		
+		return (count >= Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int) count;
+	}
+	
+	/**
+	 * Returns a weakly consistent iterator that walks over the levels in
+	 * decreasing order of priority.
+	 * 
+	 * @see java.util.AbstractCollection#iterator()
+	 */
+	@Override
+	public Iterator<E> iterator() {
+		return new LevelIterator(this.orderedLevels);
+	}
+	
+	/**
+	 * Return the age, in milliseconds, of the element at the head of each of
+	 * the non-empty levels. This is the longest waiting element of the level.
+	 * 
+	 * @return a {@link Map} of priority to the age of the head element in
+	 *         that priority
+	 */
+	public Map<Integer, Long> getOldestAges() {
+		final long now = System.currentTimeMillis();
+		final Level<E>[] ordered = this.orderedLevels;
+		Map<Integer, Long> ages = new TreeMap<Integer, Long>();
+		
+		for(int index = 0; index < ordered.length; index++) {
+			E head = ordered[index].queue.peek();
+			if(head != null) {
+				ages.put(ordered[index].priority, now - head.getCreated());
+			}
+		}
+		
+		return ages;
+	}
+	
+	/**
+	 * Return the level for the given priority, creating it if needed.
+	 * 
+	 * @param priority
+	 *            the priority of the level
+	 * 
+	 * @return the {@link Level} for the priority
+	 */
+	private Level<E> getLevel(int priority) {
+		Level<E> level = this.levels.get(priority);
+		if(level != null) {
+			return level;
+		}
+		
+		this.levelLock.lock();
+		try {
+			level = this.levels.get(priority);
+			if(level != null) {
+				return level;
+			}
+			
+			level = new Level<E>(priority);
+			
+			// publish a new sorted array of levels before making the level
+			// available for insertion, so that consumers can always find it
+			Level<E>[] current = this.orderedLevels;
+			Level<E>[] updated = newLevels(current.length + 1);
+			int insertAt = 0;
+			while(insertAt < current.length && current[insertAt].priority > priority) {
+				insertAt++;
+			}
+			
+			System.arraycopy(current, 0, updated, 0, insertAt);
+			updated[insertAt] = level;
+			System.arraycopy(current, insertAt, updated, insertAt + 1, current.length - insertAt);
+			this.orderedLevels = updated;
+			
+			this.levels.put(priority, level);
+			return level;
+		} finally {
+			this.levelLock.unlock();
+		}
+	}
+	
+	/**
+	 * Create an array of levels of the given length. An array of a generic
+	 * type cannot be created directly, so an array of the wildcard type is
+	 * cast instead. The array never leaves this queue, and only ever holds
+	 * levels of type <code>E</code>.
+	 * 
+	 * @param length
+	 *            the length of the array
+	 * 
+	 * @return the array created
+	 */
+	@SuppressWarnings("unchecked")
+	private static <E> Level<E>[] newLevels(int length) {
+		return (Level<E>[]) new Level<?>[length];
+	}
+	
+	/**
+	 * @see java.util.AbstractCollection#toString()
+	 */
+	@Override
+	public String toString() {
+		return "[ConcurrentLevelPriorityQueue: levels=" + Arrays.toString(this.levels.keySet().toArray()) + "]";
+	}
+	
+	/**
+	 * A single priority level holding elements in FIFO order.
+	 *
+	 * @param <E>
+	 *            the type of elements held in this level
+	 */
+	protected static final class Level<E> {
+		
+		final int priority;
+		
+		final ConcurrentLinkedQueue<E> queue;
+		
+		Level(int priority) {
+			this.priority = priority;
+			this.queue = new ConcurrentLinkedQueue<E>();
+		}
+		
+	}
+	
+	/**
+	 * Iterator that walks over all levels in decreasing order of priority.
+	 *
+	 */
+	private final class LevelIterator implements Iterator<E> {
+		
+		private final Level<E>[] ordered;
+		
+		private int index = 0;
+		
+		private Iterator<E> current = null;
+		
+		private Iterator<E> last = null;
+		
+		LevelIterator(Level<E>[] ordered) {
+			this.ordered = ordered;
+		}
+
+		@Override
+		public boolean hasNext() {
+			while(this.current == null || !this.current.hasNext()) {
+				if(this.index >= this.ordered.length) {
+					return false;
+				}
+				
+				this.current = this.ordered[this.index++].queue.iterator();
+			}
+			
+			return true;
+		}
+
+		@Override
+		public E next() {
+			if(!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			
+			this.last = this.current;
+			return this.current.next();
+		}
+
+		@Override
+		public void remove() {
+			if(this.last == null) {
+				throw new IllegalStateException();
+			}
+			
+			this.last.remove();
+			this.last = null;
+		}
+		
+	}
+
+}
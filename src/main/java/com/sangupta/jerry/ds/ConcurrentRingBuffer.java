@@ -0,0 +1,492 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.ds;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded, lock-free, multi-producer multi-consumer {@link BlockingQueue}
+ * backed by a preallocated ring of slots. Every slot carries a sequence number
+ * that tells producers and consumers whether the slot is free to be written
+ * or ready to be read for the current lap of the ring. Producers and
+ * consumers claim a position by a single compare-and-set on the enqueue and
+ * dequeue counters respectively, which are padded to sit on cache lines of
+ * their own.
+ * 
+ * The capacity is rounded up to the next power of two, and is at least two,
+ * as a single slot cannot tell a written slot from a free one of the next
+ * lap. No object is allocated
+ * when adding or removing elements.
+ * 
+ * Threads that find the buffer empty (consumers) or full (producers) wait as
+ * per the {@link WaitStrategy} configured for that condition.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ * 
+ * @param <E>
+ *            the type of elements held in this queue
+ */
+public class ConcurrentRingBuffer<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+	
+	/**
+	 * The maximum capacity of a ring buffer
+	 */
+	public static final int MAX_CAPACITY = 1 << 30;
+	
+	/**
+	 * The number of slots in the ring
+	 */
+	private final int capacity;
+	
+	/**
+	 * Mask to convert a position into a slot index
+	 */
+	private final int mask;
+	
+	/**
+	 * The elements held in the slots
+	 */
+	private final Object[] buffer;
+	
+	/**
+	 * The sequence number for each slot
+	 */
+	private final AtomicLongArray sequences;
+	
+	/**
+	 * The next position to be written by a producer
+	 */
+	private final PaddedAtomicLong enqueuePosition = new PaddedAtomicLong(0);
+	
+	/**
+	 * The next position to be read by a consumer
+	 */
+	private final PaddedAtomicLong dequeuePosition = new PaddedAtomicLong(0);
+	
+	/**
+	 * Strategy for consumers waiting on an empty buffer
+	 */
+	private final WaitStrategy notEmptyStrategy;
+	
+	/**
+	 * Strategy for producers waiting on a full buffer
+	 */
+	private final WaitStrategy notFullStrategy;
+	
+	/**
+	 * Condition that consumers wait for
+	 */
+	private final WaitCondition notEmpty = new WaitCondition() {
+		
+		@Override
+		public boolean isSatisfied() {
+			return !isEmpty();
+		}
+		
+	};
+	
+	/**
+	 * Condition that producers wait for
+	 */
+	private final WaitCondition notFull = new WaitCondition() {
+		
+		@Override
+		public boolean isSatisfied() {
+			return size() < capacity;
+		}
+		
+	};
+	
+	/**
+	 * Create a ring buffer where both consumers and producers park right
+	 * away when they need to wait.
+	 * 
+	 * @param capacity
+	 *            the minimum number of elements the buffer can hold
+	 */
+	public ConcurrentRingBuffer(int capacity) {
+		this(capacity, new ParkingWaitStrategy(), new ParkingWaitStrategy());
+	}
+	
+	/**
+	 * Create a ring buffer with the given wait strategies. The two strategies
+	 * must be different instances.
+	 * 
+	 * @param capacity
+	 *            the minimum number of elements the buffer can hold
+	 * 
+	 * @param notEmptyStrategy
+	 *            the strategy for consumers that find the buffer empty
+	 * 
+	 * @param notFullStrategy
+	 *            the strategy for producers that find the buffer full
+	 */
+	public ConcurrentRingBuffer(int capacity, WaitStrategy notEmptyStrategy, WaitStrategy notFullStrategy) {
+		if(capacity <= 0) {
+			throw new IllegalArgumentException("Capacity must be greater than zero");
+		}
+		
+		if(capacity > MAX_CAPACITY) {
+			throw new IllegalArgumentException("Capacity cannot be more than " + MAX_CAPACITY);
+		}
+		
+		if(notEmptyStrategy == null || notFullStrategy == null) {
+			throw new IllegalArgumentException("Wait strategy cannot be null");
+		}
+		
+		if(notEmptyStrategy == notFullStrategy) {
+			throw new IllegalArgumentException("Producers and consumers cannot share a wait strategy instance");
+		}
+		
+		int size = 2;
+		while(size < capacity) {
+			size <<= 1;
+		}
+		
+		this.capacity = size;
+		this.mask = size - 1;
+		this.buffer = new Object[size];
+		this.sequences = new AtomicLongArray(size);
+		for(int index = 0; index < size; index++) {
+			this.sequences.set(index, index);
+		}
+		
+		this.notEmptyStrategy = notEmptyStrategy;
+		this.notFullStrategy = notFullStrategy;
+	}
+	
+	/**
+	 * Return the number of slots in this buffer.
+	 * 
+	 * @return the capacity of the buffer
+	 */
+	public int getCapacity() {
+		return this.capacity;
+	}
+
+	/**
+	 * @see java.util.Queue#offer(java.lang.Object)
+	 */
+	@Override
+	public boolean offer(E element) {
+		if(element == null) {
+			throw new NullPointerException();
+		}
+		
+		long position = this.enqueuePosition.get();
+		do {
+			final int index = (int) (position & this.mask);
+			final long difference = this.sequences.get(index) - position;
+			
+			if(difference == 0) {
+				if(this.enqueuePosition.compareAndSet(position, position + 1)) {
+					this.buffer[index] = element;
+					
+					// a volatile write, so that the wait strategy sees it before
+					// checking for parked consumers
+					this.sequences.set(index, position + 1);
+					this.notEmptyStrategy.signalAll();
+					return true;
+				}
+				
+				position = this.enqueuePosition.get();
+			} else if(difference < 0) {
+				// slot still holds an element from the last lap
+				return false;
+			} else {
+				position = this.enqueuePosition.get();
+			}
+		} while(true);
+	}
+
+	/**
+	 * @see java.util.Queue#poll()
+	 */
+	@Override
+	public E poll() {
+		long position = this.dequeuePosition.get();
+		do {
+			final int index = (int) (position & this.mask);
+			final long difference = this.sequences.get(index) - (position + 1);
+			
+			if(difference == 0) {
+				if(this.dequeuePosition.compareAndSet(position, position + 1)) {
+					@SuppressWarnings("unchecked")
+					E element = (E) this.buffer[index];
+					this.buffer[index] = null;
+					
+					// free the slot for the next lap
+					this.sequences.set(index, position + this.mask + 1);
+					this.notFullStrategy.signalAll();
+					return element;
+				}
+				
+				position = this.dequeuePosition.get();
+			} else if(difference < 0) {
+				// slot has not been written in this lap
+				return null;
+			} else {
+				position = this.dequeuePosition.get();
+			}
+		} while(true);
+	}
+
+	/**
+	 * @see java.util.Queue#peek()
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public E peek() {
+		do {
+			final long position = this.dequeuePosition.get();
+			final int index = (int) (position & this.mask);
+			if(this.sequences.get(index) != position + 1) {
+				if(position == this.dequeuePosition.get()) {
+					return null;
+				}
+				
+				continue;
+			}
+			
+			E element = (E) this.buffer[index];
+			if(element != null && position == this.dequeuePosition.get()) {
+				return element;
+			}
+		} while(true);
+	}
+
+	/**
+	 * @see java.util.concurrent.BlockingQueue#put(java.lang.Object)
+	 */
+	@Override
+	public void put(E element) throws InterruptedException {
+		int attempt = 0;
+		while(!offer(element)) {
+			this.notFullStrategy.await(this.notFull, attempt++, Long.MAX_VALUE);
+		}
+	}
+
+	/**
+	 * @see java.util.concurrent.BlockingQueue#offer(java.lang.Object, long, java.util.concurrent.TimeUnit)
+	 */
+	@Override
+	public boolean offer(E element, long timeout, TimeUnit unit) throws InterruptedException {
+		if(offer(element)) {
+			return true;
+		}
+		
+		final long deadline = System.nanoTime() + unit.toNanos(timeout);
+		int attempt = 0;
+		do {
+			long remaining = deadline - System.nanoTime();
+			if(remaining <= 0) {
+				return false;
+			}
+			
+			this.notFullStrategy.await(this.notFull, attempt++, remaining);
+		} while(!offer(element));
+		
+		return true;
+	}
+
+	/**
+	 * @see java.util.concurrent.BlockingQueue#take()
+	 */
+	@Override
+	public E take() throws InterruptedException {
+		int attempt = 0;
+		E element;
+		while((element = poll()) == null) {
+			this.notEmptyStrategy.await(this.notEmpty, attempt++, Long.MAX_VALUE);
+		}
+		
+		return element;
+	}
+
+	/**
+	 * @see java.util.concurrent.BlockingQueue#poll(long, java.util.concurrent.TimeUnit)
+	 */
+	@Override
+	public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+		E element = poll();
+		if(element != null) {
+			return element;
+		}
+		
+		final long deadline = System.nanoTime() + unit.toNanos(timeout);
+		int attempt = 0;
+		do {
+			long remaining = deadline - System.nanoTime();
+			if(remaining <= 0) {
+				return null;
+			}
+			
+			this.notEmptyStrategy.await(this.notEmpty, attempt++, remaining);
+		} while((element = poll()) == null);
+		
+		return element;
+	}
+
+	/**
+	 * @see java.util.concurrent.BlockingQueue#remainingCapacity()
+	 */
+	@Override
+	public int remainingCapacity() {
+		return this.capacity - size();
+	}
+
+	/**
+	 * @see java.util.concurrent.BlockingQueue#drainTo(java.util.Collection)
+	 */
+	@Override
+	public int drainTo(Collection<? super E> collection) {
+		return drainTo(collection, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @see java.util.concurrent.BlockingQueue#drainTo(java.util.Collection, int)
+	 */
+	@Override
+	public int drainTo(Collection<? super E> collection, int maxElements) {
+		if(collection == null) {
+			throw new NullPointerException();
+		}
+		
+		if(collection == this) {
+			throw new IllegalArgumentException();
+		}
+		
+		int count = 0;
+		E element;
+		while(count < maxElements && (element = poll()) != null) {
+			collection.add(element);
+			count++;
+		}
+		
+		return count;
+	}
+
+	/**
+	 * @see java.util.AbstractCollection#size()
+	 */
+	@Override
+	public int size() {
+		// read the dequeue position first, so that the difference is never
+		// negative
+		final long dequeue = this.dequeuePosition.get();
+		final long enqueue = this.enqueuePosition.get();
+		
+		long size = enqueue - dequeue;
+		if(size < 0) {
+			return 0;
+		}
+		
+		if(size > this.capacity) {
+			return this.capacity;
+		}
+		
+		return (int) size;
+	}
+
+	/**
+	 * @see java.util.AbstractCollection#isEmpty()
+	 */
+	@Override
+	public boolean isEmpty() {
+		return this.enqueuePosition.get() == this.dequeuePosition.get();
+	}
+
+	/**
+	 * Elements cannot be removed from the middle of a ring buffer.
+	 * 
+	 * @see java.util.AbstractCollection#remove(java.lang.Object)
+	 */
+	@Override
+	public boolean remove(Object o) {
+		throw new UnsupportedOperationException("Elements can only be removed from the head of a ring buffer");
+	}
+
+	/**
+	 * @see java.util.AbstractQueue#clear()
+	 */
+	@Override
+	public void clear() {
+		while(poll() != null) {
+			// drain
+		}
+	}
+
+	/**
+	 * Returns an iterator over a snapshot of the elements in the buffer. The
+	 * iterator does not support removal.
+	 * 
+	 * @see java.util.AbstractCollection#iterator()
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public Iterator<E> iterator() {
+		final List<E> snapshot = new ArrayList<E>();
+		
+		final long dequeue = this.dequeuePosition.get();
+		final long enqueue = this.enqueuePosition.get();
+		for(long position = dequeue; position < enqueue; position++) {
+			final int index = (int) (position & this.mask);
+			if(this.sequences.get(index) != position + 1) {
+				continue;
+			}
+			
+			Object element = this.buffer[index];
+			if(element != null) {
+				snapshot.add((E) element);
+			}
+		}
+		
+		final Iterator<E> iterator = snapshot.iterator();
+		return new Iterator<E>() {
+
+			@Override
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+
+			@Override
+			public E next() {
+				return iterator.next();
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException("Elements can only be removed from the head of a ring buffer");
+			}
+			
+		};
+	}
+
+}
@@ -0,0 +1,341 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.ds;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands elements from producers directly to consumers that are already
+ * waiting, in the manner of a <code>SynchronousQueue</code>, so that an
+ * element for a waiting consumer never passes through the backing queue.
+ * 
+ * A consumer first registers a {@link Waiter}, checks its backing queue once
+ * more, and only then awaits a hand-off. A producer that finds no waiter adds
+ * to the backing queue and, if a waiter registered in between, moves elements
+ * from the backing queue to the waiters. Registering before the final check on
+ * one side, and adding before checking for waiters on the other, makes sure
+ * that no consumer sleeps while an element waits in the backing queue.
+ * 
+ * Waiters are served in the order they registered. A waiter that times out is
+ * cancelled and removed, and a cancelled waiter is never handed an element.
+ * 
+ * Elements are moved from the backing queue by first claiming a waiter via
+ * {@link #claim()}, and only then polling the backing queue. A claimed waiter
+ * cannot be cancelled until it is either handed the element polled, or
+ * released as the backing queue was found empty - and thus an element taken
+ * out of the backing queue never has to be put back.
+ * 
+ * Waiters need not be threads: a subclass of {@link Waiter} registered via
+ * {@link #register(Waiter)} is told of the hand-off through
+ * {@link Waiter#wakeUp()}, on the thread of the producer.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ *
+ * @param <E>
+ */
+public class HandOffExchanger<E> {
+	
+	/**
+	 * Marker set in a waiter that gave up waiting
+	 */
+	private static final Object CANCELLED = new Object();
+	
+	/**
+	 * Marker set in a waiter that a producer is polling the backing queue for
+	 */
+	private static final Object CLAIMED = new Object();
+	
+	/**
+	 * The number of times a waiter spins before parking, only when there are
+	 * multiple processors to run the producer meanwhile
+	 */
+	private static final int MAX_SPINS = Runtime.getRuntime().availableProcessors() > 1 ? 64 : 0;
+	
+	/**
+	 * The waiters in the order they registered
+	 */
+	private final Queue<Waiter<E>> waiters = new ConcurrentLinkedQueue<Waiter<E>>();
+	
+	/**
+	 * Check if any consumer is currently waiting for an element.
+	 * 
+	 * @return <code>true</code> if a waiter is registered, <code>false</code>
+	 *         otherwise
+	 */
+	public boolean hasWaiters() {
+		return !this.waiters.isEmpty();
+	}
+	
+	/**
+	 * Hand the element to the longest waiting consumer, if any.
+	 * 
+	 * @param element
+	 *            the element to hand off
+	 * 
+	 * @return <code>true</code> if a waiter took the element,
+	 *         <code>false</code> if there was no waiter and the element must
+	 *         be queued
+	 */
+	public boolean transfer(E element) {
+		if(element == null) {
+			throw new NullPointerException("Element to hand off cannot be null");
+		}
+		
+		Waiter<E> waiter;
+		while((waiter = this.waiters.poll()) != null) {
+			if(waiter.compareAndSet(null, element)) {
+				waiter.wakeUp();
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Claim the longest waiting consumer, to hand it an element that is yet
+	 * to be polled from the backing queue. The caller must then either
+	 * {@link #fulfil(Waiter, Object)} or {@link #release(Waiter)} the waiter
+	 * without delay, as a consumer cancelling the waiter waits till then.
+	 * 
+	 * @return the waiter claimed, or <code>null</code> if there is none
+	 */
+	public Waiter<E> claim() {
+		Waiter<E> waiter;
+		while((waiter = this.waiters.poll()) != null) {
+			if(waiter.compareAndSet(null, CLAIMED)) {
+				return waiter;
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Hand the given element to a waiter claimed via {@link #claim()}.
+	 * 
+	 * @param waiter
+	 *            the waiter claimed
+	 * 
+	 * @param element
+	 *            the element to hand off
+	 */
+	public void fulfil(Waiter<E> waiter, E element) {
+		if(element == null) {
+			throw new NullPointerException("Element to hand off cannot be null");
+		}
+		
+		waiter.set(element);
+		waiter.wakeUp();
+	}
+	
+	/**
+	 * Return a waiter claimed via {@link #claim()} to waiting, as no element
+	 * was found for it. The waiter is registered again behind the ones
+	 * waiting. As the waiter was not registered while claimed, the caller
+	 * must check its backing queue once more for elements added meanwhile.
+	 * 
+	 * @param waiter
+	 *            the waiter claimed
+	 */
+	public void release(Waiter<E> waiter) {
+		waiter.set(null);
+		this.waiters.offer(waiter);
+	}
+	
+	/**
+	 * Register the current thread as waiting for an element. The caller must
+	 * check its backing queue once more after registering, and then either
+	 * {@link #cancel(Waiter)} the waiter or {@link #await(Waiter, long)} on it.
+	 * 
+	 * @return the waiter registered
+	 */
+	public Waiter<E> register() {
+		return this.register(new Waiter<E>(Thread.currentThread()));
+	}
+	
+	/**
+	 * Register the given waiter. The caller must check its backing queue once
+	 * more after registering, and either cancel the waiter or leave it to be
+	 * woken up by a producer.
+	 * 
+	 * @param waiter
+	 *            the waiter to register
+	 * 
+	 * @return the waiter registered
+	 */
+	public <W extends Waiter<E>> W register(W waiter) {
+		this.waiters.offer(waiter);
+		return waiter;
+	}
+	
+	/**
+	 * Cancel the given waiter, unless it has already been handed an element.
+	 * If a producer has claimed the waiter, this waits for the producer to
+	 * hand it an element or release it.
+	 * 
+	 * @param waiter
+	 *            the waiter to cancel
+	 * 
+	 * @return <code>true</code> if the waiter was cancelled,
+	 *         <code>false</code> if an element was handed to it, which can
+	 *         then be read via {@link #getElement(Waiter)}
+	 */
+	public boolean cancel(Waiter<E> waiter) {
+		do {
+			if(waiter.compareAndSet(null, CANCELLED)) {
+				this.waiters.remove(waiter);
+				return true;
+			}
+			
+			if(waiter.get() != CLAIMED) {
+				return false;
+			}
+			
+			// the producer is polling its backing queue for us
+			Thread.yield();
+		} while(true);
+	}
+	
+	/**
+	 * Return the element handed to the given waiter.
+	 * 
+	 * @param waiter
+	 *            the waiter
+	 * 
+	 * @return the element handed off, or <code>null</code> if none has been
+	 *         handed yet or the waiter was cancelled or is claimed
+	 */
+	@SuppressWarnings("unchecked")
+	public E getElement(Waiter<E> waiter) {
+		Object item = waiter.get();
+		if(item == null || item == CANCELLED || item == CLAIMED) {
+			return null;
+		}
+		
+		return (E) item;
+	}
+	
+	/**
+	 * Wait for an element to be handed to the given waiter, cancelling the
+	 * waiter if none arrives within the given time. If the thread is
+	 * interrupted after an element has been handed over, the element is
+	 * returned and the interrupt status is set again.
+	 * 
+	 * @param waiter
+	 *            the waiter registered by the current thread
+	 * 
+	 * @param nanos
+	 *            the maximum time to wait in nanoseconds
+	 * 
+	 * @return the element handed off, or <code>null</code> if the wait timed
+	 *         out
+	 * 
+	 * @throws InterruptedException
+	 *             if the thread was interrupted before an element was handed
+	 *             over
+	 */
+	public E await(Waiter<E> waiter, long nanos) throws InterruptedException {
+		final long deadline = System.nanoTime() + nanos;
+		int spins = MAX_SPINS;
+		
+		do {
+			E element = getElement(waiter);
+			if(element != null) {
+				return element;
+			}
+			
+			if(Thread.interrupted()) {
+				if(cancel(waiter)) {
+					throw new InterruptedException();
+				}
+				
+				Thread.currentThread().interrupt();
+				return getElement(waiter);
+			}
+			
+			long remaining = deadline - System.nanoTime();
+			if(remaining <= 0) {
+				if(cancel(waiter)) {
+					return null;
+				}
+				
+				return getElement(waiter);
+			}
+			
+			if(spins > 0) {
+				spins--;
+				continue;
+			}
+			
+			LockSupport.parkNanos(this, remaining);
+		} while(true);
+	}
+	
+	/**
+	 * A consumer waiting for an element. The reference holds the element
+	 * handed off, or the cancelled marker. Subclasses that do not wait in a
+	 * thread override {@link #wakeUp()}.
+	 * 
+	 * @author sangupta
+	 *
+	 * @param <E>
+	 */
+	public static class Waiter<E> extends AtomicReference<Object> {
+		
+		/**
+		 * Generated via Eclipse
+		 */
+		private static final long serialVersionUID = -3318740263862470921L;
+		
+		/**
+		 * The thread that is waiting, <code>null</code> if none
+		 */
+		final Thread thread;
+		
+		/**
+		 * Create a waiter for the given thread.
+		 * 
+		 * @param thread
+		 *            the waiting thread, or <code>null</code> if the
+		 *            subclass is woken up otherwise
+		 */
+		protected Waiter(Thread thread) {
+			this.thread = thread;
+		}
+		
+		/**
+		 * Invoked on the thread of the producer once an element has been
+		 * handed to this waiter. Unparks the waiting thread by default.
+		 * 
+		 */
+		protected void wakeUp() {
+			LockSupport.unpark(this.thread);
+		}
+		
+	}
+
+}
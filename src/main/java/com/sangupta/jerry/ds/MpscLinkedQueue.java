@@ -0,0 +1,109 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.ds;
+
+/**
+ * An unbounded {@link java.util.concurrent.BlockingQueue} for any number of
+ * producer threads and exactly one consumer thread. Producers claim their
+ * place with a single atomic swap, which never needs to be retried. The
+ * consumer uses no lock, and only an uncontended compare-and-set to claim
+ * each element.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ * 
+ * @param <E>
+ *            the type of elements held in this queue
+ */
+public class MpscLinkedQueue<E> extends AbstractLazyLinkedQueue<E> {
+
+	/**
+	 * @see java.util.Queue#offer(java.lang.Object)
+	 */
+	@Override
+	public boolean offer(E element) {
+		if(element == null) {
+			throw new NullPointerException();
+		}
+		
+		final LinkedNode<E> node = new LinkedNode<E>(element);
+		final LinkedNode<E> previous = swapProducerNode(node);
+		previous.lazySetNext(node);
+		
+		signalWaiters();
+		return true;
+	}
+
+	/**
+	 * Must only be called by the single consumer thread.
+	 * 
+	 * @see java.util.Queue#poll()
+	 */
+	@Override
+	public E poll() {
+		do {
+			final LinkedNode<E> head = this.consumerNode;
+			LinkedNode<E> next = head.next;
+			if(next == null) {
+				if(head == this.producerNode) {
+					return null;
+				}
+				
+				// a producer has claimed its place, but is yet to link the node
+				do {
+					next = head.next;
+				} while(next == null);
+			}
+			
+			final E element = next.takeValue();
+			lazySetConsumerNode(next);
+			if(element != null) {
+				return element;
+			}
+			
+			// removed by another thread, pass over it
+		} while(true);
+	}
+	
+	/**
+	 * A producer that has claimed its place but is yet to link its node
+	 * makes the queue non-empty.
+	 * 
+	 * @see com.sangupta.jerry.ds.AbstractLazyLinkedQueue#isEmpty()
+	 */
+	@Override
+	public boolean isEmpty() {
+		LinkedNode<E> node = this.consumerNode;
+		final LinkedNode<E> tail = this.producerNode;
+		while(node != tail) {
+			final LinkedNode<E> next = node.next;
+			if(next == null || next.value != null) {
+				return false;
+			}
+			
+			node = next;
+		}
+		
+		return true;
+	}
+
+}
@@ -0,0 +1,64 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.ds;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An {@link AtomicLong} padded to occupy a cache line of its own, so that
+ * writes to a hot counter do not invalidate the cache line of its neighbours.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public class PaddedAtomicLong extends AtomicLong {
+	
+	/**
+	 * Generated via Eclipse
+	 */
+	private static final long serialVersionUID = 5379346537461478384L;
+	
+	/**
+	 * Padding to fill up the rest of the cache line
+	 */
+	public volatile long p1, p2, p3, p4, p5, p6 = 7L;
+	
+	/**
+	 * Create a new instance with the given initial value.
+	 * 
+	 * @param initialValue
+	 *            the initial value
+	 */
+	public PaddedAtomicLong(long initialValue) {
+		super(initialValue);
+	}
+	
+	/**
+	 * Referring to the padding prevents it from being optimized away.
+	 * 
+	 * @return the sum of the padding fields
+	 */
+	public long sumPaddingToPreventOptimisation() {
+		return p1 + p2 + p3 + p4 + p5 + p6;
+	}
+
+}
@@ -0,0 +1,153 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.ds;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link WaitStrategy} that spins for a given number of attempts, and then
+ * parks the waiting thread till it is signalled or its time runs out. With
+ * zero spins, threads are parked right away and consume no processor time
+ * while waiting.
+ * 
+ * The lock is only obtained by a signalling thread when some thread is parked.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public class ParkingWaitStrategy extends AbstractWaitStrategy {
+	
+	/**
+	 * The number of attempts to spin before parking
+	 */
+	private final int spins;
+	
+	/**
+	 * Lock guarding the parking of threads
+	 */
+	private final ReentrantLock lock = new ReentrantLock();
+	
+	/**
+	 * The condition over which threads are parked
+	 */
+	private final Condition signal = this.lock.newCondition();
+	
+	/**
+	 * Number of threads currently parked
+	 */
+	private final AtomicInteger parked = new AtomicInteger();
+	
+	/**
+	 * Create a new strategy that parks right away.
+	 * 
+	 */
+	public ParkingWaitStrategy() {
+		this(0);
+	}
+	
+	/**
+	 * Create a new strategy.
+	 * 
+	 * @param spins
+	 *            the number of attempts to spin before parking
+	 */
+	public ParkingWaitStrategy(int spins) {
+		if(spins < 0) {
+			throw new IllegalArgumentException("Spin count cannot be negative");
+		}
+		
+		this.spins = spins;
+	}
+
+	/**
+	 * @see com.sangupta.jerry.ds.WaitStrategy#await(com.sangupta.jerry.ds.WaitCondition, int, long)
+	 */
+	@Override
+	public void await(WaitCondition condition, int attempt, long remainingNanos) throws InterruptedException {
+		if(attempt < this.spins) {
+			if(attempt == 0) {
+				spinPhaseReached();
+			}
+			
+			if(Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			
+			return;
+		}
+		
+		final ReentrantLock lock = this.lock;
+		lock.lockInterruptibly();
+		this.parked.incrementAndGet();
+		try {
+			// check again now that signalling threads can see us
+			if(condition.isSatisfied()) {
+				return;
+			}
+			
+			parkPhaseReached();
+			this.signal.awaitNanos(remainingNanos);
+		} finally {
+			this.parked.decrementAndGet();
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @see com.sangupta.jerry.ds.WaitStrategy#signalAll()
+	 */
+	@Override
+	public void signalAll() {
+		if(this.parked.get() == 0) {
+			return;
+		}
+		
+		final ReentrantLock lock = this.lock;
+		lock.lock();
+		try {
+			this.signal.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @see com.sangupta.jerry.ds.WaitStrategy#signal()
+	 */
+	@Override
+	public void signal() {
+		if(this.parked.get() == 0) {
+			return;
+		}
+		
+		final ReentrantLock lock = this.lock;
+		lock.lock();
+		try {
+			this.signal.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+}
@@ -0,0 +1,42 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.ds;
+
+/**
+ * Instrumentation hook that is notified of the rank error observed when an
+ * element is removed from a {@link RelaxedPriorityQueue}.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public interface RankErrorListener {
+	
+	/**
+	 * Invoked when the rank error of a removed element has been measured.
+	 * 
+	 * @param rankError
+	 *            the number of elements that were present in the queue with a
+	 *            strictly higher priority than the element removed
+	 */
+	public void rankErrorObserved(int rankError);
+
+}
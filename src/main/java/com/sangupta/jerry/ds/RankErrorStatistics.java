@@ -0,0 +1,110 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.ds;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link RankErrorListener} that keeps simple running statistics of the
+ * observed rank errors.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public class RankErrorStatistics implements RankErrorListener {
+	
+	/**
+	 * Number of samples observed
+	 */
+	private final AtomicLong samples = new AtomicLong();
+	
+	/**
+	 * Sum of all rank errors observed
+	 */
+	private final AtomicLong total = new AtomicLong();
+	
+	/**
+	 * The maximum rank error observed
+	 */
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * @see com.sangupta.jerry.ds.RankErrorListener#rankErrorObserved(int)
+	 */
+	@Override
+	public void rankErrorObserved(int rankError) {
+		this.samples.incrementAndGet();
+		this.total.addAndGet(rankError);
+		
+		long current;
+		while((current = this.max.get()) < rankError) {
+			if(this.max.compareAndSet(current, rankError)) {
+				break;
+			}
+		}
+	}
+	
+	/**
+	 * Reset all statistics.
+	 * 
+	 */
+	public void reset() {
+		this.samples.set(0);
+		this.total.set(0);
+		this.max.set(0);
+	}
+	
+	/**
+	 * @return the number of samples observed
+	 */
+	public long getSamples() {
+		return this.samples.get();
+	}
+	
+	/**
+	 * @return the mean rank error observed, or zero if nothing was observed
+	 */
+	public double getMeanRankError() {
+		long count = this.samples.get();
+		if(count == 0) {
+			return 0;
+		}
+		
+		return ((double) this.total.get()) / count;
+	}
+	
+	/**
+	 * @return the maximum rank error observed
+	 */
+	public long getMaxRankError() {
+		return this.max.get();
+	}
+	
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "[RankErrorStatistics: samples=" + getSamples() + ", mean=" + getMeanRankError() + ", max=" + getMaxRankError() + "]";
+	}
+
+}
@@ -0,0 +1,564 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.ds;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An unbounded blocking priority queue that relaxes the strict priority
+ * ordering in exchange for scalability with a large number of consumers. The
+ * queue is made up of a number of sub-queues, each a binary heap guarded by
+ * its own lock.
+ * 
+ * An insertion goes to a randomly chosen sub-queue. A removal picks two random
+ * sub-queues, and removes the head from the one whose head has the higher
+ * priority. Thus, the element removed is not always the one with the highest
+ * priority in the queue, but one that is close to it. The expected rank of the
+ * element removed grows linearly with the number of sub-queues, which thus
+ * acts as the relaxation bound of the queue. With one sub-queue, the queue
+ * behaves as a strict priority queue.
+ * 
+ * No operation ever waits on the lock of a busy sub-queue unless all attempts
+ * at finding a free one have failed. Consumers only contend when they pick the
+ * same sub-queue.
+ * 
+ * The rank error observed by consumers can be measured by attaching a
+ * {@link RankErrorListener} that is notified for a random sample of removals.
+ * Measuring the rank error needs a walk over all sub-queues, and thus the
+ * sampling rate should be kept low in production.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ * 
+ * @param <E>
+ *            the type of elements held in this queue
+ */
+public class RelaxedPriorityQueue<E extends Prioritizable> extends AbstractConcurrentBlockingQueue<E> {
+	
+	/**
+	 * Marker for the priority of the head of an empty sub-queue
+	 */
+	private static final int EMPTY = Integer.MIN_VALUE;
+	
+	/**
+	 * Orders elements in decreasing order of their priority
+	 */
+	private static final Comparator<Prioritizable> PRIORITY_COMPARATOR = new Comparator<Prioritizable>() {
+		
+		@Override
+		public int compare(Prioritizable first, Prioritizable second) {
+			int p1 = first.getPriority();
+			int p2 = second.getPriority();
+			
+			if(p1 == p2) {
+				return 0;
+			}
+			
+			return p1 > p2 ? -1 : 1;
+		}
+		
+	};
+	
+	/**
+	 * Per-thread state of the random number generator
+	 */
+	private static final ThreadLocal<int[]> RANDOM_SEEDS = new ThreadLocal<int[]>() {
+		
+		@Override
+		protected int[] initialValue() {
+			int seed = (int) (Thread.currentThread().getId() * 0x9E3779B9L ^ System.nanoTime());
+			return new int[] { seed == 0 ? 1 : seed };
+		}
+		
+	};
+	
+	/**
+	 * The sub-queues that make up this queue
+	 */
+	protected final SubQueue<E>[] subQueues;
+	
+	/**
+	 * The listener to notify of the observed rank errors, if any
+	 */
+	private volatile RankErrorListener rankErrorListener;
+	
+	/**
+	 * One in how many removals is sampled for rank error
+	 */
+	private volatile int rankErrorSampling;
+	
+	/**
+	 * Create a new queue with the given number of sub-queues.
+	 * 
+	 * @param numSubQueues
+	 *            the number of sub-queues to use, the higher the number the
+	 *            lower the contention and the higher the rank error
+	 */
+	public RelaxedPriorityQueue(int numSubQueues) {
+		if(numSubQueues <= 0) {
+			throw new IllegalArgumentException("Number of sub-queues must be greater than zero");
+		}
+		
+		this.subQueues = newSubQueues(numSubQueues);
+		for(int index = 0; index < numSubQueues; index++) {
+			this.subQueues[index] = new SubQueue<E>();
+		}
+	}
+	
+	/**
+	 * Attach a listener that is notified of the rank error of a sample of the
+	 * removals.
+	 * 
+	 * @param listener
+	 *            the listener to attach, <code>null</code> to detach the
+	 *            existing one
+	 * 
+	 * @param sampleEvery
+	 *            on average one in how many removals is sampled
+	 */
+	public void setRankErrorListener(RankErrorListener listener, int sampleEvery) {
+		if(sampleEvery <= 0) {
+			throw new IllegalArgumentException("Sampling rate must be greater than zero");
+		}
+		
+		this.rankErrorSampling = sampleEvery;
+		this.rankErrorListener = listener;
+	}
+	
+	/**
+	 * Add the element to a random sub-queue.
+	 * 
+	 * @see java.util.Queue#offer(java.lang.Object)
+	 */
+	@Override
+	public boolean offer(E element) {
+		if(element == null) {
+			throw new NullPointerException("Element to be added cannot be null");
+		}
+		
+		final int size = this.subQueues.length;
+		SubQueue<E> subQueue = null;
+		for(int attempt = 0; attempt < size; attempt++) {
+			SubQueue<E> candidate = this.subQueues[nextRandom(size)];
+			if(candidate.lock.tryLock()) {
+				subQueue = candidate;
+				break;
+			}
+		}
+		
+		if(subQueue == null) {
+			// everything is busy, wait on a random one
+			subQueue = this.subQueues[nextRandom(size)];
+			subQueue.lock.lock();
+		}
+		
+		try {
+			subQueue.heap.offer(element);
+			subQueue.updateTop();
+		} finally {
+			subQueue.lock.unlock();
+		}
+		
+		signalWaiters();
+		return true;
+	}
+	
+	/**
+	 * Remove the head of the better of two random sub-queues.
+	 * 
+	 * @see java.util.Queue#poll()
+	 */
+	@Override
+	public E poll() {
+		final int size = this.subQueues.length;
+		for(int attempt = 0; attempt < size; attempt++) {
+			SubQueue<E> first = this.subQueues[nextRandom(size)];
+			SubQueue<E> second = this.subQueues[nextRandom(size)];
+			SubQueue<E> better = first.top >= second.top ? first : second;
+			
+			if(better.top == EMPTY) {
+				continue;
+			}
+			
+			if(!better.lock.tryLock()) {
+				continue;
+			}
+			
+			E element;
+			try {
+				element = better.heap.poll();
+				better.updateTop();
+			} finally {
+				better.lock.unlock();
+			}
+			
+			if(element != null) {
+				sampleRankError(element);
+				return element;
+			}
+		}
+		
+		// random choices failed - walk over all sub-queues before declaring
+		// the queue to be empty
+		final int start = nextRandom(size);
+		for(int index = 0; index < size; index++) {
+			SubQueue<E> subQueue = this.subQueues[(start + index) % size];
+			if(subQueue.top == EMPTY) {
+				continue;
+			}
+			
+			E element;
+			subQueue.lock.lock();
+			try {
+				element = subQueue.heap.poll();
+				subQueue.updateTop();
+			} finally {
+				subQueue.lock.unlock();
+			}
+			
+			if(element != null) {
+				sampleRankError(element);
+				return element;
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Returns the head with the highest priority across all sub-queues.
+	 * 
+	 * @see java.util.Queue#peek()
+	 */
+	@Override
+	public E peek() {
+		SubQueue<E> best = null;
+		for(SubQueue<E> subQueue : this.subQueues) {
+			if(subQueue.top != EMPTY && (best == null || subQueue.top > best.top)) {
+				best = subQueue;
+			}
+		}
+		
+		if(best == null) {
+			return null;
+		}
+		
+		best.lock.lock();
+		try {
+			return best.heap.peek();
+		} finally {
+			best.lock.unlock();
+		}
+	}
+	
+	/**
+	 * Remove the first element <code>e</code> such that
+	 * <code>e.equals(o)</code>. This allows removal via any key that the
+	 * element considers itself equal to.
+	 * 
+	 * @see java.util.AbstractCollection#remove(java.lang.Object)
+	 */
+	@Override
+	public boolean remove(Object o) {
+		if(o == null) {
+			return false;
+		}
+		
+		for(SubQueue<E> subQueue : this.subQueues) {
+			subQueue.lock.lock();
+			try {
+				Iterator<E> iterator = subQueue.heap.iterator();
+				while(iterator.hasNext()) {
+					if(iterator.next().equals(o)) {
+						iterator.remove();
+						subQueue.updateTop();
+						return true;
+					}
+				}
+			} finally {
+				subQueue.lock.unlock();
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Check if an element <code>e</code> exists such that
+	 * <code>e.equals(o)</code>.
+	 * 
+	 * @see java.util.AbstractCollection#contains(java.lang.Object)
+	 */
+	@Override
+	public boolean contains(Object o) {
+		if(o == null) {
+			return false;
+		}
+		
+		for(SubQueue<E> subQueue : this.subQueues) {
+			subQueue.lock.lock();
+			try {
+				for(E element : subQueue.heap) {
+					if(element.equals(o)) {
+						return true;
+					}
+				}
+			} finally {
+				subQueue.lock.unlock();
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * @see java.util.AbstractQueue#clear()
+	 */
+	@Override
+	public void clear() {
+		for(SubQueue<E> subQueue : this.subQueues) {
+			subQueue.lock.lock();
+			try {
+				subQueue.heap.clear();
+				subQueue.updateTop();
+			} finally {
+				subQueue.lock.unlock();
+			}
+		}
+	}
+	
+	/**
+	 * @see java.util.AbstractCollection#isEmpty()
+	 */
+	@Override
+	public boolean isEmpty() {
+		for(SubQueue<E> subQueue : this.subQueues) {
+			if(subQueue.top != EMPTY) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * @see java.util.AbstractCollection#size()
+	 */
+	@Override
+	public int size() {
+		int size = 0;
+		for(SubQueue<E> subQueue : this.subQueues) {
+			subQueue.lock.lock();
+			try {
+				size += subQueue.heap.size();
+			} finally {
+				subQueue.lock.unlock();
+			}
+		}
+		
+		return size;
+	}
+	
+	/**
+	 * Returns an iterator over a snapshot of the elements in the queue, in no
+	 * particular order. Removal via the iterator removes the element from the
+	 * queue.
+	 * 
+	 * @see java.util.AbstractCollection#iterator()
+	 */
+	@Override
+	public Iterator<E> iterator() {
+		final List<E> snapshot = new ArrayList<E>();
+		for(SubQueue<E> subQueue : this.subQueues) {
+			subQueue.lock.lock();
+			try {
+				snapshot.addAll(subQueue.heap);
+			} finally {
+				subQueue.lock.unlock();
+			}
+		}
+		
+		final Iterator<E> iterator = snapshot.iterator();
+		return new Iterator<E>() {
+			
+			private E last;
+
+			@Override
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+
+			@Override
+			public E next() {
+				this.last = iterator.next();
+				return this.last;
+			}
+
+			@Override
+			public void remove() {
+				if(this.last == null) {
+					throw new IllegalStateException();
+				}
+				
+				removeInstance(this.last);
+				this.last = null;
+			}
+			
+		};
+	}
+	
+	/**
+	 * Remove the given instance from whichever sub-queue holds it.
+	 * 
+	 * @param instance
+	 *            the element instance to remove
+	 */
+	private void removeInstance(E instance) {
+		for(SubQueue<E> subQueue : this.subQueues) {
+			subQueue.lock.lock();
+			try {
+				Iterator<E> iterator = subQueue.heap.iterator();
+				while(iterator.hasNext()) {
+					if(iterator.next() == instance) {
+						iterator.remove();
+						subQueue.updateTop();
+						return;
+					}
+				}
+			} finally {
+				subQueue.lock.unlock();
+			}
+		}
+	}
+	
+	/**
+	 * Measure the rank error of the removed element and notify the listener,
+	 * if the removal has been picked as a sample.
+	 * 
+	 * @param removed
+	 *            the element that was removed
+	 */
+	private void sampleRankError(E removed) {
+		final RankErrorListener listener = this.rankErrorListener;
+		if(listener == null) {
+			return;
+		}
+		
+		if(nextRandom(this.rankErrorSampling) != 0) {
+			return;
+		}
+		
+		final int priority = removed.getPriority();
+		int rankError = 0;
+		for(SubQueue<E> subQueue : this.subQueues) {
+			if(subQueue.top == EMPTY || subQueue.top <= priority) {
+				continue;
+			}
+			
+			subQueue.lock.lock();
+			try {
+				for(E element : subQueue.heap) {
+					if(element.getPriority() > priority) {
+						rankError++;
+					}
+				}
+			} finally {
+				subQueue.lock.unlock();
+			}
+		}
+		
+		listener.rankErrorObserved(rankError);
+	}
+	
+	/**
+	 * Return a random number from zero (inclusive) to the given bound
+	 * (exclusive) using a per-thread xor-shift generator.
+	 * 
+	 * @param bound
+	 *            the upper bound
+	 * 
+	 * @return the random number
+	 */
+	private static int nextRandom(int bound) {
+		if(bound == 1) {
+			return 0;
+		}
+		
+		int[] seed = RANDOM_SEEDS.get();
+		int x = seed[0];
+		x ^= x << 13;
+		x ^= x >>> 17;
+		x ^= x << 5;
+		seed[0] = x;
+		
+		return (x & Integer.MAX_VALUE) % bound;
+	}
+	
+	/**
+	 * Allocate the array of sub-queues. Java does not permit creating a
+	 * generic array, hence the cast of a wildcard array - which is safe as
+	 * the array is filled with sub-queues of <code>E</code> right away and
+	 * is never exposed.
+	 * 
+	 * @param numSubQueues
+	 *            the number of sub-queues
+	 * 
+	 * @return the array allocated
+	 */
+	@SuppressWarnings("unchecked")
+	private static <E extends Prioritizable> SubQueue<E>[] newSubQueues(int numSubQueues) {
+		return (SubQueue<E>[]) new SubQueue<?>[numSubQueues];
+	}
+	
+	/**
+	 * A single sub-queue guarded by its own lock. The priority of its head is
+	 * published via a volatile field so that consumers can compare two
+	 * sub-queues without locking either.
+	 *
+	 * @param <E>
+	 *            the type of elements held in the sub-queue
+	 */
+	protected static final class SubQueue<E extends Prioritizable> {
+		
+		final ReentrantLock lock = new ReentrantLock();
+		
+		final PriorityQueue<E> heap = new PriorityQueue<E>(16, PRIORITY_COMPARATOR);
+		
+		volatile int top = EMPTY;
+		
+		/**
+		 * Update the published priority of the head. Must be called with the
+		 * lock held.
+		 */
+		void updateTop() {
+			E head = this.heap.peek();
+			this.top = (head == null) ? EMPTY : head.getPriority();
+		}
+		
+	}
+
+}
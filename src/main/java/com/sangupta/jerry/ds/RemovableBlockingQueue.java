@@ -0,0 +1,51 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.ds;
+
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A {@link BlockingQueue} from which an element can be removed by a key that
+ * the element knows of, handing back the element that was removed. This
+ * saves a caller that needs the element from walking the queue to find it
+ * first.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ * 
+ * @param <E>
+ *            the type of elements held in this queue
+ */
+public interface RemovableBlockingQueue<E> extends BlockingQueue<E> {
+	
+	/**
+	 * Remove the first element that is equal to the given object, as told by
+	 * the equals() method of the element.
+	 * 
+	 * @param o
+	 *            the element, or a key the element is equal to
+	 * 
+	 * @return the element removed, or <code>null</code> if there was none
+	 */
+	public E removeElement(Object o);
+
+}
@@ -0,0 +1,656 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.ds;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * An unbounded, multi-producer multi-consumer {@link java.util.concurrent.BlockingQueue}
+ * made up of a linked list of fixed-size array segments. Producers and
+ * consumers claim a slot in the tail and head segment respectively with a
+ * compare-and-set over the index of the segment, so that a node is allocated
+ * only once for every segment instead of once for every element.
+ * 
+ * Segments that have been fully consumed are recycled through a small pool.
+ * Every segment gets a new, never repeating, ID each time it is linked into
+ * the list, and every index claim checks this ID. A thread still holding a
+ * segment that has since been recycled thus fails its claim and starts over.
+ * The same goes for unlinking a consumed segment from the head, which is
+ * claimed on the state of the segment rather than on the head reference, as
+ * a recycled segment may well be back at the head by then.
+ * 
+ * Elements can be removed from the middle of the queue, in which case the
+ * slot is marked as removed and skipped by consumers.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ * 
+ * @param <E>
+ *            the type of elements held in this queue
+ */
+public class SegmentedArrayQueue<E> extends AbstractConcurrentBlockingQueue<E> implements RemovableBlockingQueue<E> {
+	
+	/**
+	 * The default number of slots in a segment
+	 */
+	public static final int DEFAULT_SEGMENT_SIZE = 1024;
+	
+	/**
+	 * The default number of consumed segments kept for reuse
+	 */
+	public static final int DEFAULT_POOL_SIZE = 4;
+	
+	/**
+	 * Number of bits in a segment state that hold the index
+	 */
+	private static final int INDEX_BITS = 20;
+	
+	/**
+	 * Mask to read the index from a segment state
+	 */
+	private static final long INDEX_MASK = (1l << INDEX_BITS) - 1;
+	
+	/**
+	 * Marker for slots whose element has been removed
+	 */
+	private static final Object REMOVED = new Object();
+	
+	/**
+	 * The number of slots in a segment
+	 */
+	private final int segmentSize;
+	
+	/**
+	 * The segment consumers read from
+	 */
+	private final AtomicReference<Segment> head;
+	
+	/**
+	 * The segment producers write to
+	 */
+	private final AtomicReference<Segment> tail;
+	
+	/**
+	 * Consumed segments available for reuse
+	 */
+	private final AtomicReferenceArray<Segment> pool;
+	
+	/**
+	 * Create a queue with default segment and pool sizes.
+	 * 
+	 */
+	public SegmentedArrayQueue() {
+		this(DEFAULT_SEGMENT_SIZE, DEFAULT_POOL_SIZE);
+	}
+	
+	/**
+	 * Create a queue with the given segment and pool sizes.
+	 * 
+	 * @param segmentSize
+	 *            the number of slots in a segment
+	 * 
+	 * @param poolSize
+	 *            the number of consumed segments to keep for reuse
+	 */
+	public SegmentedArrayQueue(int segmentSize, int poolSize) {
+		if(segmentSize <= 0 || segmentSize >= INDEX_MASK) {
+			throw new IllegalArgumentException("Segment size must be between 1 and " + (INDEX_MASK - 1));
+		}
+		
+		if(poolSize < 0) {
+			throw new IllegalArgumentException("Pool size cannot be negative");
+		}
+		
+		this.segmentSize = segmentSize;
+		this.pool = new AtomicReferenceArray<Segment>(poolSize);
+		
+		Segment first = new Segment(segmentSize);
+		first.reset(1, null);
+		this.head = new AtomicReference<Segment>(first);
+		this.tail = new AtomicReference<Segment>(first);
+	}
+	
+	/**
+	 * Pack a segment ID and an index into a segment state.
+	 * 
+	 */
+	private static long state(long id, int index) {
+		return (id << INDEX_BITS) | index;
+	}
+	
+	/**
+	 * Read the segment ID from a segment state.
+	 * 
+	 */
+	private static long id(long state) {
+		return state >>> INDEX_BITS;
+	}
+	
+	/**
+	 * Read the index from a segment state.
+	 * 
+	 */
+	private static int index(long state) {
+		return (int) (state & INDEX_MASK);
+	}
+
+	/**
+	 * @see java.util.Queue#offer(java.lang.Object)
+	 */
+	@Override
+	public boolean offer(E element) {
+		if(element == null) {
+			throw new NullPointerException();
+		}
+		
+		do {
+			final Segment segment = this.tail.get();
+			final long state = segment.enqueueState.get();
+			if(segment != this.tail.get()) {
+				continue;
+			}
+			
+			final long id = id(state);
+			final int index = index(state);
+			
+			if(index < this.segmentSize) {
+				if(segment.enqueueState.compareAndSet(state, state + 1)) {
+					segment.slots.set(index, element);
+					signalWaiters();
+					return true;
+				}
+				
+				continue;
+			}
+			
+			if(index == this.segmentSize) {
+				// the segment is full, and whoever claims this index links the
+				// next segment with the element in its first slot
+				if(segment.enqueueState.compareAndSet(state, state + 1)) {
+					Segment next = obtainSegment(id + 1, element);
+					
+					// move the tail before linking, so that the head can never
+					// go past the tail, and thus the tail is never recycled
+					this.tail.set(next);
+					segment.next = next;
+					signalWaiters();
+					return true;
+				}
+				
+				continue;
+			}
+			
+			// next segment is being linked
+			Thread.yield();
+		} while(true);
+	}
+
+	/**
+	 * @see java.util.Queue#poll()
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public E poll() {
+		do {
+			final Segment segment = this.head.get();
+			final long state = segment.dequeueState.get();
+			if(segment != this.head.get()) {
+				continue;
+			}
+			
+			final long id = id(state);
+			final int index = index(state);
+			
+			if(index >= this.segmentSize) {
+				if(!unlinkHead(segment, state)) {
+					return null;
+				}
+				
+				continue;
+			}
+			
+			final long enqueueState = segment.enqueueState.get();
+			if(id(enqueueState) != id) {
+				continue;
+			}
+			
+			if(index >= index(enqueueState)) {
+				// nothing claimed by producers beyond this
+				return null;
+			}
+			
+			if(!segment.dequeueState.compareAndSet(state, state + 1)) {
+				continue;
+			}
+			
+			// the producer that claimed the slot may not have written to it yet
+			Object value;
+			int spins = 0;
+			while(segment.slots.get(index) == null) {
+				if(++spins > 100) {
+					Thread.yield();
+				}
+			}
+			
+			value = segment.slots.getAndSet(index, null);
+			releaseSegment(segment);
+			
+			if(value != REMOVED) {
+				return (E) value;
+			}
+		} while(true);
+	}
+	
+	/**
+	 * Drains the elements in batches, claiming all the elements available in
+	 * the head segment, up to the maximum asked for, with a single
+	 * compare-and-set. Consumers thus contend for the head once per batch
+	 * instead of once per element.
+	 * 
+	 * @see com.sangupta.jerry.ds.AbstractConcurrentBlockingQueue#drainTo(java.util.Collection, int)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public int drainTo(Collection<? super E> collection, int maxElements) {
+		if(collection == null) {
+			throw new NullPointerException();
+		}
+		
+		if(collection == this) {
+			throw new IllegalArgumentException();
+		}
+		
+		int count = 0;
+		while(count < maxElements) {
+			final Segment segment = this.head.get();
+			final long state = segment.dequeueState.get();
+			if(segment != this.head.get()) {
+				continue;
+			}
+			
+			final long id = id(state);
+			final int index = index(state);
+			
+			if(index >= this.segmentSize) {
+				if(!unlinkHead(segment, state)) {
+					break;
+				}
+				
+				continue;
+			}
+			
+			final long enqueueState = segment.enqueueState.get();
+			if(id(enqueueState) != id) {
+				continue;
+			}
+			
+			final int available = Math.min(index(enqueueState), this.segmentSize) - index;
+			if(available <= 0) {
+				// nothing claimed by producers beyond this
+				break;
+			}
+			
+			final int claimed = Math.min(available, maxElements - count);
+			if(!segment.dequeueState.compareAndSet(state, state + claimed)) {
+				continue;
+			}
+			
+			for(int slot = index; slot < index + claimed; slot++) {
+				// the producer that claimed the slot may not have written to it yet
+				int spins = 0;
+				while(segment.slots.get(slot) == null) {
+					if(++spins > 100) {
+						Thread.yield();
+					}
+				}
+				
+				Object value = segment.slots.getAndSet(slot, null);
+				if(value != REMOVED) {
+					collection.add((E) value);
+					count++;
+				}
+			}
+			
+			releaseSegment(segment, claimed);
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Move the head past the given segment, all of whose slots have been
+	 * claimed by consumers. The thread that moves the dequeue index of the
+	 * segment one past its end does the unlinking. As the state carries the
+	 * ID of the segment, a thread that read the state before the segment was
+	 * unlinked and recycled can never unlink it again.
+	 * 
+	 * @param segment
+	 *            the segment at the head
+	 * 
+	 * @param state
+	 *            the dequeue state read from the segment
+	 * 
+	 * @return <code>false</code> if there is no segment after this one yet,
+	 *         <code>true</code> if the caller should read the head again
+	 */
+	private boolean unlinkHead(Segment segment, long state) {
+		final Segment next = segment.next;
+		if(next == null) {
+			// the segment may have been recycled since the state was read
+			return segment.dequeueState.get() != state;
+		}
+		
+		if(index(state) == this.segmentSize) {
+			if(segment.dequeueState.compareAndSet(state, state + 1)) {
+				this.head.set(next);
+				releaseSegment(segment);
+			}
+			
+			return true;
+		}
+		
+		// another thread is unlinking it
+		Thread.yield();
+		return true;
+	}
+	
+	/**
+	 * Mark one more slot of a segment as done with, or the segment as
+	 * unlinked from the head. The segment is recycled once all of these have
+	 * happened.
+	 * 
+	 * @param segment
+	 *            the segment
+	 */
+	private void releaseSegment(Segment segment) {
+		releaseSegment(segment, 1);
+	}
+	
+	/**
+	 * Mark the given number of slots of a segment as done with.
+	 * 
+	 * @param segment
+	 *            the segment
+	 * 
+	 * @param slots
+	 *            the number of slots done with
+	 * 
+	 * @see #releaseSegment(Segment)
+	 */
+	private void releaseSegment(Segment segment, int slots) {
+		if(segment.released.addAndGet(slots) != this.segmentSize + 1) {
+			return;
+		}
+		
+		// no thread can claim anything in this segment any more
+		segment.enqueueState.set(0);
+		segment.dequeueState.set(0);
+		segment.next = null;
+		
+		for(int index = 0; index < this.pool.length(); index++) {
+			if(this.pool.get(index) == null && this.pool.compareAndSet(index, null, segment)) {
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Obtain a segment from the pool, or allocate a new one, and make it
+	 * ready with the given ID and first element.
+	 * 
+	 * @param id
+	 *            the ID of the segment
+	 * 
+	 * @param first
+	 *            the element for the first slot
+	 * 
+	 * @return the segment
+	 */
+	private Segment obtainSegment(long id, E first) {
+		Segment segment = null;
+		for(int index = 0; index < this.pool.length(); index++) {
+			if(this.pool.get(index) != null) {
+				segment = this.pool.getAndSet(index, null);
+				if(segment != null) {
+					break;
+				}
+			}
+		}
+		
+		if(segment == null) {
+			segment = new Segment(this.segmentSize);
+		}
+		
+		segment.reset(id, first);
+		return segment;
+	}
+
+	/**
+	 * @see java.util.Queue#peek()
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public E peek() {
+		Segment segment = this.head.get();
+		while(segment != null) {
+			final long state = segment.dequeueState.get();
+			final int end = Math.min(index(segment.enqueueState.get()), this.segmentSize);
+			for(int index = index(state); index < end; index++) {
+				Object value = segment.slots.get(index);
+				if(value != null && value != REMOVED) {
+					return (E) value;
+				}
+			}
+			
+			segment = segment.next;
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Removes the first element that either equals, or is equal to, the given
+	 * object. This allows removal of elements by a key that the element knows
+	 * of.
+	 * 
+	 * @see java.util.AbstractCollection#remove(java.lang.Object)
+	 */
+	@Override
+	public boolean remove(Object o) {
+		return this.removeElement(o) != null;
+	}
+	
+	/**
+	 * @see com.sangupta.jerry.ds.RemovableBlockingQueue#removeElement(java.lang.Object)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public E removeElement(Object o) {
+		if(o == null) {
+			return null;
+		}
+		
+		Segment segment = this.head.get();
+		while(segment != null) {
+			final int end = Math.min(index(segment.enqueueState.get()), this.segmentSize);
+			for(int index = index(segment.dequeueState.get()); index < end; index++) {
+				Object value = segment.slots.get(index);
+				if(value == null || value == REMOVED) {
+					continue;
+				}
+				
+				if(value.equals(o) && segment.slots.compareAndSet(index, value, REMOVED)) {
+					return (E) value;
+				}
+			}
+			
+			segment = segment.next;
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * @see java.util.AbstractCollection#isEmpty()
+	 */
+	@Override
+	public boolean isEmpty() {
+		return peek() == null;
+	}
+
+	/**
+	 * Counts the elements in every segment, and thus is O(n).
+	 * 
+	 * @see java.util.AbstractCollection#size()
+	 */
+	@Override
+	public int size() {
+		int size = 0;
+		Segment segment = this.head.get();
+		while(segment != null) {
+			final int end = Math.min(index(segment.enqueueState.get()), this.segmentSize);
+			for(int index = index(segment.dequeueState.get()); index < end; index++) {
+				Object value = segment.slots.get(index);
+				if(value != null && value != REMOVED && size < Integer.MAX_VALUE) {
+					size++;
+				}
+			}
+			
+			segment = segment.next;
+		}
+		
+		return size;
+	}
+
+	/**
+	 * Returns an iterator over a snapshot of the elements in the queue. The
+	 * iterator does not support removal.
+	 * 
+	 * @see java.util.AbstractCollection#iterator()
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public Iterator<E> iterator() {
+		final List<E> snapshot = new ArrayList<E>();
+		
+		Segment segment = this.head.get();
+		while(segment != null) {
+			final int end = Math.min(index(segment.enqueueState.get()), this.segmentSize);
+			for(int index = index(segment.dequeueState.get()); index < end; index++) {
+				Object value = segment.slots.get(index);
+				if(value != null && value != REMOVED) {
+					snapshot.add((E) value);
+				}
+			}
+			
+			segment = segment.next;
+		}
+		
+		final Iterator<E> iterator = snapshot.iterator();
+		return new Iterator<E>() {
+
+			@Override
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+
+			@Override
+			public E next() {
+				return iterator.next();
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException("Use remove(Object) to remove elements");
+			}
+			
+		};
+	}
+	
+	/**
+	 * A segment of slots in the queue.
+	 * 
+	 */
+	private static final class Segment {
+		
+		/**
+		 * The elements in this segment
+		 */
+		final AtomicReferenceArray<Object> slots;
+		
+		/**
+		 * The ID of this segment and the next index to be claimed by a
+		 * producer
+		 */
+		final AtomicLong enqueueState = new PaddedAtomicLong(0);
+		
+		/**
+		 * The ID of this segment and the next index to be claimed by a
+		 * consumer
+		 */
+		final AtomicLong dequeueState = new PaddedAtomicLong(0);
+		
+		/**
+		 * Number of slots consumed, plus one once the segment is unlinked
+		 */
+		final AtomicInteger released = new AtomicInteger(0);
+		
+		/**
+		 * The next segment in the list
+		 */
+		volatile Segment next;
+		
+		Segment(int size) {
+			this.slots = new AtomicReferenceArray<Object>(size);
+		}
+		
+		/**
+		 * Make the segment ready to be linked with the given ID. All slots are
+		 * already empty as they have been consumed.
+		 * 
+		 * @param id
+		 *            the new ID of the segment
+		 * 
+		 * @param first
+		 *            the element for the first slot, if any
+		 */
+		void reset(long id, Object first) {
+			this.next = null;
+			this.released.set(0);
+			if(first != null) {
+				this.slots.set(0, first);
+			}
+			
+			this.dequeueState.set(state(id, 0));
+			this.enqueueState.set(state(id, first == null ? 0 : 1));
+		}
+		
+	}
+
+}
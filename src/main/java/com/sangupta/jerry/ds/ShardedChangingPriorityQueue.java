@@ -0,0 +1,343 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.ds;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A {@link ChangingPriorityQueue} split into a number of independent shards,
+ * so that adds and merges from many threads do not contend over a single map
+ * and a single current priority. Elements are routed to a shard by their hash
+ * code, and thus duplicates of an element always land in, and get merged in,
+ * the same shard.
+ * 
+ * A summary array holds the highest priority that may be present in each
+ * shard. Consumers poll the shard with the highest summary, and fall back to
+ * polling every shard before declaring the queue empty. The order is thus
+ * strict within a shard, and approximate across shards while their summaries
+ * are updated.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ * 
+ * @param <E>
+ *            the type of elements held in this queue
+ */
+public class ShardedChangingPriorityQueue<E extends Prioritizable> {
+	
+	/**
+	 * Summary value for a shard that was found empty
+	 */
+	private static final int EMPTY = -1;
+	
+	/**
+	 * The shards of this queue
+	 */
+	private final ChangingPriorityQueue<E>[] shards;
+	
+	/**
+	 * The highest priority that may be present in each shard
+	 */
+	private final AtomicIntegerArray summary;
+	
+	/**
+	 * Create a new queue with the given number of shards.
+	 * 
+	 * @param numShards
+	 *            the number of shards
+	 * 
+	 * @param maxPriority
+	 *            the maximum priority a message can have
+	 */
+	public ShardedChangingPriorityQueue(int numShards, int maxPriority) {
+		this(numShards, maxPriority, 0);
+	}
+	
+	/**
+	 * Create a new queue with the given number of shards and aging interval.
+	 * 
+	 * @param numShards
+	 *            the number of shards
+	 * 
+	 * @param maxPriority
+	 *            the maximum priority a message can have
+	 * 
+	 * @param agingMillis
+	 *            the time in milliseconds after which the effective priority
+	 *            of a waiting element is raised by one, zero to disable aging
+	 */
+	public ShardedChangingPriorityQueue(int numShards, int maxPriority, long agingMillis) {
+		if(numShards <= 0) {
+			throw new IllegalArgumentException("Number of shards must be greater than zero");
+		}
+		
+		this.shards = newShards(numShards);
+		this.summary = new AtomicIntegerArray(numShards);
+		for(int index = 0; index < numShards; index++) {
+			this.shards[index] = new ChangingPriorityQueue<E>(maxPriority, agingMillis);
+			this.summary.set(index, EMPTY);
+		}
+	}
+	
+	/**
+	 * Return the number of shards in this queue.
+	 * 
+	 * @return the number of shards
+	 */
+	public int getNumShards() {
+		return this.shards.length;
+	}
+	
+	/**
+	 * Return the shard the given element or key belongs to.
+	 * 
+	 * @param key
+	 *            the element or key
+	 * 
+	 * @return the index of the shard
+	 */
+	private int shardOf(Object key) {
+		int hash = key.hashCode();
+		hash ^= (hash >>> 16);
+		return (hash & 0x7fffffff) % this.shards.length;
+	}
+	
+	/**
+	 * Add the element to the queue, or raise the priority of its duplicate if
+	 * one is already present.
+	 * 
+	 * @param element
+	 *            the element to be added to the queue
+	 * 
+	 * @return <code>true</code> if the element was added, <code>false</code>
+	 *         otherwise
+	 */
+	public boolean add(E element) {
+		if(element == null) {
+			throw new NullPointerException("Element to be added cannot be null");
+		}
+		
+		final int shard = shardOf(element);
+		final ChangingPriorityQueue<E> queue = this.shards[shard];
+		
+		boolean added = queue.add(element);
+		raiseSummary(shard, queue.getHighestPriority());
+		return added;
+	}
+	
+	/**
+	 * Raise the summary of the given shard to the given priority, if it is
+	 * lower. Reads first so that the shared array is not written to when
+	 * nothing changes.
+	 * 
+	 * @param shard
+	 *            the index of the shard
+	 * 
+	 * @param priority
+	 *            the priority now present in the shard
+	 */
+	private void raiseSummary(int shard, int priority) {
+		do {
+			int current = this.summary.get(shard);
+			if(current >= priority) {
+				return;
+			}
+			
+			if(this.summary.compareAndSet(shard, current, priority)) {
+				return;
+			}
+		} while(true);
+	}
+	
+	/**
+	 * Remove the element with the highest priority from the shard with the
+	 * highest summary.
+	 * 
+	 * @return the element that was removed from queue, <code>null</code> if the
+	 *         queue is empty
+	 */
+	public E poll() {
+		final int numShards = this.shards.length;
+		
+		// start the scan at a different shard for every thread, so that ties
+		// are spread over the shards
+		final int start = (int) (Thread.currentThread().getId() % numShards);
+		
+		int best = -1;
+		int bestPriority = EMPTY;
+		for(int offset = 0; offset < numShards; offset++) {
+			int shard = (start + offset) % numShards;
+			int priority = this.summary.get(shard);
+			if(priority > bestPriority) {
+				best = shard;
+				bestPriority = priority;
+			}
+		}
+		
+		if(best != -1) {
+			E element = pollShard(best);
+			if(element != null) {
+				return element;
+			}
+		}
+		
+		// summaries may be stale, check all shards
+		for(int offset = 0; offset < numShards; offset++) {
+			E element = pollShard((start + offset) % numShards);
+			if(element != null) {
+				return element;
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Poll the given shard and refresh its summary.
+	 * 
+	 * @param shard
+	 *            the index of the shard
+	 * 
+	 * @return the element polled, or <code>null</code> if the shard is empty
+	 */
+	private E pollShard(int shard) {
+		final ChangingPriorityQueue<E> queue = this.shards[shard];
+		E element = queue.poll();
+		
+		int current = this.summary.get(shard);
+		int priority = element == null ? EMPTY : queue.getHighestPriority();
+		if(current != priority) {
+			this.summary.compareAndSet(shard, current, priority);
+		}
+		
+		// an add may have raced with us marking the shard empty
+		if(element == null && !queue.isEmpty()) {
+			raiseSummary(shard, queue.getHighestPriority());
+		}
+		
+		return element;
+	}
+	
+	/**
+	 * Poll and return an element from this queue with the given timeout.
+	 * 
+	 * @param timeout
+	 *            the timeout value before we return a <code>null</code>
+	 * @param timeUnit
+	 *            the unit for timeout value specified
+	 * @return an element from the queue, or <code>null</code> if queue is empty
+	 */
+	public E poll(long timeout, TimeUnit timeUnit) {
+		E element = poll();
+		if(element != null || timeout <= 0) {
+			return element;
+		}
+		
+		final long expireAt = System.nanoTime() + timeUnit.toNanos(timeout);
+		while((element = poll()) == null) {
+			if(System.nanoTime() > expireAt) {
+				break;
+			}
+			
+			Thread.yield();
+		}
+		
+		return element;
+	}
+	
+	/**
+	 * Remove the element for the given key from the queue.
+	 * 
+	 * @param o
+	 *            the key for which to delete the element
+	 * 
+	 * @return the deleted element, or <code>null</code> otherwise
+	 */
+	public E remove(Object o) {
+		if(o == null) {
+			return null;
+		}
+		
+		// the key may not hash like the element, check every shard
+		final int home = shardOf(o);
+		for(int offset = 0; offset < this.shards.length; offset++) {
+			E element = this.shards[(home + offset) % this.shards.length].remove(o);
+			if(element != null) {
+				return element;
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Clear all shards.
+	 * 
+	 */
+	public void clear() {
+		for(int index = 0; index < this.shards.length; index++) {
+			this.shards[index].clear();
+			this.summary.set(index, EMPTY);
+		}
+	}
+	
+	/**
+	 * Return the age, in milliseconds, of the longest waiting element for
+	 * each priority across all shards.
+	 * 
+	 * @return a {@link Map} of priority to the age of the oldest element in
+	 *         that priority
+	 */
+	public Map<Integer, Long> getOldestAges() {
+		Map<Integer, Long> ages = new TreeMap<Integer, Long>();
+		for(ChangingPriorityQueue<E> shard : this.shards) {
+			for(Map.Entry<Integer, Long> entry : shard.getOldestAges().entrySet()) {
+				Long age = ages.get(entry.getKey());
+				if(age == null || age < entry.getValue()) {
+					ages.put(entry.getKey(), entry.getValue());
+				}
+			}
+		}
+		
+		return ages;
+	}
+	
+	/**
+	 * Create the array that holds the shards. As Java cannot create an array
+	 * of a parameterized type, an array of the wildcard type is cast; the
+	 * array is never handed out, and holds nothing but shards of
+	 * <code>E</code>.
+	 * 
+	 * @param numShards
+	 *            the number of shards
+	 * 
+	 * @return the array created
+	 */
+	@SuppressWarnings("unchecked")
+	private static <E extends Prioritizable> ChangingPriorityQueue<E>[] newShards(int numShards) {
+		return (ChangingPriorityQueue<E>[]) new ChangingPriorityQueue<?>[numShards];
+	}
+
+}
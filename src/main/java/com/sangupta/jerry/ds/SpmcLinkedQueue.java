@@ -0,0 +1,80 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.ds;
+
+/**
+ * An unbounded {@link java.util.concurrent.BlockingQueue} for exactly one
+ * producer thread and any number of consumer threads. The producer uses no
+ * lock or compare-and-set operation, while consumers race for the head of the
+ * list with a compare-and-set.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ * 
+ * @param <E>
+ *            the type of elements held in this queue
+ */
+public class SpmcLinkedQueue<E> extends AbstractLazyLinkedQueue<E> {
+
+	/**
+	 * Must only be called by the single producer thread.
+	 * 
+	 * @see java.util.Queue#offer(java.lang.Object)
+	 */
+	@Override
+	public boolean offer(E element) {
+		if(element == null) {
+			throw new NullPointerException();
+		}
+		
+		final LinkedNode<E> node = new LinkedNode<E>(element);
+		this.producerNode.lazySetNext(node);
+		lazySetProducerNode(node);
+		
+		signalWaiters();
+		return true;
+	}
+
+	/**
+	 * @see java.util.Queue#poll()
+	 */
+	@Override
+	public E poll() {
+		do {
+			final LinkedNode<E> head = this.consumerNode;
+			final LinkedNode<E> next = head.next;
+			if(next == null) {
+				return null;
+			}
+			
+			if(casConsumerNode(head, next)) {
+				// the node is now the stub, and its value ours to take
+				// unless another thread removed it
+				final E element = next.takeValue();
+				if(element != null) {
+					return element;
+				}
+			}
+		} while(true);
+	}
+
+}
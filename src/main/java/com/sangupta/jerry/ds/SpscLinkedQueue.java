@@ -0,0 +1,81 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.ds;
+
+/**
+ * An unbounded {@link java.util.concurrent.BlockingQueue} for exactly one
+ * producer thread and one consumer thread. Neither side uses a lock, and both
+ * publish their progress with ordered writes; the only compare-and-set is the
+ * one by which the consumer claims each element, which is uncontended unless
+ * elements are being removed.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ * 
+ * @param <E>
+ *            the type of elements held in this queue
+ */
+public class SpscLinkedQueue<E> extends AbstractLazyLinkedQueue<E> {
+
+	/**
+	 * Must only be called by the single producer thread.
+	 * 
+	 * @see java.util.Queue#offer(java.lang.Object)
+	 */
+	@Override
+	public boolean offer(E element) {
+		if(element == null) {
+			throw new NullPointerException();
+		}
+		
+		final LinkedNode<E> node = new LinkedNode<E>(element);
+		this.producerNode.lazySetNext(node);
+		lazySetProducerNode(node);
+		
+		signalWaiters();
+		return true;
+	}
+
+	/**
+	 * Must only be called by the single consumer thread.
+	 * 
+	 * @see java.util.Queue#poll()
+	 */
+	@Override
+	public E poll() {
+		do {
+			final LinkedNode<E> next = this.consumerNode.next;
+			if(next == null) {
+				return null;
+			}
+			
+			final E element = next.takeValue();
+			lazySetConsumerNode(next);
+			if(element != null) {
+				return element;
+			}
+			
+			// removed by another thread, pass over it
+		} while(true);
+	}
+
+}
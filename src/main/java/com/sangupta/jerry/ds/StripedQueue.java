@@ -0,0 +1,383 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.ds;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * An unbounded {@link java.util.concurrent.BlockingQueue} made up of a number
+ * of independent FIFO lanes. A thread adds to and polls from its home lane,
+ * chosen by its thread ID, so that producers and consumers spread over the
+ * lanes instead of all contending for one head and one tail. A consumer whose
+ * home lane is empty steals from the other lanes.
+ * 
+ * Elements are served in FIFO order within a lane, but not across lanes. When
+ * a maximum FIFO skew is set, a consumer compares the head of its home lane
+ * with the heads of the other lanes, and serves the oldest one if it is older
+ * by more than the skew. Thus no element is overtaken by elements created more
+ * than the skew later, barring races between consumers.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ * 
+ * @param <E>
+ *            the type of elements held in this queue
+ */
+public class StripedQueue<E extends Timestamped> extends AbstractConcurrentBlockingQueue<E> {
+	
+	/**
+	 * The lanes of this queue
+	 */
+	private final ConcurrentLinkedQueue<E>[] lanes;
+	
+	/**
+	 * The maximum time in milliseconds by which an element may be overtaken,
+	 * negative to serve lanes without regard to each other
+	 */
+	private final long fifoSkewMillis;
+	
+	/**
+	 * Create a queue with the given number of lanes that does not order
+	 * elements across lanes.
+	 * 
+	 * @param numLanes
+	 *            the number of lanes
+	 */
+	public StripedQueue(int numLanes) {
+		this(numLanes, -1);
+	}
+	
+	/**
+	 * Create a queue with the given number of lanes and maximum FIFO skew.
+	 * 
+	 * @param numLanes
+	 *            the number of lanes
+	 * 
+	 * @param fifoSkewMillis
+	 *            the maximum time in milliseconds by which an element may be
+	 *            overtaken, negative to not order elements across lanes
+	 */
+	public StripedQueue(int numLanes, long fifoSkewMillis) {
+		if(numLanes <= 0) {
+			throw new IllegalArgumentException("Number of lanes must be greater than zero");
+		}
+		
+		this.lanes = newLanes(numLanes);
+		for(int index = 0; index < numLanes; index++) {
+			this.lanes[index] = new ConcurrentLinkedQueue<E>();
+		}
+		
+		this.fifoSkewMillis = fifoSkewMillis;
+	}
+	
+	/**
+	 * Return the number of lanes in this queue.
+	 * 
+	 * @return the number of lanes
+	 */
+	public int getNumLanes() {
+		return this.lanes.length;
+	}
+	
+	/**
+	 * Return the index of the home lane of the current thread.
+	 * 
+	 * @return the index of the home lane
+	 */
+	private int homeLane() {
+		return (int) (Thread.currentThread().getId() % this.lanes.length);
+	}
+
+	/**
+	 * @see java.util.Queue#offer(java.lang.Object)
+	 */
+	@Override
+	public boolean offer(E element) {
+		if(element == null) {
+			throw new NullPointerException();
+		}
+		
+		this.lanes[homeLane()].offer(element);
+		signalWaiters();
+		return true;
+	}
+
+	/**
+	 * @see java.util.Queue#poll()
+	 */
+	@Override
+	public E poll() {
+		final int home = homeLane();
+		
+		if(this.fifoSkewMillis >= 0) {
+			final int lane = findOldestLane(home);
+			if(lane != home) {
+				E element = this.lanes[lane].poll();
+				if(element != null) {
+					return element;
+				}
+			}
+		}
+		
+		E element = this.lanes[home].poll();
+		if(element != null) {
+			return element;
+		}
+		
+		// steal from the other lanes
+		final int numLanes = this.lanes.length;
+		for(int offset = 1; offset < numLanes; offset++) {
+			element = this.lanes[(home + offset) % numLanes].poll();
+			if(element != null) {
+				return element;
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Find the lane to serve the next element from, which is the home lane
+	 * unless another lane has a head older by more than the FIFO skew.
+	 * 
+	 * @param home
+	 *            the index of the home lane
+	 * 
+	 * @return the index of the lane to serve
+	 */
+	private int findOldestLane(final int home) {
+		final E homeHead = this.lanes[home].peek();
+		if(homeHead == null) {
+			return home;
+		}
+		
+		int oldestLane = home;
+		long oldest = homeHead.getCreated() - this.fifoSkewMillis;
+		for(int index = 0; index < this.lanes.length; index++) {
+			if(index == home) {
+				continue;
+			}
+			
+			E head = this.lanes[index].peek();
+			if(head != null && head.getCreated() < oldest) {
+				oldest = head.getCreated();
+				oldestLane = index;
+			}
+		}
+		
+		return oldestLane;
+	}
+
+	/**
+	 * @see java.util.Queue#peek()
+	 */
+	@Override
+	public E peek() {
+		final int home = homeLane();
+		final int numLanes = this.lanes.length;
+		for(int offset = 0; offset < numLanes; offset++) {
+			E element = this.lanes[(home + offset) % numLanes].peek();
+			if(element != null) {
+				return element;
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Removes the first element in any lane that either equals, or is equal
+	 * to, the given object. This allows removal of elements by a key that the
+	 * element knows of.
+	 * 
+	 * @see java.util.AbstractCollection#remove(java.lang.Object)
+	 */
+	@Override
+	public boolean remove(Object o) {
+		if(o == null) {
+			return false;
+		}
+		
+		// remove via the iterator, so that the very element matched is
+		// removed, and not another element that is equal to it
+		for(ConcurrentLinkedQueue<E> lane : this.lanes) {
+			Iterator<E> iterator = lane.iterator();
+			while(iterator.hasNext()) {
+				if(iterator.next().equals(o)) {
+					iterator.remove();
+					return true;
+				}
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * @see java.util.AbstractCollection#contains(java.lang.Object)
+	 */
+	@Override
+	public boolean contains(Object o) {
+		if(o == null) {
+			return false;
+		}
+		
+		for(ConcurrentLinkedQueue<E> lane : this.lanes) {
+			for(E element : lane) {
+				if(element.equals(o)) {
+					return true;
+				}
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Drains all lanes in turn, starting from the home lane.
+	 * 
+	 * @see com.sangupta.jerry.ds.AbstractConcurrentBlockingQueue#drainTo(java.util.Collection, int)
+	 */
+	@Override
+	public int drainTo(Collection<? super E> collection, int maxElements) {
+		if(collection == null) {
+			throw new NullPointerException();
+		}
+		
+		if(collection == this) {
+			throw new IllegalArgumentException();
+		}
+		
+		final int home = homeLane();
+		final int numLanes = this.lanes.length;
+		
+		int count = 0;
+		for(int offset = 0; offset < numLanes && count < maxElements; offset++) {
+			final ConcurrentLinkedQueue<E> lane = this.lanes[(home + offset) % numLanes];
+			
+			E element;
+			while(count < maxElements && (element = lane.poll()) != null) {
+				collection.add(element);
+				count++;
+			}
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * @see java.util.AbstractQueue#clear()
+	 */
+	@Override
+	public void clear() {
+		for(ConcurrentLinkedQueue<E> lane : this.lanes) {
+			lane.clear();
+		}
+	}
+
+	/**
+	 * @see java.util.AbstractCollection#isEmpty()
+	 */
+	@Override
+	public boolean isEmpty() {
+		for(ConcurrentLinkedQueue<E> lane : this.lanes) {
+			if(!lane.isEmpty()) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+
+	/**
+	 * Counts the elements in every lane, and thus is O(n).
+	 * 
+	 * @see java.util.AbstractCollection#size()
+	 */
+	@Override
+	public int size() {
+		long size = 0;
+		for(ConcurrentLinkedQueue<E> lane : this.lanes) {
+			size += lane.size();
+		}
+		
+		if(size > Integer.MAX_VALUE) {
+			return Integer.MAX_VALUE;
+		}
+		
+		return (int) size;
+	}
+
+	/**
+	 * Create the array of lanes. Arrays of a generic type cannot be created
+	 * in Java, so a wildcard array is cast. The array is private to this
+	 * queue and only ever holds lanes of <code>E</code>.
+	 * 
+	 * @param numLanes
+	 *            the number of lanes
+	 * 
+	 * @return the array created
+	 */
+	@SuppressWarnings("unchecked")
+	private static <E> ConcurrentLinkedQueue<E>[] newLanes(int numLanes) {
+		return (ConcurrentLinkedQueue<E>[]) new ConcurrentLinkedQueue<?>[numLanes];
+	}
+	
+	/**
+	 * Returns an iterator over a snapshot of the elements in all lanes. The
+	 * iterator does not support removal.
+	 * 
+	 * @see java.util.AbstractCollection#iterator()
+	 */
+	@Override
+	public Iterator<E> iterator() {
+		List<E> snapshot = new ArrayList<E>();
+		for(ConcurrentLinkedQueue<E> lane : this.lanes) {
+			snapshot.addAll(lane);
+		}
+		
+		final Iterator<E> iterator = snapshot.iterator();
+		return new Iterator<E>() {
+
+			@Override
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+
+			@Override
+			public E next() {
+				return iterator.next();
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException("Use remove(Object) to remove elements");
+			}
+			
+		};
+	}
+
+}
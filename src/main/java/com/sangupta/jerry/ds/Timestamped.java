@@ -0,0 +1,40 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.ds;
+
+/**
+ * Contract for elements that know the time at which they were created. This
+ * allows data structures to compute how long an element has been waiting.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public interface Timestamped {
+	
+	/**
+	 * Return the time at which this element was created.
+	 * 
+	 * @return the creation time in milliseconds since epoch
+	 */
+	public long getCreated();
+
+}
@@ -0,0 +1,92 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.ds;
+
+/**
+ * Strategy used by a data structure to wait when it cannot make progress, say
+ * when a consumer finds the queue empty, or a producer finds it full.
+ * 
+ * A waiting thread calls {@link #await(WaitCondition, int, long)} in a loop,
+ * re-trying its operation after every call, till it succeeds or its time runs
+ * out. A thread that makes progress which may satisfy the condition of the
+ * waiting threads calls {@link #signalAll()}.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public interface WaitStrategy {
+	
+	/**
+	 * Wait for the condition to be possibly met. The method may return
+	 * without the condition being met, and the caller must check again.
+	 * 
+	 * @param condition
+	 *            the condition being waited for
+	 * 
+	 * @param attempt
+	 *            the number of times this method has already been called by
+	 *            the caller for the current operation
+	 * 
+	 * @param remainingNanos
+	 *            the time remaining for the caller to wait
+	 * 
+	 * @throws InterruptedException
+	 *             if the thread was interrupted while waiting
+	 */
+	public void await(WaitCondition condition, int attempt, long remainingNanos) throws InterruptedException;
+	
+	/**
+	 * Signal all threads that are waiting that the condition may have been
+	 * met.
+	 * 
+	 */
+	public void signalAll();
+	
+	/**
+	 * Signal one waiting thread that the condition may have been met. Used
+	 * when the progress made can satisfy only a single waiting thread.
+	 * 
+	 */
+	public void signal();
+	
+	/**
+	 * Return the number of waits that started spinning.
+	 * 
+	 * @return the number of waits that spun
+	 */
+	public long getSpinPhaseCount();
+	
+	/**
+	 * Return the number of waits that reached yielding the processor.
+	 * 
+	 * @return the number of waits that yielded
+	 */
+	public long getYieldPhaseCount();
+	
+	/**
+	 * Return the number of times a waiting thread was parked.
+	 * 
+	 * @return the number of parks
+	 */
+	public long getParkPhaseCount();
+
+}
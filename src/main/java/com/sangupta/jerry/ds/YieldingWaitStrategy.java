@@ -0,0 +1,91 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.jerry.ds;
+
+/**
+ * A {@link WaitStrategy} that spins for a given number of attempts, and then
+ * yields the processor to other threads on every further attempt.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public class YieldingWaitStrategy extends AbstractWaitStrategy {
+	
+	/**
+	 * The number of attempts to spin before yielding
+	 */
+	private final int spins;
+	
+	/**
+	 * Create a new strategy.
+	 * 
+	 * @param spins
+	 *            the number of attempts to spin before yielding
+	 */
+	public YieldingWaitStrategy(int spins) {
+		if(spins < 0) {
+			throw new IllegalArgumentException("Spin count cannot be negative");
+		}
+		
+		this.spins = spins;
+	}
+
+	/**
+	 * @see com.sangupta.jerry.ds.WaitStrategy#await(com.sangupta.jerry.ds.WaitCondition, int, long)
+	 */
+	@Override
+	public void await(WaitCondition condition, int attempt, long remainingNanos) throws InterruptedException {
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+		
+		if(attempt >= this.spins) {
+			if(attempt == this.spins) {
+				yieldPhaseReached();
+			}
+			
+			Thread.yield();
+			return;
+		}
+		
+		if(attempt == 0) {
+			spinPhaseReached();
+		}
+	}
+
+	/**
+	 * @see com.sangupta.jerry.ds.WaitStrategy#signalAll()
+	 */
+	@Override
+	public void signalAll() {
+		// nothing to do
+	}
+
+	/**
+	 * @see com.sangupta.jerry.ds.WaitStrategy#signal()
+	 */
+	@Override
+	public void signal() {
+		// nothing to do
+	}
+
+}
@@ -29,6 +29,8 @@ import com.sangupta.lineup.domain.QueueType;
 import com.sangupta.lineup.exceptions.QueueAlreadyDeletedException;
 import com.sangupta.lineup.exceptions.QueueAlreadyExistsException;
 import com.sangupta.lineup.exceptions.QueueNotFoundException;
+import com.sangupta.lineup.listener.MessageListener;
+import com.sangupta.lineup.listener.MessageListenerContainer;
 import com.sangupta.lineup.queues.LineUpQueue;
 import com.sangupta.lineup.queues.RemoteLineUpQueue;
 import com.sangupta.lineup.server.LineUpServer;
@@ -232,6 +234,28 @@ public class LineUp {
 		return QUEUE_SERVICE.deleteQueue(name);
 	}
 	
+	/**
+	 * Register a listener to which the messages of the given queue are
+	 * dispatched from a pool of worker threads. The returned container has
+	 * already been started, and must be shut down when no longer needed.
+	 * 
+	 * @param queue
+	 *            the queue to read messages from
+	 * 
+	 * @param listener
+	 *            the listener to dispatch messages to
+	 * 
+	 * @param concurrency
+	 *            the number of worker threads
+	 * 
+	 * @return the running {@link MessageListenerContainer}
+	 */
+	public static MessageListenerContainer registerListener(LineUpQueue queue, MessageListener listener, int concurrency) {
+		MessageListenerContainer container = new MessageListenerContainer(queue, listener, concurrency);
+		container.start();
+		return container;
+	}
+	
 	/**
 	 * Create a remote queue for the queue URL.
 	 * 
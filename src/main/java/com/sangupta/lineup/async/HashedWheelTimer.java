@@ -0,0 +1,421 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+package com.sangupta.lineup.async;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A timer for large numbers of timeouts that mostly get cancelled before they
+ * expire, such as those of long-polls. Timeouts are hashed by their deadline
+ * into the buckets of a wheel that a single thread advances one bucket every
+ * tick, and thus scheduling and cancelling a timeout costs the same whatever
+ * the number of pending timeouts. Cancelled timeouts are unlinked by the
+ * timer thread on its next tick, rather than lingering until their deadline.
+ * 
+ * Timeouts fire no earlier than their deadline, and at most one tick later.
+ * The timer thread is started on the first timeout scheduled, and parks
+ * without ticking while no timeouts are pending.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public class HashedWheelTimer {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(HashedWheelTimer.class);
+	
+	/**
+	 * Default duration of a tick in milliseconds
+	 */
+	public static final long DEFAULT_TICK_MILLIS = 10;
+	
+	/**
+	 * Default number of buckets in the wheel
+	 */
+	public static final int DEFAULT_WHEEL_SIZE = 512;
+	
+	/**
+	 * The duration of a tick in nanoseconds
+	 */
+	private final long tickNanos;
+	
+	/**
+	 * The heads of the lists of timeouts in each bucket, only accessed by the
+	 * timer thread
+	 */
+	private final Timeout[] wheel;
+	
+	/**
+	 * Mask to map a tick to its bucket
+	 */
+	private final int mask;
+	
+	/**
+	 * Timeouts scheduled but not yet placed in the wheel
+	 */
+	private final Queue<Timeout> added = new ConcurrentLinkedQueue<Timeout>();
+	
+	/**
+	 * Timeouts cancelled but not yet unlinked from the wheel
+	 */
+	private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<Timeout>();
+	
+	/**
+	 * Number of timeouts that have neither expired nor been unlinked after
+	 * being cancelled
+	 */
+	private final AtomicInteger pending = new AtomicInteger();
+	
+	/**
+	 * Whether the timer thread has been started
+	 */
+	private final AtomicBoolean started = new AtomicBoolean();
+	
+	/**
+	 * The timer thread
+	 */
+	private final Thread worker;
+	
+	/**
+	 * The time against which deadlines and ticks are measured
+	 */
+	private final long startTime = System.nanoTime();
+	
+	/**
+	 * The tick whose bucket is processed next, only accessed by the timer
+	 * thread
+	 */
+	private long tick;
+	
+	/**
+	 * Create a new timer with the default tick duration and wheel size.
+	 * 
+	 * @param name
+	 *            the name of the timer thread
+	 */
+	public HashedWheelTimer(String name) {
+		this(name, DEFAULT_TICK_MILLIS, TimeUnit.MILLISECONDS, DEFAULT_WHEEL_SIZE);
+	}
+	
+	/**
+	 * Create a new timer.
+	 * 
+	 * @param name
+	 *            the name of the timer thread
+	 * 
+	 * @param tickDuration
+	 *            the duration of a tick
+	 * 
+	 * @param unit
+	 *            the unit of the tick duration
+	 * 
+	 * @param wheelSize
+	 *            the number of buckets in the wheel, rounded up to a power of
+	 *            two
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the tick duration or the wheel size is not positive
+	 */
+	public HashedWheelTimer(String name, long tickDuration, TimeUnit unit, int wheelSize) {
+		if(tickDuration <= 0) {
+			throw new IllegalArgumentException("Tick duration must be positive");
+		}
+		
+		if(wheelSize <= 0 || wheelSize > (1 << 30)) {
+			throw new IllegalArgumentException("Wheel size must be positive and at most 2^30");
+		}
+		
+		int size = 1;
+		while(size < wheelSize) {
+			size <<= 1;
+		}
+		
+		this.tickNanos = unit.toNanos(tickDuration);
+		this.wheel = new Timeout[size];
+		this.mask = size - 1;
+		
+		this.worker = new Thread(new Runnable() {
+			
+			@Override
+			public void run() {
+				advance();
+			}
+			
+		}, name);
+		this.worker.setDaemon(true);
+	}
+	
+	/**
+	 * Schedule the given task to be run by the timer thread once the delay
+	 * elapses. The task must be short, as it delays all timeouts that follow.
+	 * 
+	 * @param task
+	 *            the task to run
+	 * 
+	 * @param delay
+	 *            the delay after which to run the task
+	 * 
+	 * @param unit
+	 *            the unit of the delay
+	 * 
+	 * @return the handle to cancel the timeout with
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the task is <code>null</code>
+	 */
+	public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+		if(task == null) {
+			throw new IllegalArgumentException("Task cannot be null");
+		}
+		
+		if(!this.started.get() && this.started.compareAndSet(false, true)) {
+			this.worker.start();
+		}
+		
+		Timeout timeout = new Timeout(task, System.nanoTime() - this.startTime + unit.toNanos(Math.max(0, delay)));
+		this.added.add(timeout);
+		
+		if(this.pending.getAndIncrement() == 0) {
+			LockSupport.unpark(this.worker);
+		}
+		
+		return timeout;
+	}
+	
+	/**
+	 * Return the number of timeouts that have neither expired nor been
+	 * cancelled.
+	 * 
+	 * @return the number of pending timeouts
+	 */
+	public int getPendingCount() {
+		return Math.max(0, this.pending.get() - this.cancelled.size());
+	}
+	
+	/**
+	 * The loop run by the timer thread.
+	 * 
+	 */
+	private void advance() {
+		while(true) {
+			if(this.pending.get() == 0) {
+				LockSupport.park(this);
+				
+				// the wheel is empty, so no bucket is skipped by catching up
+				this.tick = Math.max(this.tick, (System.nanoTime() - this.startTime) / this.tickNanos);
+				continue;
+			}
+			
+			long sleep = this.tick * this.tickNanos - (System.nanoTime() - this.startTime);
+			if(sleep > 0) {
+				LockSupport.parkNanos(this, sleep);
+				continue;
+			}
+			
+			this.unlinkCancelled();
+			this.placeAdded();
+			this.expire((int) (this.tick & this.mask));
+			this.tick++;
+		}
+	}
+	
+	/**
+	 * Unlink the cancelled timeouts from their buckets.
+	 * 
+	 */
+	private void unlinkCancelled() {
+		Timeout timeout;
+		while((timeout = this.cancelled.poll()) != null) {
+			this.unlink(timeout);
+			this.pending.decrementAndGet();
+		}
+	}
+	
+	/**
+	 * Place the newly scheduled timeouts in the buckets of their deadlines.
+	 * 
+	 */
+	private void placeAdded() {
+		Timeout timeout;
+		while((timeout = this.added.poll()) != null) {
+			if(timeout.state.get() != Timeout.PENDING) {
+				// cancelled before being placed
+				continue;
+			}
+			
+			// round up, so as to never fire early
+			long deadlineTick = Math.max(this.tick, (timeout.deadline + this.tickNanos - 1) / this.tickNanos);
+			timeout.rounds = (deadlineTick - this.tick) / this.wheel.length;
+			
+			int bucket = (int) (deadlineTick & this.mask);
+			timeout.bucket = bucket;
+			timeout.next = this.wheel[bucket];
+			if(timeout.next != null) {
+				timeout.next.previous = timeout;
+			}
+			this.wheel[bucket] = timeout;
+		}
+	}
+	
+	/**
+	 * Run the timeouts in the given bucket that are due this round.
+	 * 
+	 * @param bucket
+	 *            the bucket to expire
+	 */
+	private void expire(int bucket) {
+		Timeout timeout = this.wheel[bucket];
+		while(timeout != null) {
+			Timeout next = timeout.next;
+			
+			if(timeout.rounds > 0) {
+				timeout.rounds--;
+			} else if(timeout.state.compareAndSet(Timeout.PENDING, Timeout.EXPIRED)) {
+				this.unlink(timeout);
+				this.pending.decrementAndGet();
+				
+				try {
+					timeout.task.run();
+				} catch(Throwable t) {
+					LOGGER.warn("Timeout task failed", t);
+				}
+			}
+			
+			timeout = next;
+		}
+	}
+	
+	/**
+	 * Remove the given timeout from its bucket, if placed in one.
+	 * 
+	 * @param timeout
+	 *            the timeout to unlink
+	 */
+	private void unlink(Timeout timeout) {
+		if(timeout.bucket < 0) {
+			return;
+		}
+		
+		if(timeout.previous != null) {
+			timeout.previous.next = timeout.next;
+		} else {
+			this.wheel[timeout.bucket] = timeout.next;
+		}
+		
+		if(timeout.next != null) {
+			timeout.next.previous = timeout.previous;
+		}
+		
+		timeout.bucket = -1;
+		timeout.next = null;
+		timeout.previous = null;
+	}
+	
+	/**
+	 * A task scheduled with the timer.
+	 * 
+	 * @author sangupta
+	 *
+	 */
+	public final class Timeout {
+		
+		static final int PENDING = 0;
+		
+		static final int CANCELLED = 1;
+		
+		static final int EXPIRED = 2;
+		
+		/**
+		 * The task to run
+		 */
+		final Runnable task;
+		
+		/**
+		 * The deadline in nanoseconds since the start of the timer
+		 */
+		final long deadline;
+		
+		/**
+		 * The state of the timeout
+		 */
+		final AtomicInteger state = new AtomicInteger(PENDING);
+		
+		/**
+		 * The remaining turns of the wheel before the timeout is due, only
+		 * accessed by the timer thread
+		 */
+		long rounds;
+		
+		/**
+		 * The bucket the timeout is placed in, or <code>-1</code>
+		 */
+		int bucket = -1;
+		
+		Timeout next;
+		
+		Timeout previous;
+		
+		Timeout(Runnable task, long deadline) {
+			this.task = task;
+			this.deadline = deadline;
+		}
+		
+		/**
+		 * Cancel the timeout so that its task is not run.
+		 * 
+		 * @return <code>true</code> if cancelled, <code>false</code> if the
+		 *         timeout has already expired or been cancelled
+		 */
+		public boolean cancel() {
+			if(!this.state.compareAndSet(PENDING, CANCELLED)) {
+				return false;
+			}
+			
+			cancelled.add(this);
+			return true;
+		}
+		
+		/**
+		 * @return whether the timeout has been cancelled
+		 */
+		public boolean isCancelled() {
+			return this.state.get() == CANCELLED;
+		}
+		
+		/**
+		 * @return whether the task of the timeout has been run
+		 */
+		public boolean isExpired() {
+			return this.state.get() == EXPIRED;
+		}
+		
+	}
+
+}
@@ -0,0 +1,53 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.async;
+
+/**
+ * Callback notified once a {@link QueueFuture} completes.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ *
+ * @param <V>
+ */
+public interface QueueCallback<V> {
+	
+	/**
+	 * Invoked when the operation succeeds. The callback runs on the thread
+	 * that completed the future, which may be the thread of a producer, and
+	 * thus must not block.
+	 * 
+	 * @param result
+	 *            the result of the operation
+	 */
+	public void onSuccess(V result);
+	
+	/**
+	 * Invoked when the operation fails, or is cancelled, in which case the
+	 * cause is a {@link java.util.concurrent.CancellationException}.
+	 * 
+	 * @param cause
+	 *            the reason for the failure
+	 */
+	public void onFailure(Throwable cause);
+
+}
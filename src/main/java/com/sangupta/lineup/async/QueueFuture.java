@@ -0,0 +1,283 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.async;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The result of an asynchronous queue operation, completed by whichever
+ * thread finishes the operation. Callers that cannot block register a
+ * {@link QueueCallback}, while others may wait in {@link #get()} as with any
+ * {@link Future}.
+ * 
+ * A future completes only once: the first of {@link #complete(Object)},
+ * {@link #fail(Throwable)} or {@link #cancel(boolean)} wins, and the rest are
+ * ignored.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ *
+ * @param <V>
+ */
+public class QueueFuture<V> implements Future<V> {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(QueueFuture.class);
+	
+	private static final int PENDING = 0;
+	
+	private static final int SUCCEEDED = 1;
+	
+	private static final int FAILED = 2;
+	
+	private static final int CANCELLED = 3;
+	
+	/**
+	 * Released once the future completes
+	 */
+	private final CountDownLatch done = new CountDownLatch(1);
+	
+	/**
+	 * The state of the future, only changed while holding the monitor
+	 */
+	private volatile int state = PENDING;
+	
+	/**
+	 * The result if succeeded
+	 */
+	private V value;
+	
+	/**
+	 * The cause if failed or cancelled
+	 */
+	private Throwable cause;
+	
+	/**
+	 * Callbacks registered before completion, <code>null</code> once
+	 * completed
+	 */
+	private List<QueueCallback<? super V>> callbacks = new ArrayList<QueueCallback<? super V>>(1);
+	
+	/**
+	 * Return a future that has already succeeded.
+	 * 
+	 * @param value
+	 *            the result
+	 * 
+	 * @return the completed future
+	 */
+	public static <V> QueueFuture<V> completed(V value) {
+		QueueFuture<V> future = new QueueFuture<V>();
+		future.complete(value);
+		return future;
+	}
+	
+	/**
+	 * Return a future that has already failed.
+	 * 
+	 * @param cause
+	 *            the reason for the failure
+	 * 
+	 * @return the failed future
+	 */
+	public static <V> QueueFuture<V> failed(Throwable cause) {
+		QueueFuture<V> future = new QueueFuture<V>();
+		future.fail(cause);
+		return future;
+	}
+	
+	/**
+	 * Complete the future with the given result.
+	 * 
+	 * @param value
+	 *            the result
+	 * 
+	 * @return <code>true</code> if this call completed the future,
+	 *         <code>false</code> if it had already completed
+	 */
+	public boolean complete(V value) {
+		return this.finish(SUCCEEDED, value, null);
+	}
+	
+	/**
+	 * Fail the future with the given cause.
+	 * 
+	 * @param cause
+	 *            the reason for the failure
+	 * 
+	 * @return <code>true</code> if this call completed the future,
+	 *         <code>false</code> if it had already completed
+	 */
+	public boolean fail(Throwable cause) {
+		if(cause == null) {
+			throw new IllegalArgumentException("Cause cannot be null");
+		}
+		
+		return this.finish(FAILED, null, cause);
+	}
+	
+	/**
+	 * Cancel the future. The operation is abandoned, but the flag is ignored
+	 * as no thread is dedicated to an operation.
+	 * 
+	 * @see java.util.concurrent.Future#cancel(boolean)
+	 */
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		return this.finish(CANCELLED, null, new CancellationException());
+	}
+	
+	/**
+	 * Register a callback to be notified on completion. If the future has
+	 * already completed, the callback is notified at once on the calling
+	 * thread.
+	 * 
+	 * @param callback
+	 *            the callback
+	 */
+	public void addCallback(QueueCallback<? super V> callback) {
+		if(callback == null) {
+			throw new IllegalArgumentException("Callback cannot be null");
+		}
+		
+		synchronized(this) {
+			if(this.callbacks != null) {
+				this.callbacks.add(callback);
+				return;
+			}
+		}
+		
+		this.notifyCallback(callback);
+	}
+	
+	/**
+	 * @see java.util.concurrent.Future#isCancelled()
+	 */
+	@Override
+	public boolean isCancelled() {
+		return this.state == CANCELLED;
+	}
+	
+	/**
+	 * @see java.util.concurrent.Future#isDone()
+	 */
+	@Override
+	public boolean isDone() {
+		return this.state != PENDING;
+	}
+	
+	/**
+	 * @see java.util.concurrent.Future#get()
+	 */
+	@Override
+	public V get() throws InterruptedException, ExecutionException {
+		this.done.await();
+		return this.report();
+	}
+	
+	/**
+	 * @see java.util.concurrent.Future#get(long, java.util.concurrent.TimeUnit)
+	 */
+	@Override
+	public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+		if(!this.done.await(timeout, unit)) {
+			throw new TimeoutException();
+		}
+		
+		return this.report();
+	}
+	
+	/**
+	 * Move the future to the given final state, and notify the callbacks.
+	 * 
+	 * @return <code>true</code> if the state was changed, <code>false</code>
+	 *         if the future had already completed
+	 */
+	private boolean finish(int state, V value, Throwable cause) {
+		final List<QueueCallback<? super V>> callbacks;
+		synchronized(this) {
+			if(this.state != PENDING) {
+				return false;
+			}
+			
+			this.value = value;
+			this.cause = cause;
+			this.state = state;
+			
+			callbacks = this.callbacks;
+			this.callbacks = null;
+		}
+		
+		this.done.countDown();
+		for(QueueCallback<? super V> callback : callbacks) {
+			this.notifyCallback(callback);
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Notify the callback of the outcome, making sure that a failing callback
+	 * does not affect the thread that completed the future.
+	 * 
+	 * @param callback
+	 *            the callback to notify
+	 */
+	private void notifyCallback(QueueCallback<? super V> callback) {
+		try {
+			if(this.state == SUCCEEDED) {
+				callback.onSuccess(this.value);
+			} else {
+				callback.onFailure(this.cause);
+			}
+		} catch(Throwable t) {
+			LOGGER.error("Callback failed for queue future", t);
+		}
+	}
+	
+	/**
+	 * Return the result of a completed future.
+	 * 
+	 */
+	private synchronized V report() throws ExecutionException {
+		switch(this.state) {
+			case SUCCEEDED:
+				return this.value;
+				
+			case CANCELLED:
+				throw new CancellationException();
+				
+			default:
+				throw new ExecutionException(this.cause);
+		}
+	}
+	
+}
@@ -0,0 +1,74 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.sangupta.lineup.domain.QueueMessage;
+
+/**
+ * Base for {@link MessageCodec}s that reads and writes whole lists of
+ * messages via the streaming {@link MessageListReader} and
+ * {@link MessageListWriter} of the codec.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public abstract class AbstractMessageCodec implements MessageCodec {
+	
+	/**
+	 * @see com.sangupta.lineup.codec.MessageCodec#writeMessages(java.util.List, java.io.OutputStream)
+	 */
+	@Override
+	public void writeMessages(List<QueueMessage> messages, OutputStream stream) throws IOException {
+		MessageListWriter writer = this.newListWriter(stream);
+		for(QueueMessage message : messages) {
+			writer.write(message);
+		}
+		
+		writer.close();
+	}
+	
+	/**
+	 * @see com.sangupta.lineup.codec.MessageCodec#readMessages(java.io.InputStream)
+	 */
+	@Override
+	public List<QueueMessage> readMessages(InputStream stream) throws IOException {
+		List<QueueMessage> messages = new ArrayList<QueueMessage>();
+		MessageListReader reader = this.newListReader(stream);
+		try {
+			QueueMessage message;
+			while((message = reader.next()) != null) {
+				messages.add(message);
+			}
+		} finally {
+			reader.close();
+		}
+		
+		return messages;
+	}
+
+}
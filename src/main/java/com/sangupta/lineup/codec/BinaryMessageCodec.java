@@ -0,0 +1,446 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.codec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+import com.sangupta.lineup.domain.QueueMessage;
+
+/**
+ * A compact binary format for messages. Every payload starts with a format
+ * version byte. A message is written as
+ * 
+ * <pre>
+ * long messageID, int delaySeconds, int priority, long created,
+ * byte md5Kind, md5, int bodyLength, byte[bodyLength] body
+ * </pre>
+ * 
+ * with numbers in big-endian order, the body in UTF-8, and the MD5 hash as
+ * its 16 raw bytes when it is in the usual lower-case hex form. A list of
+ * messages is written as each message preceded by a byte <code>1</code>,
+ * and terminated by a byte <code>0</code>, so that it can be written without
+ * knowing the number of messages up front.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public class BinaryMessageCodec extends AbstractMessageCodec {
+	
+	/**
+	 * The version of the format written
+	 */
+	static final byte FORMAT_VERSION = 1;
+	
+	/**
+	 * Marks another message in a list
+	 */
+	static final byte MORE = 1;
+	
+	/**
+	 * Marks the end of a list
+	 */
+	static final byte END = 0;
+	
+	/**
+	 * The message carries no hash, which is computed when read
+	 */
+	private static final byte MD5_NONE = 0;
+	
+	/**
+	 * The hash is written as 16 raw bytes
+	 */
+	private static final byte MD5_RAW = 1;
+	
+	/**
+	 * The hash is written as a length-prefixed string
+	 */
+	private static final byte MD5_STRING = 2;
+	
+	/**
+	 * The largest body that is read, so that a corrupt length cannot exhaust
+	 * the memory
+	 */
+	private static final int MAX_BODY_BYTES = 16 * 1024 * 1024;
+	
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+	
+	/**
+	 * @see com.sangupta.lineup.codec.MessageCodec#getMediaType()
+	 */
+	@Override
+	public String getMediaType() {
+		return MessageCodecs.APPLICATION_LINEUP_BINARY;
+	}
+	
+	/**
+	 * @see com.sangupta.lineup.codec.MessageCodec#writeMessage(com.sangupta.lineup.domain.QueueMessage, java.io.OutputStream)
+	 */
+	@Override
+	public void writeMessage(QueueMessage message, OutputStream stream) throws IOException {
+		DataOutputStream output = newOutput(stream);
+		output.writeByte(FORMAT_VERSION);
+		write(message, output);
+		output.flush();
+	}
+	
+	/**
+	 * @see com.sangupta.lineup.codec.MessageCodec#readMessage(java.io.InputStream)
+	 */
+	@Override
+	public QueueMessage readMessage(InputStream stream) throws IOException {
+		DataInputStream input = newInput(stream);
+		readVersion(input);
+		return read(input);
+	}
+	
+	/**
+	 * @see com.sangupta.lineup.codec.MessageCodec#newListWriter(java.io.OutputStream)
+	 */
+	@Override
+	public MessageListWriter newListWriter(OutputStream stream) throws IOException {
+		final DataOutputStream output = newOutput(stream);
+		output.writeByte(FORMAT_VERSION);
+		
+		return new MessageListWriter() {
+			
+			@Override
+			public void write(QueueMessage message) throws IOException {
+				output.writeByte(MORE);
+				BinaryMessageCodec.write(message, output);
+			}
+			
+			@Override
+			public void flush() throws IOException {
+				output.flush();
+			}
+			
+			@Override
+			public void close() throws IOException {
+				output.writeByte(END);
+				output.flush();
+			}
+			
+		};
+	}
+	
+	/**
+	 * @see com.sangupta.lineup.codec.MessageCodec#newListReader(java.io.InputStream)
+	 */
+	@Override
+	public MessageListReader newListReader(InputStream stream) throws IOException {
+		final DataInputStream input = newInput(stream);
+		readVersion(input);
+		
+		return new MessageListReader() {
+			
+			private boolean done;
+			
+			@Override
+			public QueueMessage next() throws IOException {
+				if(this.done) {
+					return null;
+				}
+				
+				if(!readMarker(input)) {
+					this.done = true;
+					return null;
+				}
+				
+				return read(input);
+			}
+			
+			@Override
+			public void close() {
+				this.done = true;
+			}
+			
+		};
+	}
+	
+	/**
+	 * Create a buffered data output over the given stream.
+	 * 
+	 * @param stream
+	 *            the stream to write to
+	 * 
+	 * @return the data output
+	 */
+	static DataOutputStream newOutput(OutputStream stream) {
+		return new DataOutputStream(new BufferedOutputStream(stream, 8192));
+	}
+	
+	/**
+	 * Create a buffered data input over the given stream.
+	 * 
+	 * @param stream
+	 *            the stream to read from
+	 * 
+	 * @return the data input
+	 */
+	static DataInputStream newInput(InputStream stream) {
+		return new DataInputStream(new BufferedInputStream(stream, 8192));
+	}
+	
+	/**
+	 * Read and check the format version.
+	 * 
+	 * @param input
+	 *            the input to read from
+	 * 
+	 * @throws IOException
+	 *             if the version is not supported
+	 */
+	static void readVersion(DataInputStream input) throws IOException {
+		byte version = input.readByte();
+		if(version != FORMAT_VERSION) {
+			throw new IOException("Unsupported binary format version: " + version);
+		}
+	}
+	
+	/**
+	 * Read the marker before the next message of a list.
+	 * 
+	 * @param input
+	 *            the input to read from
+	 * 
+	 * @return <code>true</code> if a message follows, <code>false</code> at
+	 *         the end of the list
+	 * 
+	 * @throws IOException
+	 *             if the marker is not valid
+	 */
+	static boolean readMarker(DataInputStream input) throws IOException {
+		byte marker = input.readByte();
+		if(marker == MORE) {
+			return true;
+		}
+		
+		if(marker == END) {
+			return false;
+		}
+		
+		throw new IOException("Invalid list marker: " + marker);
+	}
+	
+	/**
+	 * Write a single message.
+	 * 
+	 * @param message
+	 *            the message to write
+	 * 
+	 * @param output
+	 *            the output to write to
+	 * 
+	 * @throws IOException
+	 *             if the output fails
+	 */
+	static void write(QueueMessage message, DataOutputStream output) throws IOException {
+		output.writeLong(message.getMessageID());
+		output.writeInt(message.getDelaySeconds());
+		output.writeInt(message.getPriority());
+		output.writeLong(message.getCreated());
+		
+		String md5 = message.getMd5();
+		if(md5 == null) {
+			output.writeByte(MD5_NONE);
+		} else {
+			byte[] raw = fromHex(md5);
+			if(raw != null) {
+				output.writeByte(MD5_RAW);
+				output.write(raw);
+			} else {
+				output.writeByte(MD5_STRING);
+				writeBytes(md5.getBytes(UTF_8), output);
+			}
+		}
+		
+		writeBytes(message.getBody().getBytes(UTF_8), output);
+	}
+	
+	/**
+	 * Read a single message.
+	 * 
+	 * @param input
+	 *            the input to read from
+	 * 
+	 * @return the message
+	 * 
+	 * @throws IOException
+	 *             if the input does not hold a valid message
+	 */
+	static QueueMessage read(DataInputStream input) throws IOException {
+		long messageID = input.readLong();
+		int delaySeconds = input.readInt();
+		int priority = input.readInt();
+		long created = input.readLong();
+		
+		String md5;
+		byte md5Kind = input.readByte();
+		switch(md5Kind) {
+			case MD5_NONE:
+				md5 = null;
+				break;
+				
+			case MD5_RAW:
+				byte[] raw = new byte[16];
+				input.readFully(raw);
+				md5 = toHex(raw);
+				break;
+				
+			case MD5_STRING:
+				md5 = new String(readBytes(input), UTF_8);
+				break;
+				
+			default:
+				throw new IOException("Invalid hash kind: " + md5Kind);
+		}
+		
+		String body = new String(readBytes(input), UTF_8);
+		
+		try {
+			return new QueueMessage(messageID, body, delaySeconds, priority, md5, created);
+		} catch(IllegalArgumentException e) {
+			throw new IOException("Invalid queue message: " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * Write the given bytes prefixed with their length.
+	 * 
+	 * @param bytes
+	 *            the bytes to write
+	 * 
+	 * @param output
+	 *            the output to write to
+	 * 
+	 * @throws IOException
+	 *             if the output fails
+	 */
+	private static void writeBytes(byte[] bytes, DataOutputStream output) throws IOException {
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+	
+	/**
+	 * Read bytes prefixed with their length.
+	 * 
+	 * @param input
+	 *            the input to read from
+	 * 
+	 * @return the bytes read
+	 * 
+	 * @throws IOException
+	 *             if the length is not valid or the input ends early
+	 */
+	private static byte[] readBytes(DataInputStream input) throws IOException {
+		int length = input.readInt();
+		if(length < 0 || length > MAX_BODY_BYTES) {
+			throw new IOException("Invalid length: " + length);
+		}
+		
+		byte[] bytes = new byte[length];
+		try {
+			input.readFully(bytes);
+		} catch(EOFException e) {
+			throw new IOException("Input ended within a field of " + length + " bytes");
+		}
+		
+		return bytes;
+	}
+	
+	/**
+	 * Convert a hash in lower-case hex to its raw bytes.
+	 * 
+	 * @param hex
+	 *            the hash in hex
+	 * 
+	 * @return the 16 raw bytes, or <code>null</code> if the hash is not 32
+	 *         lower-case hex digits
+	 */
+	private static byte[] fromHex(String hex) {
+		if(hex.length() != 32) {
+			return null;
+		}
+		
+		byte[] raw = new byte[16];
+		for(int index = 0; index < 16; index++) {
+			int high = lowerHexDigit(hex.charAt(index * 2));
+			int low = lowerHexDigit(hex.charAt(index * 2 + 1));
+			if(high < 0 || low < 0) {
+				return null;
+			}
+			
+			raw[index] = (byte) ((high << 4) | low);
+		}
+		
+		return raw;
+	}
+	
+	/**
+	 * Return the value of a lower-case hex digit.
+	 * 
+	 * @param c
+	 *            the digit
+	 * 
+	 * @return the value, or <code>-1</code> if not a lower-case hex digit
+	 */
+	private static int lowerHexDigit(char c) {
+		if(c >= '0' && c <= '9') {
+			return c - '0';
+		}
+		
+		if(c >= 'a' && c <= 'f') {
+			return c - 'a' + 10;
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * Convert raw bytes to lower-case hex.
+	 * 
+	 * @param raw
+	 *            the bytes
+	 * 
+	 * @return the hex string
+	 */
+	private static String toHex(byte[] raw) {
+		char[] hex = new char[raw.length * 2];
+		for(int index = 0; index < raw.length; index++) {
+			hex[index * 2] = HEX_DIGITS[(raw[index] >> 4) & 0xF];
+			hex[index * 2 + 1] = HEX_DIGITS[raw[index] & 0xF];
+		}
+		
+		return new String(hex);
+	}
+
+}
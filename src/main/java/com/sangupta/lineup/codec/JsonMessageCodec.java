@@ -0,0 +1,867 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+import com.sangupta.lineup.domain.QueueMessage;
+
+/**
+ * A hand-written JSON format for messages, which writes fields directly to
+ * the stream and parses them in a single pass without reflection or an
+ * intermediate tree. A message is written as
+ * 
+ * <pre>
+ * {"messageID":1,"body":"...","delaySeconds":0,"priority":1,"md5":"...","created":1400000000000}
+ * </pre>
+ * 
+ * and a list of messages as a JSON array of them. Unknown fields are skipped
+ * when reading, and a missing hash or creation time is computed afresh.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public class JsonMessageCodec extends AbstractMessageCodec {
+	
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+	
+	/**
+	 * @see com.sangupta.lineup.codec.MessageCodec#getMediaType()
+	 */
+	@Override
+	public String getMediaType() {
+		return "application/json";
+	}
+	
+	/**
+	 * @see com.sangupta.lineup.codec.MessageCodec#writeMessage(com.sangupta.lineup.domain.QueueMessage, java.io.OutputStream)
+	 */
+	@Override
+	public void writeMessage(QueueMessage message, OutputStream stream) throws IOException {
+		Writer writer = newWriter(stream);
+		write(message, writer);
+		writer.flush();
+	}
+	
+	/**
+	 * @see com.sangupta.lineup.codec.MessageCodec#readMessage(java.io.InputStream)
+	 */
+	@Override
+	public QueueMessage readMessage(InputStream stream) throws IOException {
+		return new JsonReader(stream).readMessage();
+	}
+	
+	/**
+	 * @see com.sangupta.lineup.codec.MessageCodec#newListWriter(java.io.OutputStream)
+	 */
+	@Override
+	public MessageListWriter newListWriter(OutputStream stream) throws IOException {
+		final Writer writer = newWriter(stream);
+		writer.write('[');
+		
+		return new MessageListWriter() {
+			
+			private boolean first = true;
+			
+			@Override
+			public void write(QueueMessage message) throws IOException {
+				if(!this.first) {
+					writer.write(',');
+				}
+				
+				JsonMessageCodec.write(message, writer);
+				this.first = false;
+			}
+			
+			@Override
+			public void flush() throws IOException {
+				writer.flush();
+			}
+			
+			@Override
+			public void close() throws IOException {
+				writer.write(']');
+				writer.flush();
+			}
+			
+		};
+	}
+	
+	/**
+	 * @see com.sangupta.lineup.codec.MessageCodec#newListReader(java.io.InputStream)
+	 */
+	@Override
+	public MessageListReader newListReader(InputStream stream) throws IOException {
+		final JsonReader reader = new JsonReader(stream);
+		reader.expect('[');
+		
+		return new MessageListReader() {
+			
+			private boolean first = true;
+			
+			private boolean done;
+			
+			@Override
+			public QueueMessage next() throws IOException {
+				if(this.done) {
+					return null;
+				}
+				
+				if(this.first) {
+					this.first = false;
+					if(reader.peekToken() == ']') {
+						reader.expect(']');
+						this.done = true;
+						return null;
+					}
+				} else if(!reader.nextSeparator(']')) {
+					this.done = true;
+					return null;
+				}
+				
+				return reader.readMessage();
+			}
+			
+			@Override
+			public void close() {
+				this.done = true;
+			}
+			
+		};
+	}
+	
+	/**
+	 * Create a buffered UTF-8 writer over the given stream.
+	 * 
+	 * @param stream
+	 *            the stream to write to
+	 * 
+	 * @return the writer
+	 */
+	private static Writer newWriter(OutputStream stream) {
+		return new JsonWriter(new OutputStreamWriter(stream, UTF_8));
+	}
+	
+	/**
+	 * Write a single message as a JSON object.
+	 * 
+	 * @param message
+	 *            the message to write
+	 * 
+	 * @param writer
+	 *            the writer to write to
+	 * 
+	 * @throws IOException
+	 *             if the writer fails
+	 */
+	static void write(QueueMessage message, Writer writer) throws IOException {
+		writer.write("{\"messageID\":");
+		writer.write(Long.toString(message.getMessageID()));
+		writer.write(",\"body\":");
+		writeString(message.getBody(), writer);
+		writer.write(",\"delaySeconds\":");
+		writer.write(Integer.toString(message.getDelaySeconds()));
+		writer.write(",\"priority\":");
+		writer.write(Integer.toString(message.getPriority()));
+		writer.write(",\"md5\":");
+		writeString(message.getMd5(), writer);
+		writer.write(",\"created\":");
+		writer.write(Long.toString(message.getCreated()));
+		writer.write('}');
+	}
+	
+	/**
+	 * Write the given string as a quoted and escaped JSON string.
+	 * 
+	 * @param value
+	 *            the string to write, may be <code>null</code>
+	 * 
+	 * @param writer
+	 *            the writer to write to
+	 * 
+	 * @throws IOException
+	 *             if the writer fails
+	 */
+	private static void writeString(String value, Writer writer) throws IOException {
+		if(value == null) {
+			writer.write("null");
+			return;
+		}
+		
+		writer.write('"');
+		
+		// write runs of characters that need no escaping in one go
+		int start = 0;
+		final int length = value.length();
+		for(int index = 0; index < length; index++) {
+			char c = value.charAt(index);
+			if(c >= 0x20 && c != '"' && c != '\\') {
+				continue;
+			}
+			
+			if(index > start) {
+				writer.write(value, start, index - start);
+			}
+			
+			start = index + 1;
+			switch(c) {
+				case '"':
+					writer.write('\\');
+					writer.write('"');
+					break;
+					
+				case '\\':
+					writer.write('\\');
+					writer.write('\\');
+					break;
+					
+				case '\n':
+					writer.write('\\');
+					writer.write('n');
+					break;
+					
+				case '\r':
+					writer.write('\\');
+					writer.write('r');
+					break;
+					
+				case '\t':
+					writer.write('\\');
+					writer.write('t');
+					break;
+					
+				default:
+					writer.write('\\');
+					writer.write('u');
+					writer.write(HEX_DIGITS[(c >> 12) & 0xF]);
+					writer.write(HEX_DIGITS[(c >> 8) & 0xF]);
+					writer.write(HEX_DIGITS[(c >> 4) & 0xF]);
+					writer.write(HEX_DIGITS[c & 0xF]);
+					break;
+			}
+		}
+		
+		if(length > start) {
+			writer.write(value, start, length - start);
+		}
+		
+		writer.write('"');
+	}
+	
+	/**
+	 * A buffered writer for a single thread. Strings with many characters to
+	 * escape are written in many short runs, for which the locking of a
+	 * {@link java.io.BufferedWriter} costs more than the copying.
+	 * 
+	 */
+	static class JsonWriter extends Writer {
+		
+		/**
+		 * The writer the buffer is flushed to
+		 */
+		private final Writer writer;
+		
+		/**
+		 * The characters not yet flushed
+		 */
+		private final char[] buffer = new char[8192];
+		
+		/**
+		 * The number of characters in the buffer
+		 */
+		private int count;
+		
+		JsonWriter(Writer writer) {
+			this.writer = writer;
+		}
+		
+		/**
+		 * @see java.io.Writer#write(int)
+		 */
+		@Override
+		public void write(int c) throws IOException {
+			if(this.count == this.buffer.length) {
+				this.flushBuffer();
+			}
+			
+			this.buffer[this.count++] = (char) c;
+		}
+		
+		/**
+		 * @see java.io.Writer#write(java.lang.String)
+		 */
+		@Override
+		public void write(String value) throws IOException {
+			this.write(value, 0, value.length());
+		}
+		
+		/**
+		 * @see java.io.Writer#write(java.lang.String, int, int)
+		 */
+		@Override
+		public void write(String value, int offset, int length) throws IOException {
+			while(length > 0) {
+				if(this.count == this.buffer.length) {
+					this.flushBuffer();
+				}
+				
+				int chunk = Math.min(length, this.buffer.length - this.count);
+				value.getChars(offset, offset + chunk, this.buffer, this.count);
+				this.count += chunk;
+				offset += chunk;
+				length -= chunk;
+			}
+		}
+		
+		/**
+		 * @see java.io.Writer#write(char[], int, int)
+		 */
+		@Override
+		public void write(char[] chars, int offset, int length) throws IOException {
+			if(length >= this.buffer.length) {
+				this.flushBuffer();
+				this.writer.write(chars, offset, length);
+				return;
+			}
+			
+			if(length > this.buffer.length - this.count) {
+				this.flushBuffer();
+			}
+			
+			System.arraycopy(chars, offset, this.buffer, this.count, length);
+			this.count += length;
+		}
+		
+		/**
+		 * @see java.io.Writer#flush()
+		 */
+		@Override
+		public void flush() throws IOException {
+			this.flushBuffer();
+			this.writer.flush();
+		}
+		
+		/**
+		 * Flushes, but does not close the underlying stream, which belongs to
+		 * the caller of the codec.
+		 * 
+		 * @see java.io.Writer#close()
+		 */
+		@Override
+		public void close() throws IOException {
+			this.flush();
+		}
+		
+		/**
+		 * Write out the buffered characters.
+		 * 
+		 * @throws IOException
+		 *             if the underlying writer fails
+		 */
+		private void flushBuffer() throws IOException {
+			if(this.count > 0) {
+				this.writer.write(this.buffer, 0, this.count);
+				this.count = 0;
+			}
+		}
+		
+	}
+	
+	/**
+	 * A single-pass reader of messages, and lists of them, in JSON.
+	 * 
+	 */
+	static class JsonReader {
+		
+		/**
+		 * The characters being read
+		 */
+		private final Reader reader;
+		
+		/**
+		 * Buffer of characters read ahead
+		 */
+		private final char[] buffer = new char[8192];
+		
+		/**
+		 * Position of the next character in the buffer
+		 */
+		private int position;
+		
+		/**
+		 * Number of characters in the buffer
+		 */
+		private int limit;
+		
+		/**
+		 * Builds strings as they are read
+		 */
+		private final StringBuilder builder = new StringBuilder();
+		
+		JsonReader(InputStream stream) {
+			this.reader = new InputStreamReader(stream, UTF_8);
+		}
+		
+		/**
+		 * Read a single message as a JSON object.
+		 * 
+		 * @return the message
+		 * 
+		 * @throws IOException
+		 *             if the input is not a valid message
+		 */
+		QueueMessage readMessage() throws IOException {
+			long messageID = 0;
+			String body = null;
+			long delaySeconds = 0;
+			long priority = 1;
+			String md5 = null;
+			long created = 0;
+			
+			this.expect('{');
+			if(this.peekToken() == '}') {
+				this.position++;
+			} else {
+				do {
+					String name = this.readString();
+					this.expect(':');
+					
+					if("messageID".equals(name)) {
+						messageID = this.readLong();
+					} else if("body".equals(name)) {
+						body = this.readString();
+					} else if("delaySeconds".equals(name)) {
+						delaySeconds = this.readLong();
+					} else if("priority".equals(name)) {
+						priority = this.readLong();
+					} else if("md5".equals(name)) {
+						md5 = this.readString();
+					} else if("created".equals(name)) {
+						created = this.readLong();
+					} else {
+						this.skipValue();
+					}
+				} while(this.nextSeparator('}'));
+			}
+			
+			try {
+				return new QueueMessage(messageID, body, toInt("delaySeconds", delaySeconds), toInt("priority", priority), md5, created);
+			} catch(IllegalArgumentException e) {
+				throw new IOException("Invalid queue message: " + e.getMessage());
+			}
+		}
+		
+		/**
+		 * Read the separator after a member or element: a comma if another
+		 * one follows, or the given closing character.
+		 * 
+		 * @param close
+		 *            the closing character of the object or array
+		 * 
+		 * @return <code>true</code> if another member or element follows
+		 * 
+		 * @throws IOException
+		 *             if neither is found
+		 */
+		boolean nextSeparator(char close) throws IOException {
+			int c = this.peekToken();
+			this.position++;
+			if(c == ',') {
+				return true;
+			}
+			
+			if(c == close) {
+				return false;
+			}
+			
+			throw this.unexpected(c, "',' or '" + close + "'");
+		}
+		
+		/**
+		 * Return the next character that is not whitespace, without
+		 * consuming it.
+		 * 
+		 * @return the character, or <code>-1</code> at the end of the input
+		 * 
+		 * @throws IOException
+		 *             if the input cannot be read
+		 */
+		int peekToken() throws IOException {
+			while(true) {
+				if(this.position == this.limit && !this.fill()) {
+					return -1;
+				}
+				
+				char c = this.buffer[this.position];
+				if(c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+					this.position++;
+					continue;
+				}
+				
+				return c;
+			}
+		}
+		
+		/**
+		 * Consume the next character that is not whitespace, which must be
+		 * the given one.
+		 * 
+		 * @param expected
+		 *            the expected character
+		 * 
+		 * @throws IOException
+		 *             if another character is found
+		 */
+		void expect(char expected) throws IOException {
+			int c = this.peekToken();
+			if(c != expected) {
+				throw this.unexpected(c, "'" + expected + "'");
+			}
+			
+			this.position++;
+		}
+		
+		/**
+		 * Read a string, or <code>null</code>.
+		 * 
+		 * @return the string read
+		 * 
+		 * @throws IOException
+		 *             if the input is not a string or <code>null</code>
+		 */
+		private String readString() throws IOException {
+			int c = this.peekToken();
+			if(c == 'n') {
+				this.readLiteral("null");
+				return null;
+			}
+			
+			if(c != '"') {
+				throw this.unexpected(c, "a string");
+			}
+			
+			this.position++;
+			this.builder.setLength(0);
+			while(true) {
+				// copy runs of plain characters straight from the buffer
+				int start = this.position;
+				while(this.position < this.limit) {
+					char ch = this.buffer[this.position];
+					if(ch == '"' || ch == '\\') {
+						break;
+					}
+					
+					this.position++;
+				}
+				
+				this.builder.append(this.buffer, start, this.position - start);
+				if(this.position == this.limit) {
+					if(!this.fill()) {
+						throw new IOException("Unterminated string");
+					}
+					
+					continue;
+				}
+				
+				char ch = this.buffer[this.position++];
+				if(ch == '"') {
+					return this.builder.toString();
+				}
+				
+				this.builder.append(this.readEscape());
+			}
+		}
+		
+		/**
+		 * Read the character escaped after a backslash.
+		 * 
+		 * @return the character
+		 * 
+		 * @throws IOException
+		 *             if the escape is not valid
+		 */
+		private char readEscape() throws IOException {
+			int c = this.read();
+			switch(c) {
+				case '"':
+				case '\\':
+				case '/':
+					return (char) c;
+					
+				case 'b':
+					return '\b';
+					
+				case 'f':
+					return '\f';
+					
+				case 'n':
+					return '\n';
+					
+				case 'r':
+					return '\r';
+					
+				case 't':
+					return '\t';
+					
+				case 'u':
+					int value = 0;
+					for(int index = 0; index < 4; index++) {
+						int digit = Character.digit(this.read(), 16);
+						if(digit < 0) {
+							throw new IOException("Invalid unicode escape");
+						}
+						
+						value = (value << 4) | digit;
+					}
+					
+					return (char) value;
+					
+				default:
+					throw this.unexpected(c, "an escape character");
+			}
+		}
+		
+		/**
+		 * Read an integral number.
+		 * 
+		 * @return the number
+		 * 
+		 * @throws IOException
+		 *             if the input is not an integral number, or one that
+		 *             does not fit a long
+		 */
+		private long readLong() throws IOException {
+			int c = this.peekToken();
+			boolean negative = c == '-';
+			if(negative) {
+				this.position++;
+				c = this.peek();
+			}
+			
+			if(c < '0' || c > '9') {
+				throw this.unexpected(c, "a number");
+			}
+			
+			// accumulated as a negative number, which has the larger range,
+			// so that Long.MIN_VALUE can be read as well
+			final long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+			long value = 0;
+			while(c >= '0' && c <= '9') {
+				int digit = c - '0';
+				if(value < (limit + digit) / 10) {
+					throw new IOException("Number out of range");
+				}
+				
+				value = value * 10 - digit;
+				this.position++;
+				c = this.peek();
+			}
+			
+			return negative ? value : -value;
+		}
+		
+		/**
+		 * Narrow a number read for a field of the message that is an int.
+		 * 
+		 * @param name
+		 *            the name of the field
+		 * 
+		 * @param value
+		 *            the number read
+		 * 
+		 * @return the number as an int
+		 * 
+		 * @throws IOException
+		 *             if the number does not fit an int
+		 */
+		private static int toInt(String name, long value) throws IOException {
+			if(value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+				throw new IOException("Invalid queue message: " + name + " out of range");
+			}
+			
+			return (int) value;
+		}
+		
+		/**
+		 * Skip over a value of any type.
+		 * 
+		 * @throws IOException
+		 *             if the input is not a valid value
+		 */
+		private void skipValue() throws IOException {
+			int c = this.peekToken();
+			switch(c) {
+				case '"':
+					this.readString();
+					return;
+					
+				case '{':
+					this.position++;
+					if(this.peekToken() == '}') {
+						this.position++;
+						return;
+					}
+					
+					do {
+						this.readString();
+						this.expect(':');
+						this.skipValue();
+					} while(this.nextSeparator('}'));
+					return;
+					
+				case '[':
+					this.position++;
+					if(this.peekToken() == ']') {
+						this.position++;
+						return;
+					}
+					
+					do {
+						this.skipValue();
+					} while(this.nextSeparator(']'));
+					return;
+					
+				case 't':
+					this.readLiteral("true");
+					return;
+					
+				case 'f':
+					this.readLiteral("false");
+					return;
+					
+				case 'n':
+					this.readLiteral("null");
+					return;
+					
+				default:
+					if(c != '-' && (c < '0' || c > '9')) {
+						throw this.unexpected(c, "a value");
+					}
+					
+					// numbers, including fractions and exponents
+					while(c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E' || (c >= '0' && c <= '9')) {
+						this.position++;
+						c = this.peek();
+					}
+			}
+		}
+		
+		/**
+		 * Consume the given literal.
+		 * 
+		 * @param literal
+		 *            the literal expected
+		 * 
+		 * @throws IOException
+		 *             if the input does not match
+		 */
+		private void readLiteral(String literal) throws IOException {
+			for(int index = 0; index < literal.length(); index++) {
+				if(this.read() != literal.charAt(index)) {
+					throw new IOException("Expected " + literal);
+				}
+			}
+		}
+		
+		/**
+		 * Return the next character without consuming it.
+		 * 
+		 * @return the character, or <code>-1</code> at the end of the input
+		 * 
+		 * @throws IOException
+		 *             if the input cannot be read
+		 */
+		private int peek() throws IOException {
+			if(this.position == this.limit && !this.fill()) {
+				return -1;
+			}
+			
+			return this.buffer[this.position];
+		}
+		
+		/**
+		 * Consume the next character.
+		 * 
+		 * @return the character
+		 * 
+		 * @throws IOException
+		 *             at the end of the input
+		 */
+		private int read() throws IOException {
+			if(this.position == this.limit && !this.fill()) {
+				throw new IOException("Unexpected end of input");
+			}
+			
+			return this.buffer[this.position++];
+		}
+		
+		/**
+		 * Read more characters into the empty buffer.
+		 * 
+		 * @return <code>false</code> at the end of the input
+		 * 
+		 * @throws IOException
+		 *             if the input cannot be read
+		 */
+		private boolean fill() throws IOException {
+			int read = this.reader.read(this.buffer, 0, this.buffer.length);
+			if(read <= 0) {
+				return false;
+			}
+			
+			this.position = 0;
+			this.limit = read;
+			return true;
+		}
+		
+		/**
+		 * Create the exception for an unexpected character.
+		 * 
+		 * @param found
+		 *            the character found, or <code>-1</code> at the end of the
+		 *            input
+		 * 
+		 * @param expected
+		 *            what was expected
+		 * 
+		 * @return the exception
+		 */
+		private IOException unexpected(int found, String expected) {
+			if(found < 0) {
+				return new IOException("Unexpected end of input, expected " + expected);
+			}
+			
+			return new IOException("Unexpected '" + (char) found + "', expected " + expected);
+		}
+		
+	}
+
+}
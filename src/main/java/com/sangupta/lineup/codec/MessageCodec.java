@@ -0,0 +1,138 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+import com.sangupta.lineup.domain.QueueMessage;
+
+/**
+ * Serializes {@link QueueMessage}s to, and reads them back from, the wire in
+ * one particular format identified by its media type. Codecs are used by
+ * both the REST webservices and the {@link com.sangupta.lineup.queues.RemoteLineUpQueue},
+ * and are looked up by media type via {@link MessageCodecs}.
+ * 
+ * Implementations must be thread-safe, and must not close the streams they
+ * are given.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public interface MessageCodec {
+	
+	/**
+	 * Return the media type of the format written by this codec.
+	 * 
+	 * @return the media type, like <code>application/json</code>
+	 */
+	public String getMediaType();
+	
+	/**
+	 * Write a single message to the given stream.
+	 * 
+	 * @param message
+	 *            the message to write
+	 * 
+	 * @param stream
+	 *            the stream to write to
+	 * 
+	 * @throws IOException
+	 *             if the stream cannot be written to
+	 */
+	public void writeMessage(QueueMessage message, OutputStream stream) throws IOException;
+	
+	/**
+	 * Read a single message from the given stream.
+	 * 
+	 * @param stream
+	 *            the stream to read from
+	 * 
+	 * @return the message read
+	 * 
+	 * @throws IOException
+	 *             if the stream cannot be read or does not hold a valid
+	 *             message
+	 */
+	public QueueMessage readMessage(InputStream stream) throws IOException;
+	
+	/**
+	 * Write a list of messages to the given stream.
+	 * 
+	 * @param messages
+	 *            the messages to write
+	 * 
+	 * @param stream
+	 *            the stream to write to
+	 * 
+	 * @throws IOException
+	 *             if the stream cannot be written to
+	 */
+	public void writeMessages(List<QueueMessage> messages, OutputStream stream) throws IOException;
+	
+	/**
+	 * Read a list of messages from the given stream.
+	 * 
+	 * @param stream
+	 *            the stream to read from
+	 * 
+	 * @return the messages read, in order
+	 * 
+	 * @throws IOException
+	 *             if the stream cannot be read or does not hold a valid list
+	 *             of messages
+	 */
+	public List<QueueMessage> readMessages(InputStream stream) throws IOException;
+	
+	/**
+	 * Start writing a list of messages to the given stream, one message at a
+	 * time. The list written is read back in full by
+	 * {@link #readMessages(InputStream)}.
+	 * 
+	 * @param stream
+	 *            the stream to write to
+	 * 
+	 * @return the writer for the messages of the list
+	 * 
+	 * @throws IOException
+	 *             if the stream cannot be written to
+	 */
+	public MessageListWriter newListWriter(OutputStream stream) throws IOException;
+	
+	/**
+	 * Start reading a list of messages from the given stream, one message at
+	 * a time. Any list written by {@link #writeMessages(List, OutputStream)}
+	 * can be read this way.
+	 * 
+	 * @param stream
+	 *            the stream to read from
+	 * 
+	 * @return the reader for the messages of the list
+	 * 
+	 * @throws IOException
+	 *             if the stream cannot be read or does not start a list
+	 */
+	public MessageListReader newListReader(InputStream stream) throws IOException;
+
+}
@@ -0,0 +1,245 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.codec;
+
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sangupta.jerry.util.AssertUtils;
+
+/**
+ * Registry of the {@link MessageCodec}s known to LineUp, by media type. The
+ * XML, JSON and binary codecs are always registered. More codecs can be
+ * registered via {@link #register(MessageCodec)}, or be listed in a
+ * <code>META-INF/services/com.sangupta.lineup.codec.MessageCodec</code>
+ * file on the classpath to be picked up via {@link ServiceLoader}.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public class MessageCodecs {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(MessageCodecs.class);
+	
+	/**
+	 * The media type of the compact binary format
+	 */
+	public static final String APPLICATION_LINEUP_BINARY = "application/x-lineup-binary";
+	
+	/**
+	 * The XML codec, which is the default as clients predating the codecs
+	 * all speak XML
+	 */
+	public static final MessageCodec XML = new XmlMessageCodec();
+	
+	/**
+	 * The JSON codec
+	 */
+	public static final MessageCodec JSON = new JsonMessageCodec();
+	
+	/**
+	 * The binary codec
+	 */
+	public static final MessageCodec BINARY = new BinaryMessageCodec();
+	
+	/**
+	 * The codecs by media type
+	 */
+	private static final Map<String, MessageCodec> CODECS = new ConcurrentHashMap<String, MessageCodec>();
+	
+	static {
+		register(XML);
+		register("text/xml", XML);
+		register(JSON);
+		register(BINARY);
+		
+		try {
+			Iterator<MessageCodec> iterator = ServiceLoader.load(MessageCodec.class).iterator();
+			while(iterator.hasNext()) {
+				register(iterator.next());
+			}
+		} catch(ServiceConfigurationError e) {
+			LOGGER.error("Unable to load message codecs", e);
+		}
+	}
+	
+	/**
+	 * Register the given codec for its media type, replacing any codec
+	 * registered for it before.
+	 * 
+	 * @param codec
+	 *            the codec to register
+	 */
+	public static void register(MessageCodec codec) {
+		if(codec == null) {
+			throw new IllegalArgumentException("Codec cannot be null");
+		}
+		
+		register(codec.getMediaType(), codec);
+	}
+	
+	/**
+	 * Register the given codec for the given media type, replacing any codec
+	 * registered for it before.
+	 * 
+	 * @param mediaType
+	 *            the media type
+	 * 
+	 * @param codec
+	 *            the codec to register
+	 */
+	public static void register(String mediaType, MessageCodec codec) {
+		if(AssertUtils.isEmpty(mediaType)) {
+			throw new IllegalArgumentException("Media type cannot be null/empty");
+		}
+		
+		if(codec == null) {
+			throw new IllegalArgumentException("Codec cannot be null");
+		}
+		
+		CODECS.put(normalize(mediaType), codec);
+	}
+	
+	/**
+	 * Return the codec for the given media type, as found in a
+	 * <code>Content-Type</code> header.
+	 * 
+	 * @param mediaType
+	 *            the media type, which may carry parameters
+	 * 
+	 * @return the codec, or <code>null</code> if no codec is registered for
+	 *         the media type
+	 */
+	public static MessageCodec getCodec(String mediaType) {
+		if(AssertUtils.isEmpty(mediaType)) {
+			return null;
+		}
+		
+		return CODECS.get(normalize(mediaType));
+	}
+	
+	/**
+	 * Return the codec preferred by the given <code>Accept</code> header: the
+	 * registered codec with the highest quality, the earliest listed one
+	 * among equals. Wildcards match the XML codec, or for a wildcard subtype,
+	 * any registered codec of that type.
+	 * 
+	 * @param accept
+	 *            the value of the <code>Accept</code> header
+	 * 
+	 * @return the codec, the XML codec if the header is empty, and
+	 *         <code>null</code> if no registered codec is acceptable
+	 */
+	public static MessageCodec negotiate(String accept) {
+		if(AssertUtils.isEmpty(accept)) {
+			return XML;
+		}
+		
+		MessageCodec best = null;
+		float bestQuality = 0;
+		
+		for(String range : accept.split(",")) {
+			String[] parts = range.split(";");
+			String mediaType = normalize(parts[0]);
+			
+			float quality = 1;
+			for(int index = 1; index < parts.length; index++) {
+				String parameter = parts[index].trim();
+				if(parameter.startsWith("q=")) {
+					try {
+						quality = Float.parseFloat(parameter.substring(2));
+					} catch(NumberFormatException e) {
+						quality = 0;
+					}
+				}
+			}
+			
+			if(quality <= bestQuality) {
+				continue;
+			}
+			
+			MessageCodec codec = match(mediaType);
+			if(codec != null) {
+				best = codec;
+				bestQuality = quality;
+			}
+		}
+		
+		return best;
+	}
+	
+	/**
+	 * Return the codec matching the given media range.
+	 * 
+	 * @param mediaRange
+	 *            the normalized media range, which may be a wildcard
+	 * 
+	 * @return the codec, or <code>null</code> if none matches
+	 */
+	private static MessageCodec match(String mediaRange) {
+		if("*/*".equals(mediaRange) || "*".equals(mediaRange)) {
+			return XML;
+		}
+		
+		if(!mediaRange.endsWith("/*")) {
+			return CODECS.get(mediaRange);
+		}
+		
+		String type = mediaRange.substring(0, mediaRange.length() - 1);
+		if(XML.getMediaType().startsWith(type)) {
+			return XML;
+		}
+		
+		for(Map.Entry<String, MessageCodec> entry : CODECS.entrySet()) {
+			if(entry.getKey().startsWith(type)) {
+				return entry.getValue();
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Strip the parameters from, and lower-case, the given media type.
+	 * 
+	 * @param mediaType
+	 *            the media type
+	 * 
+	 * @return the normalized media type
+	 */
+	private static String normalize(String mediaType) {
+		int index = mediaType.indexOf(';');
+		if(index >= 0) {
+			mediaType = mediaType.substring(0, index);
+		}
+		
+		return mediaType.trim().toLowerCase(Locale.ENGLISH);
+	}
+
+}
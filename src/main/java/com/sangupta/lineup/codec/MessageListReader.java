@@ -0,0 +1,59 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.codec;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import com.sangupta.lineup.domain.QueueMessage;
+
+/**
+ * Reads a list of messages one message at a time, as they arrive on the
+ * stream.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public interface MessageListReader extends Closeable {
+	
+	/**
+	 * Read the next message of the list.
+	 * 
+	 * @return the message, or <code>null</code> at the end of the list
+	 * 
+	 * @throws IOException
+	 *             if the stream cannot be read or does not hold a valid
+	 *             list of messages
+	 */
+	public QueueMessage next() throws IOException;
+	
+	/**
+	 * Release the reader. Readers created by a {@link MessageCodec} leave the
+	 * stream they read from open.
+	 * 
+	 * @throws IOException
+	 *             if the reader cannot be released
+	 */
+	@Override
+	public void close() throws IOException;
+
+}
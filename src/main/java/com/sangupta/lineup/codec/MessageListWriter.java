@@ -0,0 +1,67 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.codec;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import com.sangupta.lineup.domain.QueueMessage;
+
+/**
+ * Writes a list of messages one message at a time, so that a large list
+ * need never be held in memory, or written out in full before its first
+ * messages reach the reader.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public interface MessageListWriter extends Closeable {
+	
+	/**
+	 * Write the next message of the list.
+	 * 
+	 * @param message
+	 *            the message to write
+	 * 
+	 * @throws IOException
+	 *             if the stream cannot be written to
+	 */
+	public void write(QueueMessage message) throws IOException;
+	
+	/**
+	 * Push the messages written so far out to the stream.
+	 * 
+	 * @throws IOException
+	 *             if the stream cannot be written to
+	 */
+	public void flush() throws IOException;
+	
+	/**
+	 * End the list and flush it. The stream written to is left open.
+	 * 
+	 * @throws IOException
+	 *             if the stream cannot be written to
+	 */
+	@Override
+	public void close() throws IOException;
+
+}
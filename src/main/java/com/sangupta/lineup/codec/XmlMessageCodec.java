@@ -0,0 +1,313 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.codec;
+
+import java.io.EOFException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sangupta.jerry.util.XStreamUtils;
+import com.sangupta.lineup.domain.QueueMessage;
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.XStreamException;
+import com.thoughtworks.xstream.security.NoTypePermission;
+import com.thoughtworks.xstream.security.NullPermission;
+import com.thoughtworks.xstream.security.PrimitiveTypePermission;
+
+/**
+ * The XStream XML format LineUp has always spoken, kept for backward
+ * compatibility. XML does not carry the MD5 hash and creation time of a
+ * message, so messages read are hashed again and stamped with the time they
+ * were read.
+ * 
+ * Reading is restricted to the types that make up messages and lists of
+ * them, so that a request cannot have arbitrary classes instantiated.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public class XmlMessageCodec extends AbstractMessageCodec {
+	
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	/**
+	 * The root element of a list of messages
+	 */
+	private static final String LIST_ELEMENT = "list";
+	
+	/**
+	 * Writes messages and lists of them
+	 */
+	private static final XStream WRITER = XStreamUtils.getXStream(QueueMessage.class);
+	
+	/**
+	 * Reads messages and lists of them, and nothing else. A private instance,
+	 * as the permissions would otherwise apply to all users of a shared one.
+	 */
+	private static final XStream READER = new XStream();
+	
+	static {
+		READER.processAnnotations(QueueMessage.class);
+		READER.addPermission(NoTypePermission.NONE);
+		READER.addPermission(NullPermission.NULL);
+		READER.addPermission(PrimitiveTypePermission.PRIMITIVES);
+		READER.allowTypes(new Class<?>[] { QueueMessage.class, String.class, AtomicInteger.class, List.class, ArrayList.class, LinkedList.class });
+	}
+	
+	/**
+	 * @see com.sangupta.lineup.codec.MessageCodec#getMediaType()
+	 */
+	@Override
+	public String getMediaType() {
+		return "application/xml";
+	}
+	
+	/**
+	 * @see com.sangupta.lineup.codec.MessageCodec#writeMessage(com.sangupta.lineup.domain.QueueMessage, java.io.OutputStream)
+	 */
+	@Override
+	public void writeMessage(QueueMessage message, OutputStream stream) throws IOException {
+		write(message, stream);
+	}
+	
+	/**
+	 * @see com.sangupta.lineup.codec.MessageCodec#readMessage(java.io.InputStream)
+	 */
+	@Override
+	public QueueMessage readMessage(InputStream stream) throws IOException {
+		Object read = read(stream);
+		if(!(read instanceof QueueMessage)) {
+			throw new IOException("Expected a queue message but found " + describe(read));
+		}
+		
+		return restore((QueueMessage) read);
+	}
+	
+	/**
+	 * Writes the same <code>list</code> element XStream writes for a list of
+	 * messages, one message at a time.
+	 * 
+	 * @see com.sangupta.lineup.codec.MessageCodec#newListWriter(java.io.OutputStream)
+	 */
+	@Override
+	public MessageListWriter newListWriter(OutputStream stream) throws IOException {
+		final Writer writer = new OutputStreamWriter(new UnclosedOutputStream(stream), UTF_8);
+		final ObjectOutputStream output;
+		try {
+			output = WRITER.createObjectOutputStream(writer, LIST_ELEMENT);
+		} catch(XStreamException e) {
+			throw new IOException("Unable to write XML: " + e.getMessage());
+		}
+		
+		return new MessageListWriter() {
+			
+			@Override
+			public void write(QueueMessage message) throws IOException {
+				try {
+					output.writeObject(message);
+				} catch(XStreamException e) {
+					throw new IOException("Unable to write XML: " + e.getMessage());
+				}
+			}
+			
+			@Override
+			public void flush() throws IOException {
+				output.flush();
+				writer.flush();
+			}
+			
+			@Override
+			public void close() throws IOException {
+				// writes the closing tag, and closes down to the unclosed stream
+				output.close();
+			}
+			
+		};
+	}
+	
+	/**
+	 * @see com.sangupta.lineup.codec.MessageCodec#newListReader(java.io.InputStream)
+	 */
+	@Override
+	public MessageListReader newListReader(InputStream stream) throws IOException {
+		final ObjectInputStream input;
+		try {
+			input = READER.createObjectInputStream(new InputStreamReader(stream, UTF_8));
+		} catch(XStreamException e) {
+			throw new IOException("Unable to read XML: " + e.getMessage());
+		}
+		
+		return new MessageListReader() {
+			
+			private boolean done;
+			
+			@Override
+			public QueueMessage next() throws IOException {
+				if(this.done) {
+					return null;
+				}
+				
+				Object read;
+				try {
+					read = input.readObject();
+				} catch(EOFException e) {
+					this.done = true;
+					return null;
+				} catch(ClassNotFoundException e) {
+					throw new IOException("Unable to read XML: " + e.getMessage());
+				} catch(XStreamException e) {
+					throw new IOException("Unable to read XML: " + e.getMessage());
+				}
+				
+				if(!(read instanceof QueueMessage)) {
+					throw new IOException("Expected a queue message but found " + describe(read));
+				}
+				
+				return restore((QueueMessage) read);
+			}
+			
+			@Override
+			public void close() {
+				this.done = true;
+			}
+			
+		};
+	}
+	
+	/**
+	 * Write the given object as XML.
+	 * 
+	 * @param object
+	 *            the object to write
+	 * 
+	 * @param stream
+	 *            the stream to write to
+	 * 
+	 * @throws IOException
+	 *             if the stream cannot be written to
+	 */
+	private static void write(Object object, OutputStream stream) throws IOException {
+		Writer writer = new OutputStreamWriter(stream, UTF_8);
+		try {
+			WRITER.toXML(object, writer);
+		} catch(XStreamException e) {
+			throw new IOException("Unable to write XML: " + e.getMessage());
+		}
+		
+		writer.flush();
+	}
+	
+	/**
+	 * Read an object from the given XML.
+	 * 
+	 * @param stream
+	 *            the stream to read from
+	 * 
+	 * @return the object read
+	 * 
+	 * @throws IOException
+	 *             if the stream cannot be read or does not hold valid XML of
+	 *             the permitted types
+	 */
+	private static Object read(InputStream stream) throws IOException {
+		try {
+			return READER.fromXML(stream);
+		} catch(XStreamException e) {
+			throw new IOException("Unable to read XML: " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * Recreate the given message read by XStream, which leaves the transient
+	 * hash and creation time unset.
+	 * 
+	 * @param message
+	 *            the message read
+	 * 
+	 * @return the complete message
+	 * 
+	 * @throws IOException
+	 *             if the message is not valid
+	 */
+	private static QueueMessage restore(QueueMessage message) throws IOException {
+		try {
+			return new QueueMessage(message.getMessageID(), message.getBody(), message.getDelaySeconds(), message.getPriority(), null, 0);
+		} catch(RuntimeException e) {
+			throw new IOException("Invalid queue message: " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * Describe what was read, for error messages.
+	 * 
+	 * @param read
+	 *            the object read
+	 * 
+	 * @return the description
+	 */
+	private static String describe(Object read) {
+		return read == null ? "nothing" : read.getClass().getName();
+	}
+
+	/**
+	 * Passes writes through, but does not close the stream, which belongs to
+	 * the caller of the codec. XStream closes the stream it writes a list to
+	 * when the list is ended.
+	 * 
+	 */
+	private static class UnclosedOutputStream extends FilterOutputStream {
+		
+		UnclosedOutputStream(OutputStream stream) {
+			super(stream);
+		}
+		
+		/**
+		 * @see java.io.FilterOutputStream#write(byte[], int, int)
+		 */
+		@Override
+		public void write(byte[] bytes, int offset, int length) throws IOException {
+			this.out.write(bytes, offset, length);
+		}
+		
+		/**
+		 * @see java.io.FilterOutputStream#close()
+		 */
+		@Override
+		public void close() throws IOException {
+			this.flush();
+		}
+		
+	}
+
+}
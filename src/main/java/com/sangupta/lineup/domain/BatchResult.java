@@ -0,0 +1,114 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.thoughtworks.xstream.annotations.XStreamAlias;
+
+/**
+ * The outcome of a batch operation on a queue, holding one
+ * {@link BatchResultItem} for each message or message identifier in the
+ * batch, in the order they were sent.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+@XStreamAlias("batchResult")
+public class BatchResult {
+	
+	/**
+	 * Number of items that succeeded
+	 */
+	private int succeeded;
+	
+	/**
+	 * Number of items that failed
+	 */
+	private int failed;
+	
+	/**
+	 * The per-item results, in the order of the batch
+	 */
+	private final List<BatchResultItem> items;
+	
+	/**
+	 * Create an empty result for a batch of the given size.
+	 * 
+	 * @param size
+	 *            the number of items in the batch
+	 */
+	public BatchResult(int size) {
+		this.items = new ArrayList<BatchResultItem>(size);
+	}
+	
+	/**
+	 * Record the result of the next item of the batch.
+	 * 
+	 * @param messageID
+	 *            the identifier of the message the item refers to, if known
+	 * 
+	 * @param success
+	 *            whether the item was applied to the queue
+	 */
+	public void addItem(String messageID, boolean success) {
+		this.items.add(new BatchResultItem(messageID, success));
+		if(success) {
+			this.succeeded++;
+		} else {
+			this.failed++;
+		}
+	}
+	
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "[BatchResult: succeeded=" + this.succeeded + ", failed=" + this.failed + "]";
+	}
+	
+	// Usual accessors follow
+
+	/**
+	 * @return the succeeded
+	 */
+	public int getSucceeded() {
+		return succeeded;
+	}
+
+	/**
+	 * @return the failed
+	 */
+	public int getFailed() {
+		return failed;
+	}
+
+	/**
+	 * @return the items
+	 */
+	public List<BatchResultItem> getItems() {
+		return items;
+	}
+
+}
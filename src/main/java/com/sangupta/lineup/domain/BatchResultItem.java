@@ -0,0 +1,66 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.domain;
+
+import com.thoughtworks.xstream.annotations.XStreamAlias;
+
+/**
+ * The result of a single message or message identifier in a batch operation.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+@XStreamAlias("item")
+public class BatchResultItem {
+	
+	/**
+	 * The identifier of the message, if known
+	 */
+	private final String messageID;
+	
+	/**
+	 * Whether the item was applied to the queue
+	 */
+	private final boolean success;
+	
+	public BatchResultItem(String messageID, boolean success) {
+		this.messageID = messageID;
+		this.success = success;
+	}
+	
+	// Usual accessors follow
+
+	/**
+	 * @return the messageID
+	 */
+	public String getMessageID() {
+		return messageID;
+	}
+
+	/**
+	 * @return the success
+	 */
+	public boolean isSuccess() {
+		return success;
+	}
+
+}
@@ -0,0 +1,61 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.domain;
+
+/**
+ * The number of producer and consumer threads that work on a queue. Queues
+ * with a single producer or a single consumer can use cheaper data structures,
+ * but the caller must make sure that only one thread ever adds or reads
+ * messages respectively.
+ * 
+ * Direct hand-off and leases move messages on threads other than that of the
+ * producer or the consumer, and are only supported for {@link #MPMC}. On other
+ * queues, an asynchronous or batch receive that has to wait is completed by
+ * the consumer waiting on its future, rather than by a producer. Messages can
+ * be deleted by ID from any thread whatever the cardinality.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public enum QueueCardinality {
+	
+	/**
+	 * Multiple producers and multiple consumers.
+	 */
+	MPMC,
+	
+	/**
+	 * A single producer and a single consumer.
+	 */
+	SPSC,
+	
+	/**
+	 * Multiple producers and a single consumer.
+	 */
+	MPSC,
+	
+	/**
+	 * A single producer and multiple consumers.
+	 */
+	SPMC;
+
+}
@@ -25,6 +25,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import com.sangupta.jerry.ds.Prioritizable;
+import com.sangupta.jerry.ds.Timestamped;
 import com.sangupta.jerry.util.AssertUtils;
 import com.sangupta.jerry.util.HashUtils;
 import com.thoughtworks.xstream.annotations.XStreamAlias;
@@ -38,7 +39,7 @@ import com.thoughtworks.xstream.annotations.XStreamAlias;
  * @since 0.1.0
  */
 @XStreamAlias("queueMessage")
-public class QueueMessage implements Comparable<QueueMessage>, Prioritizable {
+public class QueueMessage implements Comparable<QueueMessage>, Prioritizable, Timestamped {
 	
 	/**
 	 * Auto incrementing message ID that allows us to always use a unique message ID
@@ -107,6 +108,48 @@ public class QueueMessage implements Comparable<QueueMessage>, Prioritizable {
 		this.priority = new AtomicInteger(priority);
 	}
 	
+	/**
+	 * Recreate a queue message that was read back from the wire, keeping the
+	 * identifier, hash and creation time it was sent with. This is meant for
+	 * the codecs that transport messages, and not for creating new messages.
+	 * 
+	 * @param messageID
+	 *            the identifier of the message
+	 * 
+	 * @param body
+	 *            the body of the message
+	 * 
+	 * @param delaySeconds
+	 *            the delay in seconds before the message is added to the queues
+	 * 
+	 * @param priority
+	 *            the priority of the message
+	 * 
+	 * @param md5
+	 *            the MD5 hash of the body, computed again if <code>null</code>
+	 * 
+	 * @param created
+	 *            the time at which the message was created, taken as now if
+	 *            not positive
+	 */
+	public QueueMessage(long messageID, String body, int delaySeconds, int priority, String md5, long created) {
+		if(AssertUtils.isEmpty(body)) {
+			throw new IllegalArgumentException("Message body cannot be null or empty.");
+		}
+		
+		if(delaySeconds < 0) {
+			throw new IllegalArgumentException("Delay seconds cannot be less than zero.");
+		}
+		
+		this.messageID = messageID;
+		this.body = body;
+		this.delaySeconds = delaySeconds;
+		this.md5 = md5 != null ? md5 : HashUtils.getMD5Hex(body);
+		
+		this.created = created > 0 ? created : System.currentTimeMillis();
+		this.priority = new AtomicInteger(priority);
+	}
+	
 	/**
 	 * Increment the priority of this message by one. This method only increases
 	 * the priority within this object, moving it to the top of the queue is the
@@ -44,6 +44,26 @@ public class QueueOptions {
 	
 	public static final int DEFAULT_MAX_MERGED_PRIORITY = 50;
 	
+	public static final int DEFAULT_PRIORITY_AGING_SECONDS = 0;
+	
+	public static final int DEFAULT_RELAXED_SUB_QUEUES = 0;
+	
+	public static final int DEFAULT_RING_BUFFER_CAPACITY = 65536;
+	
+	public static final WaitStrategyType DEFAULT_WAIT_STRATEGY = WaitStrategyType.Park;
+	
+	public static final int DEFAULT_WAIT_SPIN_COUNT = 100;
+	
+	public static final QueueCardinality DEFAULT_CARDINALITY = QueueCardinality.MPMC;
+	
+	public static final int DEFAULT_STRIPED_LANES = 0;
+	
+	public static final long DEFAULT_FIFO_SKEW_MILLIS = -1;
+	
+	public static final int DEFAULT_MERGING_SHARDS = 0;
+	
+	public static final boolean DEFAULT_DIRECT_HAND_OFF = false;
+	
 	private final int delaySeconds;
 	
 	private final int maximumMessageSize;
@@ -58,6 +78,71 @@ public class QueueOptions {
 	
 	private final QueueType queueType;
 	
+	/**
+	 * The number of seconds a message needs to wait in a priority queue for
+	 * its effective priority to be raised by one. A value of zero disables
+	 * aging. Aging is applied to the head of each priority level, and is not
+	 * supported by the relaxed priority queue.
+	 */
+	private int priorityAgingSeconds = DEFAULT_PRIORITY_AGING_SECONDS;
+	
+	/**
+	 * The number of sub-queues to use in a relaxed priority queue. The higher
+	 * the number, the lower the contention and the higher the rank error. A
+	 * value of zero uses twice the number of available processors.
+	 */
+	private int relaxedSubQueues = DEFAULT_RELAXED_SUB_QUEUES;
+	
+	/**
+	 * The number of messages a ring buffer queue can hold. Rounded up to the
+	 * next power of two.
+	 */
+	private int ringBufferCapacity = DEFAULT_RING_BUFFER_CAPACITY;
+	
+	/**
+	 * How a thread waits when the queue is empty, or full in case of bounded
+	 * queues.
+	 */
+	private WaitStrategyType waitStrategy = DEFAULT_WAIT_STRATEGY;
+	
+	/**
+	 * The number of attempts a waiting thread spins for before yielding or
+	 * parking.
+	 */
+	private int waitSpinCount = DEFAULT_WAIT_SPIN_COUNT;
+	
+	/**
+	 * The number of producer and consumer threads that will work on the
+	 * queue. FIFO queues use specialized implementations for a single
+	 * producer and/or consumer. Messages cannot be deleted from such queues.
+	 */
+	private QueueCardinality cardinality = DEFAULT_CARDINALITY;
+	
+	/**
+	 * The number of lanes to use in a striped queue. A value of zero uses the
+	 * number of available processors.
+	 */
+	private int stripedLanes = DEFAULT_STRIPED_LANES;
+	
+	/**
+	 * The maximum time in milliseconds by which a message in a striped queue
+	 * may be overtaken by newer messages in other lanes. A negative value
+	 * serves the lanes without regard to each other.
+	 */
+	private long fifoSkewMillis = DEFAULT_FIFO_SKEW_MILLIS;
+	
+	/**
+	 * The number of shards to use in a sharded merging priority queue. A
+	 * value of zero uses the number of available processors.
+	 */
+	private int mergingShards = DEFAULT_MERGING_SHARDS;
+	
+	/**
+	 * Whether a message added while consumers are waiting on an empty queue
+	 * is handed straight to a waiting consumer, without entering the queue.
+	 */
+	private boolean directHandOff = DEFAULT_DIRECT_HAND_OFF;
+	
 	/**
 	 * Default constructor with default parameters.
 	 * 
@@ -175,4 +260,187 @@ public class QueueOptions {
 		return maxMergedPriority;
 	}
 
+	/**
+	 * @return the priorityAgingSeconds
+	 */
+	public int getPriorityAgingSeconds() {
+		return priorityAgingSeconds;
+	}
+
+	/**
+	 * @param priorityAgingSeconds
+	 *            the priorityAgingSeconds to set
+	 */
+	public void setPriorityAgingSeconds(int priorityAgingSeconds) {
+		if(priorityAgingSeconds < 0) {
+			throw new IllegalArgumentException("Priority aging seconds cannot be less than zero");
+		}
+		
+		this.priorityAgingSeconds = priorityAgingSeconds;
+	}
+
+	/**
+	 * @return the relaxedSubQueues
+	 */
+	public int getRelaxedSubQueues() {
+		return relaxedSubQueues;
+	}
+
+	/**
+	 * @param relaxedSubQueues
+	 *            the relaxedSubQueues to set
+	 */
+	public void setRelaxedSubQueues(int relaxedSubQueues) {
+		if(relaxedSubQueues < 0) {
+			throw new IllegalArgumentException("Number of relaxed sub-queues cannot be less than zero");
+		}
+		
+		this.relaxedSubQueues = relaxedSubQueues;
+	}
+
+	/**
+	 * @return the ringBufferCapacity
+	 */
+	public int getRingBufferCapacity() {
+		return ringBufferCapacity;
+	}
+
+	/**
+	 * @param ringBufferCapacity
+	 *            the ringBufferCapacity to set
+	 */
+	public void setRingBufferCapacity(int ringBufferCapacity) {
+		if(ringBufferCapacity <= 0) {
+			throw new IllegalArgumentException("Ring buffer capacity must be greater than zero");
+		}
+		
+		this.ringBufferCapacity = ringBufferCapacity;
+	}
+
+	/**
+	 * @return the waitStrategy
+	 */
+	public WaitStrategyType getWaitStrategy() {
+		return waitStrategy;
+	}
+
+	/**
+	 * @param waitStrategy
+	 *            the waitStrategy to set
+	 */
+	public void setWaitStrategy(WaitStrategyType waitStrategy) {
+		if(waitStrategy == null) {
+			throw new IllegalArgumentException("Wait strategy cannot be null");
+		}
+		
+		this.waitStrategy = waitStrategy;
+	}
+
+	/**
+	 * @return the waitSpinCount
+	 */
+	public int getWaitSpinCount() {
+		return waitSpinCount;
+	}
+
+	/**
+	 * @param waitSpinCount
+	 *            the waitSpinCount to set
+	 */
+	public void setWaitSpinCount(int waitSpinCount) {
+		if(waitSpinCount < 0) {
+			throw new IllegalArgumentException("Wait spin count cannot be less than zero");
+		}
+		
+		this.waitSpinCount = waitSpinCount;
+	}
+
+	/**
+	 * @return the cardinality
+	 */
+	public QueueCardinality getCardinality() {
+		return cardinality;
+	}
+
+	/**
+	 * @param cardinality
+	 *            the cardinality to set
+	 */
+	public void setCardinality(QueueCardinality cardinality) {
+		if(cardinality == null) {
+			throw new IllegalArgumentException("Queue cardinality cannot be null");
+		}
+		
+		this.cardinality = cardinality;
+	}
+
+	/**
+	 * @return the stripedLanes
+	 */
+	public int getStripedLanes() {
+		return stripedLanes;
+	}
+
+	/**
+	 * @param stripedLanes
+	 *            the stripedLanes to set
+	 */
+	public void setStripedLanes(int stripedLanes) {
+		if(stripedLanes < 0) {
+			throw new IllegalArgumentException("Number of striped lanes cannot be less than zero");
+		}
+		
+		this.stripedLanes = stripedLanes;
+	}
+
+	/**
+	 * @return the fifoSkewMillis
+	 */
+	public long getFifoSkewMillis() {
+		return fifoSkewMillis;
+	}
+
+	/**
+	 * @param fifoSkewMillis
+	 *            the fifoSkewMillis to set, negative to disable ordering across
+	 *            lanes
+	 */
+	public void setFifoSkewMillis(long fifoSkewMillis) {
+		this.fifoSkewMillis = fifoSkewMillis;
+	}
+
+	/**
+	 * @return the mergingShards
+	 */
+	public int getMergingShards() {
+		return mergingShards;
+	}
+
+	/**
+	 * @param mergingShards
+	 *            the mergingShards to set
+	 */
+	public void setMergingShards(int mergingShards) {
+		if(mergingShards < 0) {
+			throw new IllegalArgumentException("Number of merging shards cannot be less than zero");
+		}
+		
+		this.mergingShards = mergingShards;
+	}
+
+	/**
+	 * @return the directHandOff
+	 */
+	public boolean isDirectHandOff() {
+		return directHandOff;
+	}
+
+	/**
+	 * @param directHandOff
+	 *            the directHandOff to set
+	 */
+	public void setDirectHandOff(boolean directHandOff) {
+		this.directHandOff = directHandOff;
+	}
+
 }
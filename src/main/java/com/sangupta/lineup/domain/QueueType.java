@@ -62,7 +62,38 @@ public enum QueueType {
 	 * making sure that such a message is sent to clients for consumption
 	 * earlier than others in the queue.
 	 */
-	PriorityQueueMergingDuplicates;
+	PriorityQueueMergingDuplicates,
+	
+	/**
+	 * A queue that works as a relaxed priority queue and allows duplicates to
+	 * be inserted. The message served is one of the messages with the highest
+	 * priorities, but not necessarily the one with the highest priority. This
+	 * allows the queue to scale with a large number of consumers.
+	 */
+	RelaxedPriorityQueue,
+	
+	/**
+	 * A bounded queue that allows duplicates to be inserted and is backed by
+	 * a preallocated lock-free ring buffer. Messages are rejected when the
+	 * queue is full. Messages cannot be deleted from the middle of the queue.
+	 */
+	RingBuffer,
+	
+	/**
+	 * A queue that allows duplicates to be inserted and spreads messages over
+	 * a number of independent lanes, to scale with a large number of
+	 * producers and consumers. Messages are only approximately served in FIFO
+	 * order.
+	 */
+	StripedQueue,
+	
+	/**
+	 * A queue that works like {@link #PriorityQueueMergingDuplicates}, but
+	 * spreads messages over a number of independent shards by their body, so
+	 * that merges scale with the number of threads. The priority order is
+	 * only approximate across shards.
+	 */
+	ShardedPriorityQueue;
 
 	/**
 	 * A method to convert the string representation of queue type to an enum
@@ -102,6 +133,22 @@ public enum QueueType {
 			return PriorityQueueMergingDuplicates;
 		}
 		
+		if("RelaxedPriorityQueue".equalsIgnoreCase(queueType)) {
+			return RelaxedPriorityQueue;
+		}
+		
+		if("RingBuffer".equalsIgnoreCase(queueType)) {
+			return RingBuffer;
+		}
+		
+		if("StripedQueue".equalsIgnoreCase(queueType)) {
+			return StripedQueue;
+		}
+		
+		if("ShardedPriorityQueue".equalsIgnoreCase(queueType)) {
+			return ShardedPriorityQueue;
+		}
+		
 		throw new IllegalArgumentException("Unknown queue type specified as: " + queueType);
 	}
 
@@ -0,0 +1,56 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.domain;
+
+/**
+ * The various ways in which a thread may wait on a queue that cannot serve
+ * it right away.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public enum WaitStrategyType {
+	
+	/**
+	 * Keep spinning till the queue can serve the thread. Lowest latency, but
+	 * burns a processor for every waiting thread.
+	 */
+	BusySpin,
+	
+	/**
+	 * Spin for a number of attempts, and then yield the processor on every
+	 * further attempt.
+	 */
+	SpinThenYield,
+	
+	/**
+	 * Spin for a number of attempts, and then park till signalled.
+	 */
+	SpinThenPark,
+	
+	/**
+	 * Park right away till signalled. Waiting threads consume no processor
+	 * time.
+	 */
+	Park;
+
+}
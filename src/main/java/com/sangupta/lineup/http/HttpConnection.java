@@ -0,0 +1,271 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.http;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.Charset;
+
+import javax.net.ssl.SSLSocketFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A connection to an HTTP server, kept open across requests by its
+ * {@link HttpConnectionPool}.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+class HttpConnection {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(HttpConnection.class);
+	
+	static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+	
+	/**
+	 * The longest status or header line accepted
+	 */
+	private static final int MAX_LINE_LENGTH = 8192;
+	
+	/**
+	 * The time in milliseconds a connection must have been idle for before
+	 * it is checked for having been closed by the server, as the check may
+	 * take a millisecond
+	 */
+	private static final long CHECK_IDLE_MILLIS = 1000;
+	
+	private final Socket socket;
+	
+	private final InputStream in;
+	
+	private final OutputStream out;
+	
+	/**
+	 * The number of requests sent over the connection
+	 */
+	private int requests;
+	
+	/**
+	 * When the connection was last returned to its pool
+	 */
+	private volatile long idleSince;
+	
+	private HttpConnection(Socket socket) throws IOException {
+		this.socket = socket;
+		this.in = new BufferedInputStream(socket.getInputStream(), 8192);
+		this.out = new BufferedOutputStream(socket.getOutputStream(), 8192);
+	}
+	
+	/**
+	 * Open a connection to the given server.
+	 * 
+	 * @param host
+	 *            the host of the server
+	 * 
+	 * @param port
+	 *            the port of the server
+	 * 
+	 * @param secure
+	 *            whether to connect over TLS
+	 * 
+	 * @param connectTimeoutMillis
+	 *            the time to wait for the connection to be made
+	 * 
+	 * @return the connection
+	 * 
+	 * @throws IOException
+	 *             if the connection cannot be made
+	 */
+	static HttpConnection open(String host, int port, boolean secure, int connectTimeoutMillis) throws IOException {
+		Socket socket = secure ? SSLSocketFactory.getDefault().createSocket() : new Socket();
+		try {
+			socket.setTcpNoDelay(true);
+			socket.setKeepAlive(true);
+			socket.connect(new InetSocketAddress(host, port), connectTimeoutMillis);
+			return new HttpConnection(socket);
+		} catch(IOException e) {
+			socket.close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Write a request.
+	 * 
+	 * @param head
+	 *            the request line and headers
+	 * 
+	 * @param body
+	 *            the body, or <code>null</code> for none
+	 * 
+	 * @throws IOException
+	 *             if the request cannot be written
+	 */
+	void write(byte[] head, byte[] body) throws IOException {
+		this.requests++;
+		this.out.write(head);
+		if(body != null) {
+			this.out.write(body);
+		}
+		
+		this.out.flush();
+	}
+	
+	/**
+	 * Read a line of the response head, without its line ending.
+	 * 
+	 * @return the line, or <code>null</code> if the stream ended before it
+	 * 
+	 * @throws IOException
+	 *             if the line cannot be read
+	 */
+	String readLine() throws IOException {
+		StringBuilder line = new StringBuilder(64);
+		int read;
+		while((read = this.in.read()) != '\n') {
+			if(read < 0) {
+				if(line.length() == 0) {
+					return null;
+				}
+				
+				throw new EOFException("Response ended within a line");
+			}
+			
+			if(line.length() >= MAX_LINE_LENGTH) {
+				throw new IOException("Response line is too long");
+			}
+			
+			line.append((char) read);
+		}
+		
+		int length = line.length();
+		if(length > 0 && line.charAt(length - 1) == '\r') {
+			line.setLength(length - 1);
+		}
+		
+		return line.toString();
+	}
+	
+	/**
+	 * Set the time to wait for the server to respond.
+	 * 
+	 * @param timeoutMillis
+	 *            the time in milliseconds, <code>0</code> to wait forever
+	 * 
+	 * @throws SocketException
+	 *             if the timeout cannot be set
+	 */
+	void setTimeout(int timeoutMillis) throws SocketException {
+		this.socket.setSoTimeout(timeoutMillis);
+	}
+	
+	/**
+	 * Mark the connection as idle from now on.
+	 * 
+	 */
+	void markIdle() {
+		this.idleSince = System.currentTimeMillis();
+	}
+	
+	/**
+	 * Return whether the connection has been idle for longer than given.
+	 * 
+	 * @param now
+	 *            the current time in milliseconds
+	 * 
+	 * @param keepAliveMillis
+	 *            the longest a connection may be idle for
+	 * 
+	 * @return <code>true</code> if expired
+	 */
+	boolean isExpired(long now, long keepAliveMillis) {
+		return now - this.idleSince > keepAliveMillis;
+	}
+	
+	/**
+	 * Return whether the connection has carried a request already, in which
+	 * case the server may have closed it since.
+	 * 
+	 * @return <code>true</code> if reused
+	 */
+	boolean isReused() {
+		return this.requests > 0;
+	}
+	
+	boolean isOpen() {
+		return !this.socket.isClosed();
+	}
+	
+	/**
+	 * Return whether the server has closed the connection while it was idle
+	 * for long enough to check, or has sent something unasked for.
+	 * 
+	 * @param now
+	 *            the current time in milliseconds
+	 * 
+	 * @return <code>true</code> if the connection cannot carry a request
+	 */
+	boolean isClosedByServer(long now) {
+		if(now - this.idleSince < CHECK_IDLE_MILLIS) {
+			return false;
+		}
+		
+		try {
+			if(this.in.available() > 0) {
+				return true;
+			}
+			
+			// there is nothing to read on an open connection, so this times
+			// out, while the end of the stream or any byte means it is unusable
+			this.socket.setSoTimeout(1);
+			this.in.read();
+			return true;
+		} catch(SocketTimeoutException e) {
+			return false;
+		} catch(IOException e) {
+			return true;
+		}
+	}
+	
+	InputStream getInputStream() {
+		return this.in;
+	}
+	
+	void close() {
+		try {
+			this.socket.close();
+		} catch(IOException e) {
+			LOGGER.debug("Unable to close connection", e);
+		}
+	}
+
+}
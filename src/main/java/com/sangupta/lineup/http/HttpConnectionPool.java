@@ -0,0 +1,312 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of keep-alive connections to a single HTTP server. No more
+ * than the maximum number of connections are ever in use at once, and a
+ * request waits for one to be handed back, up to a limit, when all are busy.
+ * 
+ * Idle connections are reused most recently used first, so that the ones
+ * not needed under the current load age out, and are closed once idle for
+ * longer than the keep-alive time.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public class HttpConnectionPool implements Closeable {
+	
+	private final String host;
+	
+	private final int port;
+	
+	private final boolean secure;
+	
+	private final int maxConnections;
+	
+	private final long keepAliveMillis;
+	
+	private final long maxWaitMillis;
+	
+	private final int connectTimeoutMillis;
+	
+	/**
+	 * One permit for each connection that may be in use
+	 */
+	private final Semaphore permits;
+	
+	/**
+	 * The idle connections, most recently used first
+	 */
+	private final LinkedBlockingDeque<HttpConnection> idle = new LinkedBlockingDeque<HttpConnection>();
+	
+	private final AtomicInteger active = new AtomicInteger();
+	
+	private final AtomicLong created = new AtomicLong();
+	
+	private final AtomicLong reused = new AtomicLong();
+	
+	private final AtomicLong acquisitions = new AtomicLong();
+	
+	private final AtomicLong timeouts = new AtomicLong();
+	
+	private final AtomicLong totalWaitNanos = new AtomicLong();
+	
+	private final AtomicLong maxWaitNanos = new AtomicLong();
+	
+	private volatile boolean closed;
+	
+	/**
+	 * Create a pool of connections to the given server.
+	 * 
+	 * @param host
+	 *            the host of the server
+	 * 
+	 * @param port
+	 *            the port of the server
+	 * 
+	 * @param secure
+	 *            whether to connect over TLS
+	 * 
+	 * @param maxConnections
+	 *            the most connections in use at once
+	 * 
+	 * @param keepAliveMillis
+	 *            the longest a connection is kept idle for, <code>0</code> to
+	 *            never reuse connections
+	 * 
+	 * @param maxWaitMillis
+	 *            the longest to wait for a connection when all are in use
+	 * 
+	 * @param connectTimeoutMillis
+	 *            the longest to wait for a new connection to be made
+	 */
+	public HttpConnectionPool(String host, int port, boolean secure, int maxConnections, long keepAliveMillis, long maxWaitMillis, int connectTimeoutMillis) {
+		if(host == null) {
+			throw new IllegalArgumentException("Host cannot be null");
+		}
+		
+		if(maxConnections < 1) {
+			throw new IllegalArgumentException("Maximum number of connections must be at least one");
+		}
+		
+		if(keepAliveMillis < 0 || maxWaitMillis < 0 || connectTimeoutMillis < 0) {
+			throw new IllegalArgumentException("Times cannot be negative");
+		}
+		
+		this.host = host;
+		this.port = port;
+		this.secure = secure;
+		this.maxConnections = maxConnections;
+		this.keepAliveMillis = keepAliveMillis;
+		this.maxWaitMillis = maxWaitMillis;
+		this.connectTimeoutMillis = connectTimeoutMillis;
+		this.permits = new Semaphore(maxConnections);
+	}
+	
+	/**
+	 * Take a connection, an idle one if any, or else a new one.
+	 * 
+	 * @return the connection, to be handed back with
+	 *         {@link #release(HttpConnection, boolean)}
+	 * 
+	 * @throws IOException
+	 *             if no connection was handed back in time, or a new one
+	 *             cannot be made
+	 */
+	HttpConnection acquire() throws IOException {
+		if(this.closed) {
+			throw new IOException("Connection pool has been closed");
+		}
+		
+		final long start = System.nanoTime();
+		boolean acquired = this.permits.tryAcquire();
+		if(!acquired) {
+			try {
+				acquired = this.permits.tryAcquire(this.maxWaitMillis, TimeUnit.MILLISECONDS);
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted waiting for a connection");
+			}
+		}
+		
+		this.recordWait(System.nanoTime() - start);
+		if(!acquired) {
+			this.timeouts.incrementAndGet();
+			throw new IOException("Timed out after " + this.maxWaitMillis + " ms waiting for a connection to " + this.host + ":" + this.port);
+		}
+		
+		this.active.incrementAndGet();
+		boolean success = false;
+		try {
+			HttpConnection connection;
+			final long now = System.currentTimeMillis();
+			while((connection = this.idle.pollFirst()) != null) {
+				if(connection.isOpen() && !connection.isExpired(now, this.keepAliveMillis) && !connection.isClosedByServer(now)) {
+					this.reused.incrementAndGet();
+					success = true;
+					return connection;
+				}
+				
+				connection.close();
+			}
+			
+			connection = HttpConnection.open(this.host, this.port, this.secure, this.connectTimeoutMillis);
+			this.created.incrementAndGet();
+			success = true;
+			return connection;
+		} finally {
+			if(!success) {
+				this.active.decrementAndGet();
+				this.permits.release();
+			}
+		}
+	}
+	
+	/**
+	 * Hand back a connection taken from the pool.
+	 * 
+	 * @param connection
+	 *            the connection
+	 * 
+	 * @param reusable
+	 *            whether the connection can carry another request
+	 */
+	void release(HttpConnection connection, boolean reusable) {
+		if(reusable && !this.closed && this.keepAliveMillis > 0 && this.idle.size() < this.maxConnections) {
+			connection.markIdle();
+			this.idle.offerFirst(connection);
+		} else {
+			connection.close();
+		}
+		
+		this.evictExpired();
+		
+		this.active.decrementAndGet();
+		this.permits.release();
+	}
+	
+	/**
+	 * Close the connections that have been idle for too long, which are the
+	 * last ones in the queue.
+	 * 
+	 */
+	private void evictExpired() {
+		final long now = System.currentTimeMillis();
+		HttpConnection connection;
+		while((connection = this.idle.peekLast()) != null && connection.isExpired(now, this.keepAliveMillis)) {
+			if(this.idle.removeLastOccurrence(connection)) {
+				connection.close();
+			}
+		}
+	}
+	
+	/**
+	 * Add to the time spent waiting for connections.
+	 * 
+	 * @param nanos
+	 *            the time waited in nanoseconds
+	 */
+	private void recordWait(long nanos) {
+		this.acquisitions.incrementAndGet();
+		this.totalWaitNanos.addAndGet(nanos);
+		
+		long max;
+		while(nanos > (max = this.maxWaitNanos.get())) {
+			if(this.maxWaitNanos.compareAndSet(max, nanos)) {
+				break;
+			}
+		}
+	}
+	
+	/**
+	 * Return a snapshot of the use of the pool.
+	 * 
+	 * @return the metrics
+	 */
+	public PoolMetrics getMetrics() {
+		return new PoolMetrics(this.active.get(), this.idle.size(), this.created.get(), this.reused.get(), this.acquisitions.get(), this.timeouts.get(), this.totalWaitNanos.get(), this.maxWaitNanos.get());
+	}
+	
+	/**
+	 * Close all idle connections, and those in use as they are handed back.
+	 * 
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() {
+		this.closed = true;
+		
+		HttpConnection connection;
+		while((connection = this.idle.pollFirst()) != null) {
+			connection.close();
+		}
+	}
+	
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return (this.secure ? "https://" : "http://") + this.host + ":" + this.port + " " + this.getMetrics();
+	}
+	
+	// Usual accessors follow
+
+	/**
+	 * @return the host
+	 */
+	public String getHost() {
+		return host;
+	}
+
+	/**
+	 * @return the port
+	 */
+	public int getPort() {
+		return port;
+	}
+
+	/**
+	 * @return the maxConnections
+	 */
+	public int getMaxConnections() {
+		return maxConnections;
+	}
+
+	/**
+	 * @return the keepAliveMillis
+	 */
+	public long getKeepAliveMillis() {
+		return keepAliveMillis;
+	}
+
+}
@@ -0,0 +1,154 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.http;
+
+import java.io.Closeable;
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * A response from an HTTP server, holding on to the connection it came over
+ * until closed. Closing either the response or its body hands the connection
+ * back to its pool.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public class HttpResponse implements Closeable {
+	
+	private final HttpConnectionPool pool;
+	
+	private final HttpConnection connection;
+	
+	private final int status;
+	
+	private final String reason;
+	
+	/**
+	 * The headers, by their lower-cased names
+	 */
+	private final Map<String, String> headers;
+	
+	/**
+	 * Whether the connection may be kept once the body has been read
+	 */
+	private final boolean keepAlive;
+	
+	private final ResponseBody body;
+	
+	private boolean released;
+	
+	HttpResponse(HttpConnectionPool pool, HttpConnection connection, int status, String reason, Map<String, String> headers, boolean keepAlive, int bodyMode, long length) {
+		this.pool = pool;
+		this.connection = connection;
+		this.status = status;
+		this.reason = reason;
+		this.headers = headers;
+		this.keepAlive = keepAlive;
+		this.body = new ResponseBody(this, connection.getInputStream(), bodyMode, length);
+	}
+	
+	/**
+	 * Return whether the server responded with a <code>2xx</code> status.
+	 * 
+	 * @return <code>true</code> if successful
+	 */
+	public boolean isSuccess() {
+		return this.status >= 200 && this.status < 300;
+	}
+	
+	/**
+	 * Return the value of the given header.
+	 * 
+	 * @param name
+	 *            the name of the header, in any case
+	 * 
+	 * @return the value, or <code>null</code> if not present
+	 */
+	public String getHeader(String name) {
+		return this.headers.get(name.toLowerCase());
+	}
+	
+	/**
+	 * Return the body of the response, which must be closed once done with.
+	 * 
+	 * @return the body
+	 */
+	public InputStream getBody() {
+		return this.body;
+	}
+	
+	/**
+	 * Close the response, reading and discarding what is left of a short
+	 * body.
+	 * 
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() {
+		this.body.close();
+	}
+	
+	/**
+	 * Hand the connection back to its pool.
+	 * 
+	 * @param complete
+	 *            whether the body has been read to its end
+	 */
+	synchronized void release(boolean complete) {
+		if(this.released) {
+			return;
+		}
+		
+		this.released = true;
+		this.pool.release(this.connection, this.keepAlive && complete);
+	}
+	
+	HttpConnection getConnection() {
+		return this.connection;
+	}
+	
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return this.status + " " + this.reason;
+	}
+	
+	// Usual accessors follow
+
+	/**
+	 * @return the status
+	 */
+	public int getStatus() {
+		return status;
+	}
+
+	/**
+	 * @return the reason
+	 */
+	public String getReason() {
+		return reason;
+	}
+
+}
@@ -0,0 +1,505 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A minimal HTTP/1.1 client for talking to LineUp servers, which keeps a
+ * bounded pool of keep-alive connections to each server, so that requests
+ * neither pay for setting up a connection nor leave sockets behind in
+ * <code>TIME_WAIT</code>.
+ * 
+ * Requests the server is asked to wait on, such as long-polls, hold their
+ * connection for as long as the server waits. They are sent over a pool of
+ * their own, with its own bound, so that idle long-polls never hold up the
+ * short requests that add and delete messages.
+ * 
+ * Every request has a timeout: the request timeout of the client, plus the
+ * time the server is asked to wait for messages, for long-polls.
+ * 
+ * A connection that was idle for a while is checked before reuse, as the
+ * server may have closed it meanwhile. A request that still fails on a
+ * reused connection is retried once on a new connection, but only if it
+ * could not be written, or is safe to repeat: the server may have acted on a
+ * request it was sent in full, and adding or reading a message twice would
+ * duplicate or lose it.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public class LineUpHttpClient implements Closeable {
+	
+	/**
+	 * The default most connections in use to a server at once
+	 */
+	public static final int DEFAULT_MAX_CONNECTIONS = 20;
+	
+	/**
+	 * The default most connections in use to a server at once by requests
+	 * the server waits on
+	 */
+	public static final int DEFAULT_MAX_WAITING_CONNECTIONS = 100;
+	
+	/**
+	 * The default longest a connection is kept idle for
+	 */
+	public static final long DEFAULT_KEEP_ALIVE_MILLIS = 30000;
+	
+	/**
+	 * The default longest to wait for a connection when all are in use
+	 */
+	public static final long DEFAULT_MAX_WAIT_MILLIS = 10000;
+	
+	/**
+	 * The default longest to wait for a new connection to be made
+	 */
+	public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 5000;
+	
+	/**
+	 * The default longest to wait for a response, besides any long-poll
+	 */
+	public static final int DEFAULT_REQUEST_TIMEOUT_MILLIS = 30000;
+	
+	/**
+	 * Lazily creates the client shared by default.
+	 * 
+	 */
+	private static class DefaultClient {
+		
+		static final LineUpHttpClient CLIENT = new LineUpHttpClient();
+		
+	}
+	
+	private final int maxConnections;
+	
+	private final int maxWaitingConnections;
+	
+	private final long keepAliveMillis;
+	
+	private final long maxWaitMillis;
+	
+	private volatile int connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MILLIS;
+	
+	private volatile int requestTimeoutMillis = DEFAULT_REQUEST_TIMEOUT_MILLIS;
+	
+	/**
+	 * The pools, by the scheme, host and port of their server
+	 */
+	private final ConcurrentMap<String, HttpConnectionPool> pools = new ConcurrentHashMap<String, HttpConnectionPool>();
+	
+	/**
+	 * The pools for requests the server waits on, by the scheme, host and
+	 * port of their server
+	 */
+	private final ConcurrentMap<String, HttpConnectionPool> waitingPools = new ConcurrentHashMap<String, HttpConnectionPool>();
+	
+	/**
+	 * Create a client with the default limits.
+	 * 
+	 */
+	public LineUpHttpClient() {
+		this(DEFAULT_MAX_CONNECTIONS, DEFAULT_MAX_WAITING_CONNECTIONS, DEFAULT_KEEP_ALIVE_MILLIS, DEFAULT_MAX_WAIT_MILLIS);
+	}
+	
+	/**
+	 * Create a client with the given limits on the connections to each
+	 * server, and the default limit for requests the server waits on.
+	 * 
+	 * @param maxConnections
+	 *            the most connections in use to a server at once
+	 * 
+	 * @param keepAliveMillis
+	 *            the longest a connection is kept idle for, <code>0</code> to
+	 *            make a new connection for every request
+	 * 
+	 * @param maxWaitMillis
+	 *            the longest to wait for a connection when all are in use
+	 */
+	public LineUpHttpClient(int maxConnections, long keepAliveMillis, long maxWaitMillis) {
+		this(maxConnections, DEFAULT_MAX_WAITING_CONNECTIONS, keepAliveMillis, maxWaitMillis);
+	}
+	
+	/**
+	 * Create a client with the given limits on the connections to each
+	 * server.
+	 * 
+	 * @param maxConnections
+	 *            the most connections in use to a server at once by requests
+	 *            the server responds to right away
+	 * 
+	 * @param maxWaitingConnections
+	 *            the most connections in use to a server at once by requests
+	 *            the server waits on
+	 * 
+	 * @param keepAliveMillis
+	 *            the longest a connection is kept idle for, <code>0</code> to
+	 *            make a new connection for every request
+	 * 
+	 * @param maxWaitMillis
+	 *            the longest to wait for a connection when all are in use
+	 */
+	public LineUpHttpClient(int maxConnections, int maxWaitingConnections, long keepAliveMillis, long maxWaitMillis) {
+		if(maxConnections < 1 || maxWaitingConnections < 1) {
+			throw new IllegalArgumentException("Maximum number of connections must be at least one");
+		}
+		
+		if(keepAliveMillis < 0 || maxWaitMillis < 0) {
+			throw new IllegalArgumentException("Times cannot be negative");
+		}
+		
+		this.maxConnections = maxConnections;
+		this.maxWaitingConnections = maxWaitingConnections;
+		this.keepAliveMillis = keepAliveMillis;
+		this.maxWaitMillis = maxWaitMillis;
+	}
+	
+	/**
+	 * Return the client shared by all remote queues unless given their own.
+	 * 
+	 * @return the shared client
+	 */
+	public static LineUpHttpClient getDefault() {
+		return DefaultClient.CLIENT;
+	}
+	
+	/**
+	 * Send a request and read the head of its response. The response must be
+	 * closed once done with, to hand its connection back to the pool.
+	 * 
+	 * @param method
+	 *            the HTTP method
+	 * 
+	 * @param url
+	 *            the URL to send the request to
+	 * 
+	 * @param contentType
+	 *            the media type of the body
+	 * 
+	 * @param body
+	 *            the body, or <code>null</code> for none
+	 * 
+	 * @param accept
+	 *            the media type of the response, or <code>null</code> for any
+	 * 
+	 * @param waitMillis
+	 *            the time the server is asked to wait before responding, which
+	 *            is added to the request timeout, and which sends the request
+	 *            over the pool for requests the server waits on if positive
+	 * 
+	 * @return the response
+	 * 
+	 * @throws IOException
+	 *             if the request fails or times out
+	 */
+	public HttpResponse execute(String method, String url, String contentType, byte[] body, String accept, long waitMillis) throws IOException {
+		final URL target = new URL(url);
+		final HttpConnectionPool pool = waitMillis > 0 ? this.getWaitingPool(target) : this.getPool(target);
+		final byte[] head = this.getRequestHead(method, target, contentType, body, accept);
+		final int requestTimeout = this.requestTimeoutMillis;
+		final int timeout = requestTimeout == 0 ? 0 : (int) Math.min(Integer.MAX_VALUE, requestTimeout + Math.max(0, waitMillis));
+		
+		for(int attempt = 0; ; attempt++) {
+			HttpConnection connection = pool.acquire();
+			boolean retry = attempt == 0 && connection.isReused();
+			try {
+				connection.setTimeout(timeout);
+				connection.write(head, body);
+				
+				// the server may act on the request from now on
+				retry = retry && isRepeatable(method);
+				
+				String statusLine = connection.readLine();
+				if(statusLine == null) {
+					throw new IOException("Server closed the connection");
+				}
+				
+				// no retries once the server has responded
+				retry = false;
+				return this.readResponse(pool, connection, method, statusLine);
+			} catch(IOException e) {
+				pool.release(connection, false);
+				if(!retry || e instanceof InterruptedIOException) {
+					throw e;
+				}
+			} catch(RuntimeException e) {
+				pool.release(connection, false);
+				throw e;
+			}
+		}
+	}
+	
+	/**
+	 * Return whether a request with the given method may be sent again after
+	 * the server may have acted on it. Reads from queues take messages out,
+	 * so only methods that never change anything qualify.
+	 * 
+	 * @param method
+	 *            the HTTP method
+	 * 
+	 * @return <code>true</code> if the request is safe to repeat
+	 */
+	private static boolean isRepeatable(String method) {
+		return "HEAD".equals(method) || "OPTIONS".equals(method);
+	}
+	
+	/**
+	 * Read the head of a response.
+	 * 
+	 * @return the response
+	 * 
+	 * @throws IOException
+	 *             if the head is not valid
+	 */
+	private HttpResponse readResponse(HttpConnectionPool pool, HttpConnection connection, String method, String statusLine) throws IOException {
+		String[] tokens = statusLine.split(" ", 3);
+		if(tokens.length < 2 || !tokens[0].startsWith("HTTP/")) {
+			throw new IOException("Invalid status line: " + statusLine);
+		}
+		
+		int status;
+		try {
+			status = Integer.parseInt(tokens[1]);
+		} catch(NumberFormatException e) {
+			throw new IOException("Invalid status line: " + statusLine);
+		}
+		
+		Map<String, String> headers = new HashMap<String, String>();
+		String line;
+		while((line = connection.readLine()) != null && line.length() > 0) {
+			int colon = line.indexOf(':');
+			if(colon > 0) {
+				headers.put(line.substring(0, colon).trim().toLowerCase(), line.substring(colon + 1).trim());
+			}
+		}
+		
+		if(line == null) {
+			throw new IOException("Response ended within its head");
+		}
+		
+		String connectionHeader = headers.get("connection");
+		boolean keepAlive;
+		if(tokens[0].equals("HTTP/1.0")) {
+			keepAlive = "keep-alive".equalsIgnoreCase(connectionHeader);
+		} else {
+			keepAlive = !"close".equalsIgnoreCase(connectionHeader);
+		}
+		
+		String transferEncoding = headers.get("transfer-encoding");
+		String contentLength = headers.get("content-length");
+		
+		if("HEAD".equals(method) || status == 204 || status == 304 || status < 200) {
+			return new HttpResponse(pool, connection, status, tokens.length > 2 ? tokens[2] : "", headers, keepAlive, ResponseBody.LENGTH, 0);
+		}
+		
+		if(transferEncoding != null && transferEncoding.toLowerCase().contains("chunked")) {
+			return new HttpResponse(pool, connection, status, tokens.length > 2 ? tokens[2] : "", headers, keepAlive, ResponseBody.CHUNKED, -1);
+		}
+		
+		if(contentLength != null) {
+			long length;
+			try {
+				length = Long.parseLong(contentLength);
+			} catch(NumberFormatException e) {
+				throw new IOException("Invalid content length: " + contentLength);
+			}
+			
+			return new HttpResponse(pool, connection, status, tokens.length > 2 ? tokens[2] : "", headers, keepAlive, ResponseBody.LENGTH, length);
+		}
+		
+		// the body ends with the connection
+		return new HttpResponse(pool, connection, status, tokens.length > 2 ? tokens[2] : "", headers, false, ResponseBody.UNTIL_CLOSE, -1);
+	}
+	
+	/**
+	 * Build the request line and headers.
+	 * 
+	 * @return the encoded request head
+	 */
+	private byte[] getRequestHead(String method, URL url, String contentType, byte[] body, String accept) {
+		String path = url.getFile();
+		
+		StringBuilder head = new StringBuilder(256);
+		head.append(method).append(' ').append(path.length() == 0 ? "/" : path).append(" HTTP/1.1\r\n");
+		head.append("Host: ").append(url.getHost());
+		if(url.getPort() != -1) {
+			head.append(':').append(url.getPort());
+		}
+		head.append("\r\n");
+		
+		if(accept != null) {
+			head.append("Accept: ").append(accept).append("\r\n");
+		}
+		
+		if(body != null) {
+			if(contentType != null) {
+				head.append("Content-Type: ").append(contentType).append("\r\n");
+			}
+			
+			head.append("Content-Length: ").append(body.length).append("\r\n");
+		} else if("POST".equals(method) || "PUT".equals(method)) {
+			head.append("Content-Length: 0\r\n");
+		}
+		
+		if(this.keepAliveMillis == 0) {
+			head.append("Connection: close\r\n");
+		}
+		
+		head.append("\r\n");
+		return head.toString().getBytes(HttpConnection.ISO_8859_1);
+	}
+	
+	/**
+	 * Return the pool of connections to the server of the given URL, for
+	 * requests the server responds to right away.
+	 * 
+	 * @param url
+	 *            the URL
+	 * 
+	 * @return the pool
+	 */
+	public HttpConnectionPool getPool(URL url) {
+		return this.getPool(this.pools, url, this.maxConnections);
+	}
+	
+	/**
+	 * Return the pool of connections to the server of the given URL, for
+	 * requests the server waits on.
+	 * 
+	 * @param url
+	 *            the URL
+	 * 
+	 * @return the pool
+	 */
+	public HttpConnectionPool getWaitingPool(URL url) {
+		return this.getPool(this.waitingPools, url, this.maxWaitingConnections);
+	}
+	
+	/**
+	 * Return the pool of connections to the server of the given URL from the
+	 * given pools, creating it if need be.
+	 * 
+	 * @param pools
+	 *            the pools, by server
+	 * 
+	 * @param url
+	 *            the URL
+	 * 
+	 * @param maxConnections
+	 *            the most connections in use at once for a new pool
+	 * 
+	 * @return the pool
+	 */
+	private HttpConnectionPool getPool(ConcurrentMap<String, HttpConnectionPool> pools, URL url, int maxConnections) {
+		final String protocol = url.getProtocol();
+		if(!"http".equals(protocol) && !"https".equals(protocol)) {
+			throw new IllegalArgumentException("Unsupported protocol: " + protocol);
+		}
+		
+		final boolean secure = "https".equals(protocol);
+		final int port = url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+		final String key = protocol + "://" + url.getHost() + ":" + port;
+		
+		HttpConnectionPool pool = pools.get(key);
+		if(pool != null) {
+			return pool;
+		}
+		
+		pool = new HttpConnectionPool(url.getHost(), port, secure, maxConnections, this.keepAliveMillis, this.maxWaitMillis, this.connectTimeoutMillis);
+		HttpConnectionPool existing = pools.putIfAbsent(key, pool);
+		return existing != null ? existing : pool;
+	}
+	
+	/**
+	 * Close all connections of all pools.
+	 * 
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() {
+		for(HttpConnectionPool pool : this.pools.values()) {
+			pool.close();
+		}
+		
+		for(HttpConnectionPool pool : this.waitingPools.values()) {
+			pool.close();
+		}
+		
+		this.pools.clear();
+		this.waitingPools.clear();
+	}
+	
+	// Usual accessors follow
+
+	/**
+	 * @return the connectTimeoutMillis
+	 */
+	public int getConnectTimeoutMillis() {
+		return connectTimeoutMillis;
+	}
+
+	/**
+	 * Set the longest to wait for a new connection to be made, for pools
+	 * created from now on.
+	 * 
+	 * @param connectTimeoutMillis
+	 *            the connectTimeoutMillis to set
+	 */
+	public void setConnectTimeoutMillis(int connectTimeoutMillis) {
+		if(connectTimeoutMillis < 0) {
+			throw new IllegalArgumentException("Connect timeout cannot be negative");
+		}
+		
+		this.connectTimeoutMillis = connectTimeoutMillis;
+	}
+
+	/**
+	 * @return the requestTimeoutMillis
+	 */
+	public int getRequestTimeoutMillis() {
+		return requestTimeoutMillis;
+	}
+
+	/**
+	 * Set the longest to wait for a response, besides the time the server is
+	 * asked to wait for messages.
+	 * 
+	 * @param requestTimeoutMillis
+	 *            the requestTimeoutMillis to set, <code>0</code> to wait
+	 *            forever
+	 */
+	public void setRequestTimeoutMillis(int requestTimeoutMillis) {
+		if(requestTimeoutMillis < 0) {
+			throw new IllegalArgumentException("Request timeout cannot be negative");
+		}
+		
+		this.requestTimeoutMillis = requestTimeoutMillis;
+	}
+
+}
@@ -0,0 +1,184 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.http;
+
+/**
+ * A snapshot of the use of an {@link HttpConnectionPool}.
+ * 
+ * The wait time is the time requests spent waiting for a connection to be
+ * free, which stays near zero unless the pool is too small for the load.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public class PoolMetrics {
+	
+	/**
+	 * Number of connections in use
+	 */
+	private final int active;
+	
+	/**
+	 * Number of connections kept open for reuse
+	 */
+	private final int idle;
+	
+	/**
+	 * Number of connections made
+	 */
+	private final long created;
+	
+	/**
+	 * Number of times an idle connection was reused
+	 */
+	private final long reused;
+	
+	/**
+	 * Number of times a connection was asked for
+	 */
+	private final long acquisitions;
+	
+	/**
+	 * Number of times no connection was free in time
+	 */
+	private final long timeouts;
+	
+	/**
+	 * Total time spent waiting for connections, in nanoseconds
+	 */
+	private final long totalWaitNanos;
+	
+	/**
+	 * Longest time spent waiting for a connection, in nanoseconds
+	 */
+	private final long maxWaitNanos;
+	
+	/**
+	 * Create a new snapshot.
+	 * 
+	 */
+	PoolMetrics(int active, int idle, long created, long reused, long acquisitions, long timeouts, long totalWaitNanos, long maxWaitNanos) {
+		this.active = active;
+		this.idle = idle;
+		this.created = created;
+		this.reused = reused;
+		this.acquisitions = acquisitions;
+		this.timeouts = timeouts;
+		this.totalWaitNanos = totalWaitNanos;
+		this.maxWaitNanos = maxWaitNanos;
+	}
+	
+	/**
+	 * Return the average time spent waiting for a connection.
+	 * 
+	 * @return the average wait in nanoseconds
+	 */
+	public long getAverageWaitNanos() {
+		if(this.acquisitions == 0) {
+			return 0;
+		}
+		
+		return this.totalWaitNanos / this.acquisitions;
+	}
+	
+	/**
+	 * Return the fraction of requests that reused a connection rather than
+	 * make a new one.
+	 * 
+	 * @return the reuse ratio between <code>0</code> and <code>1</code>
+	 */
+	public double getReuseRatio() {
+		long total = this.created + this.reused;
+		if(total == 0) {
+			return 0;
+		}
+		
+		return this.reused / (double) total;
+	}
+	
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "[active=" + this.active + ", idle=" + this.idle + ", created=" + this.created + ", reused=" + this.reused + ", timeouts=" + this.timeouts + ", wait=" + getAverageWaitNanos() + "ns avg/" + this.maxWaitNanos + "ns max]";
+	}
+
+	// Usual accessors follow
+
+	/**
+	 * @return the active
+	 */
+	public int getActive() {
+		return active;
+	}
+
+	/**
+	 * @return the idle
+	 */
+	public int getIdle() {
+		return idle;
+	}
+
+	/**
+	 * @return the created
+	 */
+	public long getCreated() {
+		return created;
+	}
+
+	/**
+	 * @return the reused
+	 */
+	public long getReused() {
+		return reused;
+	}
+
+	/**
+	 * @return the acquisitions
+	 */
+	public long getAcquisitions() {
+		return acquisitions;
+	}
+
+	/**
+	 * @return the timeouts
+	 */
+	public long getTimeouts() {
+		return timeouts;
+	}
+
+	/**
+	 * @return the totalWaitNanos
+	 */
+	public long getTotalWaitNanos() {
+		return totalWaitNanos;
+	}
+
+	/**
+	 * @return the maxWaitNanos
+	 */
+	public long getMaxWaitNanos() {
+		return maxWaitNanos;
+	}
+
+}
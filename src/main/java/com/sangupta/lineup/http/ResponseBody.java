@@ -0,0 +1,249 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.http;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The body of a response, delimited by its length, by chunks, or by the end
+ * of the connection. Closing the body hands the connection back to its pool,
+ * after reading what is left of a short body, so that it can be reused.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+class ResponseBody extends InputStream {
+	
+	static final int LENGTH = 0;
+	
+	static final int CHUNKED = 1;
+	
+	static final int UNTIL_CLOSE = 2;
+	
+	/**
+	 * The most left unread in a body that is read and discarded on close, to
+	 * keep the connection
+	 */
+	private static final int MAX_DRAIN_BYTES = 64 * 1024;
+	
+	private final HttpResponse response;
+	
+	private final InputStream in;
+	
+	private final int mode;
+	
+	/**
+	 * The bytes left in the body or current chunk, <code>-1</code> before
+	 * the first chunk
+	 */
+	private long remaining;
+	
+	private boolean complete;
+	
+	private boolean closed;
+	
+	ResponseBody(HttpResponse response, InputStream in, int mode, long length) {
+		this.response = response;
+		this.in = in;
+		this.mode = mode;
+		this.remaining = mode == CHUNKED ? -1 : length;
+		this.complete = mode == LENGTH && length == 0;
+	}
+	
+	/**
+	 * @see java.io.InputStream#read()
+	 */
+	@Override
+	public int read() throws IOException {
+		byte[] single = new byte[1];
+		int read = this.read(single, 0, 1);
+		return read < 0 ? -1 : single[0] & 0xff;
+	}
+	
+	/**
+	 * @see java.io.InputStream#read(byte[], int, int)
+	 */
+	@Override
+	public int read(byte[] buffer, int offset, int length) throws IOException {
+		if(this.closed) {
+			throw new IOException("Response body has been closed");
+		}
+		
+		if(this.complete) {
+			return -1;
+		}
+		
+		if(length == 0) {
+			return 0;
+		}
+		
+		if(this.mode == UNTIL_CLOSE) {
+			int read = this.in.read(buffer, offset, length);
+			if(read < 0) {
+				this.complete = true;
+			}
+			
+			return read;
+		}
+		
+		if(this.mode == CHUNKED && this.remaining <= 0 && !this.nextChunk()) {
+			return -1;
+		}
+		
+		int read = this.in.read(buffer, offset, (int) Math.min(length, this.remaining));
+		if(read < 0) {
+			throw new EOFException("Response body ended early");
+		}
+		
+		this.remaining -= read;
+		if(this.mode == LENGTH && this.remaining == 0) {
+			this.complete = true;
+		}
+		
+		return read;
+	}
+	
+	/**
+	 * Move on to the next chunk.
+	 * 
+	 * @return <code>false</code> if the body has ended
+	 * 
+	 * @throws IOException
+	 *             if the chunk cannot be read
+	 */
+	private boolean nextChunk() throws IOException {
+		HttpConnection connection = this.response.getConnection();
+		if(this.remaining == 0) {
+			// the line ending after the last chunk
+			connection.readLine();
+		}
+		
+		String line = connection.readLine();
+		if(line == null) {
+			throw new EOFException("Response body ended early");
+		}
+		
+		int extension = line.indexOf(';');
+		if(extension >= 0) {
+			line = line.substring(0, extension);
+		}
+		
+		long size;
+		try {
+			size = Long.parseLong(line.trim(), 16);
+		} catch(NumberFormatException e) {
+			throw new IOException("Invalid chunk size: " + line);
+		}
+		
+		if(size < 0) {
+			throw new IOException("Invalid chunk size: " + line);
+		}
+		
+		if(size == 0) {
+			// skip the trailers
+			String trailer;
+			do {
+				trailer = connection.readLine();
+			} while(trailer != null && trailer.length() > 0);
+			
+			this.complete = true;
+			return false;
+		}
+		
+		this.remaining = size;
+		return true;
+	}
+	
+	/**
+	 * @see java.io.InputStream#available()
+	 */
+	@Override
+	public int available() throws IOException {
+		if(this.closed || this.complete) {
+			return 0;
+		}
+		
+		int available = this.in.available();
+		if(this.mode == UNTIL_CLOSE) {
+			return available;
+		}
+		
+		return (int) Math.min(available, Math.max(0, this.remaining));
+	}
+	
+	/**
+	 * Hand the connection back to its pool, keeping it only if the body can
+	 * be read to its end.
+	 * 
+	 * @see java.io.InputStream#close()
+	 */
+	@Override
+	public void close() {
+		if(this.closed) {
+			return;
+		}
+		
+		boolean drained;
+		try {
+			drained = this.drain();
+		} catch(IOException e) {
+			drained = false;
+		}
+		
+		this.closed = true;
+		this.response.release(drained);
+	}
+	
+	/**
+	 * Read and discard what is left of a short body.
+	 * 
+	 * @return <code>true</code> if the body was read to its end
+	 * 
+	 * @throws IOException
+	 *             if the body cannot be read
+	 */
+	private boolean drain() throws IOException {
+		if(this.mode == UNTIL_CLOSE) {
+			return false;
+		}
+		
+		byte[] buffer = new byte[4096];
+		long drained = 0;
+		while(!this.complete && drained < MAX_DRAIN_BYTES) {
+			int read = this.read(buffer, 0, buffer.length);
+			if(read < 0) {
+				break;
+			}
+			
+			drained += read;
+		}
+		
+		return this.complete;
+	}
+	
+	boolean isComplete() {
+		return this.complete;
+	}
+
+}
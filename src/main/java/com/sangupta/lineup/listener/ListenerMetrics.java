@@ -0,0 +1,246 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.listener;
+
+/**
+ * A snapshot of the throughput and latency of a {@link MessageListener}
+ * registered with a {@link MessageListenerContainer}.
+ * 
+ * The processing latency is the time spent inside
+ * {@link MessageListener#onMessage(com.sangupta.lineup.domain.QueueMessage)},
+ * and the queue latency is the time from the creation of a message to it being
+ * dispatched to the listener. The idle time is the time workers spent waiting
+ * for messages to arrive in the queue.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public class ListenerMetrics {
+	
+	/**
+	 * Number of messages processed successfully
+	 */
+	private final long processed;
+	
+	/**
+	 * Number of messages for which the listener failed
+	 */
+	private final long failed;
+	
+	/**
+	 * Number of batches dispatched
+	 */
+	private final long batches;
+	
+	/**
+	 * Total time spent in the listener, in nanoseconds
+	 */
+	private final long totalProcessingNanos;
+	
+	/**
+	 * Longest time spent in the listener for a single message, in nanoseconds
+	 */
+	private final long maxProcessingNanos;
+	
+	/**
+	 * Total time messages waited before being dispatched, in milliseconds
+	 */
+	private final long totalQueueMillis;
+	
+	/**
+	 * Longest time a message waited before being dispatched, in milliseconds
+	 */
+	private final long maxQueueMillis;
+	
+	/**
+	 * Total time workers spent waiting for messages, in nanoseconds
+	 */
+	private final long totalIdleNanos;
+	
+	/**
+	 * Time in milliseconds for which the container has been running
+	 */
+	private final long elapsedMillis;
+	
+	/**
+	 * Create a new snapshot.
+	 * 
+	 */
+	ListenerMetrics(long processed, long failed, long batches, long totalProcessingNanos, long maxProcessingNanos, long totalQueueMillis, long maxQueueMillis, long totalIdleNanos, long elapsedMillis) {
+		this.processed = processed;
+		this.failed = failed;
+		this.batches = batches;
+		this.totalProcessingNanos = totalProcessingNanos;
+		this.maxProcessingNanos = maxProcessingNanos;
+		this.totalQueueMillis = totalQueueMillis;
+		this.maxQueueMillis = maxQueueMillis;
+		this.totalIdleNanos = totalIdleNanos;
+		this.elapsedMillis = elapsedMillis;
+	}
+	
+	/**
+	 * Return the number of messages dispatched, whether processed
+	 * successfully or not.
+	 * 
+	 * @return the number of messages dispatched
+	 */
+	public long getDispatched() {
+		return this.processed + this.failed;
+	}
+	
+	/**
+	 * Return the number of messages dispatched per second since the container
+	 * was started.
+	 * 
+	 * @return the throughput in messages per second
+	 */
+	public double getThroughput() {
+		if(this.elapsedMillis <= 0) {
+			return 0;
+		}
+		
+		return getDispatched() * 1000d / this.elapsedMillis;
+	}
+	
+	/**
+	 * Return the average time spent in the listener for a message.
+	 * 
+	 * @return the average processing latency in nanoseconds
+	 */
+	public long getAverageProcessingNanos() {
+		long dispatched = getDispatched();
+		if(dispatched == 0) {
+			return 0;
+		}
+		
+		return this.totalProcessingNanos / dispatched;
+	}
+	
+	/**
+	 * Return the average time a message waited before being dispatched.
+	 * 
+	 * @return the average queue latency in milliseconds
+	 */
+	public long getAverageQueueMillis() {
+		long dispatched = getDispatched();
+		if(dispatched == 0) {
+			return 0;
+		}
+		
+		return this.totalQueueMillis / dispatched;
+	}
+	
+	/**
+	 * Return the average number of messages in a dispatched batch.
+	 * 
+	 * @return the average batch size
+	 */
+	public double getAverageBatchSize() {
+		if(this.batches == 0) {
+			return 0;
+		}
+		
+		return getDispatched() / (double) this.batches;
+	}
+	
+	/**
+	 * Return the fraction of the time workers spent in the listener, out of
+	 * the time spent either in the listener or waiting for messages.
+	 * 
+	 * @return the utilization between <code>0</code> and <code>1</code>
+	 */
+	public double getUtilization() {
+		long total = this.totalProcessingNanos + this.totalIdleNanos;
+		if(total == 0) {
+			return 0;
+		}
+		
+		return this.totalProcessingNanos / (double) total;
+	}
+	
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "[processed=" + this.processed + ", failed=" + this.failed + ", throughput=" + getThroughput() + "/s, processing=" + getAverageProcessingNanos() + "ns avg/" + this.maxProcessingNanos + "ns max, queued=" + getAverageQueueMillis() + "ms avg/" + this.maxQueueMillis + "ms max]";
+	}
+
+	// Usual accessors follow
+
+	/**
+	 * @return the processed
+	 */
+	public long getProcessed() {
+		return processed;
+	}
+
+	/**
+	 * @return the failed
+	 */
+	public long getFailed() {
+		return failed;
+	}
+
+	/**
+	 * @return the batches
+	 */
+	public long getBatches() {
+		return batches;
+	}
+
+	/**
+	 * @return the totalProcessingNanos
+	 */
+	public long getTotalProcessingNanos() {
+		return totalProcessingNanos;
+	}
+
+	/**
+	 * @return the maxProcessingNanos
+	 */
+	public long getMaxProcessingNanos() {
+		return maxProcessingNanos;
+	}
+
+	/**
+	 * @return the maxQueueMillis
+	 */
+	public long getMaxQueueMillis() {
+		return maxQueueMillis;
+	}
+
+	/**
+	 * @return the totalIdleNanos
+	 */
+	public long getTotalIdleNanos() {
+		return totalIdleNanos;
+	}
+
+	/**
+	 * @return the elapsedMillis
+	 */
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+}
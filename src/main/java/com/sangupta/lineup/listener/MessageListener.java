@@ -0,0 +1,49 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.listener;
+
+import com.sangupta.lineup.domain.QueueMessage;
+
+/**
+ * Contract for consumers that want messages pushed to them by a
+ * {@link MessageListenerContainer}, instead of running their own poll loop
+ * over a queue.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public interface MessageListener {
+	
+	/**
+	 * Process a single message. The method is invoked concurrently from as
+	 * many worker threads as the concurrency level of the container.
+	 * 
+	 * @param message
+	 *            the message to process
+	 * 
+	 * @throws Exception
+	 *             if the message could not be processed, which is counted as
+	 *             a failure by the container
+	 */
+	public void onMessage(QueueMessage message) throws Exception;
+
+}
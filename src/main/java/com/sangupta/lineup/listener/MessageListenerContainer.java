@@ -0,0 +1,598 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.listener;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sangupta.lineup.domain.QueueMessage;
+import com.sangupta.lineup.queues.LineUpQueue;
+import com.sangupta.lineup.queues.MessageLease;
+
+/**
+ * Dispatches the messages of a {@link LineUpQueue} to a
+ * {@link MessageListener} from a managed pool of worker threads.
+ * 
+ * Every worker leases a batch of messages from the queue in one operation,
+ * and hands them to the listener one after the other. A worker that finds
+ * the queue empty waits inside the queue as per its wait strategy, and is
+ * woken up when a message is added, instead of polling at an interval.
+ * 
+ * The number of workers may be changed while the container is running via
+ * {@link #setConcurrency(int)}. Workers that are let go finish the batch in
+ * hand before exiting, just as all workers do on
+ * {@link #shutdown(long, TimeUnit)}, where the idle workers are woken up.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public class MessageListenerContainer {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(MessageListenerContainer.class);
+	
+	/**
+	 * The default number of messages dispatched to a worker in one batch
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 16;
+	
+	/**
+	 * The time in seconds an idle worker waits in one go for a message
+	 */
+	private static final long IDLE_POLL_SECONDS = 60;
+	
+	/**
+	 * Counter to give unique names to worker threads
+	 */
+	private static final AtomicInteger CONTAINER_NUMBER = new AtomicInteger();
+	
+	/**
+	 * The queue the messages are read from
+	 */
+	private final LineUpQueue queue;
+	
+	/**
+	 * The listener the messages are dispatched to
+	 */
+	private final MessageListener listener;
+	
+	/**
+	 * The number of worker threads
+	 */
+	private volatile int concurrency;
+	
+	/**
+	 * The maximum number of messages dispatched to a worker in one batch
+	 */
+	private final int batchSize;
+	
+	/**
+	 * The live workers of this container, including the ones that have been
+	 * let go but are yet to finish their batch
+	 */
+	private final List<Worker> workers = new CopyOnWriteArrayList<Worker>();
+	
+	/**
+	 * Guards the metrics of workers that have exited, so that a snapshot
+	 * never counts a worker twice, or misses it
+	 */
+	private final Object metricsLock = new Object();
+	
+	/**
+	 * Holds the summed up metrics of the workers that have exited
+	 */
+	private final Worker exited = new Worker();
+	
+	/**
+	 * The pool the workers run in
+	 */
+	private ExecutorService executor;
+	
+	/**
+	 * Whether the workers should keep running
+	 */
+	private volatile boolean running = false;
+	
+	/**
+	 * The time at which the container was started
+	 */
+	private volatile long startedAt = 0;
+	
+	/**
+	 * Create a new container with the default batch size.
+	 * 
+	 * @param queue
+	 *            the queue to read messages from
+	 * 
+	 * @param listener
+	 *            the listener to dispatch messages to
+	 * 
+	 * @param concurrency
+	 *            the number of worker threads
+	 */
+	public MessageListenerContainer(LineUpQueue queue, MessageListener listener, int concurrency) {
+		this(queue, listener, concurrency, DEFAULT_BATCH_SIZE);
+	}
+	
+	/**
+	 * Create a new container.
+	 * 
+	 * @param queue
+	 *            the queue to read messages from
+	 * 
+	 * @param listener
+	 *            the listener to dispatch messages to
+	 * 
+	 * @param concurrency
+	 *            the number of worker threads
+	 * 
+	 * @param batchSize
+	 *            the maximum number of messages dispatched to a worker in one
+	 *            batch
+	 */
+	public MessageListenerContainer(LineUpQueue queue, MessageListener listener, int concurrency, int batchSize) {
+		if(queue == null) {
+			throw new IllegalArgumentException("Queue cannot be null");
+		}
+		
+		if(listener == null) {
+			throw new IllegalArgumentException("Listener cannot be null");
+		}
+		
+		if(concurrency <= 0) {
+			throw new IllegalArgumentException("Concurrency must be positive");
+		}
+		
+		if(batchSize <= 0) {
+			throw new IllegalArgumentException("Batch size must be positive");
+		}
+		
+		this.queue = queue;
+		this.listener = listener;
+		this.concurrency = concurrency;
+		this.batchSize = batchSize;
+		
+		for(int index = 0; index < concurrency; index++) {
+			this.workers.add(new Worker());
+		}
+	}
+	
+	/**
+	 * Start dispatching messages to the listener.
+	 * 
+	 * @throws IllegalStateException
+	 *             if the container has already been started
+	 */
+	public synchronized void start() {
+		if(this.executor != null) {
+			throw new IllegalStateException("Container has already been started");
+		}
+		
+		final String prefix = "lineup-listener-" + CONTAINER_NUMBER.incrementAndGet() + "-";
+		this.executor = Executors.newCachedThreadPool(new ThreadFactory() {
+			
+			private final AtomicInteger threadNumber = new AtomicInteger();
+			
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, prefix + threadNumber.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+			
+		});
+		
+		this.startedAt = System.currentTimeMillis();
+		this.running = true;
+		for(Worker worker : this.workers) {
+			this.executor.execute(worker);
+		}
+	}
+	
+	/**
+	 * Change the number of worker threads. New workers start leasing messages
+	 * right away, while the ones let go finish the batch in hand before
+	 * exiting. Idle workers are let go first.
+	 * 
+	 * @param concurrency
+	 *            the new number of worker threads
+	 * 
+	 * @throws IllegalStateException
+	 *             if the container has been shut down
+	 */
+	public synchronized void setConcurrency(int concurrency) {
+		if(concurrency <= 0) {
+			throw new IllegalArgumentException("Concurrency must be positive");
+		}
+		
+		if(this.executor != null && !this.running) {
+			throw new IllegalStateException("Container has been shut down");
+		}
+		
+		int current = this.concurrency;
+		for(; current < concurrency; current++) {
+			Worker worker = new Worker();
+			this.workers.add(worker);
+			if(this.executor != null) {
+				this.executor.execute(worker);
+			}
+		}
+		
+		// let go of idle workers first, and of busy ones only if needed
+		for(int pass = 0; pass < 2 && current > concurrency; pass++) {
+			for(Worker worker : this.workers) {
+				if(current == concurrency) {
+					break;
+				}
+				
+				if(this.executor == null) {
+					this.workers.remove(worker);
+					current--;
+				} else if(worker.retire(pass > 0)) {
+					current--;
+				}
+			}
+		}
+		
+		this.concurrency = concurrency;
+	}
+	
+	/**
+	 * Stop dispatching messages. Idle workers are woken up, and busy ones
+	 * finish the batch in hand, returning nothing to the queue.
+	 * 
+	 * @param timeout
+	 *            the maximum time to wait for the workers to finish
+	 * 
+	 * @param unit
+	 *            the unit of the timeout
+	 * 
+	 * @return <code>true</code> if all workers finished in time,
+	 *         <code>false</code> otherwise
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the workers
+	 */
+	public synchronized boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+		if(this.executor == null) {
+			return true;
+		}
+		
+		this.running = false;
+		for(Worker worker : this.workers) {
+			worker.wakeUpIfIdle();
+		}
+		
+		this.executor.shutdown();
+		return this.executor.awaitTermination(timeout, unit);
+	}
+	
+	/**
+	 * Check if the container is dispatching messages.
+	 * 
+	 * @return <code>true</code> if running, <code>false</code> otherwise
+	 */
+	public boolean isRunning() {
+		return this.running;
+	}
+	
+	/**
+	 * Return the metrics of the listener, summed over all workers.
+	 * 
+	 * @return a snapshot of the {@link ListenerMetrics}
+	 */
+	public ListenerMetrics getMetrics() {
+		final Worker total = new Worker();
+		synchronized(this.metricsLock) {
+			total.add(this.exited);
+			
+			final long now = System.nanoTime();
+			for(Worker worker : this.workers) {
+				total.add(worker);
+				
+				// include the wait in progress, so that a worker idle for
+				// long does not look busy
+				long idleSince = worker.idleSince;
+				if(idleSince != 0) {
+					total.idleNanos += now - idleSince;
+				}
+			}
+		}
+		
+		long elapsed = this.startedAt == 0 ? 0 : System.currentTimeMillis() - this.startedAt;
+		return new ListenerMetrics(total.processed, total.failed, total.batches, total.processingNanos, total.maxProcessingNanos, total.queueMillis, total.maxQueueMillis, total.idleNanos, elapsed);
+	}
+	
+	/**
+	 * Fold the metrics of a worker that exited into the totals, and forget
+	 * the worker.
+	 * 
+	 * @param worker
+	 *            the worker that exited
+	 */
+	private void workerExited(Worker worker) {
+		synchronized(this.metricsLock) {
+			this.exited.add(worker);
+			this.workers.remove(worker);
+		}
+	}
+	
+	// Usual accessors follow
+	
+	/**
+	 * @return the queue
+	 */
+	public LineUpQueue getQueue() {
+		return queue;
+	}
+
+	/**
+	 * @return the listener
+	 */
+	public MessageListener getListener() {
+		return listener;
+	}
+
+	/**
+	 * @return the concurrency
+	 */
+	public int getConcurrency() {
+		return concurrency;
+	}
+
+	/**
+	 * @return the batchSize
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+	
+	/**
+	 * A single worker that leases batches of messages and dispatches them to
+	 * the listener. The metrics are only written by the worker thread, so
+	 * that workers never contend over them.
+	 * 
+	 * @author sangupta
+	 *
+	 */
+	private class Worker implements Runnable {
+		
+		/**
+		 * Guards the idle state, so that the worker is only ever interrupted
+		 * while it waits for messages
+		 */
+		private final ReentrantLock lock = new ReentrantLock();
+		
+		/**
+		 * The thread running this worker
+		 */
+		private Thread thread;
+		
+		/**
+		 * Whether the worker is waiting for messages
+		 */
+		private boolean idle;
+		
+		/**
+		 * Whether the worker has been let go
+		 */
+		private boolean retired;
+		
+		// metrics of this worker, only ever written by the worker thread
+		
+		volatile long processed;
+		
+		volatile long failed;
+		
+		volatile long batches;
+		
+		volatile long processingNanos;
+		
+		volatile long maxProcessingNanos;
+		
+		volatile long queueMillis;
+		
+		volatile long maxQueueMillis;
+		
+		volatile long idleNanos;
+		
+		/**
+		 * The time at which the worker started waiting for messages, zero if
+		 * it is not waiting
+		 */
+		volatile long idleSince;
+		
+		/**
+		 * @see java.lang.Runnable#run()
+		 */
+		@Override
+		public void run() {
+			this.thread = Thread.currentThread();
+			
+			try {
+				while(becomeIdle()) {
+					MessageLease lease;
+					final long start = System.nanoTime();
+					this.idleSince = start;
+					try {
+						lease = queue.leaseMessages(batchSize, IDLE_POLL_SECONDS);
+					} catch(InterruptedException e) {
+						continue;
+					} finally {
+						becomeBusy();
+						this.idleSince = 0;
+						this.idleNanos += System.nanoTime() - start;
+					}
+					
+					if(lease.size() > 0) {
+						dispatch(lease);
+					}
+				}
+			} finally {
+				this.thread = null;
+				workerExited(this);
+			}
+		}
+		
+		/**
+		 * Add the metrics of the given worker to the ones of this worker.
+		 * 
+		 * @param worker
+		 *            the worker to add the metrics of
+		 */
+		void add(Worker worker) {
+			this.processed += worker.processed;
+			this.failed += worker.failed;
+			this.batches += worker.batches;
+			this.processingNanos += worker.processingNanos;
+			this.maxProcessingNanos = Math.max(this.maxProcessingNanos, worker.maxProcessingNanos);
+			this.queueMillis += worker.queueMillis;
+			this.maxQueueMillis = Math.max(this.maxQueueMillis, worker.maxQueueMillis);
+			this.idleNanos += worker.idleNanos;
+		}
+		
+		/**
+		 * Dispatch all messages of the lease to the listener.
+		 * 
+		 * @param lease
+		 *            the lease
+		 */
+		private void dispatch(MessageLease lease) {
+			this.batches++;
+			
+			QueueMessage message;
+			while((message = lease.next()) != null) {
+				final long waited = System.currentTimeMillis() - message.getCreated();
+				this.queueMillis += waited;
+				if(waited > this.maxQueueMillis) {
+					this.maxQueueMillis = waited;
+				}
+				
+				final long start = System.nanoTime();
+				try {
+					listener.onMessage(message);
+					this.processed++;
+				} catch(Throwable t) {
+					this.failed++;
+					LOGGER.error("Listener failed to process message " + message.getMessageID() + " from queue " + queue.getName(), t);
+				}
+				
+				final long time = System.nanoTime() - start;
+				this.processingNanos += time;
+				if(time > this.maxProcessingNanos) {
+					this.maxProcessingNanos = time;
+				}
+			}
+		}
+		
+		/**
+		 * Mark the worker idle, unless the container is shutting down or the
+		 * worker has been let go.
+		 * 
+		 * @return <code>true</code> if the worker should wait for messages,
+		 *         <code>false</code> if it should exit
+		 */
+		private boolean becomeIdle() {
+			this.lock.lock();
+			try {
+				if(!running || this.retired) {
+					return false;
+				}
+				
+				this.idle = true;
+				return true;
+			} finally {
+				this.lock.unlock();
+			}
+		}
+		
+		/**
+		 * Mark the worker busy, clearing any interrupt that was meant to wake
+		 * it up while idle.
+		 * 
+		 */
+		private void becomeBusy() {
+			this.lock.lock();
+			try {
+				this.idle = false;
+				Thread.interrupted();
+			} finally {
+				this.lock.unlock();
+			}
+		}
+		
+		/**
+		 * Let go of the worker, waking it up if it is waiting for messages.
+		 * 
+		 * @param evenIfBusy
+		 *            whether to let go of the worker if it is dispatching a
+		 *            batch, in which case it exits after the batch
+		 * 
+		 * @return <code>true</code> if the worker was let go,
+		 *         <code>false</code> if it was busy or already let go
+		 */
+		boolean retire(boolean evenIfBusy) {
+			this.lock.lock();
+			try {
+				if(this.retired || (!this.idle && !evenIfBusy)) {
+					return false;
+				}
+				
+				this.retired = true;
+				Thread thread = this.thread;
+				if(this.idle && thread != null) {
+					thread.interrupt();
+				}
+				
+				return true;
+			} finally {
+				this.lock.unlock();
+			}
+		}
+		
+		/**
+		 * Wake up the worker if it is waiting for messages.
+		 * 
+		 */
+		void wakeUpIfIdle() {
+			this.lock.lock();
+			try {
+				Thread thread = this.thread;
+				if(this.idle && thread != null) {
+					thread.interrupt();
+				}
+			} finally {
+				this.lock.unlock();
+			}
+		}
+		
+	}
+
+}
@@ -0,0 +1,429 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.pipeline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import com.sangupta.lineup.domain.QueueMessage;
+import com.sangupta.lineup.domain.QueueOptions;
+import com.sangupta.lineup.domain.QueueType;
+import com.sangupta.lineup.listener.MessageListenerContainer;
+import com.sangupta.lineup.queues.LineUpQueue;
+import com.sangupta.lineup.service.QueueGenerationFactory;
+
+/**
+ * A staged pipeline of {@link LineUpQueue}s, where every {@link PipelineStage}
+ * handles the messages of its queue and passes the results on to the queue of
+ * the next stage, like <code>parse &rarr; enrich &rarr; store</code>.
+ * 
+ * The threads of the stages are not sized by hand: a controller periodically
+ * looks at the queue depth, service time and idle time of every stage, and
+ * moves threads to where they are needed, keeping the total within the thread
+ * budget of the pipeline.
+ * 
+ * By default every stage reads from a bounded ring buffer queue. When a stage
+ * falls behind, its queue fills up and the stage before it waits for space,
+ * and so on up to {@link #submit(String)}, which then blocks the producer.
+ * 
+ * The pipeline runs entirely in-process, and the queues of its stages are not
+ * registered with the queue service.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public class Pipeline {
+	
+	/**
+	 * The default number of messages the queue of a stage can hold
+	 */
+	public static final int DEFAULT_STAGE_CAPACITY = 1024;
+	
+	/**
+	 * The default interval in milliseconds at which the threads are adjusted
+	 */
+	public static final long DEFAULT_CONTROL_INTERVAL_MILLIS = 1000;
+	
+	/**
+	 * The priority of submitted messages
+	 */
+	private static final int DEFAULT_MESSAGE_PRIORITY = 1;
+	
+	/**
+	 * The name of the pipeline
+	 */
+	private final String name;
+	
+	/**
+	 * The maximum number of threads across all stages
+	 */
+	private final int threadBudget;
+	
+	/**
+	 * The stages, in order
+	 */
+	private final List<PipelineStage> stages = new ArrayList<PipelineStage>();
+	
+	/**
+	 * The interval in milliseconds at which the threads are adjusted
+	 */
+	private long controlIntervalMillis = DEFAULT_CONTROL_INTERVAL_MILLIS;
+	
+	/**
+	 * The maximum number of messages a thread leases in one go
+	 */
+	private int batchSize = MessageListenerContainer.DEFAULT_BATCH_SIZE;
+	
+	/**
+	 * The controller adjusting the threads
+	 */
+	private PipelineController controller;
+	
+	/**
+	 * Runs the controller
+	 */
+	private ScheduledExecutorService scheduler;
+	
+	/**
+	 * Create a new pipeline.
+	 * 
+	 * @param name
+	 *            the name of the pipeline, used to name the stage queues
+	 * 
+	 * @param threadBudget
+	 *            the maximum number of threads across all stages
+	 */
+	public Pipeline(String name, int threadBudget) {
+		if(name == null) {
+			throw new IllegalArgumentException("Name cannot be null");
+		}
+		
+		if(threadBudget <= 0) {
+			throw new IllegalArgumentException("Thread budget must be positive");
+		}
+		
+		this.name = name;
+		this.threadBudget = threadBudget;
+	}
+	
+	/**
+	 * Add a stage reading from a bounded queue of the default capacity.
+	 * 
+	 * @param stageName
+	 *            the name of the stage
+	 * 
+	 * @param handler
+	 *            the handler for the messages
+	 * 
+	 * @return the {@link PipelineStage} added
+	 */
+	public PipelineStage addStage(String stageName, StageHandler handler) {
+		return this.addStage(stageName, handler, DEFAULT_STAGE_CAPACITY);
+	}
+	
+	/**
+	 * Add a stage reading from a bounded queue of the given capacity.
+	 * 
+	 * @param stageName
+	 *            the name of the stage
+	 * 
+	 * @param handler
+	 *            the handler for the messages
+	 * 
+	 * @param capacity
+	 *            the number of messages the queue of the stage can hold
+	 * 
+	 * @return the {@link PipelineStage} added
+	 */
+	public PipelineStage addStage(String stageName, StageHandler handler, int capacity) {
+		QueueOptions options = QueueOptions.getOptions(QueueType.RingBuffer);
+		options.setRingBufferCapacity(capacity);
+		
+		return this.addStage(stageName, QueueGenerationFactory.getLineUpQueue(this.name + "." + stageName, null, options), handler);
+	}
+	
+	/**
+	 * Add a stage reading from the given queue. Back-pressure only flows past
+	 * the stage if the queue is bounded, and blocks in
+	 * {@link LineUpQueue#put(QueueMessage)} when full.
+	 * 
+	 * @param stageName
+	 *            the name of the stage
+	 * 
+	 * @param queue
+	 *            the queue to read messages from
+	 * 
+	 * @param handler
+	 *            the handler for the messages
+	 * 
+	 * @return the {@link PipelineStage} added
+	 * 
+	 * @throws IllegalStateException
+	 *             if the pipeline has already been started
+	 */
+	public synchronized PipelineStage addStage(String stageName, LineUpQueue queue, StageHandler handler) {
+		if(this.controller != null) {
+			throw new IllegalStateException("Stages cannot be added to a started pipeline");
+		}
+		
+		PipelineStage stage = new PipelineStage(stageName, queue, handler, this.batchSize);
+		if(!this.stages.isEmpty()) {
+			this.stages.get(this.stages.size() - 1).setNext(stage);
+		}
+		
+		this.stages.add(stage);
+		return stage;
+	}
+	
+	/**
+	 * Start all stages with a single thread each, and the controller that
+	 * adjusts them.
+	 * 
+	 * @throws IllegalStateException
+	 *             if the pipeline has no stages, has more stages than threads
+	 *             in the budget, or has already been started
+	 */
+	public synchronized void start() {
+		if(this.stages.isEmpty()) {
+			throw new IllegalStateException("Pipeline has no stages");
+		}
+		
+		if(this.stages.size() > this.threadBudget) {
+			throw new IllegalStateException("Thread budget is less than the number of stages");
+		}
+		
+		if(this.controller != null) {
+			throw new IllegalStateException("Pipeline has already been started");
+		}
+		
+		for(PipelineStage stage : this.stages) {
+			stage.getContainer().start();
+		}
+		
+		this.controller = new PipelineController(this.stages, this.threadBudget);
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "lineup-pipeline-" + name);
+				thread.setDaemon(true);
+				return thread;
+			}
+			
+		});
+		
+		this.scheduler.scheduleWithFixedDelay(this.controller, this.controlIntervalMillis, this.controlIntervalMillis, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Submit a message to the first stage, waiting for space if its queue is
+	 * full.
+	 * 
+	 * @param body
+	 *            the body of the message
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for space
+	 */
+	public void submit(String body) throws InterruptedException {
+		this.getFirstStage().getQueue().put(new QueueMessage(body, 0, DEFAULT_MESSAGE_PRIORITY));
+	}
+	
+	/**
+	 * Submit a message to the first stage, waiting up to the given time for
+	 * space if its queue is full.
+	 * 
+	 * @param body
+	 *            the body of the message
+	 * 
+	 * @param timeout
+	 *            the maximum time to wait for space
+	 * 
+	 * @param unit
+	 *            the unit of the timeout
+	 * 
+	 * @return <code>true</code> if the message was submitted,
+	 *         <code>false</code> if the queue stayed full
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for space
+	 */
+	public boolean submit(String body, long timeout, TimeUnit unit) throws InterruptedException {
+		return this.getFirstStage().getQueue().offer(new QueueMessage(body, 0, DEFAULT_MESSAGE_PRIORITY), timeout, unit);
+	}
+	
+	/**
+	 * Adjust the threads of the stages right away, instead of waiting for the
+	 * next scheduled run of the controller.
+	 * 
+	 * @return the number of threads assigned to each stage
+	 * 
+	 * @throws IllegalStateException
+	 *             if the pipeline has not been started
+	 */
+	public int[] rebalance() {
+		PipelineController controller = this.controller;
+		if(controller == null) {
+			throw new IllegalStateException("Pipeline has not been started");
+		}
+		
+		return controller.adjust();
+	}
+	
+	/**
+	 * Stop the pipeline. The stages are shut down in order, each one once
+	 * its queue has been drained, so that the messages already submitted make
+	 * it through the pipeline if time permits.
+	 * 
+	 * @param timeout
+	 *            the maximum time to wait for the pipeline to drain
+	 * 
+	 * @param unit
+	 *            the unit of the timeout
+	 * 
+	 * @return <code>true</code> if all stages drained and finished in time,
+	 *         <code>false</code> otherwise
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	public synchronized boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+		if(this.controller == null) {
+			return true;
+		}
+		
+		this.scheduler.shutdownNow();
+		
+		final long deadline = System.currentTimeMillis() + unit.toMillis(timeout);
+		boolean drained = true;
+		for(PipelineStage stage : this.stages) {
+			while(stage.getQueueDepth() > 0 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			
+			drained &= stage.getQueueDepth() == 0;
+			drained &= stage.getContainer().shutdown(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+		}
+		
+		return drained;
+	}
+	
+	/**
+	 * Return the number of threads currently assigned across all stages.
+	 * 
+	 * @return the total number of threads
+	 */
+	public int getTotalThreads() {
+		int total = 0;
+		for(PipelineStage stage : this.getStages()) {
+			total += stage.getThreads();
+		}
+		
+		return total;
+	}
+	
+	/**
+	 * Return the stages of the pipeline, in order.
+	 * 
+	 * @return the stages
+	 */
+	public synchronized List<PipelineStage> getStages() {
+		return Collections.unmodifiableList(new ArrayList<PipelineStage>(this.stages));
+	}
+	
+	/**
+	 * Return the first stage.
+	 * 
+	 * @return the first stage
+	 * 
+	 * @throws IllegalStateException
+	 *             if the pipeline has no stages
+	 */
+	private synchronized PipelineStage getFirstStage() {
+		if(this.stages.isEmpty()) {
+			throw new IllegalStateException("Pipeline has no stages");
+		}
+		
+		return this.stages.get(0);
+	}
+	
+	// Usual accessors follow
+
+	/**
+	 * @return the name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the threadBudget
+	 */
+	public int getThreadBudget() {
+		return threadBudget;
+	}
+
+	/**
+	 * @return the controlIntervalMillis
+	 */
+	public long getControlIntervalMillis() {
+		return controlIntervalMillis;
+	}
+
+	/**
+	 * @param controlIntervalMillis
+	 *            the controlIntervalMillis to set, before the pipeline is
+	 *            started
+	 */
+	public void setControlIntervalMillis(long controlIntervalMillis) {
+		if(controlIntervalMillis <= 0) {
+			throw new IllegalArgumentException("Control interval must be positive");
+		}
+		
+		this.controlIntervalMillis = controlIntervalMillis;
+	}
+
+	/**
+	 * @return the batchSize
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * @param batchSize
+	 *            the batchSize to set, before stages are added
+	 */
+	public void setBatchSize(int batchSize) {
+		if(batchSize <= 0) {
+			throw new IllegalArgumentException("Batch size must be positive");
+		}
+		
+		this.batchSize = batchSize;
+	}
+
+}
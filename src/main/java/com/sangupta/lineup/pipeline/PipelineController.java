@@ -0,0 +1,283 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.pipeline;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sangupta.lineup.listener.ListenerMetrics;
+
+/**
+ * Periodically resizes the thread pools of the stages of a {@link Pipeline}.
+ * 
+ * For every stage the controller looks at what happened since its last run:
+ * the number of threads that were kept busy in the handler, the time it takes
+ * to handle a message, and the depth of the queue. A stage is given enough
+ * threads to keep up with the busy ones plus enough to work off its backlog
+ * within one interval, with some headroom. Growth takes effect at once, while
+ * shrinking is damped, and never lets go of more threads than were actually
+ * idle, or blocked on the next stage.
+ * 
+ * When the stages ask for more threads than the budget of the pipeline, each
+ * stage keeps one thread and the rest of the budget is shared in proportion
+ * to what the stages asked for.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+class PipelineController implements Runnable {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(PipelineController.class);
+	
+	/**
+	 * The factor by which the estimated demand is scaled up, to absorb bursts
+	 */
+	private static final double HEADROOM = 1.25;
+	
+	/**
+	 * The weight given to the latest demand when it is lower than the one
+	 * seen before, so that a short lull does not let go of threads at once
+	 */
+	private static final double DECAY = 0.5;
+	
+	/**
+	 * The stages to control
+	 */
+	private final List<PipelineStage> stages;
+	
+	/**
+	 * The maximum number of threads across all stages
+	 */
+	private final int threadBudget;
+	
+	/**
+	 * What was observed for each stage on the last run
+	 */
+	private final Sample[] samples;
+	
+	/**
+	 * The time of the last run
+	 */
+	private long lastRun;
+	
+	/**
+	 * Create a controller for the given stages.
+	 * 
+	 * @param stages
+	 *            the stages to control
+	 * 
+	 * @param threadBudget
+	 *            the maximum number of threads across all stages
+	 */
+	PipelineController(List<PipelineStage> stages, int threadBudget) {
+		this.stages = stages;
+		this.threadBudget = threadBudget;
+		this.samples = new Sample[stages.size()];
+		for(int index = 0; index < this.samples.length; index++) {
+			this.samples[index] = new Sample();
+		}
+		
+		this.lastRun = System.nanoTime();
+	}
+	
+	/**
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run() {
+		try {
+			adjust();
+		} catch(Throwable t) {
+			// an escaping exception would stop the scheduled runs
+			LOGGER.error("Unable to adjust the threads of pipeline stages", t);
+		}
+	}
+	
+	/**
+	 * Compute the number of threads for each stage, and resize the stages.
+	 * 
+	 * @return the number of threads assigned to each stage
+	 */
+	synchronized int[] adjust() {
+		final long now = System.nanoTime();
+		final long elapsed = Math.max(1, now - this.lastRun);
+		this.lastRun = now;
+		
+		final int[] targets = new int[this.samples.length];
+		for(int index = 0; index < targets.length; index++) {
+			targets[index] = getTarget(this.stages.get(index), this.samples[index], elapsed);
+		}
+		
+		fitToBudget(targets, this.threadBudget);
+		
+		for(int index = 0; index < targets.length; index++) {
+			PipelineStage stage = this.stages.get(index);
+			if(stage.getThreads() != targets[index]) {
+				LOGGER.debug("Resizing stage {} from {} to {} threads", new Object[] { stage.getName(), stage.getThreads(), targets[index] });
+				stage.getContainer().setConcurrency(targets[index]);
+			}
+		}
+		
+		return targets;
+	}
+	
+	/**
+	 * Compute the number of threads a stage needs, from what was observed
+	 * since the last run.
+	 * 
+	 * @param stage
+	 *            the stage
+	 * 
+	 * @param sample
+	 *            what was observed for the stage on the last run
+	 * 
+	 * @param elapsed
+	 *            the time since the last run, in nanoseconds
+	 * 
+	 * @return the number of threads the stage needs
+	 */
+	private static int getTarget(PipelineStage stage, Sample sample, long elapsed) {
+		final ListenerMetrics metrics = stage.getMetrics();
+		final long blockedNanos = stage.getBlockedNanos();
+		
+		final long dispatched = metrics.getDispatched() - sample.dispatched;
+		final long blocked = Math.max(0, blockedNanos - sample.blockedNanos);
+		final long idle = Math.max(0, metrics.getTotalIdleNanos() - sample.idleNanos);
+		final long working = Math.max(0, metrics.getTotalProcessingNanos() - sample.processingNanos - blocked);
+		
+		sample.dispatched = metrics.getDispatched();
+		sample.blockedNanos = blockedNanos;
+		sample.idleNanos = metrics.getTotalIdleNanos();
+		sample.processingNanos = metrics.getTotalProcessingNanos();
+		if(dispatched > 0) {
+			sample.serviceNanos = working / dispatched;
+		}
+		
+		final int threads = stage.getThreads();
+		final int depth = stage.getQueueDepth();
+		
+		// threads that were busy, and threads needed to work off the backlog
+		double demand = working / (double) elapsed;
+		if(depth > 0) {
+			if(sample.serviceNanos > 0) {
+				demand += depth * (double) sample.serviceNanos / elapsed;
+			} else {
+				// nothing has been handled yet, so the backlog cannot be
+				// sized - ask for twice the threads
+				demand += threads;
+			}
+		}
+		
+		if(demand >= sample.demand) {
+			sample.demand = demand;
+		} else {
+			sample.demand = DECAY * demand + (1 - DECAY) * sample.demand;
+		}
+		
+		int target = Math.max(1, (int) Math.ceil(sample.demand * HEADROOM));
+		if(target < threads) {
+			// only let go of threads that had nothing to do
+			int unproductive = (int) ((idle + blocked) / elapsed);
+			target = Math.max(target, threads - unproductive);
+		}
+		
+		return target;
+	}
+	
+	/**
+	 * Scale the given number of threads down so that they fit in the budget.
+	 * Every stage keeps at least one thread, and the rest of the budget is
+	 * shared in proportion to the threads asked for beyond the first.
+	 * 
+	 * @param targets
+	 *            the number of threads for each stage, scaled in place
+	 * 
+	 * @param budget
+	 *            the maximum number of threads, at least the number of stages
+	 */
+	static void fitToBudget(int[] targets, int budget) {
+		int total = 0;
+		for(int target : targets) {
+			total += target;
+		}
+		
+		if(total <= budget) {
+			return;
+		}
+		
+		final int extra = total - targets.length;
+		final int spare = budget - targets.length;
+		
+		final double[] remainders = new double[targets.length];
+		int assigned = 0;
+		for(int index = 0; index < targets.length; index++) {
+			double share = (targets[index] - 1) * (double) spare / extra;
+			targets[index] = 1 + (int) share;
+			remainders[index] = share - (int) share;
+			assigned += targets[index];
+		}
+		
+		// hand out what is left to the largest remainders
+		for(; assigned < budget; assigned++) {
+			int largest = 0;
+			for(int index = 1; index < remainders.length; index++) {
+				if(remainders[index] > remainders[largest]) {
+					largest = index;
+				}
+			}
+			
+			targets[largest]++;
+			remainders[largest] = -1;
+		}
+	}
+	
+	/**
+	 * What was observed for a stage on the last run of the controller.
+	 * 
+	 * @author sangupta
+	 *
+	 */
+	private static class Sample {
+		
+		long dispatched;
+		
+		long processingNanos;
+		
+		long idleNanos;
+		
+		long blockedNanos;
+		
+		/**
+		 * The latest estimate of the time taken to handle a message
+		 */
+		long serviceNanos;
+		
+		/**
+		 * The smoothed number of threads asked for
+		 */
+		double demand;
+		
+	}
+
+}
@@ -0,0 +1,224 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.pipeline;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sangupta.lineup.domain.QueueMessage;
+import com.sangupta.lineup.listener.ListenerMetrics;
+import com.sangupta.lineup.listener.MessageListener;
+import com.sangupta.lineup.listener.MessageListenerContainer;
+import com.sangupta.lineup.queues.LineUpQueue;
+
+/**
+ * A single stage of a {@link Pipeline}: a {@link LineUpQueue} whose messages
+ * are processed by a {@link StageHandler} from a pool of threads, the size of
+ * which is managed by the pipeline.
+ * 
+ * The result of the handler is added to the queue of the next stage. When the
+ * next queue is bounded and full, the thread waits for space to become
+ * available, which in turn fills up the queue of this stage, and so on up to
+ * the producer. The time spent waiting is tracked separately from the time
+ * spent in the handler, so that a stage held up by a slow downstream stage is
+ * not mistaken for a busy one.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public class PipelineStage {
+	
+	/**
+	 * The name of the stage
+	 */
+	private final String name;
+	
+	/**
+	 * The queue the stage reads from
+	 */
+	private final LineUpQueue queue;
+	
+	/**
+	 * The handler for the messages
+	 */
+	private final StageHandler handler;
+	
+	/**
+	 * The container running the threads of this stage
+	 */
+	private final MessageListenerContainer container;
+	
+	/**
+	 * Total time spent waiting for space in the queue of the next stage, in
+	 * nanoseconds
+	 */
+	private final AtomicLong blockedNanos = new AtomicLong();
+	
+	/**
+	 * The stage the results are passed on to, <code>null</code> for the last
+	 * stage
+	 */
+	private volatile PipelineStage next;
+	
+	/**
+	 * Create a new stage that starts with a single thread.
+	 * 
+	 * @param name
+	 *            the name of the stage
+	 * 
+	 * @param queue
+	 *            the queue to read messages from
+	 * 
+	 * @param handler
+	 *            the handler for the messages
+	 * 
+	 * @param batchSize
+	 *            the maximum number of messages a thread leases in one go
+	 */
+	PipelineStage(String name, LineUpQueue queue, StageHandler handler, int batchSize) {
+		if(queue == null) {
+			throw new IllegalArgumentException("Queue cannot be null");
+		}
+		
+		if(handler == null) {
+			throw new IllegalArgumentException("Handler cannot be null");
+		}
+		
+		this.name = name;
+		this.queue = queue;
+		this.handler = handler;
+		this.container = new MessageListenerContainer(queue, new StageListener(), 1, batchSize);
+	}
+	
+	/**
+	 * Return the number of messages waiting to be processed by this stage.
+	 * 
+	 * @return the depth of the queue
+	 */
+	public int getQueueDepth() {
+		return this.queue.numMessages();
+	}
+	
+	/**
+	 * Return the number of threads currently assigned to this stage.
+	 * 
+	 * @return the number of threads
+	 */
+	public int getThreads() {
+		return this.container.getConcurrency();
+	}
+	
+	/**
+	 * Return the metrics of this stage. The processing time includes the
+	 * time spent waiting for space in the queue of the next stage, which is
+	 * available from {@link #getBlockedNanos()}.
+	 * 
+	 * @return a snapshot of the {@link ListenerMetrics}
+	 */
+	public ListenerMetrics getMetrics() {
+		return this.container.getMetrics();
+	}
+	
+	/**
+	 * Return the total time spent waiting for space in the queue of the next
+	 * stage.
+	 * 
+	 * @return the blocked time in nanoseconds
+	 */
+	public long getBlockedNanos() {
+		return this.blockedNanos.get();
+	}
+	
+	// Usual accessors follow
+
+	/**
+	 * @return the name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the queue
+	 */
+	public LineUpQueue getQueue() {
+		return queue;
+	}
+
+	/**
+	 * @return the handler
+	 */
+	public StageHandler getHandler() {
+		return handler;
+	}
+
+	/**
+	 * @return the container
+	 */
+	MessageListenerContainer getContainer() {
+		return container;
+	}
+
+	/**
+	 * @param next
+	 *            the next to set
+	 */
+	void setNext(PipelineStage next) {
+		this.next = next;
+	}
+	
+	/**
+	 * Runs the handler, and passes the result on to the next stage.
+	 * 
+	 * @author sangupta
+	 *
+	 */
+	private class StageListener implements MessageListener {
+
+		/**
+		 * @see com.sangupta.lineup.listener.MessageListener#onMessage(com.sangupta.lineup.domain.QueueMessage)
+		 */
+		@Override
+		public void onMessage(QueueMessage message) throws Exception {
+			final String body = handler.handle(message);
+			
+			final PipelineStage next = PipelineStage.this.next;
+			if(body == null || next == null) {
+				return;
+			}
+			
+			final QueueMessage result = new QueueMessage(body, 0, message.getPriority());
+			if(next.queue.offer(result)) {
+				return;
+			}
+			
+			// the next stage is full - wait for it to catch up
+			final long start = System.nanoTime();
+			try {
+				next.queue.put(result);
+			} finally {
+				blockedNanos.addAndGet(System.nanoTime() - start);
+			}
+		}
+		
+	}
+
+}
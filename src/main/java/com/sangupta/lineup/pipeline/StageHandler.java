@@ -0,0 +1,53 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.pipeline;
+
+import com.sangupta.lineup.domain.QueueMessage;
+
+/**
+ * Contract for the handler of a {@link PipelineStage}. The handler processes
+ * a message read from the queue of its stage, and returns the body of the
+ * message to be passed on to the next stage.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public interface StageHandler {
+	
+	/**
+	 * Process a single message. The method is invoked concurrently from as
+	 * many threads as the pipeline has assigned to the stage.
+	 * 
+	 * @param message
+	 *            the message to process
+	 * 
+	 * @return the body of the message to pass on to the next stage, or
+	 *         <code>null</code> to pass nothing on. The value is ignored for
+	 *         the last stage of the pipeline.
+	 * 
+	 * @throws Exception
+	 *             if the message could not be processed, in which case
+	 *             nothing is passed on
+	 */
+	public String handle(QueueMessage message) throws Exception;
+
+}
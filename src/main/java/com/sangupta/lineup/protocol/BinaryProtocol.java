@@ -0,0 +1,281 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.protocol;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import com.sangupta.lineup.domain.QueueMessage;
+
+/**
+ * The native binary protocol of LineUp, spoken over plain TCP by the
+ * {@link BinaryProtocolServer} and the {@link BinaryProtocolClient}.
+ * 
+ * Every request and response is a frame: an <code>int</code> length of the
+ * rest of the frame, then a byte with the operation of a request or the
+ * status of a response, then the <code>int</code> ID of the request, and
+ * then the payload. Numbers are big-endian, and strings are an
+ * <code>int</code> length followed by as many bytes of UTF-8.
+ * 
+ * A client first opens the queues it works with by name and security code,
+ * and refers to them by the numeric handle returned from then on. Requests
+ * can be pipelined: a client sends as many as it likes without waiting, and
+ * matches the responses, which need not come in the order of the requests,
+ * by their IDs.
+ * 
+ * <pre>
+ * OPEN    string name, string securityCode         -> int handle
+ * ADD     int handle, int count, message[count]    -> int count, byte[count] added
+ * GET     int handle, int min, int max, long wait  -> int count, message[count]
+ * DELETE  int handle, int count, string[count] ids -> int count, byte[count] deleted
+ * </pre>
+ * 
+ * A message is written as its <code>long</code> ID, <code>int</code> delay
+ * in seconds, <code>int</code> priority, <code>long</code> creation time,
+ * and its MD5 hash and body as strings. A response with any status but
+ * {@link #STATUS_OK} carries a string describing the failure.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public final class BinaryProtocol {
+	
+	/**
+	 * Open a queue by its name and security code
+	 */
+	public static final byte OP_OPEN = 1;
+	
+	/**
+	 * Add a batch of messages to a queue
+	 */
+	public static final byte OP_ADD = 2;
+	
+	/**
+	 * Read up to a number of messages from a queue, waiting up to the given
+	 * milliseconds for at least the minimum number if more than zero
+	 */
+	public static final byte OP_GET = 3;
+	
+	/**
+	 * Delete a batch of messages from a queue by their IDs
+	 */
+	public static final byte OP_DELETE = 4;
+	
+	/**
+	 * The request succeeded
+	 */
+	public static final byte STATUS_OK = 0;
+	
+	/**
+	 * The queue or handle is not known
+	 */
+	public static final byte STATUS_NOT_FOUND = 1;
+	
+	/**
+	 * The request is not valid
+	 */
+	public static final byte STATUS_BAD_REQUEST = 2;
+	
+	/**
+	 * The request failed on the server
+	 */
+	public static final byte STATUS_ERROR = 3;
+	
+	/**
+	 * The largest frame accepted, beyond which the connection is closed
+	 */
+	public static final int MAX_FRAME_BYTES = 16 * 1024 * 1024;
+	
+	/**
+	 * The largest number of messages a client adds or deletes in one frame
+	 */
+	public static final int MAX_BATCH_MESSAGES = 4096;
+	
+	/**
+	 * The length of the header of a frame after its length: the operation
+	 * or status, and the request ID
+	 */
+	static final int HEADER_BYTES = 5;
+	
+	static final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	private BinaryProtocol() {
+		// not to be instantiated
+	}
+	
+	/**
+	 * Read a string.
+	 * 
+	 * @param buffer
+	 *            the buffer to read from
+	 * 
+	 * @return the string
+	 * 
+	 * @throws IOException
+	 *             if the buffer does not hold a valid string
+	 */
+	static String getString(ByteBuffer buffer) throws IOException {
+		int length = buffer.getInt();
+		if(length < 0 || length > buffer.remaining()) {
+			throw new IOException("Invalid string length: " + length);
+		}
+		
+		String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, UTF_8);
+		buffer.position(buffer.position() + length);
+		return value;
+	}
+	
+	/**
+	 * Read a message.
+	 * 
+	 * @param buffer
+	 *            the buffer to read from
+	 * 
+	 * @return the message
+	 * 
+	 * @throws IOException
+	 *             if the buffer does not hold a valid message
+	 */
+	static QueueMessage getMessage(ByteBuffer buffer) throws IOException {
+		try {
+			long messageID = buffer.getLong();
+			int delaySeconds = buffer.getInt();
+			int priority = buffer.getInt();
+			long created = buffer.getLong();
+			String md5 = getString(buffer);
+			String body = getString(buffer);
+			
+			return new QueueMessage(messageID, body, delaySeconds, priority, md5.isEmpty() ? null : md5, created);
+		} catch(BufferUnderflowException e) {
+			throw new IOException("Frame ended within a message");
+		} catch(IllegalArgumentException e) {
+			throw new IOException("Invalid queue message: " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * Builds a frame in a buffer that grows as needed.
+	 * 
+	 */
+	static class FrameBuilder {
+		
+		private ByteBuffer buffer;
+		
+		/**
+		 * Start a frame.
+		 * 
+		 * @param code
+		 *            the operation of a request or the status of a response
+		 * 
+		 * @param requestID
+		 *            the ID of the request
+		 * 
+		 * @param capacity
+		 *            the expected size of the payload
+		 */
+		FrameBuilder(byte code, int requestID, int capacity) {
+			this.buffer = ByteBuffer.allocate(4 + HEADER_BYTES + capacity);
+			this.buffer.putInt(0);
+			this.buffer.put(code);
+			this.buffer.putInt(requestID);
+		}
+		
+		FrameBuilder putByte(byte value) {
+			this.ensure(1).put(value);
+			return this;
+		}
+		
+		FrameBuilder putInt(int value) {
+			this.ensure(4).putInt(value);
+			return this;
+		}
+		
+		FrameBuilder putLong(long value) {
+			this.ensure(8).putLong(value);
+			return this;
+		}
+		
+		FrameBuilder putString(String value) {
+			return this.putBytes(value == null ? null : value.getBytes(UTF_8));
+		}
+		
+		FrameBuilder putBytes(byte[] bytes) {
+			if(bytes == null) {
+				return this.putInt(0);
+			}
+			
+			this.ensure(4 + bytes.length).putInt(bytes.length).put(bytes);
+			return this;
+		}
+		
+		FrameBuilder putMessage(QueueMessage message) {
+			return this.putLong(message.getMessageID())
+					.putInt(message.getDelaySeconds())
+					.putInt(message.getPriority())
+					.putLong(message.getCreated())
+					.putString(message.getMd5())
+					.putString(message.getBody());
+		}
+		
+		/**
+		 * Complete the frame.
+		 * 
+		 * @return the frame, ready to be written
+		 * 
+		 * @throws IOException
+		 *             if the frame is larger than allowed
+		 */
+		ByteBuffer build() throws IOException {
+			int length = this.buffer.position() - 4;
+			if(length > MAX_FRAME_BYTES) {
+				throw new IOException("Frame of " + length + " bytes exceeds the maximum of " + MAX_FRAME_BYTES);
+			}
+			
+			this.buffer.putInt(0, length);
+			this.buffer.flip();
+			return this.buffer;
+		}
+		
+		/**
+		 * Make room for the given number of bytes.
+		 * 
+		 * @param bytes
+		 *            the number of bytes to be written
+		 * 
+		 * @return the buffer to write to
+		 */
+		private ByteBuffer ensure(int bytes) {
+			if(this.buffer.remaining() < bytes) {
+				ByteBuffer grown = ByteBuffer.allocate(Math.max(this.buffer.capacity() * 2, this.buffer.position() + bytes));
+				this.buffer.flip();
+				grown.put(this.buffer);
+				this.buffer = grown;
+			}
+			
+			return this.buffer;
+		}
+		
+	}
+
+}
@@ -0,0 +1,542 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.protocol;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sangupta.lineup.async.QueueFuture;
+import com.sangupta.lineup.domain.QueueMessage;
+import com.sangupta.lineup.exceptions.QueueNotFoundException;
+import com.sangupta.lineup.protocol.BinaryProtocol.FrameBuilder;
+
+/**
+ * A client for the {@link BinaryProtocol}, which pipelines the requests of all
+ * the threads using it over a single connection. Each request returns a
+ * {@link QueueFuture} at once, completed by the thread reading the responses,
+ * and the requests sent by several threads at the same time are written
+ * together with a single gathering write.
+ * 
+ * The client is safe for use by many threads, and once closed, or once the
+ * connection fails, all its pending and future requests fail.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public class BinaryProtocolClient implements Closeable {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(BinaryProtocolClient.class);
+	
+	/**
+	 * The largest number of requests written in one gathering write
+	 */
+	private static final int MAX_GATHER = 64;
+	
+	/**
+	 * The initial size of the buffer responses are read into
+	 */
+	private static final int READ_BUFFER_BYTES = 64 * 1024;
+	
+	private final SocketChannel channel;
+	
+	/**
+	 * The requests sent and not yet answered, by their IDs
+	 */
+	private final Map<Integer, Call<?>> pending = new ConcurrentHashMap<Integer, Call<?>>();
+	
+	/**
+	 * The requests not yet written
+	 */
+	private final Queue<ByteBuffer> outbound = new ConcurrentLinkedQueue<ByteBuffer>();
+	
+	/**
+	 * Held by the thread writing the requests
+	 */
+	private final ReentrantLock writeLock = new ReentrantLock();
+	
+	private final AtomicInteger nextRequestID = new AtomicInteger();
+	
+	private final Thread reader;
+	
+	/**
+	 * Why the client stopped working, <code>null</code> while it works
+	 */
+	private volatile IOException failure;
+	
+	/**
+	 * Connect to the server at the given host and port.
+	 * 
+	 * @param host
+	 *            the host of the server
+	 * 
+	 * @param port
+	 *            the port of the server
+	 * 
+	 * @throws IOException
+	 *             if the server cannot be connected to
+	 */
+	public BinaryProtocolClient(String host, int port) throws IOException {
+		this(new InetSocketAddress(host, port));
+	}
+	
+	/**
+	 * Connect to the server at the given address.
+	 * 
+	 * @param address
+	 *            the address of the server
+	 * 
+	 * @throws IOException
+	 *             if the server cannot be connected to
+	 */
+	public BinaryProtocolClient(InetSocketAddress address) throws IOException {
+		if(address == null) {
+			throw new IllegalArgumentException("Address cannot be null");
+		}
+		
+		this.channel = SocketChannel.open(address);
+		this.channel.socket().setTcpNoDelay(true);
+		
+		this.reader = new Thread(new Runnable() {
+			
+			@Override
+			public void run() {
+				readResponses();
+			}
+			
+		}, "lineup-binary-client-" + address);
+		this.reader.setDaemon(true);
+		this.reader.start();
+	}
+	
+	/**
+	 * Open the queue with the given name and security code.
+	 * 
+	 * @param name
+	 *            the name of the queue
+	 * 
+	 * @param securityCode
+	 *            the security code of the queue
+	 * 
+	 * @return the handle to work with the queue
+	 * 
+	 * @throws QueueNotFoundException
+	 *             if the server has no such queue
+	 * 
+	 * @throws IOException
+	 *             if the queue could not be opened
+	 */
+	public BinaryQueueHandle openQueue(final String name, final String securityCode) throws QueueNotFoundException, IOException {
+		if(name == null) {
+			throw new IllegalArgumentException("Queue name cannot be null");
+		}
+		
+		QueueFuture<Integer> future = this.call(BinaryProtocol.OP_OPEN, new RequestWriter() {
+			
+			@Override
+			public void write(FrameBuilder frame) {
+				frame.putString(name).putString(securityCode);
+			}
+			
+		}, new ResponseReader<Integer>() {
+			
+			@Override
+			public Integer read(ByteBuffer payload) {
+				return payload.getInt();
+			}
+			
+		});
+		
+		try {
+			return new BinaryQueueHandle(this, future.get().intValue());
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while opening queue");
+		} catch(ExecutionException e) {
+			if(e.getCause() instanceof QueueNotFoundException) {
+				throw (QueueNotFoundException) e.getCause();
+			}
+			
+			throw asIOException(e.getCause());
+		}
+	}
+	
+	/**
+	 * Return whether the client still works.
+	 * 
+	 * @return <code>false</code> once closed or once the connection failed
+	 */
+	public boolean isOpen() {
+		return this.failure == null;
+	}
+	
+	/**
+	 * Return the number of requests sent and not yet answered.
+	 * 
+	 * @return the number of pending requests
+	 */
+	public int getPendingCount() {
+		return this.pending.size();
+	}
+	
+	/**
+	 * Close the connection, failing all pending requests.
+	 * 
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() {
+		this.fail(new IOException("Client has been closed"));
+	}
+	
+	/**
+	 * Send a request.
+	 * 
+	 * @param operation
+	 *            the operation of the request
+	 * 
+	 * @param request
+	 *            writes the payload of the request
+	 * 
+	 * @param response
+	 *            reads the payload of a successful response
+	 * 
+	 * @return the future completed with the response
+	 */
+	<V> QueueFuture<V> call(byte operation, RequestWriter request, ResponseReader<V> response) {
+		final QueueFuture<V> future = new QueueFuture<V>();
+		
+		IOException failure = this.failure;
+		if(failure != null) {
+			future.fail(failure);
+			return future;
+		}
+		
+		final int requestID = this.nextRequestID.incrementAndGet();
+		ByteBuffer frame;
+		try {
+			FrameBuilder builder = new FrameBuilder(operation, requestID, 64);
+			request.write(builder);
+			frame = builder.build();
+		} catch(IOException e) {
+			future.fail(e);
+			return future;
+		}
+		
+		this.pending.put(requestID, new Call<V>(future, response));
+		this.outbound.add(frame);
+		this.drain();
+		
+		// a failure while registering may have missed the call
+		failure = this.failure;
+		if(failure != null && this.pending.remove(requestID) != null) {
+			future.fail(failure);
+		}
+		
+		return future;
+	}
+	
+	/**
+	 * Write the queued requests, unless another thread is writing them
+	 * already, in which case it will write ours too.
+	 * 
+	 */
+	private void drain() {
+		final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+		
+		while(!this.outbound.isEmpty()) {
+			if(!this.writeLock.tryLock()) {
+				return;
+			}
+			
+			try {
+				while(!this.outbound.isEmpty()) {
+					int count = 0;
+					ByteBuffer buffer;
+					while(count < MAX_GATHER && (buffer = this.outbound.poll()) != null) {
+						gather[count++] = buffer;
+					}
+					
+					// the channel is blocking, so everything gets written
+					long remaining = 0;
+					for(int index = 0; index < count; index++) {
+						remaining += gather[index].remaining();
+					}
+					
+					while(remaining > 0) {
+						remaining -= this.channel.write(gather, 0, count);
+					}
+					
+					Arrays.fill(gather, 0, count, null);
+				}
+			} catch(IOException e) {
+				this.fail(e);
+				return;
+			} finally {
+				this.writeLock.unlock();
+			}
+			
+			// requests queued after the last poll but before the unlock
+		}
+	}
+	
+	/**
+	 * Read and dispatch the responses, until the connection fails.
+	 * 
+	 */
+	private void readResponses() {
+		ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_BYTES);
+		try {
+			while(true) {
+				if(this.channel.read(in) < 0) {
+					throw new EOFException("Server closed the connection");
+				}
+				
+				in.flip();
+				while(in.remaining() >= 4) {
+					int length = in.getInt(in.position());
+					if(length < BinaryProtocol.HEADER_BYTES || length > BinaryProtocol.MAX_FRAME_BYTES) {
+						throw new IOException("Invalid frame length: " + length);
+					}
+					
+					if(in.remaining() < 4 + length) {
+						break;
+					}
+					
+					int end = in.position() + 4 + length;
+					ByteBuffer frame = in.duplicate();
+					frame.position(in.position() + 4);
+					frame.limit(end);
+					in.position(end);
+					
+					this.dispatch(frame);
+				}
+				
+				in.compact();
+				if(!in.hasRemaining()) {
+					ByteBuffer grown = ByteBuffer.allocate(Math.min(in.capacity() * 2, 4 + BinaryProtocol.MAX_FRAME_BYTES));
+					in.flip();
+					grown.put(in);
+					in = grown;
+				}
+			}
+		} catch(IOException e) {
+			if(this.failure == null) {
+				LOGGER.debug("Binary protocol connection failed", e);
+			}
+			
+			this.fail(e);
+		}
+	}
+	
+	/**
+	 * Complete the request the given response is for.
+	 * 
+	 * @param frame
+	 *            the response, after its length
+	 */
+	private void dispatch(ByteBuffer frame) {
+		byte status = frame.get();
+		int requestID = frame.getInt();
+		
+		Call<?> call = this.pending.remove(requestID);
+		if(call == null) {
+			LOGGER.warn("Response for unknown request: {}", requestID);
+			return;
+		}
+		
+		call.complete(status, frame);
+	}
+	
+	/**
+	 * Stop the client, failing all pending requests with the given cause.
+	 * 
+	 * @param cause
+	 *            the cause
+	 */
+	private void fail(IOException cause) {
+		synchronized(this) {
+			if(this.failure != null) {
+				return;
+			}
+			
+			this.failure = cause;
+		}
+		
+		try {
+			this.channel.close();
+		} catch(IOException e) {
+			LOGGER.debug("Unable to close binary protocol connection", e);
+		}
+		
+		for(Integer requestID : new ArrayList<Integer>(this.pending.keySet())) {
+			Call<?> call = this.pending.remove(requestID);
+			if(call != null) {
+				call.future.fail(cause);
+			}
+		}
+	}
+	
+	/**
+	 * Return the given cause of a failed request as an {@link IOException}.
+	 * 
+	 * @param cause
+	 *            the cause
+	 * 
+	 * @return the exception
+	 */
+	static IOException asIOException(Throwable cause) {
+		if(cause instanceof IOException) {
+			return (IOException) cause;
+		}
+		
+		IOException exception = new IOException(String.valueOf(cause.getMessage()));
+		exception.initCause(cause);
+		return exception;
+	}
+	
+	/**
+	 * Read a list of messages.
+	 * 
+	 * @param payload
+	 *            the payload of a response
+	 * 
+	 * @return the messages
+	 * 
+	 * @throws IOException
+	 *             if the payload does not hold a list of messages
+	 */
+	static List<QueueMessage> getMessages(ByteBuffer payload) throws IOException {
+		int count = payload.getInt();
+		if(count < 0 || count > payload.remaining()) {
+			throw new IOException("Invalid number of messages: " + count);
+		}
+		
+		List<QueueMessage> messages = new ArrayList<QueueMessage>(count);
+		for(int index = 0; index < count; index++) {
+			messages.add(BinaryProtocol.getMessage(payload));
+		}
+		
+		return messages;
+	}
+	
+	/**
+	 * Read a list of flags.
+	 * 
+	 * @param payload
+	 *            the payload of a response
+	 * 
+	 * @return the flags
+	 * 
+	 * @throws IOException
+	 *             if the payload does not hold a list of flags
+	 */
+	static boolean[] getFlags(ByteBuffer payload) throws IOException {
+		int count = payload.getInt();
+		if(count < 0 || count > payload.remaining()) {
+			throw new IOException("Invalid number of results: " + count);
+		}
+		
+		boolean[] flags = new boolean[count];
+		for(int index = 0; index < count; index++) {
+			flags[index] = payload.get() != 0;
+		}
+		
+		return flags;
+	}
+	
+	/**
+	 * Writes the payload of a request.
+	 * 
+	 */
+	interface RequestWriter {
+		
+		void write(FrameBuilder frame);
+		
+	}
+	
+	/**
+	 * Reads the payload of a successful response.
+	 * 
+	 */
+	interface ResponseReader<V> {
+		
+		V read(ByteBuffer payload) throws IOException;
+		
+	}
+	
+	/**
+	 * A request awaiting its response.
+	 * 
+	 */
+	private static class Call<V> {
+		
+		final QueueFuture<V> future;
+		
+		final ResponseReader<V> reader;
+		
+		Call(QueueFuture<V> future, ResponseReader<V> reader) {
+			this.future = future;
+			this.reader = reader;
+		}
+		
+		void complete(byte status, ByteBuffer payload) {
+			try {
+				if(status == BinaryProtocol.STATUS_OK) {
+					this.future.complete(this.reader.read(payload));
+					return;
+				}
+				
+				String message = BinaryProtocol.getString(payload);
+				if(status == BinaryProtocol.STATUS_NOT_FOUND) {
+					this.future.fail(new QueueNotFoundException());
+					return;
+				}
+				
+				this.future.fail(new IOException(message));
+			} catch(BufferUnderflowException e) {
+				this.future.fail(new IOException("Response ended early"));
+			} catch(IOException e) {
+				this.future.fail(e);
+			}
+		}
+		
+	}
+
+}
@@ -0,0 +1,859 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.protocol;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sangupta.lineup.LineUp;
+import com.sangupta.lineup.async.QueueCallback;
+import com.sangupta.lineup.async.QueueFuture;
+import com.sangupta.lineup.domain.QueueMessage;
+import com.sangupta.lineup.exceptions.QueueNotFoundException;
+import com.sangupta.lineup.protocol.BinaryProtocol.FrameBuilder;
+import com.sangupta.lineup.queues.LineUpQueue;
+
+/**
+ * A server for the {@link BinaryProtocol}, which serves all its connections
+ * from a single selector thread. Requests are cheap, non-blocking operations
+ * on in-memory queues and are run on the selector thread itself, as soon as
+ * their frame has been read. The responses to all the requests read in one
+ * go are written back together with a single gathering write. A client that
+ * pipelines requests faster than it reads their responses is held back: once
+ * the responses queued on its connection pass a byte or frame limit, no more
+ * of its frames are run or read until they have been written.
+ * 
+ * A read that has to wait for messages is registered with the queue as an
+ * asynchronous receive, and its response is written once the receive
+ * completes, so that it holds up neither the selector thread nor the other
+ * requests pipelined on the connection. Queues with a single producer or
+ * consumer cannot complete such receives, and return what is available at
+ * once instead.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public class BinaryProtocolServer {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(BinaryProtocolServer.class);
+	
+	/**
+	 * The initial size of the read buffer of a connection, which grows to
+	 * fit larger frames
+	 */
+	private static final int READ_BUFFER_BYTES = 64 * 1024;
+	
+	/**
+	 * The largest number of responses written in one gathering write
+	 */
+	private static final int MAX_GATHER = 64;
+	
+	/**
+	 * The size in bytes of the queued responses of a connection beyond which
+	 * its frames are no longer read
+	 */
+	private static final long MAX_BACKLOG_BYTES = 1024 * 1024;
+	
+	/**
+	 * The number of queued responses of a connection beyond which its frames
+	 * are no longer read
+	 */
+	private static final int MAX_BACKLOG_FRAMES = 1024;
+	
+	/**
+	 * The address to listen on, <code>null</code> for all
+	 */
+	private final InetAddress address;
+	
+	/**
+	 * The port to listen on, <code>0</code> for any free one
+	 */
+	private final int port;
+	
+	/**
+	 * Connections with responses queued by other threads
+	 */
+	private final Queue<Connection> wakeups = new ConcurrentLinkedQueue<Connection>();
+	
+	private volatile Selector selector;
+	
+	private volatile ServerSocketChannel serverChannel;
+	
+	private volatile Thread selectorThread;
+	
+	private volatile boolean running;
+	
+	/**
+	 * Create a server listening on the given port of all addresses.
+	 * 
+	 * @param port
+	 *            the port, or <code>0</code> for any free one
+	 */
+	public BinaryProtocolServer(int port) {
+		this(null, port);
+	}
+	
+	/**
+	 * Create a server listening on the given address and port.
+	 * 
+	 * @param address
+	 *            the address, or <code>null</code> for all
+	 * 
+	 * @param port
+	 *            the port, or <code>0</code> for any free one
+	 */
+	public BinaryProtocolServer(InetAddress address, int port) {
+		if(port < 0 || port > 65535) {
+			throw new IllegalArgumentException("Port must be between 0 and 65535");
+		}
+		
+		this.address = address;
+		this.port = port;
+	}
+	
+	/**
+	 * Start listening for connections.
+	 * 
+	 * @throws IOException
+	 *             if the port cannot be listened on
+	 */
+	public synchronized void start() throws IOException {
+		if(this.running) {
+			throw new IllegalStateException("Server has already been started");
+		}
+		
+		Selector selector = Selector.open();
+		ServerSocketChannel channel = ServerSocketChannel.open();
+		try {
+			channel.socket().setReuseAddress(true);
+			channel.socket().bind(new InetSocketAddress(this.address, this.port), 1024);
+			channel.configureBlocking(false);
+			channel.register(selector, SelectionKey.OP_ACCEPT);
+		} catch(IOException e) {
+			channel.close();
+			selector.close();
+			throw e;
+		}
+		
+		this.selector = selector;
+		this.serverChannel = channel;
+		this.running = true;
+		
+		Thread thread = new Thread(new Runnable() {
+			
+			@Override
+			public void run() {
+				serve();
+			}
+			
+		}, "lineup-binary-selector");
+		thread.setDaemon(true);
+		thread.start();
+		
+		this.selectorThread = thread;
+	}
+	
+	/**
+	 * Stop the server and close all its connections.
+	 * 
+	 */
+	public synchronized void stop() {
+		if(!this.running) {
+			return;
+		}
+		
+		this.running = false;
+		this.selector.wakeup();
+		
+		try {
+			this.selectorThread.join(TimeUnit.SECONDS.toMillis(5));
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Return whether the server is running.
+	 * 
+	 * @return <code>true</code> if running
+	 */
+	public boolean isRunning() {
+		return this.running;
+	}
+	
+	/**
+	 * Return the port the server listens on, which is the one picked when
+	 * created with port <code>0</code>.
+	 * 
+	 * @return the port, or <code>-1</code> if not running
+	 */
+	public int getPort() {
+		ServerSocketChannel channel = this.serverChannel;
+		if(channel == null || !this.running) {
+			return -1;
+		}
+		
+		return channel.socket().getLocalPort();
+	}
+	
+	/**
+	 * The selector loop.
+	 * 
+	 */
+	private void serve() {
+		final Selector selector = this.selector;
+		try {
+			while(this.running) {
+				selector.select();
+				
+				Connection woken;
+				while((woken = this.wakeups.poll()) != null) {
+					woken.wakeupPending.set(false);
+					woken.flush();
+				}
+				
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while(keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					
+					if(!key.isValid()) {
+						continue;
+					}
+					
+					if(key.isAcceptable()) {
+						this.accept();
+						continue;
+					}
+					
+					Connection connection = (Connection) key.attachment();
+					if(key.isReadable()) {
+						connection.read();
+					}
+					
+					if(key.isValid() && key.isWritable()) {
+						connection.flush();
+					}
+				}
+			}
+		} catch(IOException e) {
+			LOGGER.error("Binary protocol server failed", e);
+			this.running = false;
+		} finally {
+			for(SelectionKey key : selector.keys()) {
+				if(key.attachment() instanceof Connection) {
+					((Connection) key.attachment()).close();
+				}
+			}
+			
+			try {
+				this.serverChannel.close();
+				selector.close();
+			} catch(IOException e) {
+				LOGGER.debug("Unable to close binary protocol server", e);
+			}
+		}
+	}
+	
+	/**
+	 * Accept a new connection.
+	 * 
+	 */
+	private void accept() {
+		SocketChannel channel = null;
+		try {
+			channel = this.serverChannel.accept();
+			if(channel == null) {
+				return;
+			}
+			
+			channel.configureBlocking(false);
+			channel.socket().setTcpNoDelay(true);
+			
+			Connection connection = new Connection(channel);
+			connection.key = channel.register(this.selector, SelectionKey.OP_READ, connection);
+		} catch(IOException e) {
+			LOGGER.debug("Unable to accept connection", e);
+			if(channel != null) {
+				try {
+					channel.close();
+				} catch(IOException ignored) {
+					// nothing more to do
+				}
+			}
+		}
+	}
+	
+	/**
+	 * A connection, whose state is only touched by the selector thread, save
+	 * for the queue of responses and what goes with it.
+	 * 
+	 */
+	private class Connection {
+		
+		private final SocketChannel channel;
+		
+		private SelectionKey key;
+		
+		/**
+		 * The frames read but not yet run
+		 */
+		private ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_BYTES);
+		
+		/**
+		 * The queues opened, indexed by their handles
+		 */
+		private final List<LineUpQueue> handles = new ArrayList<LineUpQueue>();
+		
+		/**
+		 * The responses not yet written
+		 */
+		private final Queue<ByteBuffer> out = new ConcurrentLinkedQueue<ByteBuffer>();
+		
+		/**
+		 * The size in bytes of the responses not yet written
+		 */
+		private final AtomicLong outBytes = new AtomicLong();
+		
+		/**
+		 * The number of responses not yet written
+		 */
+		private final AtomicInteger outFrames = new AtomicInteger();
+		
+		/**
+		 * Whether complete frames are held in the read buffer until the
+		 * responses backed up are written
+		 */
+		private boolean paused;
+		
+		/**
+		 * The reads waiting for messages
+		 */
+		private final Set<QueueFuture<List<QueueMessage>>> waiting = Collections.newSetFromMap(new ConcurrentHashMap<QueueFuture<List<QueueMessage>>, Boolean>());
+		
+		/**
+		 * Whether the connection is queued to be woken up
+		 */
+		private final AtomicBoolean wakeupPending = new AtomicBoolean();
+		
+		private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+		
+		private volatile boolean closed;
+		
+		Connection(SocketChannel channel) {
+			this.channel = channel;
+		}
+		
+		/**
+		 * Read what has arrived, run all the complete frames, and write the
+		 * responses.
+		 * 
+		 */
+		void read() {
+			try {
+				if(this.channel.read(this.in) < 0) {
+					this.close();
+					return;
+				}
+				
+				this.runFrames();
+			} catch(IOException e) {
+				LOGGER.debug("Closing binary protocol connection", e);
+				this.close();
+				return;
+			}
+			
+			this.flush();
+		}
+		
+		/**
+		 * Run the complete frames in the read buffer, until the responses back
+		 * up, in which case the rest are held until they have been written.
+		 * 
+		 * @throws IOException
+		 *             if a frame is not valid
+		 */
+		private void runFrames() throws IOException {
+			this.paused = false;
+			
+			this.in.flip();
+			while(this.in.remaining() >= 4) {
+				if(this.isBacklogged()) {
+					this.paused = true;
+					break;
+				}
+				
+				int length = this.in.getInt(this.in.position());
+				if(length < BinaryProtocol.HEADER_BYTES || length > BinaryProtocol.MAX_FRAME_BYTES) {
+					throw new IOException("Invalid frame length: " + length);
+				}
+				
+				if(this.in.remaining() < 4 + length) {
+					break;
+				}
+				
+				int end = this.in.position() + 4 + length;
+				ByteBuffer frame = this.in.duplicate();
+				frame.position(this.in.position() + 4);
+				frame.limit(end);
+				this.in.position(end);
+				
+				this.run(frame);
+			}
+			
+			this.in.compact();
+			if(!this.paused && !this.in.hasRemaining()) {
+				// a frame larger than the buffer
+				ByteBuffer grown = ByteBuffer.allocate(Math.min(this.in.capacity() * 2, 4 + BinaryProtocol.MAX_FRAME_BYTES));
+				this.in.flip();
+				grown.put(this.in);
+				this.in = grown;
+			}
+		}
+		
+		/**
+		 * Return whether the responses not yet written have passed the byte
+		 * or frame limit.
+		 * 
+		 * @return <code>true</code> if backed up
+		 */
+		private boolean isBacklogged() {
+			return this.outFrames.get() >= MAX_BACKLOG_FRAMES || this.outBytes.get() >= MAX_BACKLOG_BYTES;
+		}
+		
+		/**
+		 * Queue a response to be written.
+		 * 
+		 * @param response
+		 *            the response
+		 */
+		private void enqueue(ByteBuffer response) {
+			this.outFrames.incrementAndGet();
+			this.outBytes.addAndGet(response.limit());
+			this.out.add(response);
+		}
+		
+		/**
+		 * Run a single request.
+		 * 
+		 * @param frame
+		 *            the frame of the request, after its length
+		 */
+		private void run(ByteBuffer frame) {
+			final byte operation = frame.get();
+			final int requestID = frame.getInt();
+			
+			ByteBuffer response;
+			try {
+				response = this.respond(operation, requestID, frame);
+			} catch(BufferUnderflowException e) {
+				response = error(BinaryProtocol.STATUS_BAD_REQUEST, requestID, "Frame ended early");
+			} catch(IOException e) {
+				response = error(BinaryProtocol.STATUS_BAD_REQUEST, requestID, e.getMessage());
+			} catch(RuntimeException e) {
+				LOGGER.error("Unable to run binary protocol request", e);
+				response = error(BinaryProtocol.STATUS_ERROR, requestID, String.valueOf(e.getMessage()));
+			}
+			
+			if(response != null) {
+				this.enqueue(response);
+			}
+		}
+		
+		/**
+		 * Run a request and return its response.
+		 * 
+		 * @return the response, or <code>null</code> if it is sent later
+		 */
+		private ByteBuffer respond(byte operation, int requestID, ByteBuffer frame) throws IOException {
+			switch(operation) {
+				case BinaryProtocol.OP_OPEN:
+					return this.open(requestID, frame);
+					
+				case BinaryProtocol.OP_ADD:
+					return this.add(requestID, frame);
+					
+				case BinaryProtocol.OP_GET:
+					return this.get(requestID, frame);
+					
+				case BinaryProtocol.OP_DELETE:
+					return this.delete(requestID, frame);
+					
+				default:
+					return error(BinaryProtocol.STATUS_BAD_REQUEST, requestID, "Unknown operation: " + operation);
+			}
+		}
+		
+		private ByteBuffer open(int requestID, ByteBuffer frame) throws IOException {
+			String name = BinaryProtocol.getString(frame);
+			String securityCode = BinaryProtocol.getString(frame);
+			
+			LineUpQueue queue;
+			try {
+				queue = LineUp.getQueue(name, securityCode);
+			} catch(QueueNotFoundException e) {
+				queue = null;
+			}
+			
+			if(queue == null) {
+				return error(BinaryProtocol.STATUS_NOT_FOUND, requestID, "No such queue: " + name);
+			}
+			
+			int handle = this.handles.indexOf(queue);
+			if(handle < 0) {
+				handle = this.handles.size();
+				this.handles.add(queue);
+			}
+			
+			return new FrameBuilder(BinaryProtocol.STATUS_OK, requestID, 4).putInt(handle).build();
+		}
+		
+		private ByteBuffer add(int requestID, ByteBuffer frame) throws IOException {
+			LineUpQueue queue = this.getQueue(frame.getInt());
+			if(queue == null) {
+				return error(BinaryProtocol.STATUS_NOT_FOUND, requestID, "Unknown queue handle");
+			}
+			
+			int count = frame.getInt();
+			if(count < 0 || count > frame.remaining()) {
+				return error(BinaryProtocol.STATUS_BAD_REQUEST, requestID, "Invalid number of messages: " + count);
+			}
+			
+			List<QueueMessage> messages = new ArrayList<QueueMessage>(count);
+			for(int index = 0; index < count; index++) {
+				messages.add(BinaryProtocol.getMessage(frame));
+			}
+			
+			List<QueueMessage> added = queue.addMessages(messages);
+			
+			FrameBuilder builder = new FrameBuilder(BinaryProtocol.STATUS_OK, requestID, 4 + count).putInt(count);
+			for(QueueMessage message : added) {
+				builder.putByte(message != null ? (byte) 1 : (byte) 0);
+			}
+			
+			return builder.build();
+		}
+		
+		private ByteBuffer get(final int requestID, ByteBuffer frame) throws IOException {
+			final LineUpQueue queue = this.getQueue(frame.getInt());
+			if(queue == null) {
+				return error(BinaryProtocol.STATUS_NOT_FOUND, requestID, "Unknown queue handle");
+			}
+			
+			int minMessages = frame.getInt();
+			int maxMessages = frame.getInt();
+			long waitMillis = frame.getLong();
+			if(maxMessages < 1 || minMessages < 0 || minMessages > maxMessages) {
+				return error(BinaryProtocol.STATUS_BAD_REQUEST, requestID, "Invalid number of messages");
+			}
+			
+			if(maxMessages > BinaryProtocol.MAX_BATCH_MESSAGES) {
+				return error(BinaryProtocol.STATUS_BAD_REQUEST, requestID, "Cannot read more than " + BinaryProtocol.MAX_BATCH_MESSAGES + " messages at once");
+			}
+			
+			if(waitMillis <= 0 || minMessages == 0 || !queue.isBackingQueueConcurrent()) {
+				// only a consumer waiting on a receive completes it on queues
+				// with a single producer or consumer, and this thread cannot
+				return messages(queue, requestID, queue.getMessages(maxMessages));
+			}
+			
+			final QueueFuture<List<QueueMessage>> future = queue.receiveBatchAsync(minMessages, maxMessages, waitMillis, TimeUnit.MILLISECONDS);
+			if(future.isDone()) {
+				try {
+					return messages(queue, requestID, future.get());
+				} catch(Exception e) {
+					return error(BinaryProtocol.STATUS_ERROR, requestID, String.valueOf(e.getMessage()));
+				}
+			}
+			
+			this.waiting.add(future);
+			future.addCallback(new QueueCallback<List<QueueMessage>>() {
+				
+				@Override
+				public void onSuccess(List<QueueMessage> messages) {
+					waiting.remove(future);
+					if(closed) {
+						giveBack(queue, messages);
+						return;
+					}
+					
+					sendLater(messages(queue, requestID, messages));
+				}
+				
+				@Override
+				public void onFailure(Throwable cause) {
+					waiting.remove(future);
+					if(!closed) {
+						sendLater(error(BinaryProtocol.STATUS_ERROR, requestID, String.valueOf(cause.getMessage())));
+					}
+				}
+				
+			});
+			
+			return null;
+		}
+		
+		private ByteBuffer delete(int requestID, ByteBuffer frame) throws IOException {
+			LineUpQueue queue = this.getQueue(frame.getInt());
+			if(queue == null) {
+				return error(BinaryProtocol.STATUS_NOT_FOUND, requestID, "Unknown queue handle");
+			}
+			
+			int count = frame.getInt();
+			if(count < 0 || count > frame.remaining()) {
+				return error(BinaryProtocol.STATUS_BAD_REQUEST, requestID, "Invalid number of messages: " + count);
+			}
+			
+			List<String> messageIDs = new ArrayList<String>(count);
+			for(int index = 0; index < count; index++) {
+				messageIDs.add(BinaryProtocol.getString(frame));
+			}
+			
+			boolean[] deleted = queue.deleteMessages(messageIDs);
+			
+			FrameBuilder builder = new FrameBuilder(BinaryProtocol.STATUS_OK, requestID, 4 + count).putInt(count);
+			for(boolean success : deleted) {
+				builder.putByte(success ? (byte) 1 : (byte) 0);
+			}
+			
+			return builder.build();
+		}
+		
+		/**
+		 * Return the queue opened with the given handle.
+		 * 
+		 * @param handle
+		 *            the handle
+		 * 
+		 * @return the queue, or <code>null</code> if no such handle
+		 */
+		private LineUpQueue getQueue(int handle) {
+			if(handle < 0 || handle >= this.handles.size()) {
+				return null;
+			}
+			
+			return this.handles.get(handle);
+		}
+		
+		/**
+		 * Queue a response from a thread other than the selector thread, and
+		 * have the selector thread write it.
+		 * 
+		 * @param response
+		 *            the response
+		 */
+		void sendLater(ByteBuffer response) {
+			this.enqueue(response);
+			if(this.wakeupPending.compareAndSet(false, true)) {
+				wakeups.add(this);
+				selector.wakeup();
+			}
+		}
+		
+		/**
+		 * Write as many of the queued responses as the socket takes, and wait
+		 * for the socket to take more if any are left. Frames held back while
+		 * the responses were backed up are run once they have drained, and
+		 * more are only read while they are not backed up.
+		 * 
+		 */
+		void flush() {
+			if(this.closed) {
+				return;
+			}
+			
+			try {
+				this.write();
+				if(this.paused && !this.isBacklogged()) {
+					this.runFrames();
+					this.write();
+				}
+				
+				int ops = this.isBacklogged() ? 0 : SelectionKey.OP_READ;
+				if(!this.out.isEmpty()) {
+					ops |= SelectionKey.OP_WRITE;
+				}
+				
+				this.key.interestOps(ops);
+			} catch(IOException e) {
+				LOGGER.debug("Closing binary protocol connection", e);
+				this.close();
+			}
+		}
+		
+		/**
+		 * Write as many of the queued responses as the socket takes.
+		 * 
+		 * @throws IOException
+		 *             if the write fails
+		 */
+		private void write() throws IOException {
+			while(!this.out.isEmpty()) {
+				int count = 0;
+				for(ByteBuffer buffer : this.out) {
+					this.gather[count++] = buffer;
+					if(count == MAX_GATHER) {
+						break;
+					}
+				}
+				
+				this.channel.write(this.gather, 0, count);
+				
+				boolean drained = true;
+				for(int index = 0; index < count; index++) {
+					if(this.gather[index].hasRemaining()) {
+						drained = false;
+						break;
+					}
+					
+					this.out.poll();
+					this.outFrames.decrementAndGet();
+					this.outBytes.addAndGet(-this.gather[index].limit());
+				}
+				
+				Arrays.fill(this.gather, 0, count, null);
+				if(!drained) {
+					break;
+				}
+			}
+		}
+		
+		/**
+		 * Close the connection, and withdraw its waiting reads.
+		 * 
+		 */
+		void close() {
+			if(this.closed) {
+				return;
+			}
+			
+			this.closed = true;
+			for(QueueFuture<List<QueueMessage>> future : this.waiting) {
+				// a read completed meanwhile gives back its messages
+				future.cancel(false);
+			}
+			
+			if(this.key != null) {
+				this.key.cancel();
+			}
+			
+			try {
+				this.channel.close();
+			} catch(IOException e) {
+				LOGGER.debug("Unable to close binary protocol connection", e);
+			}
+		}
+		
+	}
+	
+	/**
+	 * Build the response carrying the given messages, or give them back to
+	 * their queue if they do not fit in a frame.
+	 * 
+	 * @param queue
+	 *            the queue the messages were read from
+	 * 
+	 * @param requestID
+	 *            the ID of the request
+	 * 
+	 * @param messages
+	 *            the messages
+	 * 
+	 * @return the response
+	 */
+	private static ByteBuffer messages(LineUpQueue queue, int requestID, List<QueueMessage> messages) {
+		int size = messages == null ? 0 : messages.size();
+		FrameBuilder builder = new FrameBuilder(BinaryProtocol.STATUS_OK, requestID, 4 + size * 64).putInt(size);
+		for(int index = 0; index < size; index++) {
+			builder.putMessage(messages.get(index));
+		}
+		
+		try {
+			return builder.build();
+		} catch(IOException e) {
+			giveBack(queue, messages);
+			return error(BinaryProtocol.STATUS_ERROR, requestID, e.getMessage());
+		}
+	}
+	
+	/**
+	 * Build a response for a failed request.
+	 * 
+	 * @param status
+	 *            the status of the response
+	 * 
+	 * @param requestID
+	 *            the ID of the request
+	 * 
+	 * @param message
+	 *            the description of the failure
+	 * 
+	 * @return the response
+	 */
+	private static ByteBuffer error(byte status, int requestID, String message) {
+		try {
+			return new FrameBuilder(status, requestID, 64).putString(message).build();
+		} catch(IOException e) {
+			// a short message always fits
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * Add messages that could not be sent back to their queue.
+	 * 
+	 * @param queue
+	 *            the queue
+	 * 
+	 * @param messages
+	 *            the messages, may be <code>null</code>
+	 */
+	private static void giveBack(LineUpQueue queue, List<QueueMessage> messages) {
+		if(messages != null && !messages.isEmpty()) {
+			queue.addMessages(messages);
+		}
+	}
+
+}
@@ -0,0 +1,199 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.protocol;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import com.sangupta.lineup.async.QueueFuture;
+import com.sangupta.lineup.domain.QueueMessage;
+import com.sangupta.lineup.protocol.BinaryProtocol.FrameBuilder;
+import com.sangupta.lineup.protocol.BinaryProtocolClient.RequestWriter;
+import com.sangupta.lineup.protocol.BinaryProtocolClient.ResponseReader;
+
+/**
+ * A queue opened over a {@link BinaryProtocolClient}. All operations are
+ * pipelined and return at once with a {@link QueueFuture}, which fails with
+ * an {@link IOException} if the request fails.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public class BinaryQueueHandle {
+	
+	private static final ResponseReader<boolean[]> FLAGS = new ResponseReader<boolean[]>() {
+		
+		@Override
+		public boolean[] read(ByteBuffer payload) throws IOException {
+			return BinaryProtocolClient.getFlags(payload);
+		}
+		
+	};
+	
+	private static final ResponseReader<List<QueueMessage>> MESSAGES = new ResponseReader<List<QueueMessage>>() {
+		
+		@Override
+		public List<QueueMessage> read(ByteBuffer payload) throws IOException {
+			return BinaryProtocolClient.getMessages(payload);
+		}
+		
+	};
+	
+	/**
+	 * The client the queue was opened over
+	 */
+	private final BinaryProtocolClient client;
+	
+	/**
+	 * The handle the server knows the queue by
+	 */
+	private final int handle;
+	
+	BinaryQueueHandle(BinaryProtocolClient client, int handle) {
+		this.client = client;
+		this.handle = handle;
+	}
+	
+	/**
+	 * Add the given messages to the queue.
+	 * 
+	 * @param messages
+	 *            the messages, none of which may be <code>null</code>, and no
+	 *            more than {@link BinaryProtocol#MAX_BATCH_MESSAGES}
+	 * 
+	 * @return the future completed with whether each message was added
+	 */
+	public QueueFuture<boolean[]> addMessages(final List<QueueMessage> messages) {
+		checkBatch(messages);
+		for(QueueMessage message : messages) {
+			if(message == null) {
+				throw new IllegalArgumentException("Messages cannot be null");
+			}
+		}
+		
+		return this.client.call(BinaryProtocol.OP_ADD, new RequestWriter() {
+			
+			@Override
+			public void write(FrameBuilder frame) {
+				frame.putInt(handle).putInt(messages.size());
+				for(QueueMessage message : messages) {
+					frame.putMessage(message);
+				}
+			}
+			
+		}, FLAGS);
+	}
+	
+	/**
+	 * Read up to the given number of messages from the queue, waiting for at
+	 * least the minimum number to be available for up to the given time.
+	 * 
+	 * @param minMessages
+	 *            the minimum number of messages to wait for
+	 * 
+	 * @param maxMessages
+	 *            the maximum number of messages to read
+	 * 
+	 * @param waitMillis
+	 *            the time in milliseconds to wait for, <code>0</code> to read
+	 *            only what is available now
+	 * 
+	 * @return the future completed with the messages read
+	 */
+	public QueueFuture<List<QueueMessage>> getMessages(final int minMessages, final int maxMessages, final long waitMillis) {
+		if(maxMessages < 1) {
+			throw new IllegalArgumentException("Maximum number of messages must be at least one");
+		}
+		
+		if(minMessages < 0 || minMessages > maxMessages) {
+			throw new IllegalArgumentException("Minimum number of messages must be between zero and the maximum");
+		}
+		
+		return this.client.call(BinaryProtocol.OP_GET, new RequestWriter() {
+			
+			@Override
+			public void write(FrameBuilder frame) {
+				frame.putInt(handle).putInt(minMessages).putInt(maxMessages).putLong(Math.max(0, waitMillis));
+			}
+			
+		}, MESSAGES);
+	}
+	
+	/**
+	 * Delete the messages with the given IDs from the queue.
+	 * 
+	 * @param messageIDs
+	 *            the IDs, no more than
+	 *            {@link BinaryProtocol#MAX_BATCH_MESSAGES}
+	 * 
+	 * @return the future completed with whether each message was deleted
+	 */
+	public QueueFuture<boolean[]> deleteMessages(final List<String> messageIDs) {
+		checkBatch(messageIDs);
+		
+		return this.client.call(BinaryProtocol.OP_DELETE, new RequestWriter() {
+			
+			@Override
+			public void write(FrameBuilder frame) {
+				frame.putInt(handle).putInt(messageIDs.size());
+				for(String messageID : messageIDs) {
+					frame.putString(messageID);
+				}
+			}
+			
+		}, FLAGS);
+	}
+	
+	/**
+	 * Check that a batch can be sent in a single request.
+	 * 
+	 * @param items
+	 *            the items of the batch
+	 */
+	private static void checkBatch(List<?> items) {
+		if(items == null) {
+			throw new IllegalArgumentException("Batch cannot be null");
+		}
+		
+		if(items.size() > BinaryProtocol.MAX_BATCH_MESSAGES) {
+			throw new IllegalArgumentException("Batch cannot have more than " + BinaryProtocol.MAX_BATCH_MESSAGES + " items");
+		}
+	}
+	
+	// Usual accessors follow
+
+	/**
+	 * @return the client
+	 */
+	public BinaryProtocolClient getClient() {
+		return client;
+	}
+
+	/**
+	 * @return the handle
+	 */
+	public int getHandle() {
+		return handle;
+	}
+
+}
@@ -23,18 +23,35 @@ package com.sangupta.lineup.queues;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Queue;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sangupta.jerry.ds.HandOffExchanger;
+import com.sangupta.jerry.ds.HandOffExchanger.Waiter;
+import com.sangupta.jerry.ds.PaddedAtomicLong;
+import com.sangupta.jerry.ds.WaitCondition;
+import com.sangupta.jerry.ds.WaitStrategy;
 import com.sangupta.jerry.util.AssertUtils;
 import com.sangupta.jerry.util.StringUtils;
+import com.sangupta.lineup.async.HashedWheelTimer;
+import com.sangupta.lineup.async.QueueFuture;
 import com.sangupta.lineup.domain.QueueMessage;
 import com.sangupta.lineup.domain.QueueOptions;
+import com.sangupta.lineup.service.QueueGenerationFactory;
 
 /**
  * This class helps {@link LineUpQueue} to wrap inside a normal {@link Queue}
@@ -50,10 +67,23 @@ import com.sangupta.lineup.domain.QueueOptions;
  */
 public abstract class AbstractLineUpQueue implements LineUpQueue {
 	
+	private static final Logger LOGGER = LoggerFactory.getLogger(AbstractLineUpQueue.class);
+	
 	/**
 	 * The default message priority when the incoming message has not specified any.
 	 */
 	protected static final int DEFAULT_MESSAGE_PRIORITY = 1;
+	
+	/**
+	 * The time in seconds for which {@link #take()} waits in one go, before
+	 * it starts waiting again.
+	 */
+	private static final long TAKE_POLL_SECONDS = 60;
+	
+	/**
+	 * The minimum time in milliseconds between two scans for expired leases
+	 */
+	private static final long LEASE_SWEEP_MILLIS = 1000;
 
 	/**
 	 * The unique name of this queue.
@@ -77,6 +107,56 @@ public abstract class AbstractLineUpQueue implements LineUpQueue {
 	 */
 	protected final AtomicInteger queueSize = new AtomicInteger(0);
 	
+	/**
+	 * Hands messages directly to waiting consumers, <code>null</code> if
+	 * direct hand-off is not enabled for this queue
+	 */
+	protected final HandOffExchanger<QueueMessage> handOff;
+	
+	/**
+	 * The asynchronous receives waiting for a message to be added
+	 */
+	private final HandOffExchanger<QueueMessage> pendingReceives = new HandOffExchanger<QueueMessage>();
+	
+	/**
+	 * The asynchronous batch receives waiting for enough messages to be added
+	 */
+	private final Queue<PendingBatch> pendingBatches = new ConcurrentLinkedQueue<PendingBatch>();
+	
+	/**
+	 * The number of batch receives waiting, so that adds can skip looking
+	 * for them
+	 */
+	private final AtomicInteger pendingBatchCount = new AtomicInteger(0);
+	
+	/**
+	 * The strategy consumers use to wait on an empty queue, <code>null</code>
+	 * for queues without options
+	 */
+	protected final WaitStrategy waitStrategy;
+	
+	/**
+	 * Incremented every time a message is added, so that waiting consumers
+	 * can tell if something was added since they last found the queue empty,
+	 * and so can a thread handing off queued messages
+	 */
+	private final PaddedAtomicLong addSequence = new PaddedAtomicLong(0);
+	
+	/**
+	 * The leases that still hold messages
+	 */
+	private final Set<MessageLease> leases = Collections.newSetFromMap(new ConcurrentHashMap<MessageLease, Boolean>());
+	
+	/**
+	 * The number of leases that still hold messages
+	 */
+	private final AtomicInteger activeLeases = new AtomicInteger(0);
+	
+	/**
+	 * The time in milliseconds after which leases are next scanned for expiry
+	 */
+	private volatile long nextLeaseSweep = 0;
+	
 	/**
 	 * Convenience constructor - that initializes every known 
 	 * parameter to null. To be used only in case of Remote queues.
@@ -86,6 +166,8 @@ public abstract class AbstractLineUpQueue implements LineUpQueue {
 		this.name = null;
 		this.securityCode = null;
 		this.options = null;
+		this.handOff = null;
+		this.waitStrategy = null;
 	}
 	
 	/**
@@ -115,6 +197,18 @@ public abstract class AbstractLineUpQueue implements LineUpQueue {
 		this.name = name;
 		this.options = options;
 		
+		if(options != null && options.isDirectHandOff()) {
+			this.handOff = new HandOffExchanger<QueueMessage>();
+		} else {
+			this.handOff = null;
+		}
+		
+		if(options != null) {
+			this.waitStrategy = QueueGenerationFactory.getWaitStrategy(options);
+		} else {
+			this.waitStrategy = null;
+		}
+		
 		// initialize other params
 		if(securityCode == null) {
 			this.securityCode = UUID.randomUUID().toString();
@@ -196,16 +290,192 @@ public abstract class AbstractLineUpQueue implements LineUpQueue {
 		return this.addMessage(qm);
 	}
 	
+	/**
+	 * Add the given message to the queue. If direct hand-off is enabled and a
+	 * consumer is waiting, the message is handed to the consumer without
+	 * entering the queue.
+	 * 
+	 * @see LineUpQueue#addMessage(QueueMessage)
+	 */
 	@Override
 	public final QueueMessage addMessage(QueueMessage queueMessage) {
+		if(this.transferMessage(queueMessage)) {
+			return queueMessage;
+		}
+		
 		queueMessage = this.addQueueMessage(queueMessage);
 		if(queueMessage != null) {
-			this.queueSize.incrementAndGet();
+			this.messageAdded();
 		}
 		
 		return queueMessage;
 	}
 	
+	/**
+	 * Hand the given message to a consumer that is already waiting, if any.
+	 * Subclasses that add messages without going through
+	 * {@link #addMessage(QueueMessage)} must call this method first, and only
+	 * add the message to the backing queue if it returns <code>false</code>.
+	 * 
+	 * @param queueMessage
+	 *            the message to hand off
+	 * 
+	 * @return <code>true</code> if a consumer took the message,
+	 *         <code>false</code> otherwise
+	 */
+	protected final boolean transferMessage(QueueMessage queueMessage) {
+		if(this.handOff != null && this.handOff.transfer(queueMessage)) {
+			return true;
+		}
+		
+		return this.pendingReceives.hasWaiters() && this.pendingReceives.transfer(queueMessage);
+	}
+	
+	/**
+	 * Add the given messages to the queue in one go. Each message is handed
+	 * to a waiting consumer if there is one, or else added to the backing
+	 * queue. Consumers are woken up once for all the messages that made it to
+	 * the backing queue, rather than once per message.
+	 * 
+	 * @see LineUpQueue#addMessages(List)
+	 */
+	@Override
+	public List<QueueMessage> addMessages(List<QueueMessage> queueMessages) {
+		if(queueMessages == null) {
+			throw new IllegalArgumentException("Queue messages cannot be null");
+		}
+		
+		List<QueueMessage> added = new ArrayList<QueueMessage>(queueMessages.size());
+		int queued = 0;
+		for(QueueMessage queueMessage : queueMessages) {
+			if(queueMessage == null) {
+				added.add(null);
+				continue;
+			}
+			
+			if(this.transferMessage(queueMessage)) {
+				added.add(queueMessage);
+				continue;
+			}
+			
+			queueMessage = this.addQueueMessage(queueMessage);
+			if(queueMessage != null) {
+				this.queueSize.incrementAndGet();
+				queued++;
+			}
+			
+			added.add(queueMessage);
+		}
+		
+		if(queued > 0) {
+			this.messagesAvailable(queued);
+		}
+		
+		return added;
+	}
+	
+	/**
+	 * Move messages from the queue to the waiters of the given exchanger, in
+	 * the order they registered. A waiter is claimed before polling the
+	 * queue, so that a message polled always has a waiter to go to.
+	 * 
+	 * This is run by producers after adding, as consumers may have found the
+	 * queue empty before the message made it to the queue, and by consumers
+	 * after registering, as messages may have been queued meanwhile.
+	 * 
+	 * @param exchanger
+	 *            the exchanger the waiters are registered with
+	 */
+	private void handOffQueuedMessages(HandOffExchanger<QueueMessage> exchanger) {
+		while(exchanger.hasWaiters()) {
+			Waiter<QueueMessage> waiter = exchanger.claim();
+			if(waiter == null) {
+				return;
+			}
+			
+			final long sequence = this.addSequence.get();
+			QueueMessage message;
+			try {
+				message = this.getQueueMessage(0);
+			} catch(InterruptedException e) {
+				exchanger.release(waiter);
+				Thread.currentThread().interrupt();
+				return;
+			}
+			
+			if(message == null) {
+				exchanger.release(waiter);
+				
+				// a message added while the waiter was claimed did not see
+				// it, and it is up to us to hand that message over
+				if(this.addSequence.get() == sequence) {
+					return;
+				}
+				
+				continue;
+			}
+			
+			this.queueSize.decrementAndGet();
+			exchanger.fulfil(waiter, message);
+		}
+	}
+	
+	/**
+	 * Account for a message that made it to the backing queue, and wake up a
+	 * consumer that may be waiting for it. Subclasses that add messages
+	 * without going through {@link #addMessage(QueueMessage)} must call this
+	 * method.
+	 * 
+	 */
+	protected void messageAdded() {
+		this.queueSize.incrementAndGet();
+		this.messagesAvailable(1);
+	}
+	
+	/**
+	 * Wake up the consumers that may be waiting for the given number of
+	 * messages that were added to, and accounted for in, the backing queue.
+	 * 
+	 * @param count
+	 *            the number of messages added
+	 */
+	private void messagesAvailable(int count) {
+		this.signalMessagesAdded(count);
+		
+		if(this.handOff != null && this.handOff.hasWaiters()) {
+			this.handOffQueuedMessages(this.handOff);
+		}
+		
+		if(this.pendingReceives.hasWaiters()) {
+			this.handOffQueuedMessages(this.pendingReceives);
+		}
+		
+		if(this.pendingBatchCount.get() > 0) {
+			for(PendingBatch batch : this.pendingBatches) {
+				batch.signal();
+			}
+		}
+	}
+	
+	/**
+	 * Wake up the consumers that may be waiting for messages that were added
+	 * to the backing queue: one consumer for a single message, and all of
+	 * them for more.
+	 * 
+	 * @param count
+	 *            the number of messages added
+	 */
+	private void signalMessagesAdded(int count) {
+		this.addSequence.incrementAndGet();
+		if(this.waitStrategy != null) {
+			if(count == 1) {
+				this.waitStrategy.signal();
+			} else {
+				this.waitStrategy.signalAll();
+			}
+		}
+	}
+	
 	/**
 	 * Add the given message to the queue
 	 * 
@@ -223,32 +493,581 @@ public abstract class AbstractLineUpQueue implements LineUpQueue {
 	 * @return the {@link QueueMessage} instance which is wrapping up the actual
 	 *         message
 	 * 
-	 * @see LineUpQueue#getMessage()
+	 * @see LineUpQueue#getMessage()
+	 */
+	@Override
+	public final QueueMessage getMessage() {
+		try {
+			return this.getMessage(0);
+		} catch(InterruptedException e) {
+			// eat up
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Return a message from the queue polling for the given time.
+	 * 
+	 * @param longPollTime
+	 *            the poll time to wait before returning a <code>null</code>
+	 * @return {@link QueueMessage} as read, <code>null</code> otherwise
+	 * 
+	 * @throws InterruptedException
+	 *             if something interrupted this thread before poll time elapsed
+	 */
+	@Override
+	public final QueueMessage getMessage(long longPollTime) throws InterruptedException {
+		if(this.activeLeases.get() > 0) {
+			this.sweepLeases();
+		}
+		
+		if(this.handOff != null && longPollTime > 0) {
+			return this.awaitMessage(longPollTime);
+		}
+		
+		if(this.waitStrategy != null && longPollTime > 0) {
+			return this.waitForMessage(TimeUnit.SECONDS.toNanos(longPollTime));
+		}
+		
+		QueueMessage message = this.getQueueMessage(longPollTime);
+		if(message != null) {
+			this.queueSize.decrementAndGet();
+		}
+		
+		return message;
+	}
+	
+	/**
+	 * Return a message from the queue, waiting for one to be added as per the
+	 * {@link WaitStrategy} of the queue.
+	 * 
+	 * @param nanos
+	 *            the time in nanoseconds to wait before returning a
+	 *            <code>null</code>
+	 * 
+	 * @return {@link QueueMessage} as read, <code>null</code> otherwise
+	 * 
+	 * @throws InterruptedException
+	 *             if something interrupted this thread before poll time elapsed
+	 */
+	private QueueMessage waitForMessage(long nanos) throws InterruptedException {
+		final long start = System.nanoTime();
+		final AddedSinceCondition condition = new AddedSinceCondition();
+		int attempt = 0;
+		
+		do {
+			// read the sequence first, so that an add after our poll is seen
+			condition.sequence = this.addSequence.get();
+			
+			QueueMessage message = this.getQueueMessage(0);
+			if(message != null) {
+				this.queueSize.decrementAndGet();
+				return message;
+			}
+			
+			long remaining = nanos - (System.nanoTime() - start);
+			if(remaining <= 0) {
+				return null;
+			}
+			
+			if(this.activeLeases.get() > 0) {
+				// wake up in time to return the messages of expired leases
+				this.sweepLeases();
+				remaining = Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(LEASE_SWEEP_MILLIS));
+			}
+			
+			this.waitStrategy.await(condition, attempt, remaining);
+			if(attempt < Integer.MAX_VALUE) {
+				attempt++;
+			}
+		} while(true);
+	}
+	
+	/**
+	 * Return a message from the queue, or wait for the given time for a
+	 * producer to hand one over directly.
+	 * 
+	 * @param longPollTime
+	 *            the poll time in seconds to wait before returning a
+	 *            <code>null</code>
+	 * 
+	 * @return {@link QueueMessage} as read, <code>null</code> otherwise
+	 * 
+	 * @throws InterruptedException
+	 *             if something interrupted this thread before poll time elapsed
+	 */
+	private QueueMessage awaitMessage(long longPollTime) throws InterruptedException {
+		QueueMessage message = this.getQueueMessage(0);
+		if(message != null) {
+			this.queueSize.decrementAndGet();
+			return message;
+		}
+		
+		// register and hand over what may have been queued since, which may
+		// well be to ourselves
+		Waiter<QueueMessage> waiter = this.handOff.register();
+		this.handOffQueuedMessages(this.handOff);
+		
+		return this.handOff.await(waiter, TimeUnit.SECONDS.toNanos(longPollTime));
+	}
+	
+	/**
+	 * Return a message from the queue polling for the given time. Queues
+	 * created with {@link QueueOptions} wait as per their {@link WaitStrategy}
+	 * and only call this method with a poll time of zero.
+	 * 
+	 * @param longPollTime
+	 *            the poll time to wait before returning a <code>null</code>
+	 * @return {@link QueueMessage} as read, <code>null</code> otherwise
+	 * 
+	 * @throws InterruptedException
+	 *             if something interrupted this thread before poll time elapsed
+	 */
+	protected abstract QueueMessage getQueueMessage(long longPollTime) throws InterruptedException;
+	
+	/**
+	 * @see com.sangupta.lineup.queues.LineUpQueue#getMessages(int)
+	 */
+	@Override
+	public List<QueueMessage> getMessages(int numMessages) {
+		List<QueueMessage> list = new ArrayList<QueueMessage>();
+		if(numMessages > 0) {
+			this.drainTo(list, numMessages);
+		}
+		
+		return list;
+	}
+	
+	/**
+	 * Waits for the batch as an asynchronous receive, so that it is completed
+	 * by the add that makes the minimum available.
+	 * 
+	 * @see com.sangupta.lineup.queues.LineUpQueue#getMessages(int, int, long, java.util.concurrent.TimeUnit)
+	 */
+	@Override
+	public List<QueueMessage> getMessages(int minMessages, int maxMessages, long maxWait, TimeUnit unit) throws InterruptedException {
+		QueueFuture<List<QueueMessage>> future = this.receiveBatchAsync(minMessages, maxMessages, maxWait, unit);
+		
+		try {
+			try {
+				return future.get();
+			} catch(InterruptedException e) {
+				if(future.cancel(false)) {
+					throw e;
+				}
+				
+				// completed meanwhile - do not lose the messages drained
+				List<QueueMessage> messages = future.get();
+				Thread.currentThread().interrupt();
+				return messages;
+			}
+		} catch(ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			
+			if(cause instanceof Error) {
+				throw (Error) cause;
+			}
+			
+			throw new IllegalStateException(cause);
+		}
+	}
+	
+	/**
+	 * Lease the given number of messages, for as long as the visibility
+	 * timeout of the queue.
+	 * 
+	 * @see com.sangupta.lineup.queues.LineUpQueue#leaseMessages(int, long)
+	 */
+	@Override
+	public MessageLease leaseMessages(int numMessages, long longPollTime) throws InterruptedException {
+		int visibilityTimeout = QueueOptions.DEFAULT_VISIBILITY_TIMEOUT;
+		if(this.options != null) {
+			visibilityTimeout = this.options.getVisibilityTimeout();
+		}
+		
+		return this.leaseMessages(numMessages, longPollTime, visibilityTimeout);
+	}
+	
+	/**
+	 * Lease up to the given number of messages in one operation, waiting for
+	 * the given poll time if the queue is empty.
+	 * 
+	 * @param numMessages
+	 *            the maximum number of messages to lease
+	 * 
+	 * @param longPollTime
+	 *            the time in seconds to wait for a message if the queue is
+	 *            empty
+	 * 
+	 * @param leaseSeconds
+	 *            the time in seconds after which the messages not yet handed
+	 *            out are returned to the queue
+	 * 
+	 * @return the {@link MessageLease}, which holds no messages if none was
+	 *         available in the poll time
+	 * 
+	 * @throws InterruptedException
+	 *             if something interrupted this thread before poll time elapsed
+	 */
+	public MessageLease leaseMessages(int numMessages, long longPollTime, int leaseSeconds) throws InterruptedException {
+		if(numMessages <= 0) {
+			throw new IllegalArgumentException("Number of messages to lease must be positive");
+		}
+		
+		if(leaseSeconds <= 0) {
+			throw new IllegalArgumentException("Lease time must be positive");
+		}
+		
+		this.checkConcurrentBackingQueue("Leases");
+		
+		this.sweepLeases();
+		
+		List<QueueMessage> messages = new ArrayList<QueueMessage>(numMessages);
+		this.drainQueueMessages(messages, numMessages);
+		
+		if(messages.isEmpty() && longPollTime > 0) {
+			QueueMessage message = this.getMessage(longPollTime);
+			if(message != null) {
+				// the message stays counted while leased
+				this.queueSize.incrementAndGet();
+				messages.add(message);
+				this.drainQueueMessages(messages, numMessages - 1);
+			}
+		}
+		
+		MessageLease lease = new MessageLease(this, messages, leaseSeconds * 1000l);
+		if(!messages.isEmpty()) {
+			// leased messages are counted via the lease from now on
+			this.activeLeases.incrementAndGet();
+			this.leases.add(lease);
+			this.queueSize.addAndGet(-messages.size());
+		}
+		
+		return lease;
+	}
+	
+	/**
+	 * Return a leased message that was not handed out back to the queue, as
+	 * if it were added afresh. The backing queue may refuse the message, such
+	 * as when a bounded queue has filled up since the message was leased.
+	 * 
+	 * @param message
+	 *            the message to return
+	 * 
+	 * @return <code>true</code> if the message is back in the queue,
+	 *         <code>false</code> if the queue refused it
+	 */
+	boolean returnLeasedMessage(QueueMessage message) {
+		if(this.transferMessage(message)) {
+			return true;
+		}
+		
+		if(this.addQueueMessage(message) != null) {
+			this.messageAdded();
+			return true;
+		}
+		
+		LOGGER.warn("Queue {} refused to take back message {} that was leased", this.name, message.getMessageID());
+		return false;
+	}
+	
+	/**
+	 * Forget a lease that no longer holds any messages.
+	 * 
+	 * @param lease
+	 *            the lease
+	 */
+	void leaseReleased(MessageLease lease) {
+		if(this.leases.remove(lease)) {
+			this.activeLeases.decrementAndGet();
+		}
+	}
+	
+	/**
+	 * Close the leases that have expired, returning their messages to the
+	 * queue. Leases are scanned at most once in {@link #LEASE_SWEEP_MILLIS}.
+	 * 
+	 */
+	private void sweepLeases() {
+		if(this.activeLeases.get() == 0) {
+			return;
+		}
+		
+		final long now = System.currentTimeMillis();
+		if(now < this.nextLeaseSweep) {
+			return;
+		}
+		
+		this.nextLeaseSweep = now + LEASE_SWEEP_MILLIS;
+		for(MessageLease lease : this.leases) {
+			if(lease.isExpired()) {
+				lease.close();
+			}
+		}
+	}
+	
+	/**
+	 * Remove up to the given number of messages from the backing queue in one
+	 * go, without accounting for them in the queue size. Implementations
+	 * whose backing queue can hand out a batch cheaper than one message at a
+	 * time should override this method.
+	 * 
+	 * @param collection
+	 *            the collection to add the messages to
+	 * 
+	 * @param maxMessages
+	 *            the maximum number of messages to remove
+	 * 
+	 * @return the number of messages removed
+	 */
+	protected int drainQueueMessages(Collection<? super QueueMessage> collection, int maxMessages) {
+		int count = 0;
+		while(count < maxMessages) {
+			QueueMessage message;
+			try {
+				message = this.getQueueMessage(0);
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+			
+			if(message == null) {
+				break;
+			}
+			
+			collection.add(message);
+			count++;
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Returns the number of messages in the queue, including leased messages
+	 * that have not been handed out yet
+	 * 
+	 * @return the number of messages
+	 * 
+	 */
+	@Override
+	public final int numMessages() {
+		int size = this.queueSize.get();
+		if(this.activeLeases.get() > 0) {
+			for(MessageLease lease : this.leases) {
+				size += lease.remaining();
+			}
+		}
+		
+		return size;
+	}
+
+	/**
+	 * 
+	 * @see com.sangupta.lineup.queues.LineUpQueue#deleteMessage(java.lang.String)
+	 */
+	@Override
+	public boolean deleteMessage(String messageID) {
+		long id = StringUtils.getLongValue(messageID, 0);
+		if(id == 0) {
+			return false;
+		}
+		
+		boolean deleted = this.removeMessageID(id);
+		if(deleted) {
+			this.queueSize.decrementAndGet();
+		}
+		
+		return deleted;
+	}
+	
+	/**
+	 * Delete the messages with the given identifiers, accounting for the
+	 * deleted messages in one go.
+	 * 
+	 * @see com.sangupta.lineup.queues.LineUpQueue#deleteMessages(java.util.List)
+	 */
+	@Override
+	public boolean[] deleteMessages(List<String> messageIDs) {
+		if(messageIDs == null) {
+			throw new IllegalArgumentException("Message IDs cannot be null");
+		}
+		
+		boolean[] deleted = new boolean[messageIDs.size()];
+		int count = 0;
+		int index = 0;
+		for(String messageID : messageIDs) {
+			long id = StringUtils.getLongValue(messageID, 0);
+			if(id != 0 && this.removeMessageID(id)) {
+				deleted[index] = true;
+				count++;
+			}
+			
+			index++;
+		}
+		
+		if(count > 0) {
+			this.queueSize.addAndGet(-count);
+		}
+		
+		return deleted;
+	}
+	
+	/**
+	 * Adding a message never blocks for local queues, and the future is
+	 * returned completed.
+	 * 
+	 * @see com.sangupta.lineup.queues.LineUpQueue#addMessageAsync(java.lang.String)
+	 */
+	@Override
+	public QueueFuture<QueueMessage> addMessageAsync(String message) {
+		try {
+			return QueueFuture.completed(this.addMessage(message));
+		} catch(RuntimeException e) {
+			return QueueFuture.failed(e);
+		}
+	}
+	
+	/**
+	 * A receive that has to wait is completed by the producer that hands it a
+	 * message. On queues whose backing queue only consumers may poll, it is
+	 * instead completed by the consumer that waits on the future, which must
+	 * thus be the consumer that asked for it.
+	 * 
+	 * @see com.sangupta.lineup.queues.LineUpQueue#receiveAsync(long, java.util.concurrent.TimeUnit)
+	 */
+	@Override
+	public QueueFuture<QueueMessage> receiveAsync(long timeout, TimeUnit unit) {
+		if(this.activeLeases.get() > 0) {
+			this.sweepLeases();
+		}
+		
+		try {
+			QueueMessage message = this.pollQueueMessage();
+			if(message != null || timeout <= 0) {
+				return QueueFuture.completed(message);
+			}
+			
+			if(!this.isBackingQueueConcurrent()) {
+				return this.schedule(new PolledMessage(unit.toNanos(timeout)), timeout, unit);
+			}
+			
+			// register and hand over what may have been queued since
+			PendingReceive receive = this.pendingReceives.register(new PendingReceive());
+			this.handOffQueuedMessages(this.pendingReceives);
+			if(receive.future.isDone()) {
+				return receive.future;
+			}
+			
+			receive.timeout = ReceiveTimer.TIMER.schedule(receive, timeout, unit);
+			if(receive.future.isDone()) {
+				// handed a message before the timeout was scheduled
+				receive.cancelTimeout();
+			}
+			
+			return receive.future;
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return QueueFuture.failed(e);
+		} catch(RuntimeException e) {
+			return QueueFuture.failed(e);
+		}
+	}
+	
+	/**
+	 * A batch that has to wait is filled by the adds that make the minimum
+	 * available. On queues whose backing queue only consumers may poll, it is
+	 * instead filled by the consumer that waits on the future, which must
+	 * thus be the consumer that asked for it.
+	 * 
+	 * @see com.sangupta.lineup.queues.LineUpQueue#receiveBatchAsync(int, int, long, java.util.concurrent.TimeUnit)
+	 */
+	@Override
+	public QueueFuture<List<QueueMessage>> receiveBatchAsync(int minMessages, int maxMessages, long maxWait, TimeUnit unit) {
+		if(maxMessages < 1) {
+			throw new IllegalArgumentException("Maximum number of messages must be at least one");
+		}
+		
+		if(minMessages < 0 || minMessages > maxMessages) {
+			throw new IllegalArgumentException("Minimum number of messages must be between zero and the maximum");
+		}
+		
+		if(this.activeLeases.get() > 0) {
+			this.sweepLeases();
+		}
+		
+		if(!this.isBackingQueueConcurrent()) {
+			PolledBatch polled = new PolledBatch(minMessages, maxMessages, unit.toNanos(maxWait));
+			if(polled.poll(0) || maxWait <= 0) {
+				polled.complete(polled.messages);
+				return polled;
+			}
+			
+			return this.schedule(polled, maxWait, unit);
+		}
+		
+		PendingBatch batch = new PendingBatch(minMessages, maxMessages);
+		batch.expired = maxWait <= 0;
+		batch.signal();
+		if(batch.future.isDone()) {
+			return batch.future;
+		}
+		
+		// register and check again, as messages may have been added since
+		this.pendingBatches.add(batch);
+		this.pendingBatchCount.incrementAndGet();
+		batch.signal();
+		
+		batch.timeout = ReceiveTimer.TIMER.schedule(batch, maxWait, unit);
+		if(batch.future.isDone()) {
+			// completed before the timeout was scheduled
+			batch.cancelTimeout();
+		}
+		
+		return batch.future;
+	}
+	
+	/**
+	 * Forget a batch receive that has completed or been cancelled.
+	 * 
+	 * @param batch
+	 *            the batch receive
+	 */
+	private void removePendingBatch(PendingBatch batch) {
+		if(this.pendingBatches.remove(batch)) {
+			this.pendingBatchCount.decrementAndGet();
+		}
+	}
+	
+	/**
+	 * Deleting a message never blocks for local queues, and the future is
+	 * returned completed.
+	 * 
+	 * @see com.sangupta.lineup.queues.LineUpQueue#deleteMessageAsync(java.lang.String)
 	 */
 	@Override
-	public final QueueMessage getMessage() {
+	public QueueFuture<Boolean> deleteMessageAsync(String messageID) {
 		try {
-			return this.getMessage(0);
-		} catch(InterruptedException e) {
-			// eat up
+			return QueueFuture.completed(this.deleteMessage(messageID));
+		} catch(RuntimeException e) {
+			return QueueFuture.failed(e);
 		}
-		
-		return null;
 	}
 	
 	/**
-	 * Return a message from the queue polling for the given time.
+	 * Return a message from the backing queue without waiting, accounting
+	 * for it being taken out.
 	 * 
-	 * @param longPollTime
-	 *            the poll time to wait before returning a <code>null</code>
-	 * @return {@link QueueMessage} as read, <code>null</code> otherwise
+	 * @return the message, or <code>null</code> if the queue is empty
 	 * 
 	 * @throws InterruptedException
-	 *             if something interrupted this thread before poll time elapsed
+	 *             if the backing queue was interrupted
 	 */
-	@Override
-	public final QueueMessage getMessage(long longPollTime) throws InterruptedException {
-		QueueMessage message = this.getQueueMessage(longPollTime);
+	private QueueMessage pollQueueMessage() throws InterruptedException {
+		QueueMessage message = this.getQueueMessage(0);
 		if(message != null) {
 			this.queueSize.decrementAndGet();
 		}
@@ -257,65 +1076,49 @@ public abstract class AbstractLineUpQueue implements LineUpQueue {
 	}
 	
 	/**
-	 * Return a message from the queue polling for the given time.
+	 * Return a message from the backing queue, waiting for up to the given
+	 * time for one to be added as per the {@link WaitStrategy} of the queue.
 	 * 
-	 * @param longPollTime
-	 *            the poll time to wait before returning a <code>null</code>
-	 * @return {@link QueueMessage} as read, <code>null</code> otherwise
+	 * @param nanos
+	 *            the time in nanoseconds to wait for
+	 * 
+	 * @return the message, or <code>null</code> if none was added in time
 	 * 
 	 * @throws InterruptedException
-	 *             if something interrupted this thread before poll time elapsed
-	 */
-	protected abstract QueueMessage getQueueMessage(long longPollTime) throws InterruptedException;
-	
-	/**
-	 * @see com.sangupta.lineup.queues.LineUpQueue#getMessages(int)
+	 *             if something interrupted this thread before the time
+	 *             elapsed
 	 */
-	@Override
-	public List<QueueMessage> getMessages(int numMessages) {
-		List<QueueMessage> list = new ArrayList<QueueMessage>();
-		
-		QueueMessage qm;
-		for(int index = 0; index < numMessages; index++) {
-			qm = this.getMessage();
-			if(qm == null) {
-				break;
-			}
-			
-			list.add(qm);
+	private QueueMessage pollQueueMessage(long nanos) throws InterruptedException {
+		if(nanos > 0 && this.waitStrategy != null) {
+			return this.waitForMessage(nanos);
 		}
 		
-		return list;
+		return this.pollQueueMessage();
 	}
 	
 	/**
-	 * Returns the number of messages in the queue
+	 * Schedule the timeout of the given receive, which completes it with
+	 * whatever was polled for it should no consumer wait on it.
 	 * 
-	 * @return the number of messages
+	 * @param receive
+	 *            the receive
 	 * 
-	 */
-	@Override
-	public final int numMessages() {
-		return this.queueSize.get();
-	}
-
-	/**
+	 * @param timeout
+	 *            the time to wait for
 	 * 
-	 * @see com.sangupta.lineup.queues.LineUpQueue#deleteMessage(java.lang.String)
+	 * @param unit
+	 *            the unit of the time to wait for
+	 * 
+	 * @return the receive
 	 */
-	@Override
-	public boolean deleteMessage(String messageID) {
-		long id = StringUtils.getLongValue(messageID, 0);
-		if(id == 0) {
-			return false;
-		}
-		
-		boolean deleted = this.removeMessageID(id);
-		if(deleted) {
-			this.queueSize.decrementAndGet();
+	private <V> PolledReceive<V> schedule(PolledReceive<V> receive, long timeout, TimeUnit unit) {
+		receive.timeout = ReceiveTimer.TIMER.schedule(receive, timeout, unit);
+		if(receive.isDone()) {
+			// completed before the timeout was scheduled
+			receive.cancelTimeout();
 		}
 		
-		return deleted;
+		return receive;
 	}
 	
 	/**
@@ -425,6 +1228,8 @@ public abstract class AbstractLineUpQueue implements LineUpQueue {
 	}
 
 	/**
+	 * Adds the messages in one go via {@link #addMessages(List)}.
+	 * 
 	 * @see java.util.Collection#addAll(java.util.Collection)
 	 */
 	@Override
@@ -433,10 +1238,7 @@ public abstract class AbstractLineUpQueue implements LineUpQueue {
 			return false;
 		}
 		
-		for(QueueMessage queueMessage : collection) {
-			add(queueMessage);
-		}
-		
+		addMessages(new ArrayList<QueueMessage>(collection));
 		return true;
 	}
 
@@ -499,9 +1301,11 @@ public abstract class AbstractLineUpQueue implements LineUpQueue {
 	 */
 	@Override
 	public QueueMessage take() throws InterruptedException {
+		final long pollTime = this.waitStrategy != null ? TAKE_POLL_SECONDS : 0;
+		
 		QueueMessage qm = null;
 		while(qm == null) {
-			qm = getMessage();
+			qm = getMessage(pollTime);
 			if(qm != null) {
 				break;
 			}
@@ -509,6 +1313,71 @@ public abstract class AbstractLineUpQueue implements LineUpQueue {
 		
 		return qm;
 	}
+	
+	/**
+	 * Whether the backing queue may be added to and polled by any number of
+	 * threads. Leases and direct hand-off move messages in and out of the
+	 * backing queue on the threads of other parties - a producer, or whoever
+	 * returns a lease - and are thus only supported when this method returns
+	 * <code>true</code>. Asynchronous and batch receives that have to wait are
+	 * otherwise completed by the consumer waiting on them.
+	 * 
+	 * @return <code>true</code> if any thread may add and poll messages
+	 */
+	@Override
+	public boolean isBackingQueueConcurrent() {
+		return true;
+	}
+	
+	/**
+	 * Make sure that the backing queue can be worked upon by any thread.
+	 * 
+	 * @param operation
+	 *            the operation that needs it, for the error message
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             if the backing queue is restricted to a single producer or
+	 *             a single consumer
+	 */
+	private void checkConcurrentBackingQueue(String operation) {
+		if(!this.isBackingQueueConcurrent()) {
+			throw new UnsupportedOperationException(operation + " need a queue of MPMC cardinality: " + this.name);
+		}
+	}
+	
+	/**
+	 * Return the strategy used by consumers to wait on an empty queue, which
+	 * also keeps count of how often each of its phases was reached.
+	 * 
+	 * @return the wait strategy, <code>null</code> for queues without options
+	 */
+	public WaitStrategy getWaitStrategy() {
+		return this.waitStrategy;
+	}
+	
+	/**
+	 * A {@link WaitCondition} satisfied when a message has been added since
+	 * the consumer last looked at the queue.
+	 * 
+	 * @author sangupta
+	 *
+	 */
+	private class AddedSinceCondition implements WaitCondition {
+		
+		/**
+		 * The add sequence when the consumer last found the queue empty
+		 */
+		long sequence;
+		
+		/**
+		 * @see com.sangupta.jerry.ds.WaitCondition#isSatisfied()
+		 */
+		@Override
+		public boolean isSatisfied() {
+			return addSequence.get() != this.sequence;
+		}
+		
+	}
 
 	/**
 	 * @see java.util.concurrent.BlockingQueue#poll(long, java.util.concurrent.TimeUnit)
@@ -543,11 +1412,13 @@ public abstract class AbstractLineUpQueue implements LineUpQueue {
 	}
 
 	/**
+	 * Queues are unbounded unless they say otherwise.
+	 * 
 	 * @see java.util.concurrent.BlockingQueue#remainingCapacity()
 	 */
 	@Override
 	public int remainingCapacity() {
-		throw new RuntimeException("Method not supported");
+		return Integer.MAX_VALUE;
 	}
 
 	/**
@@ -571,7 +1442,7 @@ public abstract class AbstractLineUpQueue implements LineUpQueue {
 	 */
 	@Override
 	public int drainTo(Collection<? super QueueMessage> c) {
-		throw new RuntimeException("Method not supported");
+		return drainTo(c, Integer.MAX_VALUE);
 	}
 
 	/**
@@ -579,7 +1450,571 @@ public abstract class AbstractLineUpQueue implements LineUpQueue {
 	 */
 	@Override
 	public int drainTo(Collection<? super QueueMessage> c, int maxElements) {
-		throw new RuntimeException("Method not supported");
+		if(c == null) {
+			throw new NullPointerException();
+		}
+		
+		if(c == this) {
+			throw new IllegalArgumentException();
+		}
+		
+		this.sweepLeases();
+		
+		int drained = this.drainQueueMessages(c, maxElements);
+		this.queueSize.addAndGet(-drained);
+		return drained;
+	}
+
+	
+	/**
+	 * A receive waiting for a message to be added. No thread waits for it:
+	 * it is completed by the producer that hands it a message, or by the
+	 * shared timer once it times out.
+	 * 
+	 * @author sangupta
+	 *
+	 */
+	private class PendingReceive extends Waiter<QueueMessage> implements Runnable {
+		
+		/**
+		 * Generated via Eclipse
+		 */
+		private static final long serialVersionUID = 6092281477253951388L;
+
+		/**
+		 * The future handed to the caller
+		 */
+		final QueueFuture<QueueMessage> future = new QueueFuture<QueueMessage>() {
+			
+			@Override
+			public boolean cancel(boolean mayInterruptIfRunning) {
+				if(!pendingReceives.cancel(PendingReceive.this)) {
+					// a message has already been handed over
+					return false;
+				}
+				
+				cancelTimeout();
+				return super.cancel(mayInterruptIfRunning);
+			}
+			
+		};
+		
+		/**
+		 * The scheduled timeout, <code>null</code> until scheduled
+		 */
+		volatile HashedWheelTimer.Timeout timeout;
+		
+		/**
+		 * Create a receive that no thread waits for.
+		 * 
+		 */
+		PendingReceive() {
+			super(null);
+		}
+		
+		/**
+		 * Complete the receive with the message handed over.
+		 * 
+		 * @see com.sangupta.jerry.ds.HandOffExchanger.Waiter#wakeUp()
+		 */
+		@Override
+		protected void wakeUp() {
+			this.cancelTimeout();
+			this.future.complete(pendingReceives.getElement(this));
+		}
+		
+		/**
+		 * Complete the receive with <code>null</code> as it timed out.
+		 * 
+		 * @see java.lang.Runnable#run()
+		 */
+		@Override
+		public void run() {
+			if(pendingReceives.cancel(this)) {
+				this.future.complete(null);
+			}
+		}
+		
+		/**
+		 * Cancel the scheduled timeout, if any, so that it does not linger in
+		 * the timer.
+		 * 
+		 */
+		void cancelTimeout() {
+			HashedWheelTimer.Timeout timeout = this.timeout;
+			if(timeout != null) {
+				timeout.cancel();
+			}
+		}
+		
+	}
+	
+	/**
+	 * A batch receive waiting for the minimum number of messages to be
+	 * available. It is filled by the adds that may make it so, and by the
+	 * shared timer once it times out. Fills are serialized: a thread that
+	 * finds another one filling leaves it to fill once more on its behalf.
+	 * 
+	 * Messages are drained only once the minimum is available, but consumers
+	 * competing for them may leave the batch short, in which case the
+	 * messages drained stay with the batch until it completes.
+	 * 
+	 * @author sangupta
+	 *
+	 */
+	private class PendingBatch implements Runnable {
+		
+		final int minMessages;
+		
+		final int maxMessages;
+		
+		/**
+		 * The messages drained so far, only accessed while filling
+		 */
+		final List<QueueMessage> messages = new ArrayList<QueueMessage>();
+		
+		/**
+		 * The number of fills yet to be run, non-zero while a thread is
+		 * filling
+		 */
+		final AtomicInteger signals = new AtomicInteger();
+		
+		/**
+		 * The future handed to the caller
+		 */
+		final QueueFuture<List<QueueMessage>> future = new QueueFuture<List<QueueMessage>>() {
+			
+			@Override
+			public boolean cancel(boolean mayInterruptIfRunning) {
+				if(!super.cancel(mayInterruptIfRunning)) {
+					return false;
+				}
+				
+				// give back the messages drained so far
+				cancelTimeout();
+				signal();
+				return true;
+			}
+			
+		};
+		
+		/**
+		 * Whether the wait time has elapsed
+		 */
+		volatile boolean expired;
+		
+		/**
+		 * The scheduled timeout, <code>null</code> until scheduled
+		 */
+		volatile HashedWheelTimer.Timeout timeout;
+		
+		PendingBatch(int minMessages, int maxMessages) {
+			this.minMessages = minMessages;
+			this.maxMessages = maxMessages;
+		}
+		
+		/**
+		 * Complete the batch with the messages available, as it timed out.
+		 * 
+		 * @see java.lang.Runnable#run()
+		 */
+		@Override
+		public void run() {
+			this.expired = true;
+			this.signal();
+		}
+		
+		/**
+		 * Fill now, unless another thread is filling, in which case it fills
+		 * once more on our behalf.
+		 * 
+		 */
+		void signal() {
+			if(this.signals.getAndIncrement() != 0) {
+				return;
+			}
+			
+			int missed = 1;
+			do {
+				this.fill();
+				missed = this.signals.addAndGet(-missed);
+			} while(missed != 0);
+		}
+		
+		/**
+		 * Drain the messages if enough are available, and complete the batch
+		 * once it holds the minimum or has expired.
+		 * 
+		 */
+		private void fill() {
+			if(this.future.isDone()) {
+				// cancelled
+				removePendingBatch(this);
+				this.giveBack(this.messages);
+				return;
+			}
+			
+			final int wanted = this.minMessages - this.messages.size();
+			if(this.expired || queueSize.get() >= wanted) {
+				drainTo(this.messages, this.maxMessages - this.messages.size());
+			}
+			
+			if(!this.expired && this.messages.size() < this.minMessages) {
+				return;
+			}
+			
+			removePendingBatch(this);
+			this.cancelTimeout();
+			
+			List<QueueMessage> batch = new ArrayList<QueueMessage>(this.messages);
+			this.messages.clear();
+			if(!this.future.complete(batch)) {
+				this.giveBack(batch);
+			}
+		}
+		
+		/**
+		 * Return the given messages to the queue.
+		 * 
+		 * @param batch
+		 *            the messages to return
+		 */
+		private void giveBack(List<QueueMessage> batch) {
+			if(batch.isEmpty()) {
+				return;
+			}
+			
+			List<QueueMessage> copy = new ArrayList<QueueMessage>(batch);
+			batch.clear();
+			for(QueueMessage message : copy) {
+				returnLeasedMessage(message);
+			}
+		}
+		
+		/**
+		 * Cancel the scheduled timeout, if any, so that it does not linger in
+		 * the timer.
+		 * 
+		 */
+		void cancelTimeout() {
+			HashedWheelTimer.Timeout timeout = this.timeout;
+			if(timeout != null) {
+				timeout.cancel();
+			}
+		}
+		
+	}
+	
+	/**
+	 * An asynchronous receive on a queue whose backing queue only consumers
+	 * may poll. Neither a producer nor the shared timer may take messages out
+	 * for it, so it is completed by the consumer that waits on its future,
+	 * which polls on its own thread as a blocking receive would. Should no
+	 * consumer wait on it, the shared timer completes it once the wait time
+	 * elapses with what was polled so far, the rest of the messages staying
+	 * in the queue.
+	 * 
+	 * Messages polled are only ever handed over by completing the future:
+	 * the receive cannot be cancelled while a consumer polls for it or holds
+	 * messages, as giving them back would add to the queue from a consumer.
+	 * 
+	 * @author sangupta
+	 *
+	 * @param <V>
+	 */
+	private abstract class PolledReceive<V> extends QueueFuture<V> implements Runnable {
+		
+		/**
+		 * The time in nanoseconds by which the receive completes
+		 */
+		final long deadline;
+		
+		/**
+		 * Whether a consumer is polling for the receive, guarded by the
+		 * receive itself
+		 */
+		private boolean polling;
+		
+		/**
+		 * The scheduled timeout, <code>null</code> until scheduled
+		 */
+		volatile HashedWheelTimer.Timeout timeout;
+		
+		PolledReceive(long waitNanos) {
+			this.deadline = System.nanoTime() + Math.max(0, waitNanos);
+		}
+		
+		/**
+		 * Poll the backing queue on behalf of the receive, for up to the given
+		 * time.
+		 * 
+		 * @param nanos
+		 *            the time in nanoseconds to poll for
+		 * 
+		 * @return <code>true</code> if the receive has what it waits for
+		 * 
+		 * @throws InterruptedException
+		 *             if interrupted before polling anything
+		 */
+		abstract boolean poll(long nanos) throws InterruptedException;
+		
+		/**
+		 * Return what was polled so far, to complete the receive with.
+		 * 
+		 * @return the result of the receive
+		 */
+		abstract V result();
+		
+		/**
+		 * Whether messages have been polled for the receive, which cannot be
+		 * given back.
+		 * 
+		 * @return <code>true</code> if the receive holds messages
+		 */
+		abstract boolean holdsMessages();
+		
+		/**
+		 * Poll for the receive on the calling thread, unless another consumer
+		 * polls for it already.
+		 * 
+		 * @see com.sangupta.lineup.async.QueueFuture#get()
+		 */
+		@Override
+		public V get() throws InterruptedException, ExecutionException {
+			this.pollFor(Long.MAX_VALUE);
+			return super.get();
+		}
+		
+		/**
+		 * Poll for the receive on the calling thread for up to the given
+		 * time, unless another consumer polls for it already.
+		 * 
+		 * @see com.sangupta.lineup.async.QueueFuture#get(long, java.util.concurrent.TimeUnit)
+		 */
+		@Override
+		public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+			if(this.pollFor(unit.toNanos(timeout))) {
+				// polled for as long as asked to
+				return super.get(0, TimeUnit.NANOSECONDS);
+			}
+			
+			return super.get(timeout, unit);
+		}
+		
+		/**
+		 * @see com.sangupta.lineup.async.QueueFuture#cancel(boolean)
+		 */
+		@Override
+		public synchronized boolean cancel(boolean mayInterruptIfRunning) {
+			if(this.polling || this.holdsMessages()) {
+				// only a consumer may take messages, and none may give back
+				return false;
+			}
+			
+			if(!super.cancel(mayInterruptIfRunning)) {
+				return false;
+			}
+			
+			this.cancelTimeout();
+			return true;
+		}
+		
+		/**
+		 * Complete the receive with what was polled so far, as it timed out,
+		 * unless a consumer polls for it, which completes it by the deadline.
+		 * 
+		 * @see java.lang.Runnable#run()
+		 */
+		@Override
+		public synchronized void run() {
+			if(!this.polling) {
+				this.complete(this.result());
+			}
+		}
+		
+		/**
+		 * Poll for the receive for up to the given time, and complete it once
+		 * it has what it waits for or the deadline has passed.
+		 * 
+		 * @param nanos
+		 *            the time in nanoseconds to poll for
+		 * 
+		 * @return <code>true</code> if the calling thread polled,
+		 *         <code>false</code> if the receive is done or another
+		 *         consumer polls for it
+		 * 
+		 * @throws InterruptedException
+		 *             if something interrupted this thread while polling
+		 */
+		private boolean pollFor(long nanos) throws InterruptedException {
+			synchronized(this) {
+				if(this.isDone() || this.polling) {
+					return false;
+				}
+				
+				this.polling = true;
+			}
+			
+			boolean satisfied = false;
+			try {
+				long remaining = this.deadline - System.nanoTime();
+				satisfied = this.poll(Math.max(0, Math.min(nanos, remaining)));
+			} finally {
+				synchronized(this) {
+					this.polling = false;
+					
+					// the timeout may have passed us by while polling
+					boolean expired = System.nanoTime() - this.deadline >= 0;
+					boolean interrupted = Thread.currentThread().isInterrupted() && this.holdsMessages();
+					if(satisfied || expired || interrupted) {
+						this.cancelTimeout();
+						this.complete(this.result());
+					}
+				}
+			}
+			
+			if(Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			
+			return true;
+		}
+		
+		/**
+		 * Cancel the scheduled timeout, if any, so that it does not linger in
+		 * the timer.
+		 * 
+		 */
+		void cancelTimeout() {
+			HashedWheelTimer.Timeout timeout = this.timeout;
+			if(timeout != null) {
+				timeout.cancel();
+			}
+		}
+		
+	}
+	
+	/**
+	 * A receive of a single message polled for by its consumer.
+	 * 
+	 * @author sangupta
+	 *
+	 */
+	private class PolledMessage extends PolledReceive<QueueMessage> {
+		
+		/**
+		 * The message polled, only accessed while polling
+		 */
+		private QueueMessage message;
+		
+		PolledMessage(long waitNanos) {
+			super(waitNanos);
+		}
+		
+		@Override
+		boolean poll(long nanos) throws InterruptedException {
+			this.message = pollQueueMessage(nanos);
+			return this.message != null;
+		}
+		
+		@Override
+		QueueMessage result() {
+			return this.message;
+		}
+		
+		@Override
+		boolean holdsMessages() {
+			return this.message != null;
+		}
+		
+	}
+	
+	/**
+	 * A batch receive polled for by its consumer. The messages available are
+	 * drained at once, and the batch then waits one message at a time until
+	 * it holds the minimum.
+	 * 
+	 * @author sangupta
+	 *
+	 */
+	private class PolledBatch extends PolledReceive<List<QueueMessage>> {
+		
+		final int minMessages;
+		
+		final int maxMessages;
+		
+		/**
+		 * The messages polled so far, only accessed while polling
+		 */
+		final List<QueueMessage> messages = new ArrayList<QueueMessage>();
+		
+		PolledBatch(int minMessages, int maxMessages, long waitNanos) {
+			super(waitNanos);
+			this.minMessages = minMessages;
+			this.maxMessages = maxMessages;
+		}
+		
+		/**
+		 * An interrupt stops the poll short, keeping the messages polled so
+		 * far, and is left pending for the caller.
+		 * 
+		 * @see com.sangupta.lineup.queues.AbstractLineUpQueue.PolledReceive#poll(long)
+		 */
+		@Override
+		boolean poll(long nanos) {
+			final long start = System.nanoTime();
+			drainTo(this.messages, this.maxMessages - this.messages.size());
+			
+			while(this.messages.size() < this.minMessages) {
+				long remaining = nanos - (System.nanoTime() - start);
+				if(remaining <= 0) {
+					break;
+				}
+				
+				QueueMessage message;
+				try {
+					message = pollQueueMessage(remaining);
+				} catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+				
+				if(message == null) {
+					break;
+				}
+				
+				this.messages.add(message);
+				drainTo(this.messages, this.maxMessages - this.messages.size());
+			}
+			
+			return this.messages.size() >= this.minMessages;
+		}
+		
+		@Override
+		List<QueueMessage> result() {
+			return this.messages;
+		}
+		
+		@Override
+		boolean holdsMessages() {
+			return !this.messages.isEmpty();
+		}
+		
+	}
+	
+	/**
+	 * Holds the timer shared by the asynchronous receives of all queues,
+	 * created only once the first receive has to wait. A wheel timer is used
+	 * as most receives are handed a message, and cancel their timeout, long
+	 * before it expires.
+	 * 
+	 * @author sangupta
+	 *
+	 */
+	private static class ReceiveTimer {
+		
+		static final HashedWheelTimer TIMER = new HashedWheelTimer("lineup-receive-timer");
+		
 	}
 
 }
@@ -21,18 +21,23 @@
 
 package com.sangupta.lineup.queues;
 
+import java.util.Collection;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
+import com.sangupta.lineup.domain.QueueCardinality;
 import com.sangupta.lineup.domain.QueueMessage;
 import com.sangupta.lineup.domain.QueueOptions;
+import com.sangupta.lineup.service.QueueGenerationFactory;
 
 /**
  * A {@link LineUpQueue} that behaves like a normal queue. Any message added
  * again will be added to the queue, and thus we may see duplicate messages
  * being served via this queue.
  * 
+ * The backing queue is chosen as per the {@link QueueOptions#getCardinality()}
+ * of the queue.
+ * 
  * @author sangupta
  * @since 0.2.0
  */
@@ -57,7 +62,7 @@ public class DuplicateAcceptingLineUpQueue extends AbstractLineUpQueue {
 	 */
 	public DuplicateAcceptingLineUpQueue(String name, String securityCode, QueueOptions options) {
 		super(name, securityCode, options);
-		this.internalQueue = new LinkedBlockingQueue<QueueMessage>();
+		this.internalQueue = QueueGenerationFactory.getFifoQueue(options);
 	}
 
 	/**
@@ -77,6 +82,14 @@ public class DuplicateAcceptingLineUpQueue extends AbstractLineUpQueue {
 		return this.internalQueue.poll(longPollTime, TimeUnit.SECONDS);
 	}
 	
+	/**
+	 * @see com.sangupta.lineup.queues.AbstractLineUpQueue#drainQueueMessages(java.util.Collection, int)
+	 */
+	@Override
+	protected int drainQueueMessages(Collection<? super QueueMessage> collection, int maxMessages) {
+		return this.internalQueue.drainTo(collection, maxMessages);
+	}
+	
 	/**
 	 * 
 	 * @see com.sangupta.lineup.queues.AbstractLineUpQueue#removeMessageID(long)
@@ -86,6 +99,17 @@ public class DuplicateAcceptingLineUpQueue extends AbstractLineUpQueue {
 		return this.internalQueue.remove(id);
 	}
 
+	/**
+	 * Only the backing queue for {@link QueueCardinality#MPMC} can be worked
+	 * upon by any thread.
+	 * 
+	 * @see com.sangupta.lineup.queues.AbstractLineUpQueue#isBackingQueueConcurrent()
+	 */
+	@Override
+	public boolean isBackingQueueConcurrent() {
+		return this.options.getCardinality() == QueueCardinality.MPMC;
+	}
+	
 	/**
 	 * @see java.util.Collection#clear()
 	 */
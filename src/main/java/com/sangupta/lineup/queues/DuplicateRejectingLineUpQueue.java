@@ -21,13 +21,14 @@
 
 package com.sangupta.lineup.queues;
 
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentSkipListSet;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
+import com.sangupta.jerry.ds.RemovableBlockingQueue;
+import com.sangupta.lineup.domain.QueueCardinality;
 import com.sangupta.lineup.domain.QueueMessage;
 import com.sangupta.lineup.domain.QueueOptions;
+import com.sangupta.lineup.service.QueueGenerationFactory;
 
 /**
  * A {@link LineUpQueue} that behaves like a normal queue with an additional
@@ -43,7 +44,7 @@ public class DuplicateRejectingLineUpQueue extends AbstractLineUpQueue {
 	/**
 	 * The internal backing queue
 	 */
-	protected final BlockingQueue<QueueMessage> internalQueue;
+	protected final RemovableBlockingQueue<QueueMessage> internalQueue;
 	
 	/**
 	 * A set of all current messages in this {@link LineUpQueue}.
@@ -53,7 +54,7 @@ public class DuplicateRejectingLineUpQueue extends AbstractLineUpQueue {
 	public DuplicateRejectingLineUpQueue(String name, String securityCode, QueueOptions options) {
 		super(name, securityCode, options);
 		
-		this.internalQueue = new LinkedBlockingQueue<QueueMessage>();
+		this.internalQueue = QueueGenerationFactory.getFifoQueue(options);
 		this.currentMessages = new ConcurrentSkipListSet<QueueMessage>();
 	}
 
@@ -94,14 +95,27 @@ public class DuplicateRejectingLineUpQueue extends AbstractLineUpQueue {
 	 */
 	@Override
 	public boolean removeMessageID(long id) {
-		boolean removed = this.internalQueue.remove(id);
-		if(removed) {
-			this.currentMessages.remove(id);
+		// a message is equal to its ID
+		QueueMessage removed = this.internalQueue.removeElement(Long.valueOf(id));
+		if(removed == null) {
+			return false;
 		}
 		
-		return removed;
+		this.currentMessages.remove(removed);
+		return true;
 	}
 
+	/**
+	 * Only the backing queue for {@link QueueCardinality#MPMC} can be worked
+	 * upon by any thread.
+	 * 
+	 * @see com.sangupta.lineup.queues.AbstractLineUpQueue#isBackingQueueConcurrent()
+	 */
+	@Override
+	public boolean isBackingQueueConcurrent() {
+		return this.options.getCardinality() == QueueCardinality.MPMC;
+	}
+	
 	/**
 	 * @see java.util.Collection#clear()
 	 */
@@ -23,8 +23,10 @@ package com.sangupta.lineup.queues;
 
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import com.sangupta.lineup.LineUp;
+import com.sangupta.lineup.async.QueueFuture;
 import com.sangupta.lineup.domain.QueueMessage;
 
 /**
@@ -112,6 +114,22 @@ public interface LineUpQueue extends BlockingQueue<QueueMessage> {
 	 */
 	public QueueMessage addMessage(QueueMessage queueMessage);
 	
+	/**
+	 * Add the given messages to the queue in one operation. This is
+	 * equivalent to adding each message in turn, except that waiting
+	 * consumers are woken up once for the whole batch.
+	 * 
+	 * @param queueMessages
+	 *            the messages to be added
+	 * 
+	 * @return the result for each message, in the same order: the instance
+	 *         added, or <code>null</code> if the message was not added
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the list of messages is <code>null</code>
+	 */
+	public List<QueueMessage> addMessages(List<QueueMessage> queueMessages);
+	
 	/**
 	 * Return a message from the queue, without waiting. Returns
 	 * <code>null</code> if the queue is currently empty.
@@ -150,6 +168,59 @@ public interface LineUpQueue extends BlockingQueue<QueueMessage> {
 	 */
 	public List<QueueMessage> getMessages(int numMessages);
 	
+	/**
+	 * Return a batch of messages from the queue, waiting until at least the
+	 * given minimum number of messages is available or the maximum wait time
+	 * elapses, whichever is earlier. The messages available then, up to the
+	 * given maximum, are drained in one go.
+	 * 
+	 * @param minMessages
+	 *            the number of messages to wait for
+	 * 
+	 * @param maxMessages
+	 *            the maximum number of messages to return
+	 * 
+	 * @param maxWait
+	 *            the maximum time to wait for the minimum number of messages
+	 * 
+	 * @param unit
+	 *            the unit of the maximum wait time
+	 * 
+	 * @return the messages read, which may be fewer than the minimum if the
+	 *         wait time elapsed, and empty if none were available
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the maximum is less than one, or the minimum is negative
+	 *             or more than the maximum
+	 * 
+	 * @throws InterruptedException
+	 *             if the method was interrupted as part of shutdown or thread
+	 *             closure or otherwise
+	 */
+	public List<QueueMessage> getMessages(int minMessages, int maxMessages, long maxWait, TimeUnit unit) throws InterruptedException;
+	
+	/**
+	 * Lease up to the given number of messages in one operation, for a single
+	 * consumer to process one by one. The messages are not visible to other
+	 * consumers for as long as the visibility timeout of the queue, after
+	 * which the ones not yet handed out by the lease are returned to the
+	 * queue.
+	 * 
+	 * @param numMessages
+	 *            the maximum number of messages to lease
+	 * 
+	 * @param longPollTime
+	 *            the time to wait for a message if the queue is empty
+	 * 
+	 * @return the {@link MessageLease}, which holds no messages if none was
+	 *         available in the poll time
+	 * 
+	 * @throws InterruptedException
+	 *             if the method was interrupted as part of shutdown or thread
+	 *             closure or otherwise
+	 */
+	public MessageLease leaseMessages(int numMessages, long longPollTime) throws InterruptedException;
+	
 	/**
 	 * Delete the message with the given identifier from the queue.
 	 * 
@@ -161,6 +232,103 @@ public interface LineUpQueue extends BlockingQueue<QueueMessage> {
 	 */
 	public boolean deleteMessage(String messageID);
 	
+	/**
+	 * Delete the messages with the given identifiers from the queue in one
+	 * operation.
+	 * 
+	 * @param messageIDs
+	 *            the identifiers of the messages to delete
+	 * 
+	 * @return for each identifier, in the same order, <code>true</code> if
+	 *         the message was deleted, <code>false</code> otherwise
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the list of identifiers is <code>null</code>
+	 */
+	public boolean[] deleteMessages(List<String> messageIDs);
+	
+	/**
+	 * Add a message to the queue without blocking the calling thread.
+	 * 
+	 * @param message
+	 *            the message to add
+	 * 
+	 * @return a {@link QueueFuture} completed with the {@link QueueMessage}
+	 *         added, or <code>null</code> if nothing was added
+	 */
+	public QueueFuture<QueueMessage> addMessageAsync(String message);
+	
+	/**
+	 * Receive a message from the queue without blocking the calling thread.
+	 * If the queue is empty, the receive is registered with the queue and no
+	 * thread waits for it: the future is completed by the thread that next
+	 * adds a message, or with <code>null</code> once the timeout elapses.
+	 * Cancelling the future abandons the receive. On queues with a single
+	 * producer or consumer, the consumer completes the future by waiting on
+	 * it, as per {@link com.sangupta.lineup.domain.QueueCardinality}.
+	 * 
+	 * @param timeout
+	 *            the time to wait for a message if the queue is empty
+	 * 
+	 * @param unit
+	 *            the unit of the timeout
+	 * 
+	 * @return a {@link QueueFuture} completed with the {@link QueueMessage}
+	 *         received, or <code>null</code> if none arrived in time
+	 */
+	public QueueFuture<QueueMessage> receiveAsync(long timeout, TimeUnit unit);
+	
+	/**
+	 * Receive a batch of messages from the queue without blocking the calling
+	 * thread, as per {@link #getMessages(int, int, long, TimeUnit)}. No thread
+	 * waits for the batch: the future is completed by the thread that adds
+	 * the message completing the minimum, or once the maximum wait time
+	 * elapses. Cancelling the future abandons the receive. On queues with a
+	 * single producer or consumer, the consumer completes the future by
+	 * waiting on it, as per {@link com.sangupta.lineup.domain.QueueCardinality}.
+	 * 
+	 * @param minMessages
+	 *            the number of messages to wait for
+	 * 
+	 * @param maxMessages
+	 *            the maximum number of messages to return
+	 * 
+	 * @param maxWait
+	 *            the maximum time to wait for the minimum number of messages
+	 * 
+	 * @param unit
+	 *            the unit of the maximum wait time
+	 * 
+	 * @return a {@link QueueFuture} completed with the messages received
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the maximum is less than one, or the minimum is negative
+	 *             or more than the maximum
+	 */
+	public QueueFuture<List<QueueMessage>> receiveBatchAsync(int minMessages, int maxMessages, long maxWait, TimeUnit unit);
+	
+	/**
+	 * Delete the message with the given identifier from the queue without
+	 * blocking the calling thread.
+	 * 
+	 * @param messageID
+	 *            the message identifier uniquely identifying the message
+	 * 
+	 * @return a {@link QueueFuture} completed with <code>true</code> if the
+	 *         message was deleted, <code>false</code> otherwise
+	 */
+	public QueueFuture<Boolean> deleteMessageAsync(String messageID);
+	
+	/**
+	 * Whether any number of threads may add and poll messages. Where not, an
+	 * asynchronous receive that has to wait is only completed by a consumer
+	 * waiting on it, and callers that cannot wait should read with the
+	 * blocking methods instead.
+	 * 
+	 * @return <code>true</code> if any thread may add and poll messages
+	 */
+	public boolean isBackingQueueConcurrent();
+	
 	/**
 	 * Returns the total number of messages in the queue.
 	 * 
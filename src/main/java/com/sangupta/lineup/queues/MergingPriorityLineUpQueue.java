@@ -21,6 +21,7 @@
 
 package com.sangupta.lineup.queues;
 
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import com.sangupta.jerry.ds.ChangingPriorityQueue;
@@ -57,7 +58,7 @@ public class MergingPriorityLineUpQueue extends AbstractLineUpQueue {
 	public MergingPriorityLineUpQueue(String name, String securityCode, QueueOptions options) {
 		super(name, securityCode, options);
 		
-		this.internalQueue = new ChangingPriorityQueue<QueueMessage>(options.getMaxMergedPriority());
+		this.internalQueue = new ChangingPriorityQueue<QueueMessage>(options.getMaxMergedPriority(), options.getPriorityAgingSeconds() * 1000l);
 	}
 
 	/**
@@ -103,4 +104,17 @@ public class MergingPriorityLineUpQueue extends AbstractLineUpQueue {
 		return true;
 	}
 	
+	/**
+	 * Return the age of the longest waiting message for every priority
+	 * currently present in the queue. This only inspects the head of each
+	 * priority level, and is meant to help tune the priority aging of the
+	 * queue.
+	 * 
+	 * @return a {@link Map} of priority to the age in milliseconds of the
+	 *         longest waiting message with that priority
+	 */
+	public Map<Integer, Long> getOldestMessageAges() {
+		return this.internalQueue.getOldestAges();
+	}
+	
 }
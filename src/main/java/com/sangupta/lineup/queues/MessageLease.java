@@ -0,0 +1,193 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.queues;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sangupta.lineup.domain.QueueMessage;
+
+/**
+ * A batch of messages reserved from a {@link LineUpQueue} by a single
+ * consumer in one operation, to be processed one by one via {@link #next()}.
+ * 
+ * Leased messages are not visible to other consumers, but are still counted
+ * in {@link LineUpQueue#numMessages()} till they are handed out by
+ * {@link #next()}. Messages not handed out by the time the lease is closed, or
+ * expires, are returned to the end of the queue. A bounded queue that has
+ * filled up meanwhile may refuse them, in which case {@link #close()} hands
+ * them back to the caller, and an expired lease logs them.
+ * 
+ * A lease is meant to be used by a single consumer thread, and handing out a
+ * message touches nothing shared with other consumers. An expired lease is
+ * closed by the next thread that reads from the queue, after which it hands
+ * out no more messages.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public class MessageLease {
+	
+	/**
+	 * The queue the messages were leased from
+	 */
+	private final AbstractLineUpQueue queue;
+	
+	/**
+	 * The leased messages
+	 */
+	private final List<QueueMessage> messages;
+	
+	/**
+	 * The index of the next message to be handed out, moved to the end when
+	 * the lease is closed
+	 */
+	private final AtomicInteger cursor = new AtomicInteger();
+	
+	/**
+	 * Whether the lease has been closed
+	 */
+	private final AtomicBoolean closed = new AtomicBoolean();
+	
+	/**
+	 * The time in milliseconds at which the lease expires
+	 */
+	private final long expiresAt;
+	
+	/**
+	 * Create a new lease.
+	 * 
+	 * @param queue
+	 *            the queue the messages were leased from
+	 * 
+	 * @param messages
+	 *            the leased messages
+	 * 
+	 * @param leaseMillis
+	 *            the time in milliseconds for which the messages are leased
+	 */
+	MessageLease(AbstractLineUpQueue queue, List<QueueMessage> messages, long leaseMillis) {
+		this.queue = queue;
+		this.messages = messages;
+		this.expiresAt = System.currentTimeMillis() + leaseMillis;
+	}
+	
+	/**
+	 * Return the next leased message. The message is no longer counted in the
+	 * queue once returned.
+	 * 
+	 * @return the next message, or <code>null</code> if all messages have
+	 *         been handed out, or the lease has expired or been closed
+	 */
+	public QueueMessage next() {
+		final int size = this.messages.size();
+		if(this.cursor.get() >= size) {
+			return null;
+		}
+		
+		final int index = this.cursor.getAndIncrement();
+		if(index >= size) {
+			return null;
+		}
+		
+		if(index == size - 1) {
+			release();
+		}
+		
+		return this.messages.get(index);
+	}
+	
+	/**
+	 * Return the number of leased messages that have not been handed out yet.
+	 * 
+	 * @return the number of remaining messages
+	 */
+	public int remaining() {
+		return Math.max(0, this.messages.size() - this.cursor.get());
+	}
+	
+	/**
+	 * Return the number of messages that were leased.
+	 * 
+	 * @return the number of messages in this lease
+	 */
+	public int size() {
+		return this.messages.size();
+	}
+	
+	/**
+	 * Check if the lease has expired.
+	 * 
+	 * @return <code>true</code> if the lease time has run out,
+	 *         <code>false</code> otherwise
+	 */
+	public boolean isExpired() {
+		return System.currentTimeMillis() >= this.expiresAt;
+	}
+	
+	/**
+	 * Close the lease, returning the messages that have not been handed out
+	 * to the queue. Closing a lease more than once has no effect.
+	 * 
+	 * @return the messages the queue refused to take back, which are now up
+	 *         to the caller to process or add again - empty if all messages
+	 *         were returned
+	 */
+	public List<QueueMessage> close() {
+		final int size = this.messages.size();
+		final int from = this.cursor.getAndSet(size);
+		
+		List<QueueMessage> refused = null;
+		for(int index = from; index < size; index++) {
+			QueueMessage message = this.messages.get(index);
+			if(!this.queue.returnLeasedMessage(message)) {
+				if(refused == null) {
+					refused = new ArrayList<QueueMessage>();
+				}
+				
+				refused.add(message);
+			}
+		}
+		
+		release();
+		
+		if(refused == null) {
+			return Collections.emptyList();
+		}
+		
+		return refused;
+	}
+	
+	/**
+	 * Let the queue know that the lease is done with.
+	 * 
+	 */
+	private void release() {
+		if(this.closed.compareAndSet(false, true)) {
+			this.queue.leaseReleased(this);
+		}
+	}
+
+}
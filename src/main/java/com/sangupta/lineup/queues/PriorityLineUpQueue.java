@@ -21,10 +21,10 @@
 
 package com.sangupta.lineup.queues;
 
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
+import com.sangupta.jerry.ds.ConcurrentLevelPriorityQueue;
 import com.sangupta.lineup.domain.QueueMessage;
 import com.sangupta.lineup.domain.QueueOptions;
 
@@ -41,7 +41,7 @@ public class PriorityLineUpQueue extends AbstractLineUpQueue {
 	/**
 	 * The internal backing queue
 	 */
-	protected final BlockingQueue<QueueMessage> internalQueue;
+	protected final ConcurrentLevelPriorityQueue<QueueMessage> internalQueue;
 	
 	/**
 	 * Construct an instance of queue which has priority for each message
@@ -58,7 +58,7 @@ public class PriorityLineUpQueue extends AbstractLineUpQueue {
 	public PriorityLineUpQueue(String name, String securityCode, QueueOptions options) {
 		super(name, securityCode, options);
 		
-		this.internalQueue = new PriorityBlockingQueue<QueueMessage>();
+		this.internalQueue = new ConcurrentLevelPriorityQueue<QueueMessage>(options.getPriorityAgingSeconds() * 1000l);
 	}
 
 	/**
@@ -100,8 +100,20 @@ public class PriorityLineUpQueue extends AbstractLineUpQueue {
 	 */
 	@Override
 	public boolean removeMessageID(long id) {
-		this.internalQueue.remove(id);
-		return true;
+		return this.internalQueue.remove(id);
+	}
+	
+	/**
+	 * Return the age of the longest waiting message for every priority
+	 * currently present in the queue. This only inspects the head of each
+	 * priority level, and is meant to help tune the priority aging of the
+	 * queue.
+	 * 
+	 * @return a {@link Map} of priority to the age in milliseconds of the
+	 *         longest waiting message with that priority
+	 */
+	public Map<Integer, Long> getOldestMessageAges() {
+		return this.internalQueue.getOldestAges();
 	}
 	
 }
@@ -0,0 +1,121 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.queues;
+
+import java.util.concurrent.TimeUnit;
+
+import com.sangupta.jerry.ds.RankErrorListener;
+import com.sangupta.jerry.ds.RelaxedPriorityQueue;
+import com.sangupta.lineup.domain.QueueMessage;
+import com.sangupta.lineup.domain.QueueOptions;
+
+/**
+ * A {@link LineUpQueue} that serves one of the messages with the highest
+ * priorities, but not necessarily the one with the highest priority. This
+ * removes the single head of a strict priority queue as a point of contention
+ * when a large number of consumers read from the queue.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public class RelaxedPriorityLineUpQueue extends AbstractLineUpQueue {
+	
+	/**
+	 * The internal backing queue
+	 */
+	protected final RelaxedPriorityQueue<QueueMessage> internalQueue;
+	
+	/**
+	 * Construct an instance of queue which relaxes the priority ordering
+	 * 
+	 * @param name
+	 *            the name of the queue
+	 * 
+	 * @param securityCode
+	 *            the security code
+	 * 
+	 * @param options
+	 *            the queue options
+	 */
+	public RelaxedPriorityLineUpQueue(String name, String securityCode, QueueOptions options) {
+		super(name, securityCode, options);
+		
+		int subQueues = options.getRelaxedSubQueues();
+		if(subQueues == 0) {
+			subQueues = 2 * Runtime.getRuntime().availableProcessors();
+		}
+		
+		this.internalQueue = new RelaxedPriorityQueue<QueueMessage>(subQueues);
+	}
+	
+	/**
+	 * Attach a listener that is notified of the observed rank error for a
+	 * sample of the messages read from this queue.
+	 * 
+	 * @param listener
+	 *            the listener to attach, <code>null</code> to detach
+	 * 
+	 * @param sampleEvery
+	 *            on average one in how many reads is sampled
+	 */
+	public void setRankErrorListener(RankErrorListener listener, int sampleEvery) {
+		this.internalQueue.setRankErrorListener(listener, sampleEvery);
+	}
+
+	/**
+	 * @see com.sangupta.lineup.queues.AbstractLineUpQueue#addQueueMessage(com.sangupta.lineup.domain.QueueMessage)
+	 */
+	@Override
+	public QueueMessage addQueueMessage(QueueMessage queueMessage) {
+		boolean added = this.internalQueue.add(queueMessage);
+		if(!added) {
+			return null;
+		}
+		
+		return queueMessage;
+	}
+
+	/**
+	 * @see com.sangupta.lineup.queues.AbstractLineUpQueue#getQueueMessage(long)
+	 */
+	@Override
+	public QueueMessage getQueueMessage(long longPollTime) throws InterruptedException {
+		return this.internalQueue.poll(longPollTime, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * @see java.util.Collection#clear()
+	 */
+	@Override
+	public void clear() {
+		this.internalQueue.clear();
+	}
+
+	/**
+	 * @see com.sangupta.lineup.queues.AbstractLineUpQueue#removeMessageID(long)
+	 */
+	@Override
+	public boolean removeMessageID(long id) {
+		return this.internalQueue.remove(id);
+	}
+	
+}
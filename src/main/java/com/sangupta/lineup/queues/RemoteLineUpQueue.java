@@ -21,23 +21,53 @@
 
 package com.sangupta.lineup.queues;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.ws.rs.core.MediaType;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.sangupta.jerry.http.WebInvoker;
 import com.sangupta.jerry.http.WebRequestMethod;
-import com.sangupta.jerry.http.WebResponse;
 import com.sangupta.jerry.util.AssertUtils;
 import com.sangupta.jerry.util.DateUtils;
 import com.sangupta.jerry.util.UriUtils;
 import com.sangupta.jerry.util.XStreamUtils;
+import com.sangupta.lineup.async.QueueCallback;
+import com.sangupta.lineup.async.QueueFuture;
+import com.sangupta.lineup.codec.MessageCodec;
+import com.sangupta.lineup.codec.MessageCodecs;
+import com.sangupta.lineup.codec.MessageListReader;
+import com.sangupta.lineup.domain.BatchResult;
+import com.sangupta.lineup.domain.BatchResultItem;
 import com.sangupta.lineup.domain.QueueMessage;
 import com.sangupta.lineup.domain.QueueOptions;
 import com.sangupta.lineup.domain.QueueType;
+import com.sangupta.lineup.exceptions.QueueNotFoundException;
+import com.sangupta.lineup.http.HttpResponse;
+import com.sangupta.lineup.http.LineUpHttpClient;
+import com.sangupta.lineup.http.PoolMetrics;
+import com.sangupta.lineup.protocol.BinaryProtocol;
+import com.sangupta.lineup.protocol.BinaryProtocolClient;
+import com.sangupta.lineup.protocol.BinaryQueueHandle;
+import com.sangupta.lineup.web.QueueMessageWebservice;
+import com.thoughtworks.xstream.XStream;
 
 /**
  * @author sangupta
@@ -49,12 +79,76 @@ public class RemoteLineUpQueue extends AbstractLineUpQueue {
 	
 	private static final long DEFAULT_POLL_TIME = DateUtils.ONE_SECOND;
 	
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	/**
+	 * Encodes message IDs to be deleted, shared as it is thread-safe once
+	 * configured
+	 */
+	private static final XStream MESSAGE_XSTREAM = XStreamUtils.getXStream(QueueMessage.class);
+	
+	/**
+	 * Decodes the results of batches
+	 */
+	private static final XStream BATCH_RESULT_XSTREAM = XStreamUtils.getXStream(BatchResult.class, BatchResultItem.class);
+	
+	/**
+	 * The maximum number of threads running the asynchronous operations of
+	 * all remote queues over HTTP
+	 */
+	private static final int MAX_ASYNC_THREADS = 64;
+	
+	/**
+	 * Runs the asynchronous operations of all remote queues over HTTP. The
+	 * HTTP client blocks, so every running operation holds a thread of this
+	 * pool, including a receive for as long as it waits on the server. No more
+	 * than {@link #MAX_ASYNC_THREADS} operations run at a time, and the rest
+	 * wait their turn in the order they were made. Over the binary protocol,
+	 * operations do not hold a thread while pending, and the pool only sends
+	 * the requests that follow up on a response.
+	 */
+	private static final ExecutorService ASYNC_EXECUTOR;
+	
+	static {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_ASYNC_THREADS, MAX_ASYNC_THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+			
+			private final AtomicInteger threadNumber = new AtomicInteger();
+			
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "lineup-remote-async-" + threadNumber.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+			
+		});
+		
+		// idle threads go away, as with a cached pool
+		executor.allowCoreThreadTimeOut(true);
+		ASYNC_EXECUTOR = executor;
+	}
+	
 	/**
 	 * The URL of the remote queue.
 	 * 
 	 */
 	private final String remoteQueue;
 	
+	/**
+	 * The codec messages are sent and received with
+	 */
+	private volatile MessageCodec codec = MessageCodecs.BINARY;
+	
+	/**
+	 * The queue over the binary protocol, <code>null</code> to use HTTP
+	 */
+	private volatile BinaryQueueHandle binaryQueue;
+	
+	/**
+	 * The client requests are sent over HTTP with
+	 */
+	private volatile LineUpHttpClient httpClient = LineUpHttpClient.getDefault();
+	
 	// Various constructors follow
 	
 	/**
@@ -108,16 +202,22 @@ public class RemoteLineUpQueue extends AbstractLineUpQueue {
 		final String xml = XStreamUtils.getXStream(QueueOptions.class).toXML(queueOptions);
 		final String endPoint = UriUtils.addWebPaths(lineUpServer, "queue/" + queueName + "?queueType=" + queueOptions.getQueueType());
 		
-		WebResponse response = WebInvoker.invokeUrl(endPoint, WebRequestMethod.PUT, MediaType.TEXT_XML, xml);
-		if(response == null) {
-			throw new RuntimeException("Unable to connect to create a new remote queue.");
-		}
-
-		if(response.getResponseCode() != 200) {
-			throw new RuntimeException("Unable to connect to create a new remote queue."); 
+		LineUpQueue queue;
+		try {
+			HttpResponse response = this.httpClient.execute("PUT", endPoint, MediaType.TEXT_XML, xml.getBytes(UTF_8), MediaType.TEXT_XML, 0);
+			try {
+				if(response.getStatus() != 200) {
+					throw new RuntimeException("Unable to connect to create a new remote queue.");
+				}
+				
+				queue = (LineUpQueue) XStreamUtils.getXStream(LineUpQueue.class).fromXML(response.getBody());
+			} finally {
+				response.close();
+			}
+		} catch(IOException e) {
+			throw new RuntimeException("Unable to connect to create a new remote queue.", e);
 		}
 		
-		LineUpQueue queue = (LineUpQueue) XStreamUtils.getXStream(LineUpQueue.class).fromXML(response.asStream());
 		if(queue == null) {
 			throw new RuntimeException("Unable to connect to create a new remote queue.");
 		}
@@ -152,17 +252,7 @@ public class RemoteLineUpQueue extends AbstractLineUpQueue {
 	 */
 	@Override
 	public QueueMessage addMessage(String message) {
-		WebResponse response = WebInvoker.postXML(this.remoteQueue, new QueueMessage(message, 0, 1));
-		if(response == null) {
-			return null;
-		}
-		
-		if(!response.isSuccess()) {
-			LOGGER.error("Error posting message to remote queue for reason: ", response);
-			return null;
-		}
-		
-		return (QueueMessage) XStreamUtils.getXStream(QueueMessage.class).fromXML(response.asStream());
+		return this.postMessage(new QueueMessage(message, 0, 1));
 	}
 	
 	/**
@@ -178,12 +268,7 @@ public class RemoteLineUpQueue extends AbstractLineUpQueue {
 	 */
 	@Override
 	public QueueMessage addMessage(String message, int delaySeconds, int priority) {
-		WebResponse response = WebInvoker.postXML(this.remoteQueue, new QueueMessage(message, delaySeconds, priority));
-		if(response == null) {
-			return null;
-		}
-		
-		return (QueueMessage) XStreamUtils.getXStream(QueueMessage.class).fromXML(response.asStream());
+		return this.postMessage(new QueueMessage(message, delaySeconds, priority));
 	}
 
 	/**
@@ -191,12 +276,7 @@ public class RemoteLineUpQueue extends AbstractLineUpQueue {
 	 */
 	@Override
 	public QueueMessage addQueueMessage(QueueMessage queueMessage) {
-		WebResponse response = WebInvoker.postXML(this.remoteQueue, queueMessage);
-		if(response == null) {
-			return null;
-		}
-		
-		return (QueueMessage) XStreamUtils.getXStream(QueueMessage.class).fromXML(response.asStream());
+		return this.postMessage(queueMessage);
 	}
 
 	/**
@@ -204,34 +284,273 @@ public class RemoteLineUpQueue extends AbstractLineUpQueue {
 	 */
 	@Override
 	public QueueMessage getQueueMessage(long longPollTime) {
-		WebResponse response = WebInvoker.getResponse(this.remoteQueue + "?pollTime=" + longPollTime);
-		if(response == null) {
-			return null;
+		final BinaryQueueHandle binaryQueue = this.binaryQueue;
+		if(binaryQueue != null) {
+			List<QueueMessage> messages = this.receiveBinary(binaryQueue, longPollTime > 0 ? 1 : 0, 1, TimeUnit.SECONDS.toMillis(Math.max(0, longPollTime)));
+			return messages.isEmpty() ? null : messages.get(0);
 		}
 		
-		if(response.getResponseCode() == 200) {
-			return (QueueMessage) XStreamUtils.getXStream(QueueMessage.class).fromXML(response.asStream());
+		try {
+			final long waitMillis = TimeUnit.SECONDS.toMillis(Math.max(0, longPollTime));
+			InputStream stream = this.openResponse(this.send("GET", this.remoteQueue + "?pollTime=" + longPollTime, null, waitMillis));
+			if(stream == null) {
+				return null;
+			}
+			
+			try {
+				return this.codec.readMessage(stream);
+			} finally {
+				stream.close();
+			}
+		} catch(IOException e) {
+			LOGGER.error("Error reading message from remote queue", e);
+			return null;
 		}
-		
-		// consume the entity so that the connection can be closed
-		response.close();
-		
-		// return null
-		return null;
 	}
 
 	/**
 	 * @see LineUpQueue#getMessages(int)
 	 */
-	@SuppressWarnings("unchecked")
 	@Override
 	public List<QueueMessage> getMessages(int numMessages) {
-		WebResponse response = WebInvoker.getResponse(this.remoteQueue + "?numMessages=" + numMessages);
-		if(response == null) {
+		List<QueueMessage> messages = new ArrayList<QueueMessage>();
+		if(numMessages <= 0) {
+			return messages;
+		}
+		
+		final BinaryQueueHandle binaryQueue = this.binaryQueue;
+		if(binaryQueue != null) {
+			return this.receiveBinary(binaryQueue, 0, numMessages, 0);
+		}
+		
+		try {
+			MessageListReader reader = this.streamMessages(numMessages);
+			try {
+				QueueMessage message;
+				while((message = reader.next()) != null) {
+					messages.add(message);
+				}
+			} finally {
+				reader.close();
+			}
+		} catch(IOException e) {
+			// the messages read have left the remote queue, so are returned
+			LOGGER.error("Error reading messages from remote queue", e);
+		}
+		
+		return messages;
+	}
+	
+	/**
+	 * Read up to the given number of messages from the remote queue as they
+	 * arrive. The server drains the queue a chunk at a time and writes each
+	 * chunk as it is drained, so that the first messages can be processed
+	 * while the rest of the batch is still being read and sent. The reader
+	 * must be closed once done with.
+	 * 
+	 * The messages are removed from the remote queue as they are sent, and
+	 * any not read before the reader is closed are lost.
+	 * 
+	 * @param numMessages
+	 *            the maximum number of messages to read
+	 * 
+	 * @return the reader of the messages
+	 * 
+	 * @throws IOException
+	 *             if the request fails
+	 */
+	public MessageListReader streamMessages(int numMessages) throws IOException {
+		if(numMessages <= 0) {
+			throw new IllegalArgumentException("Number of messages must be at least one");
+		}
+		
+		if(numMessages == 1) {
+			// the server returns a lone message rather than a list of one
+			return new SingleMessageReader(this.getQueueMessage(0));
+		}
+		
+		final InputStream stream = this.openResponse(this.send("GET", this.remoteQueue + "?numMessages=" + numMessages, null, 0));
+		if(stream == null) {
+			return new SingleMessageReader(null);
+		}
+		
+		final MessageListReader reader;
+		try {
+			reader = this.codec.newListReader(stream);
+		} catch(IOException e) {
+			stream.close();
+			throw e;
+		}
+		
+		return new MessageListReader() {
+			
+			@Override
+			public QueueMessage next() throws IOException {
+				return reader.next();
+			}
+			
+			@Override
+			public void close() throws IOException {
+				try {
+					reader.close();
+				} finally {
+					stream.close();
+				}
+			}
+			
+		};
+	}
+	
+	/**
+	 * Waits on the server, which holds the request until the minimum number
+	 * of messages is available or the wait time elapses.
+	 * 
+	 * @see LineUpQueue#getMessages(int, int, long, TimeUnit)
+	 */
+	@Override
+	public List<QueueMessage> getMessages(int minMessages, int maxMessages, long maxWait, TimeUnit unit) {
+		if(maxMessages < 1) {
+			throw new IllegalArgumentException("Maximum number of messages must be at least one");
+		}
+		
+		if(minMessages < 0 || minMessages > maxMessages) {
+			throw new IllegalArgumentException("Minimum number of messages must be between zero and the maximum");
+		}
+		
+		final long maxWaitMillis = Math.max(0, unit.toMillis(maxWait));
+		
+		final BinaryQueueHandle binaryQueue = this.binaryQueue;
+		if(binaryQueue != null) {
+			return this.receiveBinary(binaryQueue, minMessages, maxMessages, maxWaitMillis);
+		}
+		
+		List<QueueMessage> messages = this.getMessageList(this.remoteQueue + "?numMessages=" + maxMessages + "&minMessages=" + minMessages + "&maxWaitMillis=" + maxWaitMillis, maxWaitMillis);
+		if(messages == null) {
+			return new ArrayList<QueueMessage>();
+		}
+		
+		return messages;
+	}
+	
+	/**
+	 * Post the given message to the remote queue.
+	 * 
+	 * @param queueMessage
+	 *            the message to post
+	 * 
+	 * @return the message added, or <code>null</code> if nothing was added
+	 */
+	private QueueMessage postMessage(QueueMessage queueMessage) {
+		final BinaryQueueHandle binaryQueue = this.binaryQueue;
+		if(binaryQueue != null) {
+			try {
+				boolean[] added = await(binaryQueue.addMessages(Collections.singletonList(queueMessage)));
+				return added.length > 0 && added[0] ? queueMessage : null;
+			} catch(IOException e) {
+				LOGGER.error("Error posting message to remote queue", e);
+				return null;
+			}
+		}
+		
+		try {
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			this.codec.writeMessage(queueMessage, body);
+			
+			InputStream stream = this.openResponse(this.send("POST", this.remoteQueue, body.toByteArray(), 0));
+			if(stream == null) {
+				return null;
+			}
+			
+			try {
+				return this.codec.readMessage(stream);
+			} finally {
+				stream.close();
+			}
+		} catch(IOException e) {
+			LOGGER.error("Error posting message to remote queue", e);
+			return null;
+		}
+	}
+	
+	/**
+	 * Read a list of messages from the given URL of the remote queue.
+	 * 
+	 * @param url
+	 *            the URL to read from
+	 * 
+	 * @param waitMillis
+	 *            the time the server is asked to wait for messages
+	 * 
+	 * @return the messages read, or <code>null</code> if they could not be
+	 *         read
+	 */
+	private List<QueueMessage> getMessageList(String url, long waitMillis) {
+		try {
+			InputStream stream = this.openResponse(this.send("GET", url, null, waitMillis));
+			if(stream == null) {
+				return null;
+			}
+			
+			try {
+				return this.codec.readMessages(stream);
+			} finally {
+				stream.close();
+			}
+		} catch(IOException e) {
+			LOGGER.error("Error reading messages from remote queue", e);
 			return null;
 		}
+	}
+	
+	/**
+	 * Send a request to the remote queue, with the given body encoded with
+	 * the codec of this queue, accepting a response in the same encoding.
+	 * 
+	 * @param method
+	 *            the HTTP method
+	 * 
+	 * @param url
+	 *            the URL to send the request to
+	 * 
+	 * @param body
+	 *            the body to send, or <code>null</code> for none
+	 * 
+	 * @param waitMillis
+	 *            the time the server is asked to wait for messages, by which
+	 *            the request timeout is extended
+	 * 
+	 * @return the response
+	 * 
+	 * @throws IOException
+	 *             if the request fails
+	 */
+	private HttpResponse send(String method, String url, byte[] body, long waitMillis) throws IOException {
+		final String mediaType = this.codec.getMediaType();
+		return this.httpClient.execute(method, url, mediaType, body, mediaType, waitMillis);
+	}
+	
+	/**
+	 * Return the body of a successful response. Any other response is closed,
+	 * reading and discarding its body so that the connection can be reused.
+	 * 
+	 * @param response
+	 *            the response
+	 * 
+	 * @return the body of the response, or <code>null</code> if the request
+	 *         did not succeed or the response has no body
+	 */
+	private InputStream openResponse(HttpResponse response) {
+		final int code = response.getStatus();
+		if(code == 200) {
+			return response.getBody();
+		}
 		
-		return (List<QueueMessage>) XStreamUtils.getXStream(QueueMessage.class).fromXML(response.asStream());
+		if(code != 404 && code != 204) {
+			LOGGER.error("Remote queue responded with {}", response);
+		}
+		
+		response.close();
+		return null;
 	}
 
 	/**
@@ -239,19 +558,751 @@ public class RemoteLineUpQueue extends AbstractLineUpQueue {
 	 */
 	@Override
 	public boolean deleteMessage(String messageID) {
-		String xml = XStreamUtils.getXStream(QueueMessage.class).toXML(messageID);
-		WebResponse response = WebInvoker.invokeUrl(this.remoteQueue, WebRequestMethod.DELETE, MediaType.TEXT_XML, xml);
-		if(response == null) {
+		if(this.binaryQueue != null) {
+			boolean[] deleted = this.deleteMessages(Collections.singletonList(messageID));
+			return deleted.length > 0 && deleted[0];
+		}
+		
+		String xml = MESSAGE_XSTREAM.toXML(messageID);
+		try {
+			HttpResponse response = this.httpClient.execute("DELETE", this.remoteQueue, MediaType.TEXT_XML, xml.getBytes(UTF_8), null, 0);
+			response.close();
+			return response.isSuccess();
+		} catch(IOException e) {
+			LOGGER.error("Error deleting message from remote queue", e);
 			return false;
 		}
+	}
+
+	/**
+	 * Posts the messages to the batch endpoint of the server, in as few
+	 * requests as the limits of the server on the number of items and size of
+	 * a batch allow.
+	 * 
+	 * @see com.sangupta.lineup.queues.AbstractLineUpQueue#addMessages(java.util.List)
+	 */
+	@Override
+	public List<QueueMessage> addMessages(List<QueueMessage> queueMessages) {
+		if(queueMessages == null) {
+			throw new IllegalArgumentException("Queue messages cannot be null");
+		}
 		
-		if(response.isSuccess()) {
-			return true;
+		// null messages are never added, so are not sent
+		List<QueueMessage> batch = new ArrayList<QueueMessage>(queueMessages.size());
+		for(QueueMessage queueMessage : queueMessages) {
+			if(queueMessage != null) {
+				batch.add(queueMessage);
+			}
 		}
 		
-		return false;
+		boolean[] success = this.invokeBatch(WebRequestMethod.POST, batch);
+		
+		List<QueueMessage> added = new ArrayList<QueueMessage>(queueMessages.size());
+		int index = 0;
+		for(QueueMessage queueMessage : queueMessages) {
+			if(queueMessage == null) {
+				added.add(null);
+				continue;
+			}
+			
+			added.add(success[index++] ? queueMessage : null);
+		}
+		
+		return added;
+	}
+	
+	/**
+	 * Sends the message IDs to the batch endpoint of the server, in as few
+	 * requests as the limits of the server allow.
+	 * 
+	 * @see com.sangupta.lineup.queues.AbstractLineUpQueue#deleteMessages(java.util.List)
+	 */
+	@Override
+	public boolean[] deleteMessages(List<String> messageIDs) {
+		if(messageIDs == null) {
+			throw new IllegalArgumentException("Message IDs cannot be null");
+		}
+		
+		return this.invokeBatch(WebRequestMethod.DELETE, new ArrayList<String>(messageIDs));
+	}
+	
+	/**
+	 * Send the given items to the batch endpoint of the server, splitting them
+	 * into as many requests as needed to stay within the limits of the server.
+	 * 
+	 * @param method
+	 *            the method to invoke the batch endpoint with
+	 * 
+	 * @param items
+	 *            the items to send
+	 * 
+	 * @return for each item, whether it succeeded
+	 */
+	private boolean[] invokeBatch(WebRequestMethod method, List<?> items) {
+		final BinaryQueueHandle binaryQueue = this.binaryQueue;
+		if(binaryQueue != null) {
+			return this.invokeBinaryBatch(binaryQueue, method, items);
+		}
+		
+		boolean[] success = new boolean[items.size()];
+		for(int from = 0; from < items.size(); from += QueueMessageWebservice.MAX_BATCH_ITEMS) {
+			int to = Math.min(items.size(), from + QueueMessageWebservice.MAX_BATCH_ITEMS);
+			this.invokeBatch(method, items, from, to, success);
+		}
+		
+		return success;
+	}
+	
+	/**
+	 * Send the given range of items to the batch endpoint of the server in one
+	 * request, or in halves if the request would be too large.
+	 * 
+	 * @param method
+	 *            the method to invoke the batch endpoint with
+	 * 
+	 * @param items
+	 *            the items to send
+	 * 
+	 * @param from
+	 *            the index of the first item to send
+	 * 
+	 * @param to
+	 *            the index after the last item to send
+	 * 
+	 * @param success
+	 *            the results to record whether each item succeeded in
+	 */
+	private void invokeBatch(WebRequestMethod method, List<?> items, int from, int to, boolean[] success) {
+		final byte[] body = this.encodeBatch(method, items.subList(from, to));
+		if(to - from > 1 && body.length > QueueMessageWebservice.MAX_BATCH_BYTES) {
+			int middle = (from + to) >>> 1;
+			this.invokeBatch(method, items, from, middle, success);
+			this.invokeBatch(method, items, middle, to, success);
+			return;
+		}
+		
+		BatchResult result;
+		if(method == WebRequestMethod.POST) {
+			result = this.postBatch(body);
+		} else {
+			result = this.deleteBatch(body);
+		}
+		
+		if(result == null) {
+			return;
+		}
+		
+		List<BatchResultItem> resultItems = result.getItems();
+		for(int index = 0; index < resultItems.size() && from + index < to; index++) {
+			success[from + index] = resultItems.get(index).isSuccess();
+		}
 	}
 
+	/**
+	 * Send the given items over the binary protocol, pipelining as many
+	 * requests as needed to stay within the limit on the size of a batch.
+	 * 
+	 * @param binaryQueue
+	 *            the queue over the binary protocol
+	 * 
+	 * @param method
+	 *            {@link WebRequestMethod#POST} to add messages, or
+	 *            {@link WebRequestMethod#DELETE} to delete message IDs
+	 * 
+	 * @param items
+	 *            the items to send
+	 * 
+	 * @return for each item, whether it succeeded
+	 */
+	@SuppressWarnings("unchecked")
+	private boolean[] invokeBinaryBatch(BinaryQueueHandle binaryQueue, WebRequestMethod method, List<?> items) {
+		List<QueueFuture<boolean[]>> futures = new ArrayList<QueueFuture<boolean[]>>();
+		for(int from = 0; from < items.size(); from += BinaryProtocol.MAX_BATCH_MESSAGES) {
+			List<?> chunk = items.subList(from, Math.min(items.size(), from + BinaryProtocol.MAX_BATCH_MESSAGES));
+			if(method == WebRequestMethod.POST) {
+				futures.add(binaryQueue.addMessages((List<QueueMessage>) chunk));
+			} else {
+				futures.add(binaryQueue.deleteMessages((List<String>) chunk));
+			}
+		}
+		
+		boolean[] success = new boolean[items.size()];
+		for(int index = 0; index < futures.size(); index++) {
+			try {
+				boolean[] result = await(futures.get(index));
+				System.arraycopy(result, 0, success, index * BinaryProtocol.MAX_BATCH_MESSAGES, Math.min(result.length, success.length - index * BinaryProtocol.MAX_BATCH_MESSAGES));
+			} catch(IOException e) {
+				LOGGER.error("Error sending batch to remote queue", e);
+			}
+		}
+		
+		return success;
+	}
+	
+	/**
+	 * Read up to the given number of messages over the binary protocol,
+	 * waiting for at least the minimum number to be available, in as many
+	 * requests as needed to stay within the limit on the size of a batch.
+	 * 
+	 * @param binaryQueue
+	 *            the queue over the binary protocol
+	 * 
+	 * @param minMessages
+	 *            the minimum number of messages to wait for
+	 * 
+	 * @param maxMessages
+	 *            the maximum number of messages to read
+	 * 
+	 * @param waitMillis
+	 *            the time in milliseconds to wait for
+	 * 
+	 * @return the messages read, which are never <code>null</code>
+	 */
+	private List<QueueMessage> receiveBinary(BinaryQueueHandle binaryQueue, int minMessages, int maxMessages, long waitMillis) {
+		final int max = BinaryProtocol.MAX_BATCH_MESSAGES;
+		List<QueueMessage> messages = new ArrayList<QueueMessage>();
+		try {
+			List<QueueMessage> chunk = await(binaryQueue.getMessages(Math.min(minMessages, max), Math.min(maxMessages, max), waitMillis));
+			messages.addAll(chunk);
+			
+			// a full chunk means there may be more to read
+			while(chunk.size() == max && messages.size() < maxMessages) {
+				chunk = await(binaryQueue.getMessages(0, Math.min(maxMessages - messages.size(), max), 0));
+				messages.addAll(chunk);
+			}
+		} catch(IOException e) {
+			// the messages read have left the remote queue, so are returned
+			LOGGER.error("Error reading messages from remote queue", e);
+		}
+		
+		return messages;
+	}
+	
+	/**
+	 * Read up to the given number of messages over the binary protocol as per
+	 * {@link #receiveBinary(BinaryQueueHandle, int, int, long)}, without
+	 * holding a thread while waiting on the server. The callbacks of the
+	 * client run on the thread reading its responses, which must not block
+	 * writing requests, so any further requests are sent from the shared pool
+	 * of threads. Messages read after the future was cancelled are posted
+	 * back to the remote queue.
+	 * 
+	 * @param binaryQueue
+	 *            the queue over the binary protocol
+	 * 
+	 * @param minMessages
+	 *            the minimum number of messages to wait for
+	 * 
+	 * @param maxMessages
+	 *            the maximum number of messages to read
+	 * 
+	 * @param waitMillis
+	 *            the time in milliseconds to wait for
+	 * 
+	 * @return the future completed with the messages read, which are never
+	 *         <code>null</code>
+	 */
+	private QueueFuture<List<QueueMessage>> receiveBinaryAsync(final BinaryQueueHandle binaryQueue, int minMessages, final int maxMessages, long waitMillis) {
+		final int max = BinaryProtocol.MAX_BATCH_MESSAGES;
+		final QueueFuture<List<QueueMessage>> future = new QueueFuture<List<QueueMessage>>();
+		final List<QueueMessage> messages = new ArrayList<QueueMessage>();
+		
+		binaryQueue.getMessages(Math.min(minMessages, max), Math.min(maxMessages, max), waitMillis).addCallback(new QueueCallback<List<QueueMessage>>() {
+			
+			@Override
+			public void onSuccess(List<QueueMessage> chunk) {
+				messages.addAll(chunk);
+				
+				// a full chunk means there may be more to read
+				if(chunk.size() == max && messages.size() < maxMessages && !future.isDone()) {
+					final QueueCallback<List<QueueMessage>> callback = this;
+					ASYNC_EXECUTOR.execute(new Runnable() {
+						
+						@Override
+						public void run() {
+							binaryQueue.getMessages(0, Math.min(maxMessages - messages.size(), max), 0).addCallback(callback);
+						}
+						
+					});
+					
+					return;
+				}
+				
+				this.finish();
+			}
+			
+			@Override
+			public void onFailure(Throwable cause) {
+				// the messages read have left the remote queue, so are returned
+				LOGGER.error("Error reading messages from remote queue", cause);
+				this.finish();
+			}
+			
+			private void finish() {
+				if(!future.complete(messages)) {
+					// nobody wants the messages anymore
+					giveBackBinary(binaryQueue, messages);
+				}
+			}
+			
+		});
+		
+		return future;
+	}
+	
+	/**
+	 * Post the given messages back to the remote queue over the binary
+	 * protocol, from the shared pool of threads without waiting for the
+	 * outcome.
+	 * 
+	 * @param binaryQueue
+	 *            the queue over the binary protocol
+	 * 
+	 * @param messages
+	 *            the messages to post back
+	 */
+	private static void giveBackBinary(final BinaryQueueHandle binaryQueue, final List<QueueMessage> messages) {
+		if(messages.isEmpty()) {
+			return;
+		}
+		
+		ASYNC_EXECUTOR.execute(new Runnable() {
+			
+			@Override
+			public void run() {
+				for(int from = 0; from < messages.size(); from += BinaryProtocol.MAX_BATCH_MESSAGES) {
+					List<QueueMessage> chunk = messages.subList(from, Math.min(messages.size(), from + BinaryProtocol.MAX_BATCH_MESSAGES));
+					binaryQueue.addMessages(new ArrayList<QueueMessage>(chunk));
+				}
+			}
+			
+		});
+	}
+	
+	/**
+	 * Wait for a request over the binary protocol to complete.
+	 * 
+	 * @param future
+	 *            the future of the request
+	 * 
+	 * @return the result of the request
+	 * 
+	 * @throws IOException
+	 *             if the request failed
+	 */
+	private static <V> V await(QueueFuture<V> future) throws IOException {
+		try {
+			return future.get();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted waiting for remote queue");
+		} catch(ExecutionException e) {
+			if(e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			
+			IOException exception = new IOException("Request to remote queue failed");
+			exception.initCause(e.getCause());
+			throw exception;
+		}
+	}
+	
+	/**
+	 * Encode the given items for the batch endpoint: messages to be added
+	 * with the codec of this queue, and message IDs to be deleted as XML.
+	 * 
+	 * @param method
+	 *            the method to invoke the batch endpoint with
+	 * 
+	 * @param items
+	 *            the items to encode
+	 * 
+	 * @return the encoded items
+	 */
+	@SuppressWarnings("unchecked")
+	private byte[] encodeBatch(WebRequestMethod method, List<?> items) {
+		if(method != WebRequestMethod.POST) {
+			// copy the range so that it is sent as a plain list
+			return MESSAGE_XSTREAM.toXML(new ArrayList<Object>(items)).getBytes(UTF_8);
+		}
+		
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		try {
+			this.codec.writeMessages((List<QueueMessage>) items, body);
+		} catch(IOException e) {
+			// cannot happen when writing to memory
+			throw new IllegalStateException(e);
+		}
+		
+		return body.toByteArray();
+	}
+	
+	/**
+	 * Post the given encoded messages to the batch endpoint.
+	 * 
+	 * @param body
+	 *            the encoded messages
+	 * 
+	 * @return the result of the batch, or <code>null</code> if it failed
+	 */
+	private BatchResult postBatch(byte[] body) {
+		try {
+			HttpResponse response = this.httpClient.execute("POST", this.remoteQueue + "/batch", this.codec.getMediaType(), body, MediaType.TEXT_XML, 0);
+			InputStream stream = this.openResponse(response);
+			if(stream == null) {
+				return null;
+			}
+			
+			try {
+				return (BatchResult) BATCH_RESULT_XSTREAM.fromXML(stream);
+			} finally {
+				stream.close();
+			}
+		} catch(IOException e) {
+			LOGGER.error("Error posting batch to remote queue", e);
+			return null;
+		}
+	}
+	
+	/**
+	 * Send the given encoded message IDs to the batch endpoint to be deleted.
+	 * 
+	 * @param body
+	 *            the encoded message IDs
+	 * 
+	 * @return the result of the batch, or <code>null</code> if it failed
+	 */
+	private BatchResult deleteBatch(byte[] body) {
+		try {
+			HttpResponse response = this.httpClient.execute("DELETE", this.remoteQueue + "/batch", MediaType.TEXT_XML, body, MediaType.TEXT_XML, 0);
+			InputStream stream = this.openResponse(response);
+			if(stream == null) {
+				return null;
+			}
+			
+			try {
+				return (BatchResult) BATCH_RESULT_XSTREAM.fromXML(stream);
+			} finally {
+				stream.close();
+			}
+		} catch(IOException e) {
+			LOGGER.error("Error sending batch to remote queue", e);
+			return null;
+		}
+	}
+
+	/**
+	 * Posts the message from a shared pool of threads, or over the binary
+	 * protocol without holding a thread.
+	 * 
+	 * @see com.sangupta.lineup.queues.AbstractLineUpQueue#addMessageAsync(java.lang.String)
+	 */
+	@Override
+	public QueueFuture<QueueMessage> addMessageAsync(final String message) {
+		final BinaryQueueHandle binaryQueue = this.binaryQueue;
+		if(binaryQueue != null) {
+			final QueueMessage queueMessage = new QueueMessage(message, 0, 1);
+			final QueueFuture<QueueMessage> future = new QueueFuture<QueueMessage>();
+			
+			binaryQueue.addMessages(Collections.singletonList(queueMessage)).addCallback(new QueueCallback<boolean[]>() {
+				
+				@Override
+				public void onSuccess(boolean[] added) {
+					future.complete(added.length > 0 && added[0] ? queueMessage : null);
+				}
+				
+				@Override
+				public void onFailure(Throwable cause) {
+					LOGGER.error("Error posting message to remote queue", cause);
+					future.complete(null);
+				}
+				
+			});
+			
+			return future;
+		}
+		
+		return invokeAsync(new Callable<QueueMessage>() {
+			
+			@Override
+			public QueueMessage call() {
+				return addMessage(message);
+			}
+			
+		});
+	}
+	
+	/**
+	 * Waits on the server over the binary protocol without holding a thread,
+	 * or else long-polls the remote queue from a shared pool of threads, for
+	 * the timeout rounded up to whole seconds. A message that arrives after
+	 * the future was cancelled is posted back to the remote queue.
+	 * 
+	 * @see com.sangupta.lineup.queues.AbstractLineUpQueue#receiveAsync(long, java.util.concurrent.TimeUnit)
+	 */
+	@Override
+	public QueueFuture<QueueMessage> receiveAsync(long timeout, TimeUnit unit) {
+		final QueueFuture<QueueMessage> future = new QueueFuture<QueueMessage>();
+		
+		final BinaryQueueHandle binaryQueue = this.binaryQueue;
+		if(binaryQueue != null) {
+			final long waitMillis = Math.max(0, unit.toMillis(timeout));
+			this.receiveBinaryAsync(binaryQueue, waitMillis > 0 ? 1 : 0, 1, waitMillis).addCallback(new QueueCallback<List<QueueMessage>>() {
+				
+				@Override
+				public void onSuccess(List<QueueMessage> messages) {
+					QueueMessage message = messages.isEmpty() ? null : messages.get(0);
+					if(!future.complete(message) && message != null) {
+						// nobody wants the message anymore
+						giveBackBinary(binaryQueue, messages);
+					}
+				}
+				
+				@Override
+				public void onFailure(Throwable cause) {
+					future.fail(cause);
+				}
+				
+			});
+			
+			return future;
+		}
+		
+		final long pollSeconds = Math.max(0, (unit.toMillis(timeout) + 999) / 1000);
+		try {
+			ASYNC_EXECUTOR.execute(new Runnable() {
+				
+				@Override
+				public void run() {
+					if(future.isDone()) {
+						return;
+					}
+					
+					try {
+						QueueMessage message = getQueueMessage(pollSeconds);
+						if(!future.complete(message) && message != null) {
+							// nobody wants the message anymore
+							addQueueMessage(message);
+						}
+					} catch(Throwable t) {
+						future.fail(t);
+					}
+				}
+				
+			});
+		} catch(RuntimeException e) {
+			future.fail(e);
+		}
+		
+		return future;
+	}
+	
+	/**
+	 * Waits for the batch on the server over the binary protocol without
+	 * holding a thread, or else from a shared pool of threads. Messages that
+	 * arrive after the future was cancelled are posted back to the remote
+	 * queue when read over the binary protocol.
+	 * 
+	 * @see com.sangupta.lineup.queues.AbstractLineUpQueue#receiveBatchAsync(int, int, long, java.util.concurrent.TimeUnit)
+	 */
+	@Override
+	public QueueFuture<List<QueueMessage>> receiveBatchAsync(final int minMessages, final int maxMessages, final long maxWait, final TimeUnit unit) {
+		if(maxMessages < 1) {
+			throw new IllegalArgumentException("Maximum number of messages must be at least one");
+		}
+		
+		if(minMessages < 0 || minMessages > maxMessages) {
+			throw new IllegalArgumentException("Minimum number of messages must be between zero and the maximum");
+		}
+		
+		final BinaryQueueHandle binaryQueue = this.binaryQueue;
+		if(binaryQueue != null) {
+			return this.receiveBinaryAsync(binaryQueue, minMessages, maxMessages, Math.max(0, unit.toMillis(maxWait)));
+		}
+		
+		return invokeAsync(new Callable<List<QueueMessage>>() {
+			
+			@Override
+			public List<QueueMessage> call() {
+				return getMessages(minMessages, maxMessages, maxWait, unit);
+			}
+			
+		});
+	}
+	
+	/**
+	 * Deletes the message from a shared pool of threads, or over the binary
+	 * protocol without holding a thread.
+	 * 
+	 * @see com.sangupta.lineup.queues.AbstractLineUpQueue#deleteMessageAsync(java.lang.String)
+	 */
+	@Override
+	public QueueFuture<Boolean> deleteMessageAsync(final String messageID) {
+		final BinaryQueueHandle binaryQueue = this.binaryQueue;
+		if(binaryQueue != null) {
+			final QueueFuture<Boolean> future = new QueueFuture<Boolean>();
+			
+			binaryQueue.deleteMessages(Collections.singletonList(messageID)).addCallback(new QueueCallback<boolean[]>() {
+				
+				@Override
+				public void onSuccess(boolean[] deleted) {
+					future.complete(deleted.length > 0 && deleted[0]);
+				}
+				
+				@Override
+				public void onFailure(Throwable cause) {
+					LOGGER.error("Error sending batch to remote queue", cause);
+					future.complete(false);
+				}
+				
+			});
+			
+			return future;
+		}
+		
+		return invokeAsync(new Callable<Boolean>() {
+			
+			@Override
+			public Boolean call() {
+				return deleteMessage(messageID);
+			}
+			
+		});
+	}
+	
+	/**
+	 * Run the given call from the shared pool of threads, completing the
+	 * returned future with its outcome.
+	 * 
+	 * @param call
+	 *            the call to run
+	 * 
+	 * @return the future for the outcome of the call
+	 */
+	private static <V> QueueFuture<V> invokeAsync(final Callable<V> call) {
+		final QueueFuture<V> future = new QueueFuture<V>();
+		
+		try {
+			ASYNC_EXECUTOR.execute(new Runnable() {
+				
+				@Override
+				public void run() {
+					if(future.isDone()) {
+						return;
+					}
+					
+					try {
+						future.complete(call.call());
+					} catch(Throwable t) {
+						future.fail(t);
+					}
+				}
+				
+			});
+		} catch(RuntimeException e) {
+			future.fail(e);
+		}
+		
+		return future;
+	}
+
+	/**
+	 * Return the codec messages are sent to and received from the remote
+	 * queue with.
+	 * 
+	 * @return the codec
+	 */
+	public MessageCodec getCodec() {
+		return this.codec;
+	}
+	
+	/**
+	 * Set the codec messages are sent to and received from the remote queue
+	 * with. The compact binary codec is used by default, and the XML codec
+	 * can be set to talk to servers predating the codecs.
+	 * 
+	 * @param codec
+	 *            the codec to use
+	 */
+	public void setCodec(MessageCodec codec) {
+		if(codec == null) {
+			throw new IllegalArgumentException("Codec cannot be null");
+		}
+		
+		this.codec = codec;
+	}
+	
+	/**
+	 * Return the client requests are sent over HTTP with.
+	 * 
+	 * @return the client
+	 */
+	public LineUpHttpClient getHttpClient() {
+		return this.httpClient;
+	}
+	
+	/**
+	 * Set the client requests are sent over HTTP with. All remote queues share
+	 * the default client, and thus its pools of connections, unless given
+	 * their own.
+	 * 
+	 * @param httpClient
+	 *            the client to use
+	 */
+	public void setHttpClient(LineUpHttpClient httpClient) {
+		if(httpClient == null) {
+			throw new IllegalArgumentException("HTTP client cannot be null");
+		}
+		
+		this.httpClient = httpClient;
+	}
+	
+	/**
+	 * Return a snapshot of the pool of connections to the server of this
+	 * queue.
+	 * 
+	 * @return the metrics of the pool
+	 */
+	public PoolMetrics getPoolMetrics() {
+		try {
+			return this.httpClient.getPool(new URL(this.remoteQueue)).getMetrics();
+		} catch(MalformedURLException e) {
+			throw new IllegalStateException("Invalid queue URL: " + this.remoteQueue, e);
+		}
+	}
+	
+	/**
+	 * Send and receive messages over the native binary protocol of the server
+	 * through the given client, instead of over HTTP. The queue is opened by
+	 * the name and security code in the URL of this queue, and the client may
+	 * be shared by many queues. Reading messages as a stream is always done
+	 * over HTTP.
+	 * 
+	 * @param client
+	 *            the client to use, or <code>null</code> to revert to HTTP
+	 * 
+	 * @throws QueueNotFoundException
+	 *             if the server has no such queue
+	 * 
+	 * @throws IOException
+	 *             if the queue could not be opened
+	 */
+	public void setBinaryClient(BinaryProtocolClient client) throws QueueNotFoundException, IOException {
+		if(client == null) {
+			this.binaryQueue = null;
+			return;
+		}
+		
+		// the URL ends in the security code and name of the queue
+		String path = new URL(this.remoteQueue).getPath();
+		String[] tokens = path.split("/");
+		if(tokens.length < 2) {
+			throw new IllegalArgumentException("Queue URL does not name a queue: " + this.remoteQueue);
+		}
+		
+		this.binaryQueue = client.openQueue(tokens[tokens.length - 1], tokens[tokens.length - 2]);
+	}
+	
 	/**
 	 * @see java.lang.Object#toString()
 	 */
@@ -277,4 +1328,37 @@ public class RemoteLineUpQueue extends AbstractLineUpQueue {
 		return false;
 	}
 	
+	/**
+	 * Reads a list of at most one message, for responses that carry a lone
+	 * message or none.
+	 * 
+	 */
+	private static class SingleMessageReader implements MessageListReader {
+		
+		private QueueMessage message;
+		
+		SingleMessageReader(QueueMessage message) {
+			this.message = message;
+		}
+		
+		/**
+		 * @see com.sangupta.lineup.codec.MessageListReader#next()
+		 */
+		@Override
+		public QueueMessage next() {
+			QueueMessage next = this.message;
+			this.message = null;
+			return next;
+		}
+		
+		/**
+		 * @see com.sangupta.lineup.codec.MessageListReader#close()
+		 */
+		@Override
+		public void close() {
+			this.message = null;
+		}
+		
+	}
+
 }
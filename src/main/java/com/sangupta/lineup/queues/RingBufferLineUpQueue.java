@@ -0,0 +1,161 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.queues;
+
+import java.util.concurrent.TimeUnit;
+
+import com.sangupta.jerry.ds.ConcurrentRingBuffer;
+import com.sangupta.lineup.domain.QueueMessage;
+import com.sangupta.lineup.domain.QueueOptions;
+import com.sangupta.lineup.service.QueueGenerationFactory;
+
+/**
+ * A bounded {@link LineUpQueue} that allows duplicates and is backed by a
+ * lock-free {@link ConcurrentRingBuffer}. Adding a message to a full queue
+ * fails, unless the blocking {@link #put(QueueMessage)} or
+ * {@link #offer(QueueMessage, long, TimeUnit)} methods are used.
+ * 
+ * Messages can only be read from the head of the queue, and thus cannot be
+ * deleted by their ID.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public class RingBufferLineUpQueue extends AbstractLineUpQueue {
+	
+	/**
+	 * The internal backing queue
+	 */
+	protected final ConcurrentRingBuffer<QueueMessage> internalQueue;
+	
+	/**
+	 * Construct an instance of queue backed by a ring buffer
+	 * 
+	 * @param name
+	 *            the name of the queue
+	 * 
+	 * @param securityCode
+	 *            the security code
+	 * 
+	 * @param options
+	 *            the queue options
+	 */
+	public RingBufferLineUpQueue(String name, String securityCode, QueueOptions options) {
+		super(name, securityCode, options);
+		
+		this.internalQueue = new ConcurrentRingBuffer<QueueMessage>(options.getRingBufferCapacity(), QueueGenerationFactory.getWaitStrategy(options), QueueGenerationFactory.getWaitStrategy(options));
+	}
+
+	/**
+	 * @see com.sangupta.lineup.queues.AbstractLineUpQueue#addQueueMessage(com.sangupta.lineup.domain.QueueMessage)
+	 */
+	@Override
+	public QueueMessage addQueueMessage(QueueMessage queueMessage) {
+		boolean added = this.internalQueue.offer(queueMessage);
+		if(!added) {
+			return null;
+		}
+		
+		return queueMessage;
+	}
+
+	/**
+	 * @see com.sangupta.lineup.queues.AbstractLineUpQueue#getQueueMessage(long)
+	 */
+	@Override
+	public QueueMessage getQueueMessage(long longPollTime) throws InterruptedException {
+		return this.internalQueue.poll(longPollTime, TimeUnit.SECONDS);
+	}
+	
+	/**
+	 * Wait for space to become available in the queue if it is full. A
+	 * waiting consumer is handed the message directly, as for
+	 * {@link #addMessage(QueueMessage)}.
+	 * 
+	 * @see com.sangupta.lineup.queues.AbstractLineUpQueue#put(com.sangupta.lineup.domain.QueueMessage)
+	 */
+	@Override
+	public void put(QueueMessage queueMessage) throws InterruptedException {
+		if(queueMessage == null) {
+			throw new IllegalArgumentException("Queue message cannot be null");
+		}
+		
+		if(this.transferMessage(queueMessage)) {
+			return;
+		}
+		
+		this.internalQueue.put(queueMessage);
+		this.messageAdded();
+	}
+	
+	/**
+	 * Wait for space to become available in the queue if it is full. A
+	 * waiting consumer is handed the message directly, as for
+	 * {@link #addMessage(QueueMessage)}.
+	 * 
+	 * @see com.sangupta.lineup.queues.AbstractLineUpQueue#offer(com.sangupta.lineup.domain.QueueMessage, long, java.util.concurrent.TimeUnit)
+	 */
+	@Override
+	public boolean offer(QueueMessage queueMessage, long timeout, TimeUnit unit) throws InterruptedException {
+		if(queueMessage == null) {
+			throw new IllegalArgumentException("Queue message cannot be null");
+		}
+		
+		if(this.transferMessage(queueMessage)) {
+			return true;
+		}
+		
+		boolean added = this.internalQueue.offer(queueMessage, timeout, unit);
+		if(added) {
+			this.messageAdded();
+		}
+		
+		return added;
+	}
+	
+	/**
+	 * @see com.sangupta.lineup.queues.AbstractLineUpQueue#remainingCapacity()
+	 */
+	@Override
+	public int remainingCapacity() {
+		return this.internalQueue.remainingCapacity();
+	}
+
+	/**
+	 * @see java.util.Collection#clear()
+	 */
+	@Override
+	public void clear() {
+		this.internalQueue.clear();
+	}
+
+	/**
+	 * Messages cannot be removed from the middle of a ring buffer.
+	 * 
+	 * @see com.sangupta.lineup.queues.AbstractLineUpQueue#removeMessageID(long)
+	 */
+	@Override
+	public boolean removeMessageID(long id) {
+		return false;
+	}
+	
+}
@@ -0,0 +1,120 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.queues;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.sangupta.jerry.ds.ShardedChangingPriorityQueue;
+import com.sangupta.lineup.domain.QueueMessage;
+import com.sangupta.lineup.domain.QueueOptions;
+
+/**
+ * A {@link LineUpQueue} that merges duplicates by increasing their priority,
+ * like {@link MergingPriorityLineUpQueue}, but spreads the messages over a
+ * number of independent shards by their body. This lets merges from many
+ * threads proceed in parallel, at the cost of the priority order being only
+ * approximate across shards.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public class ShardedMergingPriorityLineUpQueue extends AbstractLineUpQueue {
+	
+	/**
+	 * The internal backing queue
+	 */
+	protected final ShardedChangingPriorityQueue<QueueMessage> internalQueue;
+	
+	/**
+	 * Construct an instance of queue which merges the priority of duplicates
+	 * over a number of shards
+	 * 
+	 * @param name
+	 *            the name of the queue
+	 * 
+	 * @param securityCode
+	 *            the security code
+	 * 
+	 * @param options
+	 *            the queue options
+	 */
+	public ShardedMergingPriorityLineUpQueue(String name, String securityCode, QueueOptions options) {
+		super(name, securityCode, options);
+		
+		int shards = options.getMergingShards();
+		if(shards == 0) {
+			shards = Runtime.getRuntime().availableProcessors();
+		}
+		
+		this.internalQueue = new ShardedChangingPriorityQueue<QueueMessage>(shards, options.getMaxMergedPriority(), options.getPriorityAgingSeconds() * 1000l);
+	}
+
+	/**
+	 * @see com.sangupta.lineup.queues.AbstractLineUpQueue#addQueueMessage(com.sangupta.lineup.domain.QueueMessage)
+	 */
+	@Override
+	public QueueMessage addQueueMessage(QueueMessage queueMessage) {
+		boolean added = this.internalQueue.add(queueMessage);
+		if(!added) {
+			return null;
+		}
+		
+		return queueMessage;
+	}
+
+	/**
+	 * @see com.sangupta.lineup.queues.AbstractLineUpQueue#getQueueMessage(long)
+	 */
+	@Override
+	public QueueMessage getQueueMessage(long longPollTime) throws InterruptedException {
+		return this.internalQueue.poll(longPollTime, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * @see java.util.Collection#clear()
+	 */
+	@Override
+	public void clear() {
+		this.internalQueue.clear();
+	}
+
+	/**
+	 * @see com.sangupta.lineup.queues.AbstractLineUpQueue#removeMessageID(long)
+	 */
+	@Override
+	public boolean removeMessageID(long id) {
+		return this.internalQueue.remove(id) != null;
+	}
+	
+	/**
+	 * Return the age of the longest waiting message for every priority
+	 * currently present in the queue, across all shards.
+	 * 
+	 * @return a {@link Map} of priority to the age in milliseconds of the
+	 *         longest waiting message with that priority
+	 */
+	public Map<Integer, Long> getOldestMessageAges() {
+		return this.internalQueue.getOldestAges();
+	}
+	
+}
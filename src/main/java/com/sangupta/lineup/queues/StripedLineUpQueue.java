@@ -0,0 +1,112 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.queues;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import com.sangupta.jerry.ds.StripedQueue;
+import com.sangupta.lineup.domain.QueueMessage;
+import com.sangupta.lineup.domain.QueueOptions;
+
+/**
+ * A {@link LineUpQueue} that allows duplicates and spreads messages over a
+ * number of independent FIFO lanes, so that a large number of producers and
+ * consumers do not contend over a single lock. Messages are served in FIFO
+ * order within a lane, and in approximate FIFO order across lanes as per
+ * {@link QueueOptions#getFifoSkewMillis()}.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public class StripedLineUpQueue extends AbstractLineUpQueue {
+	
+	/**
+	 * The internal backing queue
+	 */
+	protected final StripedQueue<QueueMessage> internalQueue;
+	
+	/**
+	 * Construct an instance of queue which is striped over many lanes
+	 * 
+	 * @param name
+	 *            the name of the queue
+	 * 
+	 * @param securityCode
+	 *            the security code
+	 * 
+	 * @param options
+	 *            the queue options
+	 */
+	public StripedLineUpQueue(String name, String securityCode, QueueOptions options) {
+		super(name, securityCode, options);
+		
+		int lanes = options.getStripedLanes();
+		if(lanes == 0) {
+			lanes = Runtime.getRuntime().availableProcessors();
+		}
+		
+		this.internalQueue = new StripedQueue<QueueMessage>(lanes, options.getFifoSkewMillis());
+	}
+
+	/**
+	 * @see com.sangupta.lineup.queues.AbstractLineUpQueue#addQueueMessage(com.sangupta.lineup.domain.QueueMessage)
+	 */
+	@Override
+	public QueueMessage addQueueMessage(QueueMessage queueMessage) {
+		this.internalQueue.offer(queueMessage);
+		return queueMessage;
+	}
+
+	/**
+	 * @see com.sangupta.lineup.queues.AbstractLineUpQueue#getQueueMessage(long)
+	 */
+	@Override
+	public QueueMessage getQueueMessage(long longPollTime) throws InterruptedException {
+		return this.internalQueue.poll(longPollTime, TimeUnit.SECONDS);
+	}
+	
+	/**
+	 * @see com.sangupta.lineup.queues.AbstractLineUpQueue#drainQueueMessages(java.util.Collection, int)
+	 */
+	@Override
+	protected int drainQueueMessages(Collection<? super QueueMessage> collection, int maxMessages) {
+		return this.internalQueue.drainTo(collection, maxMessages);
+	}
+
+	/**
+	 * @see java.util.Collection#clear()
+	 */
+	@Override
+	public void clear() {
+		this.internalQueue.clear();
+	}
+
+	/**
+	 * @see com.sangupta.lineup.queues.AbstractLineUpQueue#removeMessageID(long)
+	 */
+	@Override
+	public boolean removeMessageID(long id) {
+		return this.internalQueue.remove(id);
+	}
+	
+}
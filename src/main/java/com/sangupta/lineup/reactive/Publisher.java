@@ -0,0 +1,50 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.reactive;
+
+/**
+ * A producer of items that are sent to a {@link Subscriber} only as it asks
+ * for them. The contract mirrors <code>java.util.concurrent.Flow.Publisher</code>
+ * of the Reactive Streams specification, so that it can be bridged to it
+ * with a one-line adapter where available.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ *
+ * @param <T>
+ */
+public interface Publisher<T> {
+	
+	/**
+	 * Add the given subscriber, which is first sent a {@link Subscription}
+	 * via {@link Subscriber#onSubscribe(Subscription)}, and items only as it
+	 * requests them through the subscription.
+	 * 
+	 * @param subscriber
+	 *            the subscriber
+	 * 
+	 * @throws NullPointerException
+	 *             if the subscriber is <code>null</code>
+	 */
+	public void subscribe(Subscriber<? super T> subscriber);
+
+}
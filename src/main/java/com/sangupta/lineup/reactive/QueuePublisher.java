@@ -0,0 +1,464 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.reactive;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sangupta.lineup.async.QueueCallback;
+import com.sangupta.lineup.async.QueueFuture;
+import com.sangupta.lineup.domain.QueueMessage;
+import com.sangupta.lineup.queues.LineUpQueue;
+
+/**
+ * Exposes a {@link LineUpQueue} as a {@link Publisher} of its messages.
+ * 
+ * Messages are taken out of the queue only as subscribers request them, in
+ * batches sized to the outstanding demand, so nothing piles up between the
+ * queue and a slow subscriber. When the queue runs dry while demand remains,
+ * the subscription registers a single asynchronous receive with the queue,
+ * and resumes once a producer adds a message. No thread polls the queue.
+ * 
+ * Every subscription competes for the messages of the queue, so a message is
+ * sent to one subscriber only. Unless an {@link Executor} is given, messages
+ * are sent on the thread that requested them, or on the thread of the
+ * producer that woke up the subscription, and subscribers must thus not block
+ * in {@link Subscriber#onNext(Object)}.
+ * 
+ * The queue never completes, so {@link Subscriber#onComplete()} is never
+ * invoked. As the receive is completed by a producer, and messages taken out
+ * but not sent are added back, the queue must be of
+ * {@link com.sangupta.lineup.domain.QueueCardinality#MPMC} cardinality.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public class QueuePublisher implements Publisher<QueueMessage> {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(QueuePublisher.class);
+	
+	/**
+	 * The default maximum number of messages taken out of the queue in one go
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 64;
+	
+	/**
+	 * The time in seconds a subscription waits on an empty queue in one go,
+	 * before it registers again
+	 */
+	private static final long RECEIVE_SECONDS = 60;
+	
+	/**
+	 * The queue the messages are taken from
+	 */
+	private final LineUpQueue queue;
+	
+	/**
+	 * The maximum number of messages taken out of the queue in one go
+	 */
+	private final int batchSize;
+	
+	/**
+	 * The executor messages are sent from, <code>null</code> to send them
+	 * from the signalling thread
+	 */
+	private final Executor executor;
+	
+	/**
+	 * Create a publisher for the given queue.
+	 * 
+	 * @param queue
+	 *            the queue to take messages from
+	 */
+	public QueuePublisher(LineUpQueue queue) {
+		this(queue, DEFAULT_BATCH_SIZE, null);
+	}
+	
+	/**
+	 * Create a publisher for the given queue.
+	 * 
+	 * @param queue
+	 *            the queue to take messages from
+	 * 
+	 * @param batchSize
+	 *            the maximum number of messages taken out of the queue in one
+	 *            go
+	 * 
+	 * @param executor
+	 *            the executor to send messages from, or <code>null</code> to
+	 *            send them from the signalling thread
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the queue is <code>null</code> or restricted to a single
+	 *             producer or consumer, or the batch size is not positive
+	 */
+	public QueuePublisher(LineUpQueue queue, int batchSize, Executor executor) {
+		if(queue == null) {
+			throw new IllegalArgumentException("Queue cannot be null");
+		}
+		
+		if(!queue.isBackingQueueConcurrent()) {
+			throw new IllegalArgumentException("Publishers need a queue of MPMC cardinality: " + queue.getName());
+		}
+		
+		if(batchSize <= 0) {
+			throw new IllegalArgumentException("Batch size must be positive");
+		}
+		
+		this.queue = queue;
+		this.batchSize = batchSize;
+		this.executor = executor;
+	}
+	
+	/**
+	 * @see com.sangupta.lineup.reactive.Publisher#subscribe(com.sangupta.lineup.reactive.Subscriber)
+	 */
+	@Override
+	public void subscribe(Subscriber<? super QueueMessage> subscriber) {
+		if(subscriber == null) {
+			throw new NullPointerException("Subscriber cannot be null");
+		}
+		
+		QueueSubscription subscription = new QueueSubscription(subscriber);
+		try {
+			subscriber.onSubscribe(subscription);
+		} catch(Throwable t) {
+			LOGGER.error("Subscriber failed on subscription to queue " + this.queue.getName(), t);
+			subscription.cancel();
+		}
+	}
+	
+	// Usual accessors follow
+
+	/**
+	 * @return the queue
+	 */
+	public LineUpQueue getQueue() {
+		return queue;
+	}
+
+	/**
+	 * @return the batchSize
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+	
+	/**
+	 * The subscription of a single subscriber. All signals end up in
+	 * {@link #drain()}, which only ever runs on one thread at a time, and
+	 * which is the only place messages are sent from.
+	 * 
+	 * @author sangupta
+	 *
+	 */
+	private class QueueSubscription implements Subscription, Runnable, QueueCallback<QueueMessage> {
+		
+		/**
+		 * The subscriber
+		 */
+		private final Subscriber<? super QueueMessage> subscriber;
+		
+		/**
+		 * The outstanding demand, {@link Long#MAX_VALUE} if unbounded
+		 */
+		private final AtomicLong requested = new AtomicLong();
+		
+		/**
+		 * The number of signals yet to be drained, non-zero while a thread
+		 * drains, and forever once the subscription has terminated
+		 */
+		private final AtomicInteger signals = new AtomicInteger();
+		
+		/**
+		 * Whether a receive is registered with the queue
+		 */
+		private final AtomicBoolean receiving = new AtomicBoolean();
+		
+		/**
+		 * A message handed over by the receive, yet to be sent
+		 */
+		private final AtomicReference<QueueMessage> received = new AtomicReference<QueueMessage>();
+		
+		/**
+		 * The receive registered with the queue, if any
+		 */
+		private volatile QueueFuture<QueueMessage> receive;
+		
+		/**
+		 * Whether the subscription has been cancelled
+		 */
+		private volatile boolean cancelled;
+		
+		/**
+		 * The failure to send to the subscriber
+		 */
+		private volatile Throwable error;
+		
+		QueueSubscription(Subscriber<? super QueueMessage> subscriber) {
+			this.subscriber = subscriber;
+		}
+		
+		/**
+		 * @see com.sangupta.lineup.reactive.Subscription#request(long)
+		 */
+		@Override
+		public void request(long n) {
+			if(n <= 0) {
+				this.error = new IllegalArgumentException("Number of messages requested must be positive");
+			} else {
+				long current, next;
+				do {
+					current = this.requested.get();
+					if(current == Long.MAX_VALUE) {
+						break;
+					}
+					
+					next = current + n;
+					if(next < 0) {
+						next = Long.MAX_VALUE;
+					}
+				} while(!this.requested.compareAndSet(current, next));
+			}
+			
+			this.signal();
+		}
+		
+		/**
+		 * @see com.sangupta.lineup.reactive.Subscription#cancel()
+		 */
+		@Override
+		public void cancel() {
+			this.cancelled = true;
+			this.signal();
+		}
+		
+		/**
+		 * Invoked when the receive registered with the queue completes.
+		 * 
+		 * @see com.sangupta.lineup.async.QueueCallback#onSuccess(java.lang.Object)
+		 */
+		@Override
+		public void onSuccess(QueueMessage message) {
+			this.receiving.set(false);
+			if(message != null) {
+				this.received.set(message);
+				if(this.cancelled) {
+					// drain may have already cleaned up
+					this.returnReceived();
+					return;
+				}
+			}
+			
+			this.signal();
+		}
+		
+		/**
+		 * @see com.sangupta.lineup.async.QueueCallback#onFailure(java.lang.Throwable)
+		 */
+		@Override
+		public void onFailure(Throwable cause) {
+			this.receiving.set(false);
+			if(cause instanceof CancellationException) {
+				return;
+			}
+			
+			this.error = cause;
+			this.signal();
+		}
+		
+		/**
+		 * @see java.lang.Runnable#run()
+		 */
+		@Override
+		public void run() {
+			int missed = 1;
+			do {
+				if(!this.drain()) {
+					// terminated - leave the signal count non-zero for good
+					return;
+				}
+				
+				missed = this.signals.addAndGet(-missed);
+			} while(missed != 0);
+		}
+		
+		/**
+		 * Drain now, unless another thread is draining, in which case it
+		 * drains once more on our behalf.
+		 * 
+		 */
+		private void signal() {
+			if(this.signals.getAndIncrement() != 0) {
+				return;
+			}
+			
+			if(executor == null) {
+				this.run();
+			} else {
+				executor.execute(this);
+			}
+		}
+		
+		/**
+		 * Send as many messages as demanded and available, and register a
+		 * receive with the queue if demand remains.
+		 * 
+		 * @return <code>false</code> if the subscription has terminated,
+		 *         <code>true</code> otherwise
+		 */
+		private boolean drain() {
+			if(this.terminateIfNeeded()) {
+				return false;
+			}
+			
+			final long demand = this.requested.get();
+			long emitted = 0;
+			
+			if(demand > 0) {
+				QueueMessage message = this.received.getAndSet(null);
+				if(message != null) {
+					this.emit(message);
+					emitted++;
+				}
+			}
+			
+			while(emitted < demand && !this.cancelled) {
+				final int size = (int) Math.min(demand - emitted, batchSize);
+				final List<QueueMessage> batch = queue.getMessages(size);
+				if(batch == null) {
+					break;
+				}
+				
+				for(int index = 0; index < batch.size(); index++) {
+					if(this.cancelled) {
+						// return what was taken out but not sent
+						for(QueueMessage message : batch.subList(index, batch.size())) {
+							queue.addMessage(message);
+						}
+						
+						break;
+					}
+					
+					this.emit(batch.get(index));
+					emitted++;
+				}
+				
+				if(batch.size() < size) {
+					// the queue ran dry
+					break;
+				}
+			}
+			
+			if(emitted > 0 && demand != Long.MAX_VALUE) {
+				this.requested.addAndGet(-emitted);
+			}
+			
+			if(this.terminateIfNeeded()) {
+				return false;
+			}
+			
+			if(this.requested.get() > 0 && this.received.get() == null && this.receiving.compareAndSet(false, true)) {
+				// the callback may run right away, and signals us to drain again
+				QueueFuture<QueueMessage> receive = queue.receiveAsync(RECEIVE_SECONDS, TimeUnit.SECONDS);
+				this.receive = receive;
+				receive.addCallback(this);
+			}
+			
+			return true;
+		}
+		
+		/**
+		 * Send a message to the subscriber, cancelling the subscription if
+		 * the subscriber fails.
+		 * 
+		 * @param message
+		 *            the message
+		 */
+		private void emit(QueueMessage message) {
+			try {
+				this.subscriber.onNext(message);
+			} catch(Throwable t) {
+				LOGGER.error("Subscriber failed to accept message from queue " + queue.getName(), t);
+				this.cancelled = true;
+			}
+		}
+		
+		/**
+		 * Release the receive and any message held if the subscription has
+		 * been cancelled or has failed, and tell the subscriber of a failure.
+		 * 
+		 * @return <code>true</code> if the subscription has terminated,
+		 *         <code>false</code> otherwise
+		 */
+		private boolean terminateIfNeeded() {
+			final Throwable error = this.error;
+			if(!this.cancelled && error == null) {
+				return false;
+			}
+			
+			final boolean wasCancelled = this.cancelled;
+			this.cancelled = true;
+			
+			QueueFuture<QueueMessage> receive = this.receive;
+			if(receive != null) {
+				// if a message was handed over already, the callback returns it
+				receive.cancel(false);
+			}
+			
+			this.returnReceived();
+			
+			if(error != null && !wasCancelled) {
+				try {
+					this.subscriber.onError(error);
+				} catch(Throwable t) {
+					LOGGER.error("Subscriber failed on error from queue " + queue.getName(), t);
+				}
+			}
+			
+			return true;
+		}
+		
+		/**
+		 * Return the message handed over by the receive, if any, to the
+		 * queue.
+		 * 
+		 */
+		private void returnReceived() {
+			QueueMessage message = this.received.getAndSet(null);
+			if(message != null) {
+				queue.addMessage(message);
+			}
+		}
+		
+	}
+
+}
@@ -0,0 +1,340 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.reactive;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sangupta.lineup.domain.QueueMessage;
+import com.sangupta.lineup.queues.LineUpQueue;
+
+/**
+ * A {@link Subscriber} that adds the messages it receives to a
+ * {@link LineUpQueue}, requesting no more from upstream than the queue has
+ * room for.
+ * 
+ * At most a window of messages is requested at a time, and never more than
+ * the remaining capacity of the queue, less the messages already requested.
+ * Demand is topped up once half the window has arrived. When the queue is
+ * full, the subscriber checks for room again after a short delay on a shared
+ * timer, instead of blocking the publisher in {@link #onNext(QueueMessage)}.
+ * Should other producers fill the queue meanwhile, the few messages that do
+ * not fit are held until there is room, and no more is requested until then.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public class QueueSubscriber implements Subscriber<QueueMessage> {
+	
+	/**
+	 * The default maximum number of messages requested at a time
+	 */
+	public static final int DEFAULT_WINDOW = 256;
+	
+	/**
+	 * The time in milliseconds after which a full queue is checked again
+	 */
+	private static final long RETRY_MILLIS = 10;
+	
+	/**
+	 * The queue the messages are added to
+	 */
+	private final LineUpQueue queue;
+	
+	/**
+	 * The maximum number of messages requested at a time
+	 */
+	private final int window;
+	
+	/**
+	 * The number of messages requested but not yet received
+	 */
+	private final AtomicInteger outstanding = new AtomicInteger();
+	
+	/**
+	 * Messages received that did not fit in the queue
+	 */
+	private final Queue<QueueMessage> pending = new ConcurrentLinkedQueue<QueueMessage>();
+	
+	/**
+	 * The number of signals yet to be processed, non-zero while a thread
+	 * processes them
+	 */
+	private final AtomicInteger signals = new AtomicInteger();
+	
+	/**
+	 * Whether a check for room is scheduled
+	 */
+	private final AtomicBoolean retryScheduled = new AtomicBoolean();
+	
+	/**
+	 * The subscription to request messages through
+	 */
+	private volatile Subscription subscription;
+	
+	/**
+	 * Whether upstream has completed or failed, or the subscription has been
+	 * cancelled
+	 */
+	private volatile boolean terminated;
+	
+	/**
+	 * The failure upstream, if any
+	 */
+	private volatile Throwable error;
+	
+	/**
+	 * Create a subscriber for the given queue with the default window.
+	 * 
+	 * @param queue
+	 *            the queue to add messages to
+	 */
+	public QueueSubscriber(LineUpQueue queue) {
+		this(queue, DEFAULT_WINDOW);
+	}
+	
+	/**
+	 * Create a subscriber for the given queue.
+	 * 
+	 * @param queue
+	 *            the queue to add messages to
+	 * 
+	 * @param window
+	 *            the maximum number of messages requested at a time
+	 */
+	public QueueSubscriber(LineUpQueue queue, int window) {
+		if(queue == null) {
+			throw new IllegalArgumentException("Queue cannot be null");
+		}
+		
+		if(window <= 0) {
+			throw new IllegalArgumentException("Window must be positive");
+		}
+		
+		this.queue = queue;
+		this.window = window;
+	}
+	
+	/**
+	 * @see com.sangupta.lineup.reactive.Subscriber#onSubscribe(com.sangupta.lineup.reactive.Subscription)
+	 */
+	@Override
+	public void onSubscribe(Subscription subscription) {
+		if(this.subscription != null || this.terminated) {
+			// subscribed twice - the spec asks for the second to be cancelled
+			subscription.cancel();
+			return;
+		}
+		
+		this.subscription = subscription;
+		this.signal();
+	}
+	
+	/**
+	 * @see com.sangupta.lineup.reactive.Subscriber#onNext(java.lang.Object)
+	 */
+	@Override
+	public void onNext(QueueMessage message) {
+		if(!this.pending.isEmpty() || !this.queue.offer(message)) {
+			this.pending.offer(message);
+		}
+		
+		// only now, so that the message is never missed when sizing demand
+		this.outstanding.decrementAndGet();
+		this.signal();
+	}
+	
+	/**
+	 * @see com.sangupta.lineup.reactive.Subscriber#onError(java.lang.Throwable)
+	 */
+	@Override
+	public void onError(Throwable throwable) {
+		this.error = throwable;
+		this.terminated = true;
+	}
+	
+	/**
+	 * @see com.sangupta.lineup.reactive.Subscriber#onComplete()
+	 */
+	@Override
+	public void onComplete() {
+		this.terminated = true;
+	}
+	
+	/**
+	 * Stop requesting messages. Messages that did not fit in the queue yet
+	 * are still added once there is room.
+	 * 
+	 */
+	public void cancel() {
+		this.terminated = true;
+		
+		Subscription subscription = this.subscription;
+		if(subscription != null) {
+			subscription.cancel();
+		}
+	}
+	
+	/**
+	 * Return the number of messages received that are waiting for room in
+	 * the queue.
+	 * 
+	 * @return the number of pending messages
+	 */
+	public int getPendingCount() {
+		return this.pending.size();
+	}
+	
+	/**
+	 * Process the signal now, unless another thread is processing, in which
+	 * case it goes around once more on our behalf.
+	 * 
+	 */
+	private void signal() {
+		if(this.signals.getAndIncrement() != 0) {
+			return;
+		}
+		
+		int missed = 1;
+		do {
+			this.replenish();
+			missed = this.signals.addAndGet(-missed);
+		} while(missed != 0);
+	}
+	
+	/**
+	 * Add pending messages to the queue, and request as many more as the
+	 * queue has room for.
+	 * 
+	 */
+	private void replenish() {
+		QueueMessage message;
+		while((message = this.pending.peek()) != null) {
+			if(!this.queue.offer(message)) {
+				this.checkRoomLater();
+				return;
+			}
+			
+			this.pending.poll();
+		}
+		
+		final Subscription subscription = this.subscription;
+		if(subscription == null || this.terminated) {
+			return;
+		}
+		
+		final int outstanding = this.outstanding.get();
+		final long room = Math.min(this.window, (long) this.queue.remainingCapacity()) - outstanding;
+		if(room <= 0) {
+			if(outstanding == 0) {
+				// the queue is full
+				this.checkRoomLater();
+			}
+			
+			return;
+		}
+		
+		if(outstanding == 0 || room >= this.window / 2) {
+			this.outstanding.addAndGet((int) room);
+			subscription.request(room);
+		}
+	}
+	
+	/**
+	 * Check for room in the queue again after a short delay.
+	 * 
+	 */
+	private void checkRoomLater() {
+		if(!this.retryScheduled.compareAndSet(false, true)) {
+			return;
+		}
+		
+		RetryTimer.TIMER.schedule(new Runnable() {
+			
+			@Override
+			public void run() {
+				retryScheduled.set(false);
+				signal();
+			}
+			
+		}, RETRY_MILLIS, TimeUnit.MILLISECONDS);
+	}
+	
+	// Usual accessors follow
+
+	/**
+	 * @return the queue
+	 */
+	public LineUpQueue getQueue() {
+		return queue;
+	}
+
+	/**
+	 * @return the window
+	 */
+	public int getWindow() {
+		return window;
+	}
+
+	/**
+	 * @return the terminated
+	 */
+	public boolean isTerminated() {
+		return terminated;
+	}
+
+	/**
+	 * @return the error
+	 */
+	public Throwable getError() {
+		return error;
+	}
+	
+	/**
+	 * Holds the timer shared by all subscribers to check full queues again,
+	 * created only once the first queue fills up.
+	 * 
+	 * @author sangupta
+	 *
+	 */
+	private static class RetryTimer {
+		
+		static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "lineup-subscriber-retry");
+				thread.setDaemon(true);
+				return thread;
+			}
+			
+		});
+		
+	}
+
+}
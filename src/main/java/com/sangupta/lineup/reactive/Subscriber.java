@@ -0,0 +1,69 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.reactive;
+
+/**
+ * A receiver of items from a {@link Publisher}. The contract mirrors
+ * <code>java.util.concurrent.Flow.Subscriber</code> of the Reactive Streams
+ * specification: the methods are invoked one at a time, and
+ * {@link #onNext(Object)} is invoked no more often than requested.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ *
+ * @param <T>
+ */
+public interface Subscriber<T> {
+	
+	/**
+	 * Invoked once, before any other method, with the subscription to
+	 * request items through.
+	 * 
+	 * @param subscription
+	 *            the subscription
+	 */
+	public void onSubscribe(Subscription subscription);
+	
+	/**
+	 * Invoked with the next item.
+	 * 
+	 * @param item
+	 *            the item
+	 */
+	public void onNext(T item);
+	
+	/**
+	 * Invoked when the publisher fails, after which nothing else is invoked.
+	 * 
+	 * @param throwable
+	 *            the failure
+	 */
+	public void onError(Throwable throwable);
+	
+	/**
+	 * Invoked when the publisher has no more items, after which nothing else
+	 * is invoked.
+	 * 
+	 */
+	public void onComplete();
+
+}
@@ -0,0 +1,53 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.reactive;
+
+/**
+ * The link between a {@link Publisher} and a {@link Subscriber}, through
+ * which the subscriber signals its demand. The contract mirrors
+ * <code>java.util.concurrent.Flow.Subscription</code> of the Reactive Streams
+ * specification.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public interface Subscription {
+	
+	/**
+	 * Add the given number of items to the demand of the subscriber. A
+	 * demand of {@link Long#MAX_VALUE} or more is treated as unbounded.
+	 * 
+	 * @param n
+	 *            the number of items, which must be positive or else the
+	 *            subscriber is sent an {@link IllegalArgumentException} via
+	 *            {@link Subscriber#onError(Throwable)}
+	 */
+	public void request(long n);
+	
+	/**
+	 * Stop sending items to the subscriber. Items may still arrive for a
+	 * short while after.
+	 * 
+	 */
+	public void cancel();
+
+}
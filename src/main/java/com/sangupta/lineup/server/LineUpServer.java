@@ -22,9 +22,16 @@
 package com.sangupta.lineup.server;
 
 import java.io.IOException;
+import java.net.InetAddress;
+import java.net.URI;
 
 import com.sangupta.jerry.jersey.JerseyGrizzlyServer;
 import com.sangupta.jerry.util.AssertUtils;
+import com.sangupta.lineup.protocol.BinaryProtocolServer;
+import com.sun.grizzly.http.SelectorThread;
+import com.sun.grizzly.tcp.Adapter;
+import com.sun.jersey.api.container.ContainerFactory;
+import com.sun.jersey.api.core.PackagesResourceConfig;
 
 /**
  * A Grizzly based webserver that can accept REST based incoming
@@ -45,6 +52,49 @@ public class LineUpServer {
 	 */
     private final JerseyGrizzlyServer server;
     
+    /**
+     * The URL to the queue server
+     */
+    private final String serverURL;
+    
+    /**
+     * The webservices packages to load
+     */
+    private final String[] packages;
+    
+    /**
+     * The threading model used to service requests
+     */
+    private final ServerMode mode;
+    
+    /**
+     * The maximum number of request threads in {@link ServerMode#ThreadPerRequest}
+     * mode
+     */
+    private int maxRequestThreads = ThreadPerRequestExecutor.DEFAULT_MAX_THREADS;
+    
+    /**
+     * The selector thread when running in {@link ServerMode#ThreadPerRequest}
+     * mode
+     */
+    private SelectorThread selectorThread;
+    
+    /**
+     * The executor servicing requests when running in
+     * {@link ServerMode#ThreadPerRequest} mode
+     */
+    private ThreadPerRequestExecutor requestExecutor;
+    
+    /**
+     * The port to serve the binary protocol on, <code>-1</code> if not served
+     */
+    private int binaryPort = -1;
+    
+    /**
+     * The server for the binary protocol, when running
+     */
+    private BinaryProtocolServer binaryServer;
+    
     /**
      * Create a new {@link LineUpServer} instance with default
      * webservices.
@@ -68,9 +118,53 @@ public class LineUpServer {
 	 * 
 	 */
 	public LineUpServer(final String serverURL, final String[] customJerseyWebservices) {
+		this(serverURL, customJerseyWebservices, ServerMode.WorkerPool);
+	}
+	
+	/**
+	 * Create a new {@link LineUpServer} instance also loading custom
+	 * webservices from the package provided, that services requests using the
+	 * given threading model.
+	 * 
+	 * @param serverURL
+	 *            the URL to the queue server
+	 * 
+	 * @param customJerseyWebservices
+	 *            the jersey webservices to load additionally
+	 * 
+	 * @param mode
+	 *            the threading model used to service requests
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the mode is <code>null</code>
+	 */
+	public LineUpServer(final String serverURL, final String[] customJerseyWebservices, final ServerMode mode) {
+		if(mode == null) {
+			throw new IllegalArgumentException("Server mode cannot be null");
+		}
+		
+		this.serverURL = serverURL;
+		this.mode = mode;
+		this.packages = getPackages(customJerseyWebservices);
+		
+		if(mode == ServerMode.WorkerPool) {
+			this.server = new JerseyGrizzlyServer(serverURL, this.packages);
+		} else {
+			this.server = null;
+		}
+	}
+	
+	/**
+	 * Return the webservices packages to load, including the default ones.
+	 * 
+	 * @param customJerseyWebservices
+	 *            the jersey webservices to load additionally
+	 * 
+	 * @return the packages to load
+	 */
+	private static String[] getPackages(final String[] customJerseyWebservices) {
 		if(AssertUtils.isEmpty(customJerseyWebservices)) {
-			this.server = new JerseyGrizzlyServer(serverURL, DEFAULT_WEBSERVICES_PACKAGES);
-			return;
+			return DEFAULT_WEBSERVICES_PACKAGES;
 		}
 		
 		int total = DEFAULT_WEBSERVICES_PACKAGES.length + customJerseyWebservices.length;
@@ -82,18 +176,169 @@ public class LineUpServer {
 			array[index] = customJerseyWebservices[index - DEFAULT_WEBSERVICES_PACKAGES.length];
 		}
 		
-		this.server = new JerseyGrizzlyServer(serverURL, array);
+		return array;
 	}
 	
-	public void startServer() throws IOException {
-		this.server.startServer();
+	public synchronized void startServer() throws IOException {
+		this.startHttpServer();
+		
+		if(this.binaryPort < 0) {
+			return;
+		}
+		
+		String host = URI.create(this.serverURL).getHost();
+		BinaryProtocolServer binaryServer = new BinaryProtocolServer(host == null ? null : InetAddress.getByName(host), this.binaryPort);
+		try {
+			binaryServer.start();
+		} catch(IOException e) {
+			this.stopHttpServer();
+			throw e;
+		}
+		
+		this.binaryServer = binaryServer;
 	}
 	
-	public void stopServer() {
-		this.server.stopServer();
+	private void startHttpServer() throws IOException {
+		if(this.mode == ServerMode.WorkerPool) {
+			this.server.startServer();
+			return;
+		}
+		
+		if(this.selectorThread != null) {
+			throw new IllegalStateException("Server has already been started");
+		}
+		
+		URI uri = URI.create(this.serverURL);
+		Adapter adapter = ContainerFactory.createContainer(Adapter.class, new PackagesResourceConfig(this.packages));
+		
+		ThreadPerRequestExecutor executor = new ThreadPerRequestExecutor("lineup-request", this.maxRequestThreads);
+		
+		SelectorThread selector = new SelectorThread();
+		if(uri.getHost() != null) {
+			selector.setAddress(InetAddress.getByName(uri.getHost()));
+		}
+		selector.setPort(uri.getPort() == -1 ? 80 : uri.getPort());
+		selector.setAdapter(adapter);
+		selector.setThreadPool(executor);
+		
+		try {
+			selector.listen();
+		} catch(InstantiationException e) {
+			executor.shutdownNow();
+			throw new IOException("Unable to start server", e);
+		}
+		
+		this.requestExecutor = executor;
+		this.selectorThread = selector;
+	}
+	
+	public synchronized void stopServer() {
+		if(this.binaryServer != null) {
+			this.binaryServer.stop();
+			this.binaryServer = null;
+		}
+		
+		this.stopHttpServer();
+	}
+	
+	private void stopHttpServer() {
+		if(this.mode == ServerMode.WorkerPool) {
+			this.server.stopServer();
+			return;
+		}
+		
+		if(this.selectorThread == null) {
+			return;
+		}
+		
+		this.selectorThread.stopEndpoint();
+		this.requestExecutor.shutdownNow();
+		
+		this.selectorThread = null;
+		this.requestExecutor = null;
+	}
+	
+	public synchronized boolean isRunning() {
+		if(this.mode == ServerMode.WorkerPool) {
+			return this.server.isRunning();
+		}
+		
+		return this.selectorThread != null && this.selectorThread.isRunning();
+	}
+	
+	/**
+	 * Return the number of threads currently servicing requests, or waiting
+	 * for one. Only available in {@link ServerMode#ThreadPerRequest} mode.
+	 * 
+	 * @return the number of request threads, or <code>-1</code> if not known
+	 */
+	public synchronized int getRequestThreads() {
+		if(this.requestExecutor == null) {
+			return -1;
+		}
+		
+		return this.requestExecutor.getPoolSize();
 	}
 	
-	public boolean isRunning() {
-		return this.server.isRunning();
+	/**
+	 * Set the maximum number of threads servicing requests in
+	 * {@link ServerMode#ThreadPerRequest} mode. Takes effect when the server is
+	 * next started.
+	 * 
+	 * @param maxRequestThreads
+	 *            the maximum number of request threads
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the maximum is less than one
+	 */
+	public synchronized void setMaxRequestThreads(int maxRequestThreads) {
+		if(maxRequestThreads < 1) {
+			throw new IllegalArgumentException("Maximum number of request threads must be at least one");
+		}
+		
+		this.maxRequestThreads = maxRequestThreads;
+	}
+	
+	/**
+	 * Set the port to also serve the native binary protocol on, alongside
+	 * HTTP, at the host of the server URL. Takes effect when the server is
+	 * next started.
+	 * 
+	 * @param binaryPort
+	 *            the port, <code>0</code> for any free one, or <code>-1</code>
+	 *            to not serve the binary protocol, which is the default
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the port is not valid
+	 */
+	public synchronized void setBinaryPort(int binaryPort) {
+		if(binaryPort < -1 || binaryPort > 65535) {
+			throw new IllegalArgumentException("Binary port must be between -1 and 65535");
+		}
+		
+		this.binaryPort = binaryPort;
+	}
+	
+	/**
+	 * Return the port the binary protocol is served on, which is the one
+	 * picked when set to <code>0</code>.
+	 * 
+	 * @return the port, or <code>-1</code> if not being served
+	 */
+	public synchronized int getBinaryPort() {
+		if(this.binaryServer == null) {
+			return -1;
+		}
+		
+		return this.binaryServer.getPort();
+	}
+	
+	// Usual accessors follow
+	
+	/**
+	 * @return the mode
+	 */
+	public ServerMode getMode() {
+		return mode;
 	}
 }
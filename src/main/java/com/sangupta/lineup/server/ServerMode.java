@@ -0,0 +1,50 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+package com.sangupta.lineup.server;
+
+/**
+ * The threading model used by a {@link LineUpServer} to service incoming
+ * requests.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public enum ServerMode {
+	
+	/**
+	 * Requests are serviced by the fixed pool of worker threads of the
+	 * underlying Grizzly container. A long-poll holds on to one of these
+	 * workers for as long as it waits, and thus the number of concurrent
+	 * long-polls is limited by the size of the pool.
+	 */
+	WorkerPool,
+	
+	/**
+	 * Each request is serviced by a thread of its own, created when no idle
+	 * thread is available and retired once it has stayed idle for a while.
+	 * Long-polls thus only consume a thread while they wait, and never
+	 * starve other requests of a worker.
+	 */
+	ThreadPerRequest;
+
+}
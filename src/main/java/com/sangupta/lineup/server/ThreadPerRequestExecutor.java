@@ -0,0 +1,133 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+package com.sangupta.lineup.server;
+
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.grizzly.http.HttpWorkerThread;
+
+/**
+ * An {@link java.util.concurrent.ExecutorService} that runs each task on a
+ * thread of its own. A task is handed to an idle thread if there is one, and
+ * to a newly created thread otherwise. Threads are retired once they have
+ * stayed idle for the keep-alive time, so that an idle server holds no
+ * threads.
+ * 
+ * The threads are Grizzly {@link HttpWorkerThread} instances, as the Grizzly
+ * filters expect to run on one to borrow its buffers. For the same reason the
+ * executor cannot hand requests to virtual threads - the stack size of the
+ * threads is thus best reduced using <code>-Xss</code> when running tens of
+ * thousands of concurrent long-polls.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public class ThreadPerRequestExecutor extends ThreadPoolExecutor {
+	
+	/**
+	 * Default maximum number of threads
+	 */
+	public static final int DEFAULT_MAX_THREADS = 16 * 1024;
+	
+	/**
+	 * Default time in seconds after which an idle thread is retired
+	 */
+	public static final long DEFAULT_KEEP_ALIVE_SECONDS = 60;
+	
+	/**
+	 * Create a new executor with the default maximum number of threads.
+	 * 
+	 * @param name
+	 *            the prefix for the names of the threads
+	 */
+	public ThreadPerRequestExecutor(String name) {
+		this(name, DEFAULT_MAX_THREADS);
+	}
+	
+	/**
+	 * Create a new executor. Tasks submitted while the maximum number of
+	 * threads are busy are rejected.
+	 * 
+	 * @param name
+	 *            the prefix for the names of the threads
+	 * 
+	 * @param maxThreads
+	 *            the maximum number of threads
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the maximum number of threads is less than one
+	 */
+	public ThreadPerRequestExecutor(String name, int maxThreads) {
+		super(0, checkMaxThreads(maxThreads), DEFAULT_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new RequestThreadFactory(name));
+	}
+	
+	/**
+	 * Validate the maximum number of threads.
+	 * 
+	 * @param maxThreads
+	 *            the maximum number of threads
+	 * 
+	 * @return the maximum number of threads
+	 */
+	private static int checkMaxThreads(int maxThreads) {
+		if(maxThreads < 1) {
+			throw new IllegalArgumentException("Maximum number of threads must be at least one");
+		}
+		
+		return maxThreads;
+	}
+	
+	/**
+	 * Creates the named daemon worker threads.
+	 * 
+	 * @author sangupta
+	 *
+	 */
+	private static class RequestThreadFactory implements ThreadFactory {
+		
+		private final String name;
+		
+		private final AtomicInteger count = new AtomicInteger();
+		
+		RequestThreadFactory(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * @see java.util.concurrent.ThreadFactory#newThread(java.lang.Runnable)
+		 */
+		@Override
+		public Thread newThread(Runnable runnable) {
+			HttpWorkerThread thread = new HttpWorkerThread(null, runnable);
+			thread.setName(this.name + "-" + this.count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+		
+	}
+
+}
@@ -21,15 +21,32 @@
 
 package com.sangupta.lineup.service;
 
+import java.util.concurrent.BlockingQueue;
+
+import com.sangupta.jerry.ds.BusySpinWaitStrategy;
+import com.sangupta.jerry.ds.MpscLinkedQueue;
+import com.sangupta.jerry.ds.ParkingWaitStrategy;
+import com.sangupta.jerry.ds.RemovableBlockingQueue;
+import com.sangupta.jerry.ds.SegmentedArrayQueue;
+import com.sangupta.jerry.ds.SpmcLinkedQueue;
+import com.sangupta.jerry.ds.SpscLinkedQueue;
+import com.sangupta.jerry.ds.WaitStrategy;
+import com.sangupta.jerry.ds.YieldingWaitStrategy;
 import com.sangupta.lineup.LineUp;
+import com.sangupta.lineup.domain.QueueCardinality;
 import com.sangupta.lineup.domain.QueueOptions;
 import com.sangupta.lineup.domain.QueueType;
+import com.sangupta.lineup.domain.WaitStrategyType;
 import com.sangupta.lineup.queues.DuplicateAcceptingLineUpQueue;
 import com.sangupta.lineup.queues.DuplicateRejectingLineUpQueue;
 import com.sangupta.lineup.queues.LineUpQueue;
 import com.sangupta.lineup.queues.MergingPriorityLineUpQueue;
 import com.sangupta.lineup.queues.PriorityLineUpQueue;
 import com.sangupta.lineup.queues.PriorityNoDuplicateLineUpQueue;
+import com.sangupta.lineup.queues.RelaxedPriorityLineUpQueue;
+import com.sangupta.lineup.queues.RingBufferLineUpQueue;
+import com.sangupta.lineup.queues.ShardedMergingPriorityLineUpQueue;
+import com.sangupta.lineup.queues.StripedLineUpQueue;
 
 /**
  * Factory class to generate new queues depending on the options.
@@ -77,6 +94,18 @@ public class QueueGenerationFactory {
 
 			case PriorityQueueMergingDuplicates:
 				return new MergingPriorityLineUpQueue(name, securityCode, options);
+				
+			case RelaxedPriorityQueue:
+				return new RelaxedPriorityLineUpQueue(name, securityCode, options);
+				
+			case RingBuffer:
+				return new RingBufferLineUpQueue(name, securityCode, options);
+				
+			case StripedQueue:
+				return new StripedLineUpQueue(name, securityCode, options);
+				
+			case ShardedPriorityQueue:
+				return new ShardedMergingPriorityLineUpQueue(name, securityCode, options);
 
 			default:
 				break;
@@ -85,4 +114,82 @@ public class QueueGenerationFactory {
 		throw new IllegalArgumentException("Queue type is neither null/nor recognized by the system");
 	}
 
+	/**
+	 * Create a new {@link WaitStrategy} instance as specified by the
+	 * {@link QueueOptions}. Every call returns a new instance.
+	 * 
+	 * @param options
+	 *            the queue options
+	 * 
+	 * @return the {@link WaitStrategy} instance
+	 */
+	public static WaitStrategy getWaitStrategy(QueueOptions options) {
+		final WaitStrategyType type = options.getWaitStrategy();
+		
+		if(type == null) {
+			throw new IllegalArgumentException("Wait strategy cannot be null");
+		}
+		
+		switch(type) {
+			case BusySpin:
+				return new BusySpinWaitStrategy();
+				
+			case SpinThenYield:
+				return new YieldingWaitStrategy(options.getWaitSpinCount());
+				
+			case SpinThenPark:
+				return new ParkingWaitStrategy(options.getWaitSpinCount());
+				
+			case Park:
+				return new ParkingWaitStrategy();
+				
+			default:
+				break;
+		}
+		
+		throw new IllegalArgumentException("Wait strategy is not recognized by the system");
+	}
+
+	/**
+	 * Create a new unbounded FIFO {@link BlockingQueue} suited to the
+	 * {@link QueueCardinality} specified by the {@link QueueOptions}. Direct
+	 * hand-off is only supported for {@link QueueCardinality#MPMC}.
+	 * 
+	 * @param options
+	 *            the queue options
+	 * 
+	 * @return the {@link RemovableBlockingQueue} instance
+	 */
+	public static <E> RemovableBlockingQueue<E> getFifoQueue(QueueOptions options) {
+		final QueueCardinality cardinality = options.getCardinality();
+		
+		if(cardinality == null) {
+			throw new IllegalArgumentException("Queue cardinality cannot be null");
+		}
+		
+		if(cardinality != QueueCardinality.MPMC && options.isDirectHandOff()) {
+			// a producer handing off would poll the queue on behalf of consumers
+			throw new IllegalArgumentException("Direct hand-off needs a queue of MPMC cardinality");
+		}
+		
+		switch(cardinality) {
+			case MPMC:
+				return new SegmentedArrayQueue<E>();
+				
+			case SPSC:
+				return new SpscLinkedQueue<E>();
+				
+			case MPSC:
+				return new MpscLinkedQueue<E>();
+				
+			case SPMC:
+				return new SpmcLinkedQueue<E>();
+				
+			default:
+				break;
+		}
+		
+		throw new IllegalArgumentException("Queue cardinality is not recognized by the system");
+	}
+
 }
@@ -0,0 +1,606 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.web;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.core.MediaType;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sangupta.jerry.constants.HttpStatusCode;
+import com.sangupta.lineup.codec.MessageCodecs;
+import com.sangupta.lineup.domain.QueueMessage;
+import com.sangupta.lineup.queues.LineUpQueue;
+import com.sangupta.lineup.reactive.QueuePublisher;
+import com.sangupta.lineup.reactive.Subscriber;
+import com.sangupta.lineup.reactive.Subscription;
+import com.sun.grizzly.tcp.CompletionHandler;
+import com.sun.grizzly.tcp.http11.GrizzlyResponse;
+import com.sun.jersey.spi.container.ContainerResponse;
+
+/**
+ * A subscription that pushes the messages of a queue to a client as
+ * Server-Sent Events over a single suspended Grizzly response.
+ * 
+ * Messages are taken from the queue by a {@link QueuePublisher}, and only as
+ * far as the client has granted credit, so a slow client is never sent more
+ * than it asked for and messages stay in the queue until they are pushed.
+ * Pushed messages are held in flight until the client acknowledges them, and
+ * are added back to the queue if the subscription ends first, whether the
+ * client unsubscribes, goes away or the subscription times out. With
+ * automatic acknowledgement a message is instead acknowledged once it has
+ * been flushed to the client.
+ * 
+ * The response starts with an event named <code>subscribed</code> that
+ * carries the ID of the subscription, by which the client grants credit and
+ * acknowledges messages. Every message follows as an event named
+ * <code>message</code>, with the message ID as event ID and the message in
+ * JSON as data. A comment is sent while idle, so that a client that has
+ * gone away is noticed.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+class EventStreamSubscription implements Subscriber<QueueMessage>, SuspendedResponse, CompletionHandler<EventStreamSubscription>, Runnable {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(EventStreamSubscription.class);
+	
+	/**
+	 * The media type of Server-Sent Events
+	 */
+	static final String TEXT_EVENT_STREAM = "text/event-stream";
+	
+	/**
+	 * Time in seconds between comments sent to check the client is still
+	 * there
+	 */
+	private static final long HEARTBEAT_SECONDS = 15;
+	
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	/**
+	 * All active subscriptions by their ID
+	 */
+	private static final ConcurrentMap<String, EventStreamSubscription> SUBSCRIPTIONS = new ConcurrentHashMap<String, EventStreamSubscription>();
+	
+	private final String id = UUID.randomUUID().toString();
+	
+	private final LineUpQueue queue;
+	
+	private final GrizzlyResponse<EventStreamSubscription> response;
+	
+	/**
+	 * The credit granted when subscribing
+	 */
+	private final int credit;
+	
+	/**
+	 * Whether messages are acknowledged once flushed
+	 */
+	private final boolean autoAck;
+	
+	/**
+	 * Messages pushed but not acknowledged, by message ID, guarded by this
+	 * subscription
+	 */
+	private final Map<Long, QueueMessage> inFlight = new LinkedHashMap<Long, QueueMessage>();
+	
+	/**
+	 * Whether a flush of the events written is scheduled
+	 */
+	private final AtomicBoolean flushScheduled = new AtomicBoolean();
+	
+	/**
+	 * The stream events are written to, guarded by this subscription
+	 */
+	private OutputStream stream;
+	
+	/**
+	 * The media type negotiated by Jersey for the response
+	 */
+	private volatile MediaType mediaType;
+	
+	/**
+	 * The subscription to the queue publisher
+	 */
+	private volatile Subscription subscription;
+	
+	/**
+	 * The periodic heartbeat, once started
+	 */
+	private volatile ScheduledFuture<?> heartbeat;
+	
+	/**
+	 * Whether the subscription has ended, set while holding this
+	 * subscription
+	 */
+	private volatile boolean terminated;
+	
+	/**
+	 * Suspend the given response for a new subscription to the given queue.
+	 * Messages are pushed once Jersey has finished with the request.
+	 * 
+	 * @param queue
+	 *            the queue to subscribe to
+	 * 
+	 * @param credit
+	 *            the number of messages the client accepts to begin with
+	 * 
+	 * @param autoAck
+	 *            whether messages are acknowledged once flushed
+	 * 
+	 * @param timeoutMillis
+	 *            the time in milliseconds after which the subscription ends
+	 * 
+	 * @param response
+	 *            the response to suspend
+	 */
+	EventStreamSubscription(LineUpQueue queue, int credit, boolean autoAck, long timeoutMillis, GrizzlyResponse<EventStreamSubscription> response) {
+		this.queue = queue;
+		this.credit = credit;
+		this.autoAck = autoAck;
+		this.response = response;
+		
+		this.response.suspend(timeoutMillis, this, this);
+	}
+	
+	/**
+	 * Return the active subscription with the given ID.
+	 * 
+	 * @param id
+	 *            the ID of the subscription
+	 * 
+	 * @return the subscription, or <code>null</code> if there is no such
+	 *         subscription or it has ended
+	 */
+	static EventStreamSubscription get(String id) {
+		return SUBSCRIPTIONS.get(id);
+	}
+	
+	/**
+	 * Allow the given number of messages more to be pushed.
+	 * 
+	 * @param credit
+	 *            the number of messages, ignored unless positive
+	 */
+	void grant(int credit) {
+		Subscription subscription = this.subscription;
+		if(credit > 0 && subscription != null) {
+			subscription.request(credit);
+		}
+	}
+	
+	/**
+	 * Acknowledge the delivery of the messages with the given IDs, so that
+	 * they are not added back to the queue when the subscription ends.
+	 * 
+	 * @param messageIDs
+	 *            the IDs of the messages
+	 * 
+	 * @return the number of messages that were in flight
+	 */
+	synchronized int acknowledge(Collection<Long> messageIDs) {
+		int acknowledged = 0;
+		for(Long messageID : messageIDs) {
+			if(this.inFlight.remove(messageID) != null) {
+				acknowledged++;
+			}
+		}
+		
+		return acknowledged;
+	}
+	
+	/**
+	 * End the subscription at the request of the client.
+	 * 
+	 */
+	void unsubscribe() {
+		this.terminate(true);
+	}
+	
+	/**
+	 * @see com.sangupta.lineup.web.SuspendedResponse#setMediaType(javax.ws.rs.core.MediaType)
+	 */
+	@Override
+	public void setMediaType(MediaType mediaType) {
+		this.mediaType = mediaType;
+	}
+	
+	/**
+	 * Jersey writes the status and headers of an empty response, which are
+	 * ignored.
+	 * 
+	 * @see com.sun.jersey.spi.container.ContainerResponseWriter#writeStatusAndHeaders(long, com.sun.jersey.spi.container.ContainerResponse)
+	 */
+	@Override
+	public OutputStream writeStatusAndHeaders(long contentLength, ContainerResponse response) throws IOException {
+		return new OutputStream() {
+			
+			@Override
+			public void write(int b) throws IOException {
+				// discard
+			}
+			
+		};
+	}
+	
+	/**
+	 * Jersey has finished with the request: start the event stream and
+	 * subscribe to the queue.
+	 * 
+	 * @see com.sun.jersey.spi.container.ContainerResponseWriter#finish()
+	 */
+	@Override
+	public void finish() throws IOException {
+		MediaType type = this.mediaType;
+		this.response.setStatus(HttpStatusCode.OK);
+		this.response.setContentType(type != null ? type.toString() : TEXT_EVENT_STREAM);
+		this.response.addHeader("Cache-Control", "no-cache");
+		
+		boolean failed = false;
+		synchronized(this) {
+			if(this.terminated) {
+				return;
+			}
+			
+			SUBSCRIPTIONS.put(this.id, this);
+			try {
+				this.stream = this.response.getOutputStream();
+				this.write("event: subscribed\ndata: " + this.id + "\n\n");
+				this.stream.flush();
+			} catch(IOException e) {
+				LOGGER.debug("Unable to start event stream", e);
+				failed = true;
+			} catch(IllegalStateException e) {
+				// no longer suspended as grizzly gave up on it
+				failed = true;
+			}
+			
+			if(!failed) {
+				// the client learns the ID of the subscription only now, so
+				// is subscribed by the time it grants more credit
+				new QueuePublisher(this.queue, QueuePublisher.DEFAULT_BATCH_SIZE, EventStreamExecutor.EXECUTOR).subscribe(this);
+			}
+		}
+		
+		if(failed) {
+			this.terminate(true);
+			return;
+		}
+		
+		this.heartbeat = EventStreamExecutor.TIMER.scheduleWithFixedDelay(new Runnable() {
+			
+			@Override
+			public void run() {
+				heartbeat();
+			}
+			
+		}, HEARTBEAT_SECONDS, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+	}
+	
+	/**
+	 * @see com.sangupta.lineup.reactive.Subscriber#onSubscribe(com.sangupta.lineup.reactive.Subscription)
+	 */
+	@Override
+	public void onSubscribe(Subscription subscription) {
+		this.subscription = subscription;
+		if(this.terminated) {
+			subscription.cancel();
+			return;
+		}
+		
+		if(this.credit > 0) {
+			subscription.request(this.credit);
+		}
+	}
+	
+	/**
+	 * Push the message to the client. The event is flushed along with any
+	 * others pushed meanwhile.
+	 * 
+	 * @see com.sangupta.lineup.reactive.Subscriber#onNext(java.lang.Object)
+	 */
+	@Override
+	public void onNext(QueueMessage message) {
+		boolean failed = false;
+		synchronized(this) {
+			if(this.terminated) {
+				// sent just before the publisher saw the cancellation
+				this.queue.addMessage(message);
+				return;
+			}
+			
+			this.inFlight.put(message.getMessageID(), message);
+			try {
+				ByteArrayOutputStream data = new ByteArrayOutputStream();
+				MessageCodecs.JSON.writeMessage(message, data);
+				
+				this.write("id: " + message.getMessageID() + "\nevent: message\ndata: ");
+				data.writeTo(this.stream);
+				this.write("\n\n");
+			} catch(IOException e) {
+				LOGGER.debug("Unable to push message to subscriber", e);
+				failed = true;
+			} catch(IllegalStateException e) {
+				failed = true;
+			}
+		}
+		
+		if(failed) {
+			this.terminate(true);
+			return;
+		}
+		
+		if(this.flushScheduled.compareAndSet(false, true)) {
+			EventStreamExecutor.EXECUTOR.execute(this);
+		}
+	}
+	
+	/**
+	 * @see com.sangupta.lineup.reactive.Subscriber#onError(java.lang.Throwable)
+	 */
+	@Override
+	public void onError(Throwable throwable) {
+		LOGGER.error("Subscription to queue " + this.queue.getName() + " failed", throwable);
+		this.terminate(true);
+	}
+	
+	/**
+	 * @see com.sangupta.lineup.reactive.Subscriber#onComplete()
+	 */
+	@Override
+	public void onComplete() {
+		this.terminate(true);
+	}
+	
+	/**
+	 * Flush the events written, on a thread of the shared pool.
+	 * 
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run() {
+		this.flushScheduled.set(false);
+		
+		boolean failed = false;
+		synchronized(this) {
+			if(this.terminated) {
+				return;
+			}
+			
+			try {
+				this.stream.flush();
+				if(this.autoAck) {
+					this.inFlight.clear();
+				}
+			} catch(IOException e) {
+				LOGGER.debug("Unable to flush events to subscriber", e);
+				failed = true;
+			} catch(IllegalStateException e) {
+				failed = true;
+			}
+		}
+		
+		if(failed) {
+			this.terminate(true);
+		}
+	}
+	
+	/**
+	 * @see com.sun.grizzly.tcp.CompletionHandler#resumed(java.lang.Object)
+	 */
+	@Override
+	public void resumed(EventStreamSubscription attachment) {
+		// nothing to do
+	}
+	
+	/**
+	 * Grizzly gave up on the response, as the client closed the connection or
+	 * the subscription timed out.
+	 * 
+	 * @see com.sun.grizzly.tcp.CompletionHandler#cancelled(java.lang.Object)
+	 */
+	@Override
+	public void cancelled(EventStreamSubscription attachment) {
+		this.terminate(false);
+	}
+	
+	/**
+	 * Send a comment, which clients ignore, to check the client is still
+	 * there.
+	 * 
+	 */
+	private void heartbeat() {
+		boolean failed = false;
+		synchronized(this) {
+			if(this.terminated) {
+				return;
+			}
+			
+			try {
+				this.write(":\n\n");
+				this.stream.flush();
+			} catch(IOException e) {
+				failed = true;
+			} catch(IllegalStateException e) {
+				failed = true;
+			}
+		}
+		
+		if(failed) {
+			LOGGER.debug("Subscriber to queue {} has gone away", this.queue.getName());
+			this.terminate(true);
+		}
+	}
+	
+	/**
+	 * End the subscription, and add the messages still in flight back to the
+	 * queue.
+	 * 
+	 * @param resume
+	 *            whether to resume the response, which is not needed when
+	 *            Grizzly has given up on it
+	 */
+	private void terminate(boolean resume) {
+		final List<QueueMessage> undelivered;
+		synchronized(this) {
+			if(this.terminated) {
+				return;
+			}
+			
+			this.terminated = true;
+			undelivered = new ArrayList<QueueMessage>(this.inFlight.values());
+			this.inFlight.clear();
+		}
+		
+		SUBSCRIPTIONS.remove(this.id, this);
+		
+		Subscription subscription = this.subscription;
+		if(subscription != null) {
+			subscription.cancel();
+		}
+		
+		ScheduledFuture<?> heartbeat = this.heartbeat;
+		if(heartbeat != null) {
+			heartbeat.cancel(false);
+		}
+		
+		if(!undelivered.isEmpty()) {
+			LOGGER.debug("Redelivering {} messages of subscription {}", undelivered.size(), this.id);
+			this.queue.addMessages(undelivered);
+		}
+		
+		if(resume) {
+			try {
+				this.response.resume();
+			} catch(IllegalStateException e) {
+				// no longer suspended as grizzly gave up on it
+			}
+		}
+	}
+	
+	/**
+	 * Write the given text to the event stream. Must be called while holding
+	 * this subscription.
+	 * 
+	 * @param text
+	 *            the text to write
+	 * 
+	 * @throws IOException
+	 *             if the stream cannot be written to
+	 */
+	private void write(String text) throws IOException {
+		this.stream.write(text.getBytes(UTF_8));
+	}
+	
+	// Usual accessors follow
+	
+	/**
+	 * @return the id
+	 */
+	String getId() {
+		return id;
+	}
+	
+	/**
+	 * @return the queue
+	 */
+	LineUpQueue getQueue() {
+		return queue;
+	}
+	
+	/**
+	 * @return the number of messages in flight
+	 */
+	synchronized int getInFlightCount() {
+		return this.inFlight.size();
+	}
+	
+	/**
+	 * @return the terminated
+	 */
+	boolean isTerminated() {
+		return terminated;
+	}
+	
+	/**
+	 * Holds the pool that pushes messages to subscribers and the timer that
+	 * sends their heartbeats, created only once the first subscription is.
+	 * 
+	 */
+	private static class EventStreamExecutor {
+		
+		static final ExecutorService EXECUTOR;
+		
+		static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "lineup-event-stream-heartbeat");
+				thread.setDaemon(true);
+				return thread;
+			}
+			
+		});
+		
+		static {
+			final int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+			final AtomicInteger count = new AtomicInteger();
+			
+			EXECUTOR = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+				
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "lineup-event-stream-" + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+				
+			});
+		}
+		
+	}
+
+}
@@ -0,0 +1,133 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.web;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An {@link InputStream} that fails once more than a given number of bytes
+ * has been read from the wrapped stream, so that a request body can be
+ * parsed without first being buffered in full to check its size.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+class LimitedInputStream extends FilterInputStream {
+	
+	/**
+	 * The maximum number of bytes that may be read
+	 */
+	private final long limit;
+	
+	/**
+	 * The number of bytes read so far
+	 */
+	private long count;
+	
+	/**
+	 * Whether a read went past the limit
+	 */
+	private boolean exceeded;
+	
+	LimitedInputStream(InputStream stream, long limit) {
+		super(stream);
+		this.limit = limit;
+	}
+	
+	/**
+	 * @see java.io.FilterInputStream#read()
+	 */
+	@Override
+	public int read() throws IOException {
+		int value = super.read();
+		if(value != -1) {
+			this.consumed(1);
+		}
+		
+		return value;
+	}
+	
+	/**
+	 * @see java.io.FilterInputStream#read(byte[], int, int)
+	 */
+	@Override
+	public int read(byte[] bytes, int offset, int length) throws IOException {
+		int read = super.read(bytes, offset, length);
+		if(read > 0) {
+			this.consumed(read);
+		}
+		
+		return read;
+	}
+	
+	/**
+	 * @see java.io.FilterInputStream#skip(long)
+	 */
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = super.skip(n);
+		if(skipped > 0) {
+			this.consumed(skipped);
+		}
+		
+		return skipped;
+	}
+	
+	/**
+	 * Marking is not supported, as a reset would make the count wrong.
+	 * 
+	 * @see java.io.FilterInputStream#markSupported()
+	 */
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+	
+	/**
+	 * Account for the given number of bytes read.
+	 * 
+	 * @param bytes
+	 *            the number of bytes read
+	 * 
+	 * @throws IOException
+	 *             if the limit is now exceeded
+	 */
+	private void consumed(long bytes) throws IOException {
+		this.count += bytes;
+		if(this.count > this.limit) {
+			this.exceeded = true;
+			throw new IOException("Request body is larger than " + this.limit + " bytes");
+		}
+	}
+	
+	/**
+	 * Return whether a read went past the limit.
+	 * 
+	 * @return <code>true</code> if the limit was exceeded
+	 */
+	boolean isExceeded() {
+		return this.exceeded;
+	}
+	
+}
@@ -0,0 +1,141 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.web;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.GenericEntity;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sangupta.jerry.constants.HttpStatusCode;
+import com.sangupta.lineup.codec.MessageCodec;
+import com.sangupta.lineup.domain.QueueMessage;
+
+/**
+ * Reads and writes a {@link List} of {@link QueueMessage}s in the
+ * webservices with the {@link MessageCodec} registered for the media type
+ * negotiated by Jersey. Lists must be returned with their generic type, as
+ * via {@link #entity(List)}.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+@Provider
+public class QueueMessageListProvider implements MessageBodyReader<List<QueueMessage>>, MessageBodyWriter<List<QueueMessage>> {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(QueueMessageListProvider.class);
+	
+	/**
+	 * The generic type of a list of messages
+	 */
+	static final Type MESSAGE_LIST_TYPE = entity(new ArrayList<QueueMessage>()).getType();
+	
+	/**
+	 * Wrap the given messages so that Jersey knows their generic type.
+	 * 
+	 * @param messages
+	 *            the messages
+	 * 
+	 * @return the entity to return from a webservice method
+	 */
+	static GenericEntity<List<QueueMessage>> entity(List<QueueMessage> messages) {
+		return new GenericEntity<List<QueueMessage>>(messages) { };
+	}
+
+	/**
+	 * @see javax.ws.rs.ext.MessageBodyReader#isReadable(java.lang.Class, java.lang.reflect.Type, java.lang.annotation.Annotation[], javax.ws.rs.core.MediaType)
+	 */
+	@Override
+	public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+		return type == List.class && isMessageList(genericType) && QueueMessageProvider.getCodec(mediaType) != null;
+	}
+
+	/**
+	 * @see javax.ws.rs.ext.MessageBodyReader#readFrom(java.lang.Class, java.lang.reflect.Type, java.lang.annotation.Annotation[], javax.ws.rs.core.MediaType, javax.ws.rs.core.MultivaluedMap, java.io.InputStream)
+	 */
+	@Override
+	public List<QueueMessage> readFrom(Class<List<QueueMessage>> type, Type genericType, Annotation[] annotations, MediaType mediaType, MultivaluedMap<String, String> httpHeaders, InputStream entityStream) throws IOException, WebApplicationException {
+		try {
+			return QueueMessageProvider.getCodec(mediaType).readMessages(entityStream);
+		} catch(IOException e) {
+			LOGGER.debug("Unable to read queue messages", e);
+			throw new WebApplicationException(HttpStatusCode.BAD_REQUEST);
+		}
+	}
+
+	/**
+	 * @see javax.ws.rs.ext.MessageBodyWriter#isWriteable(java.lang.Class, java.lang.reflect.Type, java.lang.annotation.Annotation[], javax.ws.rs.core.MediaType)
+	 */
+	@Override
+	public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+		return List.class.isAssignableFrom(type) && isMessageList(genericType) && QueueMessageProvider.getCodec(mediaType) != null;
+	}
+
+	/**
+	 * @see javax.ws.rs.ext.MessageBodyWriter#getSize(java.lang.Object, java.lang.Class, java.lang.reflect.Type, java.lang.annotation.Annotation[], javax.ws.rs.core.MediaType)
+	 */
+	@Override
+	public long getSize(List<QueueMessage> messages, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+		return -1;
+	}
+
+	/**
+	 * @see javax.ws.rs.ext.MessageBodyWriter#writeTo(java.lang.Object, java.lang.Class, java.lang.reflect.Type, java.lang.annotation.Annotation[], javax.ws.rs.core.MediaType, javax.ws.rs.core.MultivaluedMap, java.io.OutputStream)
+	 */
+	@Override
+	public void writeTo(List<QueueMessage> messages, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException, WebApplicationException {
+		QueueMessageProvider.getCodec(mediaType).writeMessages(messages, entityStream);
+	}
+	
+	/**
+	 * Return whether the given generic type is a list of messages.
+	 * 
+	 * @param genericType
+	 *            the generic type
+	 * 
+	 * @return <code>true</code> if a list of {@link QueueMessage}
+	 */
+	private static boolean isMessageList(Type genericType) {
+		if(!(genericType instanceof ParameterizedType)) {
+			return false;
+		}
+		
+		Type[] arguments = ((ParameterizedType) genericType).getActualTypeArguments();
+		return arguments.length == 1 && arguments[0] == QueueMessage.class;
+	}
+
+}
@@ -0,0 +1,121 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.web;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sangupta.jerry.constants.HttpStatusCode;
+import com.sangupta.lineup.codec.MessageCodec;
+import com.sangupta.lineup.codec.MessageCodecs;
+import com.sangupta.lineup.domain.QueueMessage;
+
+/**
+ * Reads and writes a single {@link QueueMessage} in the webservices with the
+ * {@link MessageCodec} registered for the media type negotiated by Jersey.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+@Provider
+public class QueueMessageProvider implements MessageBodyReader<QueueMessage>, MessageBodyWriter<QueueMessage> {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(QueueMessageProvider.class);
+
+	/**
+	 * @see javax.ws.rs.ext.MessageBodyReader#isReadable(java.lang.Class, java.lang.reflect.Type, java.lang.annotation.Annotation[], javax.ws.rs.core.MediaType)
+	 */
+	@Override
+	public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+		return type == QueueMessage.class && getCodec(mediaType) != null;
+	}
+
+	/**
+	 * @see javax.ws.rs.ext.MessageBodyReader#readFrom(java.lang.Class, java.lang.reflect.Type, java.lang.annotation.Annotation[], javax.ws.rs.core.MediaType, javax.ws.rs.core.MultivaluedMap, java.io.InputStream)
+	 */
+	@Override
+	public QueueMessage readFrom(Class<QueueMessage> type, Type genericType, Annotation[] annotations, MediaType mediaType, MultivaluedMap<String, String> httpHeaders, InputStream entityStream) throws IOException, WebApplicationException {
+		try {
+			return getCodec(mediaType).readMessage(entityStream);
+		} catch(IOException e) {
+			LOGGER.debug("Unable to read queue message", e);
+			throw new WebApplicationException(HttpStatusCode.BAD_REQUEST);
+		}
+	}
+
+	/**
+	 * @see javax.ws.rs.ext.MessageBodyWriter#isWriteable(java.lang.Class, java.lang.reflect.Type, java.lang.annotation.Annotation[], javax.ws.rs.core.MediaType)
+	 */
+	@Override
+	public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+		return QueueMessage.class.isAssignableFrom(type) && getCodec(mediaType) != null;
+	}
+
+	/**
+	 * @see javax.ws.rs.ext.MessageBodyWriter#getSize(java.lang.Object, java.lang.Class, java.lang.reflect.Type, java.lang.annotation.Annotation[], javax.ws.rs.core.MediaType)
+	 */
+	@Override
+	public long getSize(QueueMessage message, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+		return -1;
+	}
+
+	/**
+	 * @see javax.ws.rs.ext.MessageBodyWriter#writeTo(java.lang.Object, java.lang.Class, java.lang.reflect.Type, java.lang.annotation.Annotation[], javax.ws.rs.core.MediaType, javax.ws.rs.core.MultivaluedMap, java.io.OutputStream)
+	 */
+	@Override
+	public void writeTo(QueueMessage message, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException, WebApplicationException {
+		getCodec(mediaType).writeMessage(message, entityStream);
+	}
+	
+	/**
+	 * Return the codec for the given media type. A missing or wildcard media
+	 * type gets the XML codec, which is what clients predating the codecs
+	 * send and expect.
+	 * 
+	 * @param mediaType
+	 *            the media type
+	 * 
+	 * @return the codec, or <code>null</code> if none is registered for the
+	 *         media type
+	 */
+	static MessageCodec getCodec(MediaType mediaType) {
+		if(mediaType == null || mediaType.isWildcardType() || mediaType.isWildcardSubtype()) {
+			return MessageCodecs.XML;
+		}
+		
+		return MessageCodecs.getCodec(mediaType.getType() + "/" + mediaType.getSubtype());
+	}
+
+}
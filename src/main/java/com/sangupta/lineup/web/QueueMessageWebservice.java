@@ -21,19 +21,29 @@
 
 package com.sangupta.lineup.web;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.ext.Providers;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,9 +51,19 @@ import org.slf4j.LoggerFactory;
 import com.sangupta.jerry.constants.HttpStatusCode;
 import com.sangupta.jerry.util.AssertUtils;
 import com.sangupta.lineup.LineUp;
+import com.sangupta.lineup.async.QueueFuture;
+import com.sangupta.lineup.codec.MessageCodec;
+import com.sangupta.lineup.codec.MessageCodecs;
+import com.sangupta.lineup.domain.BatchResult;
 import com.sangupta.lineup.domain.QueueMessage;
 import com.sangupta.lineup.exceptions.QueueNotFoundException;
 import com.sangupta.lineup.queues.LineUpQueue;
+import com.sun.grizzly.tcp.http11.GrizzlyResponse;
+import com.sun.jersey.spi.container.ResourceFilters;
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.security.NoTypePermission;
+import com.thoughtworks.xstream.security.NullPermission;
+import com.thoughtworks.xstream.security.PrimitiveTypePermission;
 
 /**
  * @author sangupta
@@ -54,6 +74,31 @@ public class QueueMessageWebservice {
 	
 	private static final Logger LOGGER = LoggerFactory.getLogger(QueueMessageWebservice.class);
 	
+	/**
+	 * The maximum number of messages or message IDs in a batch request
+	 */
+	public static final int MAX_BATCH_ITEMS = 5000;
+	
+	/**
+	 * The maximum size in bytes of the body of a batch request
+	 */
+	public static final long MAX_BATCH_BYTES = 4 * 1024 * 1024;
+	
+	/**
+	 * Parses the lists of message IDs in batch deletes, limited to strings and
+	 * lists so that a request cannot have arbitrary classes instantiated. A
+	 * private instance, as the permissions would otherwise apply to all users
+	 * of a shared one.
+	 */
+	private static final XStream ID_LIST_XSTREAM = new XStream();
+	
+	static {
+		ID_LIST_XSTREAM.addPermission(NoTypePermission.NONE);
+		ID_LIST_XSTREAM.addPermission(NullPermission.NULL);
+		ID_LIST_XSTREAM.addPermission(PrimitiveTypePermission.PRIMITIVES);
+		ID_LIST_XSTREAM.allowTypes(new Class<?>[] { String.class, List.class, ArrayList.class, LinkedList.class });
+	}
+	
 	@GET
 	@Path("available")
 	@Produces(MediaType.TEXT_PLAIN)
@@ -61,13 +106,33 @@ public class QueueMessageWebservice {
 		return "Yes";
 	}
 	
-	@SuppressWarnings("unchecked")
+	/**
+	 * Read one or more messages from the queue. A long-poll for a single
+	 * message on an empty queue does not hold the request thread: the
+	 * response is suspended until a message is added or the poll time elapses.
+	 * 
+	 * A batch read with a <code>maxWaitMillis</code> waits, likewise
+	 * suspended, until at least <code>minMessages</code> are available or the
+	 * wait time elapses, and then returns up to <code>numMessages</code>.
+	 * 
+	 * Any other batch read is streamed: messages are drained from the queue
+	 * a chunk at a time and written straight to the response.
+	 * 
+	 * On queues with a single producer or consumer, only a consumer waiting
+	 * on a receive completes it, so waits hold the request thread as blocking
+	 * reads.
+	 * 
+	 */
 	@GET
 	@Path("{secureCode}/{queue}")
-	@Produces(value = { MediaType.TEXT_XML, MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON })
+	@Produces(value = { MediaType.TEXT_XML, MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON, MessageCodecs.APPLICATION_LINEUP_BINARY })
+	@ResourceFilters(SuspendedResponseFilter.class)
 	public Object getMessage(@PathParam("secureCode") String securityCode, @PathParam("queue") String queueName, 
-			@DefaultValue("1") @QueryParam("numMessages") int numMessages, @DefaultValue("0") @QueryParam("pollTime") long pollTime) {
+			@DefaultValue("1") @QueryParam("numMessages") int numMessages, @DefaultValue("0") @QueryParam("pollTime") long pollTime,
+			@DefaultValue("0") @QueryParam("minMessages") int minMessages, @DefaultValue("0") @QueryParam("maxWaitMillis") long maxWaitMillis,
+			@SuppressWarnings("rawtypes") @Context ThreadLocal<GrizzlyResponse> responses, @Context Providers providers) {
 		
+		GrizzlyResponse<?> response = responses == null ? null : responses.get();
 		LineUpQueue queue;
 		try {
 			queue = LineUp.getQueue(queueName, securityCode);
@@ -83,60 +148,138 @@ public class QueueMessageWebservice {
 			throw new WebApplicationException(HttpStatusCode.BAD_REQUEST);
 		}
 		
+		if(maxWaitMillis > 0) {
+			if(minMessages < 0 || minMessages > numMessages) {
+				throw new WebApplicationException(HttpStatusCode.BAD_REQUEST);
+			}
+			
+			if(!queue.isBackingQueueConcurrent()) {
+				return QueueMessageListProvider.entity(getMessagesFromQueue(queue, minMessages, numMessages, maxWaitMillis));
+			}
+			
+			QueueFuture<List<QueueMessage>> future = queue.receiveBatchAsync(minMessages, numMessages, maxWaitMillis, TimeUnit.MILLISECONDS);
+			if(future.isDone() || response == null) {
+				return QueueMessageListProvider.entity(getReceived(future));
+			}
+			
+			GrizzlyResponse<SuspendedReceive<List<QueueMessage>>> suspendable = suspendable(response);
+			return new SuspendedReceive<List<QueueMessage>>(queue, future, maxWaitMillis, suspendable, providers);
+		}
+		
+		if(numMessages == 1 && pollTime > 0 && response != null && queue.isBackingQueueConcurrent()) {
+			QueueMessage message = queue.getMessage();
+			if(message != null) {
+				return message;
+			}
+			
+			QueueFuture<QueueMessage> future = queue.receiveAsync(pollTime, TimeUnit.SECONDS);
+			if(future.isDone()) {
+				// handed a message before it had to wait
+				return getReceived(future);
+			}
+			
+			GrizzlyResponse<SuspendedReceive<QueueMessage>> suspendable = suspendable(response);
+			return new SuspendedReceive<QueueMessage>(queue, future, TimeUnit.SECONDS.toMillis(pollTime), suspendable, providers);
+		}
+		
+		if(numMessages > 1) {
+			return new StreamedMessages(queue, numMessages);
+		}
+		
 		long start = System.currentTimeMillis();
-		Object messages = getMessageFromQueue(queue, numMessages, pollTime);
+		QueueMessage message = getMessageFromQueue(queue, pollTime);
 		long end = System.currentTimeMillis();
 		
-		if(messages == null) {
+		if(message == null) {
 			throw new WebApplicationException(HttpStatusCode.NOT_FOUND);
 		}
 		
-		if(messages instanceof QueueMessage) {
-			LOGGER.debug("Read message {} in {} ms.", ((QueueMessage) messages).getBody(), end - start);
-		} else if(messages instanceof List){
-			LOGGER.debug("Read (multiple) {} messages in {} ms.", ((List<QueueMessage>) messages).size(), end - start);
-		} else {
-			LOGGER.debug("Unknown type of message {} read in {} ms.", messages, end - start);
+		LOGGER.debug("Read message {} in {} ms.", message.getBody(), end - start);
+		return message;
+	}
+	
+	/**
+	 * Return what was received by a receive that completed without waiting,
+	 * or wait for it where responses cannot be suspended.
+	 * 
+	 * @param future
+	 *            the receive
+	 * 
+	 * @return the message or messages received
+	 */
+	private <V> V getReceived(QueueFuture<V> future) {
+		V message;
+		try {
+			message = future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new WebApplicationException(HttpStatusCode.SERVICE_UNAVAILABLE);
+		} catch (ExecutionException e) {
+			LOGGER.error("Unable to receive message", e.getCause());
+			throw new WebApplicationException(HttpStatusCode.INTERNAL_SERVER_ERROR);
 		}
 		
-		return messages;
+		if(message == null) {
+			throw new WebApplicationException(HttpStatusCode.NOT_FOUND);
+		}
+		
+		return message;
 	}
 	
 	/**
-	 * Read from the queue the given number of messages in given poll time
+	 * Read a single message from the queue in given poll time
 	 * 
 	 * @param queue
 	 *            the queue from where to read
 	 * 
-	 * @param numMessages
-	 *            the number of messages to read
-	 * 
 	 * @param pollTime
 	 *            the time in which to return the results
 	 * 
-	 * @return the message or messages thus read, <code>null</code> if the queue
-	 *         was empty
+	 * @return the message thus read, <code>null</code> if the queue was empty
 	 */
-	private Object getMessageFromQueue(LineUpQueue queue, int numMessages, long pollTime) {
-		if(numMessages == 1) {
-			if(pollTime == 0) {
-				return queue.getMessage();
-			}
-			
-			try {
-				return queue.getMessage(pollTime);
-			} catch (InterruptedException e) {
-				return null;
-			}
+	private QueueMessage getMessageFromQueue(LineUpQueue queue, long pollTime) {
+		if(pollTime == 0) {
+			return queue.getMessage();
+		}
+		
+		try {
+			return queue.getMessage(pollTime);
+		} catch (InterruptedException e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Read up to the given number of messages from the queue, waiting for at
+	 * least the minimum number to be available for up to the given time.
+	 * 
+	 * @param queue
+	 *            the queue from where to read
+	 * 
+	 * @param minMessages
+	 *            the minimum number of messages to wait for
+	 * 
+	 * @param maxMessages
+	 *            the maximum number of messages to read
+	 * 
+	 * @param maxWaitMillis
+	 *            the time in milliseconds to wait for
+	 * 
+	 * @return the messages thus read
+	 */
+	private List<QueueMessage> getMessagesFromQueue(LineUpQueue queue, int minMessages, int maxMessages, long maxWaitMillis) {
+		try {
+			return queue.getMessages(minMessages, maxMessages, maxWaitMillis, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new WebApplicationException(HttpStatusCode.SERVICE_UNAVAILABLE);
 		}
-			
-		return queue.getMessages(numMessages);
 	}
 	
 	@POST
 	@Path("{secureCode}/{queue}")
-	@Produces(value = { MediaType.TEXT_XML, MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON })
-	@Consumes(value = { MediaType.TEXT_XML, MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON })
+	@Produces(value = { MediaType.TEXT_XML, MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON, MessageCodecs.APPLICATION_LINEUP_BINARY })
+	@Consumes(value = { MediaType.TEXT_XML, MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON, MessageCodecs.APPLICATION_LINEUP_BINARY })
 	public QueueMessage postMessage(@PathParam("secureCode") String securityCode, @PathParam("queue") String queueName, QueueMessage message) {
 		if(message == null) {
 			throw new WebApplicationException(HttpStatusCode.BAD_REQUEST);
@@ -171,5 +314,318 @@ public class QueueMessageWebservice {
 			throw new WebApplicationException(HttpStatusCode.NOT_FOUND);
 		}
 	}
+	
+	/**
+	 * Subscribe to the messages of the queue as Server-Sent Events, pushed
+	 * over this one response as they are added to the queue. No more than
+	 * <code>credit</code> messages are pushed until the client grants more
+	 * via {@link #updateSubscription(String, String, String, int, List)}, and
+	 * messages are taken out of the queue only as they are pushed. Messages
+	 * pushed but not acknowledged are added back to the queue when the
+	 * subscription ends, unless <code>autoAck</code> is set. The subscription
+	 * ends after <code>timeout</code> seconds, when the client is expected to
+	 * subscribe again.
+	 * 
+	 */
+	@GET
+	@Path("{secureCode}/{queue}/subscribe")
+	@Produces(EventStreamSubscription.TEXT_EVENT_STREAM)
+	@ResourceFilters(SuspendedResponseFilter.class)
+	public Object subscribe(@PathParam("secureCode") String securityCode, @PathParam("queue") String queueName, 
+			@DefaultValue("1") @QueryParam("credit") int credit, @DefaultValue("false") @QueryParam("autoAck") boolean autoAck,
+			@DefaultValue("300") @QueryParam("timeout") long timeout, @SuppressWarnings("rawtypes") @Context ThreadLocal<GrizzlyResponse> responses) {
+		
+		GrizzlyResponse<?> response = responses == null ? null : responses.get();
+		LineUpQueue queue = getExistingQueue(queueName, securityCode);
+		if(credit < 0 || timeout <= 0) {
+			throw new WebApplicationException(HttpStatusCode.BAD_REQUEST);
+		}
+		
+		if(!queue.isBackingQueueConcurrent()) {
+			// messages are pushed as producers add them, and added back
+			throw new WebApplicationException(HttpStatusCode.BAD_REQUEST);
+		}
+		
+		if(response == null) {
+			// events can only be pushed over a suspended grizzly response
+			throw new WebApplicationException(HttpStatusCode.SERVICE_UNAVAILABLE);
+		}
+		
+		GrizzlyResponse<EventStreamSubscription> suspendable = suspendable(response);
+		return new EventStreamSubscription(queue, credit, autoAck, TimeUnit.SECONDS.toMillis(timeout), suspendable);
+	}
+	
+	/**
+	 * Grant a subscription the credit to push <code>credit</code> messages
+	 * more, and acknowledge the delivery of the messages with the given IDs.
+	 * 
+	 */
+	@POST
+	@Path("{secureCode}/{queue}/subscriptions/{subscriptionID}")
+	@Produces(MediaType.TEXT_PLAIN)
+	public String updateSubscription(@PathParam("secureCode") String securityCode, @PathParam("queue") String queueName, 
+			@PathParam("subscriptionID") String subscriptionID, @DefaultValue("0") @QueryParam("credit") int credit, 
+			@QueryParam("ack") List<String> messageIDs) {
+		
+		EventStreamSubscription subscription = getSubscription(queueName, securityCode, subscriptionID);
+		if(credit < 0) {
+			throw new WebApplicationException(HttpStatusCode.BAD_REQUEST);
+		}
+		
+		if(messageIDs != null && !messageIDs.isEmpty()) {
+			List<Long> ids = new ArrayList<Long>(messageIDs.size());
+			for(String messageID : messageIDs) {
+				try {
+					ids.add(Long.valueOf(messageID.trim()));
+				} catch(NumberFormatException e) {
+					throw new WebApplicationException(HttpStatusCode.BAD_REQUEST);
+				}
+			}
+			
+			subscription.acknowledge(ids);
+		}
+		
+		subscription.grant(credit);
+		return "done";
+	}
+	
+	/**
+	 * End a subscription. Messages pushed but not acknowledged are added back
+	 * to the queue.
+	 * 
+	 */
+	@DELETE
+	@Path("{secureCode}/{queue}/subscriptions/{subscriptionID}")
+	@Produces(MediaType.TEXT_PLAIN)
+	public String unsubscribe(@PathParam("secureCode") String securityCode, @PathParam("queue") String queueName, 
+			@PathParam("subscriptionID") String subscriptionID) {
+		
+		getSubscription(queueName, securityCode, subscriptionID).unsubscribe();
+		return "done";
+	}
+	
+	/**
+	 * Add a batch of messages, sent as a list of messages, to the queue in one
+	 * operation. The result holds, in the order of the batch, whether each
+	 * message was added.
+	 * 
+	 */
+	@POST
+	@Path("{secureCode}/{queue}/batch")
+	@Produces(value = { MediaType.TEXT_XML, MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON })
+	@Consumes(value = { MediaType.TEXT_XML, MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON, MessageCodecs.APPLICATION_LINEUP_BINARY })
+	public BatchResult postMessages(@PathParam("secureCode") String securityCode, @PathParam("queue") String queueName, 
+			@DefaultValue("-1") @HeaderParam(HttpHeaders.CONTENT_LENGTH) long contentLength, @HeaderParam(HttpHeaders.CONTENT_TYPE) String contentType,
+			InputStream body) {
+		
+		LineUpQueue queue = getExistingQueue(queueName, securityCode);
+		
+		MessageCodec codec = AssertUtils.isEmpty(contentType) ? MessageCodecs.XML : MessageCodecs.getCodec(contentType);
+		if(codec == null) {
+			throw new WebApplicationException(HttpStatusCode.UNSUPPORTED_MEDIA_TYPE);
+		}
+		
+		checkBatchLength(contentLength, body);
+		LimitedInputStream stream = new LimitedInputStream(body, MAX_BATCH_BYTES);
+		List<QueueMessage> messages;
+		try {
+			messages = codec.readMessages(stream);
+		} catch(IOException e) {
+			throw batchUnreadable(stream, e);
+		}
+		
+		checkBatchSize(messages);
+		
+		List<QueueMessage> added = queue.addMessages(messages);
+		
+		BatchResult result = new BatchResult(messages.size());
+		for(int index = 0; index < messages.size(); index++) {
+			result.addItem(String.valueOf(messages.get(index).getMessageID()), added.get(index) != null);
+		}
+		
+		LOGGER.debug("Added {} of {} messages in batch", result.getSucceeded(), messages.size());
+		return result;
+	}
+	
+	/**
+	 * Delete a batch of messages, sent as a list of message IDs, from the
+	 * queue in one operation. The result holds, in the order of the batch,
+	 * whether each message was deleted.
+	 * 
+	 */
+	@DELETE
+	@Path("{secureCode}/{queue}/batch")
+	@Produces(value = { MediaType.TEXT_XML, MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON })
+	@Consumes(value = { MediaType.TEXT_XML, MediaType.APPLICATION_XML })
+	public BatchResult deleteMessages(@PathParam("secureCode") String securityCode, @PathParam("queue") String queueName, 
+			@DefaultValue("-1") @HeaderParam(HttpHeaders.CONTENT_LENGTH) long contentLength, InputStream body) {
+		
+		LineUpQueue queue = getExistingQueue(queueName, securityCode);
+		
+		checkBatchLength(contentLength, body);
+		LimitedInputStream stream = new LimitedInputStream(body, MAX_BATCH_BYTES);
+		Object parsed;
+		try {
+			parsed = ID_LIST_XSTREAM.fromXML(stream);
+		} catch(RuntimeException e) {
+			throw batchUnreadable(stream, e);
+		}
+		
+		if(!(parsed instanceof List)) {
+			throw new WebApplicationException(HttpStatusCode.BAD_REQUEST);
+		}
+		
+		List<?> items = (List<?>) parsed;
+		checkBatchSize(items);
+		
+		List<String> messageIDs = new ArrayList<String>(items.size());
+		for(Object item : items) {
+			if(!(item instanceof String)) {
+				throw new WebApplicationException(HttpStatusCode.BAD_REQUEST);
+			}
+			
+			messageIDs.add((String) item);
+		}
+		
+		boolean[] deleted = queue.deleteMessages(messageIDs);
+		
+		BatchResult result = new BatchResult(messageIDs.size());
+		for(int index = 0; index < messageIDs.size(); index++) {
+			result.addItem(messageIDs.get(index), deleted[index]);
+		}
+		
+		LOGGER.debug("Deleted {} of {} messages in batch", result.getSucceeded(), messageIDs.size());
+		return result;
+	}
+	
+	/**
+	 * Return the response of a request, typed for the attachment it is to be
+	 * suspended with. The Grizzly container only injects the thread-local
+	 * that holds the response of the current request, and declares it as a
+	 * <code>ThreadLocal&lt;GrizzlyResponse&gt;</code> - which is why the
+	 * webservice methods must take that raw type to be injected at all. The
+	 * type argument only ties the attachment passed to suspend() to the
+	 * completion handler, and a response is suspended at most once, with an
+	 * attachment of the type chosen here.
+	 * 
+	 * @param response
+	 *            the response of the current request
+	 * 
+	 * @return the same response, typed for its attachment
+	 */
+	@SuppressWarnings("unchecked")
+	private static <A> GrizzlyResponse<A> suspendable(GrizzlyResponse<?> response) {
+		return (GrizzlyResponse<A>) response;
+	}
+	
+	/**
+	 * Return the queue a batch request or subscription is for.
+	 * 
+	 * @param queueName
+	 *            the name of the queue
+	 * 
+	 * @param securityCode
+	 *            the security code of the queue
+	 * 
+	 * @return the queue
+	 */
+	private LineUpQueue getExistingQueue(String queueName, String securityCode) {
+		LineUpQueue queue;
+		try {
+			queue = LineUp.getQueue(queueName, securityCode);
+		} catch (QueueNotFoundException e) {
+			throw new WebApplicationException(HttpStatusCode.NOT_FOUND);
+		}
+		
+		if(queue == null) {
+			throw new WebApplicationException(HttpStatusCode.NOT_FOUND);
+		}
+		
+		return queue;
+	}
+	
+	/**
+	 * Return the active subscription with the given ID to the given queue.
+	 * 
+	 * @param queueName
+	 *            the name of the queue
+	 * 
+	 * @param securityCode
+	 *            the security code of the queue
+	 * 
+	 * @param subscriptionID
+	 *            the ID of the subscription
+	 * 
+	 * @return the subscription
+	 */
+	private EventStreamSubscription getSubscription(String queueName, String securityCode, String subscriptionID) {
+		LineUpQueue queue = getExistingQueue(queueName, securityCode);
+		
+		EventStreamSubscription subscription = EventStreamSubscription.get(subscriptionID);
+		if(subscription == null || subscription.getQueue() != queue) {
+			throw new WebApplicationException(HttpStatusCode.NOT_FOUND);
+		}
+		
+		return subscription;
+	}
+	
+	/**
+	 * Reject the body of a batch request if it is declared larger than
+	 * {@link #MAX_BATCH_BYTES}, or missing.
+	 * 
+	 * @param contentLength
+	 *            the declared length of the body, or <code>-1</code> if not
+	 *            known
+	 * 
+	 * @param body
+	 *            the body of the request
+	 */
+	private void checkBatchLength(long contentLength, InputStream body) {
+		if(contentLength > MAX_BATCH_BYTES) {
+			throw new WebApplicationException(HttpStatusCode.REQUEST_ENTITY_TOO_LARGE);
+		}
+		
+		if(body == null) {
+			throw new WebApplicationException(HttpStatusCode.BAD_REQUEST);
+		}
+	}
+	
+	/**
+	 * Reject an empty batch, or one of more than {@link #MAX_BATCH_ITEMS}.
+	 * 
+	 * @param items
+	 *            the items in the batch
+	 */
+	private void checkBatchSize(List<?> items) {
+		if(items.isEmpty()) {
+			throw new WebApplicationException(HttpStatusCode.BAD_REQUEST);
+		}
+		
+		if(items.size() > MAX_BATCH_ITEMS) {
+			throw new WebApplicationException(HttpStatusCode.REQUEST_ENTITY_TOO_LARGE);
+		}
+	}
+	
+	/**
+	 * Return the error for a batch request whose body could not be read: too
+	 * large if reading went past {@link #MAX_BATCH_BYTES}, and a bad request
+	 * otherwise.
+	 * 
+	 * @param stream
+	 *            the stream the body was read from
+	 * 
+	 * @param cause
+	 *            the reason the body could not be read
+	 * 
+	 * @return the exception to throw
+	 */
+	private WebApplicationException batchUnreadable(LimitedInputStream stream, Exception cause) {
+		if(stream.isExceeded()) {
+			return new WebApplicationException(HttpStatusCode.REQUEST_ENTITY_TOO_LARGE);
+		}
+		
+		LOGGER.debug("Unable to parse batch request", cause);
+		return new WebApplicationException(HttpStatusCode.BAD_REQUEST);
+	}
 
 }
@@ -0,0 +1,114 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.web;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sangupta.lineup.codec.MessageListWriter;
+import com.sangupta.lineup.domain.QueueMessage;
+import com.sangupta.lineup.queues.LineUpQueue;
+
+/**
+ * A batch read that is drained from the queue as it is written: a chunk of
+ * messages is read from the queue and serialized straight to the response,
+ * and then the next, until the batch is complete or the queue runs empty.
+ * Neither the whole batch nor its serialized form is ever held in memory,
+ * and the client starts receiving messages while the rest are still being
+ * read.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+class StreamedMessages {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(StreamedMessages.class);
+	
+	/**
+	 * The number of messages drained from the queue at a time, and flushed
+	 * to the client together
+	 */
+	static final int CHUNK_SIZE = 256;
+	
+	/**
+	 * The queue to drain
+	 */
+	private final LineUpQueue queue;
+	
+	/**
+	 * The maximum number of messages to drain
+	 */
+	private final int numMessages;
+	
+	StreamedMessages(LineUpQueue queue, int numMessages) {
+		this.queue = queue;
+		this.numMessages = numMessages;
+	}
+	
+	/**
+	 * Drain the messages from the queue, chunk by chunk, into the given
+	 * writer. If a chunk cannot be written, all of its messages are added back
+	 * to the queue, as it is not known how many of them reached the client.
+	 * 
+	 * @param writer
+	 *            the writer for the response
+	 * 
+	 * @throws IOException
+	 *             if the response cannot be written
+	 */
+	void writeTo(MessageListWriter writer) throws IOException {
+		final long start = System.currentTimeMillis();
+		
+		int written = 0;
+		while(written < this.numMessages) {
+			int wanted = Math.min(CHUNK_SIZE, this.numMessages - written);
+			List<QueueMessage> chunk = this.queue.getMessages(wanted);
+			
+			try {
+				for(QueueMessage message : chunk) {
+					writer.write(message);
+				}
+				
+				writer.flush();
+			} catch(IOException e) {
+				if(!chunk.isEmpty()) {
+					this.queue.addMessages(chunk);
+				}
+				
+				throw e;
+			}
+			
+			written += chunk.size();
+			if(chunk.size() < wanted) {
+				// the queue is empty
+				break;
+			}
+		}
+		
+		writer.close();
+		LOGGER.debug("Streamed {} messages in {} ms.", written, System.currentTimeMillis() - start);
+	}
+
+}
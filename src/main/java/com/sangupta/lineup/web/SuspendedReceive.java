@@ -0,0 +1,400 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+package com.sangupta.lineup.web;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Providers;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sangupta.jerry.constants.HttpStatusCode;
+import com.sangupta.lineup.async.QueueCallback;
+import com.sangupta.lineup.async.QueueFuture;
+import com.sangupta.lineup.domain.QueueMessage;
+import com.sangupta.lineup.queues.LineUpQueue;
+import com.sun.grizzly.tcp.CompletionHandler;
+import com.sun.grizzly.tcp.http11.GrizzlyResponse;
+import com.sun.jersey.core.header.OutBoundHeaders;
+import com.sun.jersey.spi.container.ContainerResponse;
+
+/**
+ * A long-poll whose Grizzly response has been suspended while it waits for
+ * a message, or a batch of them, so that no request thread is held for the
+ * duration of the poll. The receive is completed either by the producer that
+ * hands it the messages, or by the shared timer of the queue once the poll
+ * time elapses, after which the response is written and resumed.
+ * 
+ * Jersey still writes a response for the request once the webservice method
+ * returns. This is diverted here by {@link SuspendedResponseFilter}, which
+ * also tells when Jersey is done with the request: a message handed over
+ * before that is written by the request thread itself, and one handed over
+ * later is written by a small shared pool, so that producers never pay for
+ * serializing the responses of consumers.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ * 
+ * @param <V>
+ *            the type received, a {@link QueueMessage} or a list of them
+ */
+class SuspendedReceive<V> implements QueueCallback<V>, SuspendedResponse, CompletionHandler<SuspendedReceive<V>>, Runnable {
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger(SuspendedReceive.class);
+	
+	/**
+	 * Time in milliseconds that Grizzly holds the response beyond the poll
+	 * time, should the queue fail to complete the receive
+	 */
+	private static final long SUSPEND_GRACE_MILLIS = 5000;
+	
+	private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+	
+	/**
+	 * Neither has Jersey finished nor has the receive completed
+	 */
+	private static final int WAITING = 0;
+	
+	/**
+	 * Jersey has finished with the request
+	 */
+	private static final int SERVICED = 1;
+	
+	/**
+	 * The receive has completed before Jersey finished
+	 */
+	private static final int COMPLETED = 2;
+	
+	/**
+	 * The response is being, or has been, written
+	 */
+	private static final int RESPONDED = 3;
+	
+	private final AtomicInteger state = new AtomicInteger(WAITING);
+	
+	private final LineUpQueue queue;
+	
+	private final GrizzlyResponse<SuspendedReceive<V>> response;
+	
+	private final Providers providers;
+	
+	private final QueueFuture<V> future;
+	
+	/**
+	 * The media type negotiated by Jersey for the response
+	 */
+	private volatile MediaType mediaType;
+	
+	/**
+	 * The message or messages received, if any
+	 */
+	private volatile V value;
+	
+	/**
+	 * The reason the receive failed, if it did
+	 */
+	private volatile Throwable error;
+	
+	/**
+	 * Whether Grizzly gave up on the response, as the client went away
+	 */
+	private volatile boolean abandoned;
+	
+	/**
+	 * Suspend the given response until the given receive completes.
+	 * 
+	 * @param queue
+	 *            the queue the receive is pending on
+	 * 
+	 * @param future
+	 *            the pending receive, completed with <code>null</code> if
+	 *            nothing was received
+	 * 
+	 * @param pollMillis
+	 *            the poll time in milliseconds
+	 * 
+	 * @param response
+	 *            the response to suspend
+	 * 
+	 * @param providers
+	 *            the providers to serialize the message with
+	 */
+	SuspendedReceive(LineUpQueue queue, QueueFuture<V> future, long pollMillis, GrizzlyResponse<SuspendedReceive<V>> response, Providers providers) {
+		this.queue = queue;
+		this.future = future;
+		this.response = response;
+		this.providers = providers;
+		
+		this.response.suspend(pollMillis + SUSPEND_GRACE_MILLIS, this, this);
+		this.future.addCallback(this);
+	}
+	
+	/**
+	 * @see com.sangupta.lineup.web.SuspendedResponse#setMediaType(javax.ws.rs.core.MediaType)
+	 */
+	@Override
+	public void setMediaType(MediaType mediaType) {
+		this.mediaType = mediaType;
+	}
+	
+	/**
+	 * @see com.sangupta.lineup.async.QueueCallback#onSuccess(java.lang.Object)
+	 */
+	@Override
+	public void onSuccess(V value) {
+		this.value = value;
+		this.completed();
+	}
+	
+	/**
+	 * @see com.sangupta.lineup.async.QueueCallback#onFailure(java.lang.Throwable)
+	 */
+	@Override
+	public void onFailure(Throwable cause) {
+		this.error = cause;
+		this.completed();
+	}
+	
+	/**
+	 * Respond once the receive has completed, unless Jersey has not yet
+	 * finished with the request, in which case it responds.
+	 * 
+	 */
+	private void completed() {
+		if(this.state.compareAndSet(WAITING, COMPLETED)) {
+			return;
+		}
+		
+		if(this.state.compareAndSet(SERVICED, RESPONDED)) {
+			ResumeExecutor.EXECUTOR.execute(this);
+		}
+	}
+	
+	/**
+	 * Write the response on a thread of the shared pool.
+	 * 
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run() {
+		this.respond();
+	}
+	
+	/**
+	 * Jersey writes the status and headers of an empty response, which are
+	 * ignored.
+	 * 
+	 * @see com.sun.jersey.spi.container.ContainerResponseWriter#writeStatusAndHeaders(long, com.sun.jersey.spi.container.ContainerResponse)
+	 */
+	@Override
+	public OutputStream writeStatusAndHeaders(long contentLength, ContainerResponse response) throws IOException {
+		return new OutputStream() {
+			
+			@Override
+			public void write(int b) throws IOException {
+				// discard
+			}
+			
+		};
+	}
+	
+	/**
+	 * Jersey has finished with the request: respond now if the receive has
+	 * already completed.
+	 * 
+	 * @see com.sun.jersey.spi.container.ContainerResponseWriter#finish()
+	 */
+	@Override
+	public void finish() throws IOException {
+		if(this.state.compareAndSet(WAITING, SERVICED)) {
+			return;
+		}
+		
+		if(this.state.compareAndSet(COMPLETED, RESPONDED)) {
+			this.respond();
+		}
+	}
+	
+	/**
+	 * @see com.sun.grizzly.tcp.CompletionHandler#resumed(java.lang.Object)
+	 */
+	@Override
+	public void resumed(SuspendedReceive<V> attachment) {
+		// nothing to do
+	}
+	
+	/**
+	 * Grizzly gave up on the response, as the client closed the connection or
+	 * the suspension timed out: withdraw the receive from the queue.
+	 * 
+	 * @see com.sun.grizzly.tcp.CompletionHandler#cancelled(java.lang.Object)
+	 */
+	@Override
+	public void cancelled(SuspendedReceive<V> attachment) {
+		this.abandoned = true;
+		this.future.cancel(false);
+	}
+	
+	/**
+	 * Write what was received, or the status for the lack of it, and resume
+	 * the response. Messages that cannot be delivered are given back to the
+	 * queue.
+	 * 
+	 */
+	private void respond() {
+		final V value = this.value;
+		if(this.abandoned) {
+			this.giveBack(value);
+			return;
+		}
+		
+		try {
+			if(value != null) {
+				this.writeEntity(value);
+			} else if(this.error == null || this.error instanceof CancellationException) {
+				this.response.setStatus(HttpStatusCode.NOT_FOUND);
+			} else {
+				LOGGER.error("Suspended receive failed", this.error);
+				this.response.setStatus(HttpStatusCode.INTERNAL_SERVER_ERROR);
+			}
+			
+			this.response.resume();
+		} catch(IOException e) {
+			LOGGER.debug("Unable to write suspended response", e);
+			this.giveBack(value);
+		} catch(IllegalStateException e) {
+			// no longer suspended as grizzly gave up on it
+			this.giveBack(value);
+		}
+	}
+	
+	/**
+	 * Serialize what was received into the response, using the same body
+	 * writer Jersey would have used for the object returned by the
+	 * webservice method.
+	 * 
+	 * @param value
+	 *            the message or messages to write
+	 * 
+	 * @throws IOException
+	 *             if the entity cannot be written
+	 */
+	@SuppressWarnings("unchecked")
+	private void writeEntity(V value) throws IOException {
+		MediaType type = this.mediaType;
+		if(type == null || type.isWildcardType() || type.isWildcardSubtype()) {
+			type = MediaType.APPLICATION_XML_TYPE;
+		}
+		
+		final Class<Object> entityClass = (Class<Object>) value.getClass();
+		final Type genericType = value instanceof List ? QueueMessageListProvider.MESSAGE_LIST_TYPE : entityClass;
+		MessageBodyWriter<Object> writer = this.providers.getMessageBodyWriter(entityClass, genericType, NO_ANNOTATIONS, type);
+		if(writer == null) {
+			LOGGER.error("No body writer for media type {}", type);
+			this.response.setStatus(HttpStatusCode.INTERNAL_SERVER_ERROR);
+			this.giveBack(value);
+			return;
+		}
+		
+		MultivaluedMap<String, Object> headers = new OutBoundHeaders();
+		this.response.setStatus(HttpStatusCode.OK);
+		this.response.setContentType(type.toString());
+		
+		OutputStream stream = this.response.getOutputStream();
+		writer.writeTo(value, entityClass, genericType, NO_ANNOTATIONS, type, headers, stream);
+		
+		for(Map.Entry<String, List<Object>> entry : headers.entrySet()) {
+			for(Object header : entry.getValue()) {
+				this.response.addHeader(entry.getKey(), String.valueOf(header));
+			}
+		}
+	}
+	
+	/**
+	 * Give back the messages that could not be delivered.
+	 * 
+	 * @param value
+	 *            the message or messages, may be <code>null</code>
+	 */
+	private void giveBack(V value) {
+		if(value instanceof QueueMessage) {
+			this.queue.addMessage((QueueMessage) value);
+			return;
+		}
+		
+		if(value instanceof Collection) {
+			for(Object message : (Collection<?>) value) {
+				this.queue.addMessage((QueueMessage) message);
+			}
+		}
+	}
+	
+	/**
+	 * Holds the pool that writes the responses of receives completed after
+	 * Jersey has finished with the request, created only once the first one
+	 * is. The pool is fixed in size, so that the number of server threads
+	 * does not grow with the number of waiting consumers.
+	 * 
+	 * @author sangupta
+	 *
+	 */
+	private static class ResumeExecutor {
+		
+		static final ExecutorService EXECUTOR;
+		
+		static {
+			final int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+			final AtomicInteger count = new AtomicInteger();
+			
+			EXECUTOR = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+				
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "lineup-resume-" + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+				
+			});
+		}
+		
+	}
+
+}
@@ -0,0 +1,46 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.web;
+
+import javax.ws.rs.core.MediaType;
+
+import com.sun.jersey.spi.container.ContainerResponseWriter;
+
+/**
+ * An entity returned by a webservice method whose Grizzly response has been
+ * suspended, and which writes the response itself. The response Jersey
+ * writes for it is diverted here by {@link SuspendedResponseFilter}.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+interface SuspendedResponse extends ContainerResponseWriter {
+	
+	/**
+	 * Set the media type negotiated by Jersey, as the response is diverted.
+	 * 
+	 * @param mediaType
+	 *            the media type of the response
+	 */
+	public void setMediaType(MediaType mediaType);
+
+}
@@ -0,0 +1,75 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+package com.sangupta.lineup.web;
+
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.ContainerRequestFilter;
+import com.sun.jersey.spi.container.ContainerResponse;
+import com.sun.jersey.spi.container.ContainerResponseFilter;
+import com.sun.jersey.spi.container.ResourceFilter;
+
+/**
+ * Diverts the response that Jersey writes for a webservice method that
+ * returned a {@link SuspendedResponse}, such as a {@link SuspendedReceive},
+ * so that the suspended Grizzly response is left to it.
+ * 
+ * @author sangupta
+ * @since 1.0.2
+ */
+public class SuspendedResponseFilter implements ResourceFilter, ContainerResponseFilter {
+
+	/**
+	 * @see com.sun.jersey.spi.container.ResourceFilter#getRequestFilter()
+	 */
+	@Override
+	public ContainerRequestFilter getRequestFilter() {
+		return null;
+	}
+
+	/**
+	 * @see com.sun.jersey.spi.container.ResourceFilter#getResponseFilter()
+	 */
+	@Override
+	public ContainerResponseFilter getResponseFilter() {
+		return this;
+	}
+
+	/**
+	 * @see com.sun.jersey.spi.container.ContainerResponseFilter#filter(com.sun.jersey.spi.container.ContainerRequest, com.sun.jersey.spi.container.ContainerResponse)
+	 */
+	@Override
+	public ContainerResponse filter(ContainerRequest request, ContainerResponse response) {
+		Object entity = response.getEntity();
+		if(!(entity instanceof SuspendedResponse)) {
+			return response;
+		}
+		
+		SuspendedResponse suspended = (SuspendedResponse) entity;
+		suspended.setMediaType(response.getMediaType());
+		
+		response.setEntity(null);
+		response.setContainerResponseWriter(suspended);
+		return response;
+	}
+
+}
@@ -29,12 +29,17 @@ import junit.framework.Assert;
 
 import org.junit.Test;
 
+import com.sangupta.lineup.domain.QueueCardinality;
 import com.sangupta.lineup.domain.QueueMessage;
+import com.sangupta.lineup.domain.QueueOptions;
 import com.sangupta.lineup.domain.QueueType;
 import com.sangupta.lineup.exceptions.QueueAlreadyExistsException;
 import com.sangupta.lineup.queues.DuplicateAcceptingLineUpQueue;
 import com.sangupta.lineup.queues.DuplicateRejectingLineUpQueue;
 import com.sangupta.lineup.queues.LineUpQueue;
+import com.sangupta.lineup.queues.RingBufferLineUpQueue;
+import com.sangupta.lineup.queues.ShardedMergingPriorityLineUpQueue;
+import com.sangupta.lineup.queues.StripedLineUpQueue;
 
 /**
  * Unit tests for duplicate accepting queue type.
@@ -64,6 +69,27 @@ public class TestAllQueues {
 		testQueue(queue, true, 2);
 	}
 	
+	/**
+	 * Test the queue called {@link QueueType#AllowDuplicates} when used by a
+	 * single producer and a single consumer.
+	 * 
+	 */
+	@Test
+	public void testSingleProducerSingleConsumerQueue() {
+		LineUpQueue queue = null;
+		
+		QueueOptions options = QueueOptions.getOptions(QueueType.AllowDuplicates);
+		options.setCardinality(QueueCardinality.SPSC);
+		try {
+			queue = LineUp.createMessageQueue("test-dups-spsc", null, options);
+		} catch (QueueAlreadyExistsException e) {
+			Assert.assertTrue("Queue creation failed", false);
+		}
+		
+		Assert.assertTrue(queue instanceof DuplicateAcceptingLineUpQueue);
+		testQueue(queue, true, 2);
+	}
+	
 	/**
 	 * Test the default queue called {@link QueueType#RejectDuplicates}.
 	 * 
@@ -132,6 +158,77 @@ public class TestAllQueues {
 		
 		testQueue(queue, true, 1);
 	}
+	
+	/**
+	 * Test the default queue called {@link QueueType#RelaxedPriorityQueue}.
+	 * 
+	 */
+	@Test
+	public void testRelaxedPriorityQueue() {
+		LineUpQueue queue = null;
+		
+		try {
+			queue = LineUp.createMessageQueue("test-priority-relaxed", QueueType.RelaxedPriorityQueue);
+		} catch (QueueAlreadyExistsException e) {
+			Assert.assertTrue("Queue creation failed", false);
+		}
+		
+		testQueue(queue, true, 2);
+	}
+	
+	/**
+	 * Test the default queue called {@link QueueType#RingBuffer}.
+	 * 
+	 */
+	@Test
+	public void testRingBufferQueue() {
+		LineUpQueue queue = null;
+		
+		try {
+			queue = LineUp.createMessageQueue("test-ring-buffer", QueueType.RingBuffer);
+		} catch (QueueAlreadyExistsException e) {
+			Assert.assertTrue("Queue creation failed", false);
+		}
+		
+		Assert.assertTrue(queue instanceof RingBufferLineUpQueue);
+		testQueue(queue, true, 2);
+	}
+	
+	/**
+	 * Test the default queue called {@link QueueType#StripedQueue}.
+	 * 
+	 */
+	@Test
+	public void testStripedQueue() {
+		LineUpQueue queue = null;
+		
+		try {
+			queue = LineUp.createMessageQueue("test-striped", QueueType.StripedQueue);
+		} catch (QueueAlreadyExistsException e) {
+			Assert.assertTrue("Queue creation failed", false);
+		}
+		
+		Assert.assertTrue(queue instanceof StripedLineUpQueue);
+		testQueue(queue, true, 2);
+	}
+	
+	/**
+	 * Test the default queue called {@link QueueType#ShardedPriorityQueue}.
+	 * 
+	 */
+	@Test
+	public void testShardedPriorityQueue() {
+		LineUpQueue queue = null;
+		
+		try {
+			queue = LineUp.createMessageQueue("test-priority-sharded", QueueType.ShardedPriorityQueue);
+		} catch (QueueAlreadyExistsException e) {
+			Assert.assertTrue("Queue creation failed", false);
+		}
+		
+		Assert.assertTrue(queue instanceof ShardedMergingPriorityLineUpQueue);
+		testQueue(queue, true, 1);
+	}
 
 	private void testQueue(LineUpQueue queue, boolean testDuplicates, int duplicateSizeFactor) {
 		Assert.assertNotNull("Queue cannot be null", queue);
@@ -0,0 +1,295 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.sangupta.lineup.async.QueueCallback;
+import com.sangupta.lineup.async.QueueFuture;
+import com.sangupta.lineup.domain.QueueCardinality;
+import com.sangupta.lineup.domain.QueueMessage;
+import com.sangupta.lineup.domain.QueueOptions;
+import com.sangupta.lineup.domain.QueueType;
+import com.sangupta.lineup.queues.LineUpQueue;
+import com.sangupta.lineup.service.QueueGenerationFactory;
+
+/**
+ * Unit tests for the asynchronous methods of {@link LineUpQueue}.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestAsyncQueue {
+	
+	@Test
+	public void testReceiveAvailableMessage() throws Exception {
+		LineUpQueue queue = getQueue(QueueType.AllowDuplicates);
+		queue.addMessage("hello");
+		
+		QueueFuture<QueueMessage> future = queue.receiveAsync(10, TimeUnit.SECONDS);
+		Assert.assertTrue(future.isDone());
+		Assert.assertEquals("hello", future.get().getBody());
+		Assert.assertEquals(0, queue.numMessages());
+	}
+	
+	@Test
+	public void testPendingReceiveCompletedByProducer() throws Exception {
+		final LineUpQueue queue = getQueue(QueueType.AllowDuplicates);
+		final AtomicReference<String> completedOn = new AtomicReference<String>();
+		
+		QueueFuture<QueueMessage> future = queue.receiveAsync(30, TimeUnit.SECONDS);
+		Assert.assertFalse(future.isDone());
+		future.addCallback(new QueueCallback<QueueMessage>() {
+			
+			@Override
+			public void onSuccess(QueueMessage result) {
+				completedOn.set(Thread.currentThread().getName());
+			}
+			
+			@Override
+			public void onFailure(Throwable cause) {
+				// not expected
+			}
+			
+		});
+		
+		Thread producer = new Thread(new Runnable() {
+			
+			@Override
+			public void run() {
+				queue.addMessage("hello");
+			}
+			
+		}, "test-producer");
+		producer.start();
+		producer.join();
+		
+		Assert.assertTrue(future.isDone());
+		Assert.assertEquals("hello", future.get().getBody());
+		Assert.assertEquals("test-producer", completedOn.get());
+		Assert.assertEquals(0, queue.numMessages());
+	}
+	
+	@Test
+	public void testReceiveTimesOut() throws Exception {
+		LineUpQueue queue = getQueue(QueueType.AllowDuplicates);
+		
+		long start = System.currentTimeMillis();
+		QueueFuture<QueueMessage> future = queue.receiveAsync(100, TimeUnit.MILLISECONDS);
+		Assert.assertNull(future.get(5, TimeUnit.SECONDS));
+		Assert.assertTrue(System.currentTimeMillis() - start >= 90);
+		
+		// a message added afterwards stays in the queue
+		queue.addMessage("hello");
+		Assert.assertEquals(1, queue.numMessages());
+	}
+	
+	@Test
+	public void testCancelledReceiveIsAbandoned() throws Exception {
+		LineUpQueue queue = getQueue(QueueType.AllowDuplicates);
+		
+		QueueFuture<QueueMessage> future = queue.receiveAsync(30, TimeUnit.SECONDS);
+		Assert.assertTrue(future.cancel(false));
+		Assert.assertTrue(future.isCancelled());
+		
+		try {
+			future.get();
+			Assert.fail("Cancelled future returned a value");
+		} catch(CancellationException e) {
+			// expected
+		}
+		
+		queue.addMessage("hello");
+		Assert.assertEquals(1, queue.numMessages());
+		Assert.assertEquals("hello", queue.getMessage().getBody());
+	}
+	
+	@Test
+	public void testAllQueueTypes() throws Exception {
+		for(QueueType type : QueueType.values()) {
+			LineUpQueue queue = getQueue(type);
+			
+			QueueFuture<QueueMessage> future = queue.receiveAsync(30, TimeUnit.SECONDS);
+			Assert.assertFalse(type.toString(), future.isDone());
+			
+			if(type == QueueType.RingBuffer) {
+				queue.put(new QueueMessage("hello", 0, 1));
+			} else {
+				queue.addMessageAsync("hello").get();
+			}
+			
+			Assert.assertEquals(type.toString(), "hello", future.get(5, TimeUnit.SECONDS).getBody());
+			Assert.assertEquals(type.toString(), 0, queue.numMessages());
+		}
+	}
+	
+	@Test
+	public void testConcurrentReceives() throws Exception {
+		final LineUpQueue queue = getQueue(QueueType.AllowDuplicates);
+		final int messages = 2000;
+		
+		List<QueueFuture<QueueMessage>> futures = new ArrayList<QueueFuture<QueueMessage>>();
+		for(int index = 0; index < messages / 2; index++) {
+			futures.add(queue.receiveAsync(30, TimeUnit.SECONDS));
+		}
+		
+		Thread[] producers = new Thread[2];
+		for(int index = 0; index < producers.length; index++) {
+			final int producer = index;
+			producers[index] = new Thread(new Runnable() {
+				
+				@Override
+				public void run() {
+					for(int count = 0; count < messages / 2; count++) {
+						queue.addMessage("message-" + producer + "-" + count);
+					}
+				}
+				
+			});
+			producers[index].start();
+		}
+		
+		// receives that race with the producers
+		for(int index = 0; index < messages / 2; index++) {
+			futures.add(queue.receiveAsync(30, TimeUnit.SECONDS));
+		}
+		
+		for(Thread producer : producers) {
+			producer.join();
+		}
+		
+		Set<String> received = new HashSet<String>();
+		for(QueueFuture<QueueMessage> future : futures) {
+			Assert.assertTrue(received.add(future.get(10, TimeUnit.SECONDS).getBody()));
+		}
+		
+		Assert.assertEquals(messages, received.size());
+		Assert.assertEquals(0, queue.numMessages());
+	}
+	
+	@Test
+	public void testAddAndDelete() throws Exception {
+		LineUpQueue queue = getQueue(QueueType.AllowDuplicates);
+		
+		QueueMessage message = queue.addMessageAsync("hello").get();
+		Assert.assertNotNull(message);
+		Assert.assertEquals(1, queue.numMessages());
+		
+		Assert.assertTrue(queue.deleteMessageAsync(String.valueOf(message.getMessageID())).get());
+		Assert.assertEquals(0, queue.numMessages());
+	}
+	
+	@Test
+	public void testSingleProducerSingleConsumerQueue() throws Exception {
+		QueueOptions options = QueueOptions.getOptions(QueueType.AllowDuplicates);
+		options.setCardinality(QueueCardinality.SPSC);
+		LineUpQueue queue = QueueGenerationFactory.getLineUpQueue("async-spsc", null, options);
+		
+		// the consumer completes a receive by waiting on it
+		QueueFuture<QueueMessage> receive = queue.receiveAsync(10, TimeUnit.SECONDS);
+		Assert.assertFalse(receive.isDone());
+		queue.addMessage("hello");
+		Assert.assertFalse(receive.isDone());
+		Assert.assertEquals("hello", receive.get().getBody());
+		
+		// and a batch, polling until it holds the minimum
+		QueueFuture<List<QueueMessage>> batch = queue.receiveBatchAsync(2, 10, 10, TimeUnit.SECONDS);
+		queue.addMessage("hello");
+		try {
+			batch.get(50, TimeUnit.MILLISECONDS);
+			Assert.fail("Batch completed short of the minimum");
+		} catch(TimeoutException e) {
+			// expected
+		}
+		
+		// the message polled stays with the batch, which cannot be cancelled
+		Assert.assertFalse(batch.cancel(false));
+		queue.addMessage("hello");
+		Assert.assertEquals(2, batch.get().size());
+		Assert.assertEquals(0, queue.numMessages());
+		
+		// a receive nobody waits on times out without polling
+		receive = queue.receiveAsync(100, TimeUnit.MILLISECONDS);
+		final AtomicReference<Object> result = new AtomicReference<Object>();
+		final CountDownLatch completed = new CountDownLatch(1);
+		receive.addCallback(new QueueCallback<QueueMessage>() {
+			
+			@Override
+			public void onSuccess(QueueMessage message) {
+				result.set(message == null ? "timed out" : message);
+				completed.countDown();
+			}
+			
+			@Override
+			public void onFailure(Throwable cause) {
+				result.set(cause);
+				completed.countDown();
+			}
+			
+		});
+		
+		Assert.assertTrue(completed.await(5, TimeUnit.SECONDS));
+		Assert.assertEquals("timed out", result.get());
+		
+		// an abandoned receive takes nothing out of the queue
+		receive = queue.receiveAsync(10, TimeUnit.SECONDS);
+		Assert.assertTrue(receive.cancel(false));
+		
+		// a returned lease would add from the consumer thread
+		queue.addMessage("hello");
+		try {
+			queue.leaseMessages(1, 0);
+			Assert.fail("Lease accepted on a SPSC queue");
+		} catch(UnsupportedOperationException e) {
+			// expected
+		}
+		
+		// nothing was taken out by the rejected calls
+		Assert.assertEquals(1, queue.numMessages());
+		Assert.assertEquals("hello", queue.getMessage().getBody());
+		
+		options.setDirectHandOff(true);
+		try {
+			QueueGenerationFactory.getLineUpQueue("async-spsc-handoff", null, options);
+			Assert.fail("Direct hand-off accepted on a SPSC queue");
+		} catch(IllegalArgumentException e) {
+			// expected
+		}
+	}
+	
+	private static LineUpQueue getQueue(QueueType type) {
+		return QueueGenerationFactory.getLineUpQueue("async-" + type, null, QueueOptions.getOptions(type));
+	}
+
+}
@@ -0,0 +1,175 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+package com.sangupta.lineup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.sangupta.lineup.domain.QueueMessage;
+import com.sangupta.lineup.domain.QueueOptions;
+import com.sangupta.lineup.domain.QueueType;
+import com.sangupta.lineup.queues.LineUpQueue;
+import com.sangupta.lineup.service.QueueGenerationFactory;
+
+/**
+ * Unit tests for adding and deleting messages in batches.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestBatchOperations {
+	
+	private static final QueueType[] TYPES = { QueueType.AllowDuplicates, QueueType.PriorityQueueMergingDuplicates, QueueType.RingBuffer, QueueType.StripedQueue };
+	
+	@Test
+	public void testAddMessages() throws Exception {
+		for(QueueType type : TYPES) {
+			LineUpQueue queue = getQueue(type);
+			List<QueueMessage> messages = getMessages(100);
+			
+			List<QueueMessage> added = queue.addMessages(messages);
+			Assert.assertEquals(type.toString(), 100, added.size());
+			for(int index = 0; index < 100; index++) {
+				Assert.assertSame(messages.get(index), added.get(index));
+			}
+			
+			Assert.assertEquals(type.toString(), 100, queue.numMessages());
+			Assert.assertEquals(type.toString(), 100, queue.getMessages(200).size());
+			Assert.assertEquals(0, queue.numMessages());
+		}
+	}
+	
+	@Test
+	public void testAddMessagesRejected() {
+		LineUpQueue queue = getQueue(QueueType.RejectDuplicates);
+		QueueMessage first = new QueueMessage("same", 0, 1);
+		QueueMessage other = new QueueMessage("other", 0, 1);
+		
+		List<QueueMessage> added = queue.addMessages(Arrays.asList(first, null, new QueueMessage("same", 0, 1), other));
+		Assert.assertEquals(4, added.size());
+		Assert.assertSame(first, added.get(0));
+		Assert.assertNull(added.get(1));
+		Assert.assertNull(added.get(2));
+		Assert.assertSame(other, added.get(3));
+		Assert.assertEquals(2, queue.numMessages());
+	}
+	
+	@Test
+	public void testAddMessagesWakesConsumers() throws Exception {
+		for(QueueType type : TYPES) {
+			final LineUpQueue queue = getQueue(type);
+			final int consumers = 4;
+			final CountDownLatch started = new CountDownLatch(consumers);
+			final CountDownLatch done = new CountDownLatch(consumers);
+			final AtomicInteger received = new AtomicInteger();
+			
+			for(int index = 0; index < consumers; index++) {
+				new Thread(new Runnable() {
+					
+					@Override
+					public void run() {
+						started.countDown();
+						try {
+							if(queue.getMessage(10) != null) {
+								received.incrementAndGet();
+							}
+						} catch(InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+						
+						done.countDown();
+					}
+					
+				}).start();
+			}
+			
+			started.await();
+			Thread.sleep(100);
+			
+			queue.addMessages(getMessages(consumers));
+			Assert.assertTrue(type.toString(), done.await(5, TimeUnit.SECONDS));
+			Assert.assertEquals(type.toString(), consumers, received.get());
+		}
+	}
+	
+	@Test
+	public void testDeleteMessages() {
+		LineUpQueue queue = getQueue(QueueType.AllowDuplicates);
+		List<QueueMessage> messages = getMessages(10);
+		queue.addMessages(messages);
+		
+		List<String> messageIDs = new ArrayList<String>();
+		messageIDs.add(String.valueOf(messages.get(2).getMessageID()));
+		messageIDs.add("not-a-number");
+		messageIDs.add(String.valueOf(messages.get(5).getMessageID()));
+		messageIDs.add(String.valueOf(messages.get(2).getMessageID()));
+		
+		boolean[] deleted = queue.deleteMessages(messageIDs);
+		Assert.assertEquals(4, deleted.length);
+		Assert.assertTrue(deleted[0]);
+		Assert.assertFalse(deleted[1]);
+		Assert.assertTrue(deleted[2]);
+		Assert.assertFalse(deleted[3]);
+		Assert.assertEquals(8, queue.numMessages());
+	}
+	
+	@Test
+	public void testNullBatch() {
+		LineUpQueue queue = getQueue(QueueType.AllowDuplicates);
+		try {
+			queue.addMessages(null);
+			Assert.fail("Expected exception for null messages");
+		} catch(IllegalArgumentException e) {
+			// expected
+		}
+		
+		try {
+			queue.deleteMessages(null);
+			Assert.fail("Expected exception for null message IDs");
+		} catch(IllegalArgumentException e) {
+			// expected
+		}
+	}
+	
+	private static List<QueueMessage> getMessages(int count) {
+		List<QueueMessage> messages = new ArrayList<QueueMessage>(count);
+		for(int index = 0; index < count; index++) {
+			messages.add(new QueueMessage("message-" + index, 0, 1));
+		}
+		
+		return messages;
+	}
+	
+	private static LineUpQueue getQueue(QueueType type) {
+		return QueueGenerationFactory.getLineUpQueue("batch-ops-" + type, null, QueueOptions.getOptions(type));
+	}
+
+}
@@ -0,0 +1,181 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+package com.sangupta.lineup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.sangupta.lineup.async.QueueFuture;
+import com.sangupta.lineup.domain.QueueMessage;
+import com.sangupta.lineup.domain.QueueOptions;
+import com.sangupta.lineup.domain.QueueType;
+import com.sangupta.lineup.queues.LineUpQueue;
+import com.sangupta.lineup.service.QueueGenerationFactory;
+
+/**
+ * Unit tests for batch receives that wait for a minimum number of messages.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestBatchReceive {
+	
+	private static final QueueType[] TYPES = { QueueType.AllowDuplicates, QueueType.PriorityQueueMergingDuplicates, QueueType.RingBuffer, QueueType.StripedQueue };
+	
+	@Test
+	public void testMinimumAvailable() throws Exception {
+		for(QueueType type : TYPES) {
+			LineUpQueue queue = getQueue(type);
+			for(int index = 0; index < 5; index++) {
+				queue.addMessage("message-" + index);
+			}
+			
+			long start = System.currentTimeMillis();
+			List<QueueMessage> messages = queue.getMessages(3, 10, 5, TimeUnit.SECONDS);
+			Assert.assertTrue(System.currentTimeMillis() - start < 1000);
+			Assert.assertEquals(type.toString(), 5, messages.size());
+			Assert.assertEquals(0, queue.numMessages());
+		}
+	}
+	
+	@Test
+	public void testMaximum() throws Exception {
+		for(QueueType type : TYPES) {
+			LineUpQueue queue = getQueue(type);
+			for(int index = 0; index < 20; index++) {
+				queue.addMessage("message-" + index);
+			}
+			
+			Assert.assertEquals(type.toString(), 8, queue.getMessages(1, 8, 1, TimeUnit.SECONDS).size());
+			Assert.assertEquals(12, queue.numMessages());
+		}
+	}
+	
+	@Test
+	public void testWaitForMinimum() throws Exception {
+		for(QueueType type : TYPES) {
+			final LineUpQueue queue = getQueue(type);
+			
+			Thread producer = new Thread(new Runnable() {
+				
+				@Override
+				public void run() {
+					try {
+						for(int index = 0; index < 5; index++) {
+							Thread.sleep(20);
+							queue.addMessage("message-" + index);
+						}
+					} catch(InterruptedException e) {
+						// exit
+					}
+				}
+				
+			});
+			producer.start();
+			
+			long start = System.currentTimeMillis();
+			List<QueueMessage> messages = queue.getMessages(5, 10, 10, TimeUnit.SECONDS);
+			Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+			Assert.assertEquals(type.toString(), 5, messages.size());
+			
+			producer.join();
+		}
+	}
+	
+	@Test
+	public void testTimeoutReturnsAvailable() throws Exception {
+		for(QueueType type : TYPES) {
+			LineUpQueue queue = getQueue(type);
+			queue.addMessage("one");
+			queue.addMessage("two");
+			
+			long start = System.currentTimeMillis();
+			List<QueueMessage> messages = queue.getMessages(5, 10, 200, TimeUnit.MILLISECONDS);
+			Assert.assertTrue(System.currentTimeMillis() - start >= 200);
+			Assert.assertEquals(type.toString(), 2, messages.size());
+			Assert.assertEquals(0, queue.numMessages());
+			
+			// nothing at all
+			Assert.assertTrue(queue.getMessages(1, 10, 50, TimeUnit.MILLISECONDS).isEmpty());
+		}
+	}
+	
+	@Test
+	public void testCancelAsync() throws Exception {
+		LineUpQueue queue = getQueue(QueueType.AllowDuplicates);
+		queue.addMessage("one");
+		
+		QueueFuture<List<QueueMessage>> future = queue.receiveBatchAsync(3, 10, 10, TimeUnit.SECONDS);
+		Assert.assertFalse(future.isDone());
+		Assert.assertTrue(future.cancel(false));
+		
+		// the cancelled batch takes nothing added later
+		queue.addMessage("two");
+		queue.addMessage("three");
+		Assert.assertEquals(3, queue.numMessages());
+		
+		future = queue.receiveBatchAsync(3, 10, 10, TimeUnit.SECONDS);
+		Assert.assertTrue(future.isDone());
+		Assert.assertEquals(3, future.get().size());
+	}
+	
+	@Test
+	public void testAsyncCompletedByAdd() throws Exception {
+		LineUpQueue queue = getQueue(QueueType.AllowDuplicates);
+		
+		QueueFuture<List<QueueMessage>> first = queue.receiveBatchAsync(2, 2, 10, TimeUnit.SECONDS);
+		QueueFuture<List<QueueMessage>> second = queue.receiveBatchAsync(2, 2, 10, TimeUnit.SECONDS);
+		
+		for(int index = 0; index < 4; index++) {
+			queue.addMessage("message-" + index);
+		}
+		
+		Assert.assertEquals(2, first.get(1, TimeUnit.SECONDS).size());
+		Assert.assertEquals(2, second.get(1, TimeUnit.SECONDS).size());
+		Assert.assertEquals(0, queue.numMessages());
+	}
+	
+	@Test
+	public void testInvalidArguments() throws Exception {
+		LineUpQueue queue = getQueue(QueueType.AllowDuplicates);
+		
+		int[][] invalid = { { 1, 0 }, { -1, 5 }, { 6, 5 } };
+		for(int[] args : invalid) {
+			try {
+				queue.getMessages(args[0], args[1], 1, TimeUnit.SECONDS);
+				Assert.fail("Expected exception for " + args[0] + ", " + args[1]);
+			} catch(IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+	
+	private static LineUpQueue getQueue(QueueType type) {
+		return QueueGenerationFactory.getLineUpQueue("batch-" + type, null, QueueOptions.getOptions(type));
+	}
+
+}
@@ -0,0 +1,390 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sangupta.lineup.async.QueueFuture;
+import com.sangupta.lineup.domain.QueueMessage;
+import com.sangupta.lineup.exceptions.QueueNotFoundException;
+import com.sangupta.lineup.protocol.BinaryProtocol;
+import com.sangupta.lineup.protocol.BinaryProtocolClient;
+import com.sangupta.lineup.protocol.BinaryProtocolServer;
+import com.sangupta.lineup.protocol.BinaryQueueHandle;
+import com.sangupta.lineup.queues.LineUpQueue;
+import com.sangupta.lineup.queues.RemoteLineUpQueue;
+
+/**
+ * Unit tests for the native binary protocol, against a server on a local
+ * port.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestBinaryProtocol {
+	
+	private static int counter = 0;
+	
+	private BinaryProtocolServer server;
+	
+	private BinaryProtocolClient client;
+	
+	private LineUpQueue queue;
+	
+	@Before
+	public void setUp() throws Exception {
+		this.server = new BinaryProtocolServer(0);
+		this.server.start();
+		
+		this.client = new BinaryProtocolClient("localhost", this.server.getPort());
+		this.queue = LineUp.createMessageQueue("binary-protocol-" + (counter++), "secret");
+	}
+	
+	@After
+	public void tearDown() throws Exception {
+		this.client.close();
+		this.server.stop();
+		LineUp.deleteMessageQueue(this.queue.getName());
+	}
+	
+	@Test
+	public void testAddGetDelete() throws Exception {
+		BinaryQueueHandle handle = this.client.openQueue(this.queue.getName(), "secret");
+		
+		List<QueueMessage> messages = new ArrayList<QueueMessage>();
+		for(int index = 0; index < 10; index++) {
+			messages.add(new QueueMessage("message-" + index, 0, 1));
+		}
+		
+		boolean[] added = handle.addMessages(messages).get();
+		Assert.assertEquals(10, added.length);
+		for(boolean success : added) {
+			Assert.assertTrue(success);
+		}
+		Assert.assertEquals(10, this.queue.numMessages());
+		
+		List<QueueMessage> read = handle.getMessages(0, 4, 0).get();
+		Assert.assertEquals(4, read.size());
+		Assert.assertEquals("message-0", read.get(0).getBody());
+		Assert.assertEquals(messages.get(0).getMessageID(), read.get(0).getMessageID());
+		Assert.assertEquals(messages.get(0).getMd5(), read.get(0).getMd5());
+		Assert.assertEquals(6, this.queue.numMessages());
+		
+		boolean[] deleted = handle.deleteMessages(Arrays.asList(String.valueOf(messages.get(9).getMessageID()), "12345", null)).get();
+		Assert.assertTrue(deleted[0]);
+		Assert.assertFalse(deleted[1]);
+		Assert.assertFalse(deleted[2]);
+		Assert.assertEquals(5, this.queue.numMessages());
+	}
+	
+	@Test
+	public void testUnknownQueue() throws Exception {
+		try {
+			this.client.openQueue("no-such-queue", "secret");
+			Assert.fail("Opened a queue that does not exist");
+		} catch(QueueNotFoundException e) {
+			// expected
+		}
+		
+		// the connection is still good
+		Assert.assertTrue(this.client.isOpen());
+		Assert.assertNotNull(this.client.openQueue(this.queue.getName(), "secret"));
+	}
+	
+	@Test
+	public void testWaitForMessages() throws Exception {
+		BinaryQueueHandle handle = this.client.openQueue(this.queue.getName(), "secret");
+		
+		QueueFuture<List<QueueMessage>> future = handle.getMessages(3, 10, 5000);
+		
+		// a pipelined request is answered while the read waits
+		Assert.assertTrue(handle.getMessages(0, 1, 0).get(1, TimeUnit.SECONDS).isEmpty());
+		Assert.assertFalse(future.isDone());
+		
+		for(int index = 0; index < 3; index++) {
+			this.queue.addMessage("message-" + index);
+		}
+		
+		Assert.assertEquals(3, future.get(2, TimeUnit.SECONDS).size());
+		Assert.assertEquals(0, this.queue.numMessages());
+		
+		// and the wait is bounded
+		long start = System.currentTimeMillis();
+		Assert.assertTrue(handle.getMessages(1, 10, 100).get(2, TimeUnit.SECONDS).isEmpty());
+		Assert.assertTrue(System.currentTimeMillis() - start >= 90);
+	}
+	
+	@Test
+	public void testPipelining() throws Exception {
+		final BinaryQueueHandle handle = this.client.openQueue(this.queue.getName(), "secret");
+		final int threads = 4;
+		final int requests = 500;
+		
+		Thread[] producers = new Thread[threads];
+		final List<QueueFuture<boolean[]>> futures = new ArrayList<QueueFuture<boolean[]>>();
+		for(int thread = 0; thread < threads; thread++) {
+			producers[thread] = new Thread(new Runnable() {
+				
+				@Override
+				public void run() {
+					for(int index = 0; index < requests; index++) {
+						QueueFuture<boolean[]> future = handle.addMessages(Arrays.asList(new QueueMessage("message", 0, 1), new QueueMessage("message", 0, 1)));
+						synchronized(futures) {
+							futures.add(future);
+						}
+					}
+				}
+				
+			});
+			producers[thread].start();
+		}
+		
+		for(Thread producer : producers) {
+			producer.join();
+		}
+		
+		for(QueueFuture<boolean[]> future : futures) {
+			Assert.assertEquals(2, future.get(5, TimeUnit.SECONDS).length);
+		}
+		
+		Assert.assertEquals(threads * requests * 2, this.queue.numMessages());
+		Assert.assertEquals(0, this.client.getPendingCount());
+	}
+	
+	@Test
+	public void testSlowReaderHeldBack() throws Exception {
+		final int requests = 2000;
+		final String missing = new String(new char[16 * 1024]).replace('\0', 'x');
+		
+		final Socket socket = new Socket();
+		socket.setReceiveBufferSize(4096);
+		socket.connect(new InetSocketAddress("localhost", this.server.getPort()));
+		
+		final Exception[] failure = new Exception[1];
+		Thread writer = new Thread(new Runnable() {
+			
+			@Override
+			public void run() {
+				try {
+					DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+					writeOpen(out, 0, queue.getName());
+					for(int index = 0; index < requests; index++) {
+						// each request is answered with a large error
+						writeOpen(out, 1, missing);
+						writeAdd(out, 2, index + 1, "message-" + index);
+					}
+					out.flush();
+				} catch(Exception e) {
+					failure[0] = e;
+				}
+			}
+			
+		});
+		writer.start();
+		
+		try {
+			// wait for the server to stop running requests
+			int added = -1;
+			for(int round = 0; round < 100 && added != this.queue.numMessages(); round++) {
+				added = this.queue.numMessages();
+				Thread.sleep(200);
+			}
+			Assert.assertTrue("Ran " + added + " requests for a reader that reads nothing", added < requests / 2);
+			
+			DataInputStream in = new DataInputStream(socket.getInputStream());
+			for(int index = 0; index < 1 + 2 * requests; index++) {
+				in.readFully(new byte[in.readInt()]);
+			}
+			
+			writer.join(5000);
+			Assert.assertNull(failure[0]);
+			Assert.assertEquals(requests, this.queue.numMessages());
+		} finally {
+			socket.close();
+		}
+	}
+	
+	private static void writeOpen(DataOutputStream out, int requestID, String name) throws IOException {
+		byte[] bytes = name.getBytes("UTF-8");
+		out.writeInt(5 + 4 + bytes.length + 4 + 6);
+		out.writeByte(BinaryProtocol.OP_OPEN);
+		out.writeInt(requestID);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+		out.writeInt(6);
+		out.write("secret".getBytes("UTF-8"));
+	}
+	
+	private static void writeAdd(DataOutputStream out, int requestID, long messageID, String body) throws IOException {
+		byte[] bytes = body.getBytes("UTF-8");
+		out.writeInt(5 + 4 + 4 + 8 + 4 + 4 + 8 + 4 + 4 + bytes.length);
+		out.writeByte(BinaryProtocol.OP_ADD);
+		out.writeInt(requestID);
+		out.writeInt(0);
+		out.writeInt(1);
+		out.writeLong(messageID);
+		out.writeInt(0);
+		out.writeInt(1);
+		out.writeLong(System.currentTimeMillis());
+		out.writeInt(0);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+	
+	@Test
+	public void testClosedClient() throws Exception {
+		BinaryQueueHandle handle = this.client.openQueue(this.queue.getName(), "secret");
+		QueueFuture<List<QueueMessage>> waiting = handle.getMessages(1, 1, 10000);
+		
+		this.client.close();
+		Assert.assertFalse(this.client.isOpen());
+		
+		try {
+			waiting.get(1, TimeUnit.SECONDS);
+			Assert.fail("Pending request survived the client");
+		} catch(java.util.concurrent.ExecutionException e) {
+			// expected
+		}
+		
+		try {
+			handle.getMessages(0, 1, 0).get(1, TimeUnit.SECONDS);
+			Assert.fail("Request sent over a closed client");
+		} catch(java.util.concurrent.ExecutionException e) {
+			// expected
+		}
+		
+		// the read withdrawn with the connection takes no message
+		Thread.sleep(100);
+		this.queue.addMessage("message");
+		Thread.sleep(100);
+		Assert.assertEquals(1, this.queue.numMessages());
+	}
+	
+	@Test
+	public void testLimits() throws Exception {
+		BinaryQueueHandle handle = this.client.openQueue(this.queue.getName(), "secret");
+		
+		try {
+			handle.getMessages(0, BinaryProtocol.MAX_BATCH_MESSAGES + 1, 0).get();
+			Assert.fail("Read more messages than allowed");
+		} catch(java.util.concurrent.ExecutionException e) {
+			// expected
+		}
+		
+		try {
+			handle.getMessages(2, 1, 0);
+			Assert.fail("Minimum above maximum accepted");
+		} catch(IllegalArgumentException e) {
+			// expected
+		}
+	}
+	
+	@Test
+	public void testRemoteQueue() throws Exception {
+		RemoteLineUpQueue remote = new RemoteLineUpQueue("http://localhost:1/", this.queue.getName(), "secret");
+		remote.setBinaryClient(this.client);
+		
+		QueueMessage message = remote.addMessage("hello");
+		Assert.assertNotNull(message);
+		Assert.assertEquals(1, this.queue.numMessages());
+		
+		QueueMessage read = remote.getMessage();
+		Assert.assertEquals("hello", read.getBody());
+		Assert.assertNull(remote.getMessage(0));
+		
+		List<QueueMessage> batch = new ArrayList<QueueMessage>();
+		for(int index = 0; index < BinaryProtocol.MAX_BATCH_MESSAGES + 10; index++) {
+			batch.add(index == 5 ? null : new QueueMessage("message-" + index, 0, 1));
+		}
+		
+		List<QueueMessage> added = remote.addMessages(batch);
+		Assert.assertEquals(batch.size(), added.size());
+		Assert.assertNull(added.get(5));
+		Assert.assertNotNull(added.get(batch.size() - 1));
+		Assert.assertEquals(batch.size() - 1, this.queue.numMessages());
+		
+		Assert.assertTrue(remote.deleteMessage(String.valueOf(batch.get(0).getMessageID())));
+		
+		List<QueueMessage> messages = remote.getMessages(batch.size());
+		Assert.assertEquals(batch.size() - 2, messages.size());
+		Assert.assertEquals(0, this.queue.numMessages());
+		
+		this.queue.addMessage("late");
+		Assert.assertEquals(1, remote.getMessages(1, 5, 1, TimeUnit.SECONDS).size());
+	}
+	
+	@Test
+	public void testRemoteQueueAsync() throws Exception {
+		RemoteLineUpQueue remote = new RemoteLineUpQueue("http://localhost:1/", this.queue.getName(), "secret");
+		remote.setBinaryClient(this.client);
+		
+		QueueMessage message = remote.addMessageAsync("hello").get(5, TimeUnit.SECONDS);
+		Assert.assertNotNull(message);
+		Assert.assertTrue(remote.deleteMessageAsync(String.valueOf(message.getMessageID())).get(5, TimeUnit.SECONDS));
+		Assert.assertEquals(0, this.queue.numMessages());
+		
+		// the receive waits on the server
+		QueueFuture<QueueMessage> future = remote.receiveAsync(10, TimeUnit.SECONDS);
+		Thread.sleep(100);
+		Assert.assertFalse(future.isDone());
+		this.queue.addMessage("hello");
+		Assert.assertEquals("hello", future.get(5, TimeUnit.SECONDS).getBody());
+		
+		// a batch larger than a request is read in as many requests
+		for(int index = 0; index < BinaryProtocol.MAX_BATCH_MESSAGES + 10; index++) {
+			this.queue.addMessage("message-" + index);
+		}
+		
+		List<QueueMessage> messages = remote.receiveBatchAsync(1, BinaryProtocol.MAX_BATCH_MESSAGES + 20, 1, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+		Assert.assertEquals(BinaryProtocol.MAX_BATCH_MESSAGES + 10, messages.size());
+		Assert.assertEquals(0, this.queue.numMessages());
+		
+		// a message read after the receive was cancelled is posted back
+		future = remote.receiveAsync(10, TimeUnit.SECONDS);
+		Thread.sleep(100);
+		Assert.assertTrue(future.cancel(false));
+		this.queue.addMessage("abandoned");
+		
+		long deadline = System.currentTimeMillis() + 5000;
+		while(this.queue.numMessages() == 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		
+		Assert.assertEquals("abandoned", this.queue.getMessage(1).getBody());
+	}
+
+}
@@ -0,0 +1,185 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.sangupta.jerry.ds.ChangingPriorityQueue;
+import com.sangupta.lineup.domain.QueueMessage;
+
+/**
+ * Unit tests for the lazily allocated priority levels of
+ * {@link ChangingPriorityQueue}.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestChangingPriorityQueue {
+	
+	@Test
+	public void testLevelsCreatedOnUseAndReleased() {
+		ChangingPriorityQueue<QueueMessage> queue = new ChangingPriorityQueue<QueueMessage>(1000, 0, 0);
+		Assert.assertEquals(0, queue.getLevelCount());
+		
+		queue.add(new QueueMessage("one", 0, 5));
+		queue.add(new QueueMessage("two", 0, 500));
+		queue.add(new QueueMessage("three", 0, 5));
+		Assert.assertEquals(2, queue.getLevelCount());
+		Assert.assertEquals(500, queue.getHighestPriority());
+		
+		Assert.assertEquals("two", queue.poll().getBody());
+		Assert.assertEquals("one", queue.poll().getBody());
+		Assert.assertEquals("three", queue.poll().getBody());
+		Assert.assertNull(queue.poll());
+		
+		Assert.assertEquals(0, queue.getLevelCount());
+		Assert.assertTrue(queue.isEmpty());
+	}
+	
+	@Test
+	public void testEmptyLevelKeptForReuse() {
+		ChangingPriorityQueue<QueueMessage> queue = new ChangingPriorityQueue<QueueMessage>(1000);
+		
+		for(int index = 0; index < 100; index++) {
+			queue.add(new QueueMessage("message-" + index, 0, 5));
+			Assert.assertEquals(1, queue.getLevelCount());
+			
+			Assert.assertEquals("message-" + index, queue.poll().getBody());
+			Assert.assertNull(queue.poll());
+			Assert.assertNull(queue.poll());
+			Assert.assertEquals(1, queue.getLevelCount());
+		}
+	}
+	
+	@Test
+	public void testEmptyLevelReleasedOnceIdle() throws InterruptedException {
+		ChangingPriorityQueue<QueueMessage> queue = new ChangingPriorityQueue<QueueMessage>(1000, 0, 50);
+		
+		queue.add(new QueueMessage("one", 0, 5));
+		Assert.assertEquals("one", queue.poll().getBody());
+		Assert.assertNull(queue.poll());
+		Assert.assertEquals(1, queue.getLevelCount());
+		
+		Thread.sleep(100);
+		Assert.assertNull(queue.poll());
+		Assert.assertEquals(0, queue.getLevelCount());
+		Assert.assertTrue(queue.isEmpty());
+		
+		try {
+			new ChangingPriorityQueue<QueueMessage>(1000, 0, -1);
+			Assert.fail("Negative release interval accepted");
+		} catch(IllegalArgumentException e) {
+			// expected
+		}
+	}
+	
+	@Test
+	public void testSparsePriorities() {
+		ChangingPriorityQueue<QueueMessage> queue = new ChangingPriorityQueue<QueueMessage>(1000 * 1000);
+		
+		queue.add(new QueueMessage("low", 0, 1));
+		queue.add(new QueueMessage("high", 0, 1000 * 1000));
+		queue.add(new QueueMessage("capped", 0, 5000 * 1000));
+		Assert.assertEquals(2, queue.getLevelCount());
+		
+		Assert.assertEquals("high", queue.poll().getBody());
+		Assert.assertEquals("capped", queue.poll().getBody());
+		Assert.assertEquals("low", queue.poll().getBody());
+		Assert.assertNull(queue.poll());
+	}
+	
+	@Test
+	public void testMergeMovesAcrossLevels() {
+		ChangingPriorityQueue<QueueMessage> queue = new ChangingPriorityQueue<QueueMessage>(1000, 0, 0);
+		
+		queue.add(new QueueMessage("first", 0, 10));
+		queue.add(new QueueMessage("second", 0, 1));
+		queue.add(new QueueMessage("second", 0, 100));
+		
+		QueueMessage message = queue.poll();
+		Assert.assertEquals("second", message.getBody());
+		Assert.assertEquals(101, message.getPriority());
+		Assert.assertEquals("first", queue.poll().getBody());
+		Assert.assertNull(queue.poll());
+		Assert.assertEquals(0, queue.getLevelCount());
+	}
+	
+	@Test
+	public void testConcurrentAddAndPoll() throws InterruptedException {
+		final ChangingPriorityQueue<QueueMessage> queue = new ChangingPriorityQueue<QueueMessage>(4, 0, 0);
+		final int perThread = 5000;
+		final int producers = 4;
+		final Set<String> polled = new HashSet<String>();
+		
+		Thread[] threads = new Thread[producers * 2];
+		for(int index = 0; index < producers; index++) {
+			final int producer = index;
+			threads[index] = new Thread(new Runnable() {
+				
+				@Override
+				public void run() {
+					for(int count = 0; count < perThread; count++) {
+						queue.add(new QueueMessage("message-" + producer + "-" + count, 0, count % 5));
+					}
+				}
+				
+			});
+			
+			threads[producers + index] = new Thread(new Runnable() {
+				
+				@Override
+				public void run() {
+					for(int count = 0; count < perThread; count++) {
+						QueueMessage message = queue.poll();
+						if(message != null) {
+							synchronized(polled) {
+								Assert.assertTrue(polled.add(message.getBody()));
+							}
+						}
+					}
+				}
+				
+			});
+		}
+		
+		for(Thread thread : threads) {
+			thread.start();
+		}
+		for(Thread thread : threads) {
+			thread.join();
+		}
+		
+		QueueMessage message;
+		while((message = queue.poll()) != null) {
+			Assert.assertTrue(polled.add(message.getBody()));
+		}
+		
+		Assert.assertEquals(producers * perThread, polled.size());
+		Assert.assertEquals(0, queue.getLevelCount());
+	}
+
+}
@@ -0,0 +1,109 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup;
+
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.sangupta.jerry.ds.ConcurrentLevelPriorityQueue;
+import com.sangupta.lineup.domain.QueueMessage;
+
+/**
+ * Unit tests for {@link ConcurrentLevelPriorityQueue}.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestConcurrentLevelPriorityQueue {
+	
+	@Test
+	public void testOrdering() {
+		ConcurrentLevelPriorityQueue<QueueMessage> queue = new ConcurrentLevelPriorityQueue<QueueMessage>();
+		Assert.assertTrue(queue.isEmpty());
+		Assert.assertNull(queue.poll());
+		
+		queue.offer(new QueueMessage("a", 0, 1));
+		queue.offer(new QueueMessage("b", 0, 1000000));
+		queue.offer(new QueueMessage("c", 0, 1));
+		queue.offer(new QueueMessage("d", 0, 5));
+		queue.offer(new QueueMessage("e", 0, 1));
+		
+		Assert.assertEquals(5, queue.size());
+		Assert.assertEquals("b", queue.peek().getBody());
+		
+		// highest priority first, FIFO within the same priority
+		Assert.assertEquals("b", queue.poll().getBody());
+		Assert.assertEquals("d", queue.poll().getBody());
+		Assert.assertEquals("a", queue.poll().getBody());
+		Assert.assertEquals("c", queue.poll().getBody());
+		Assert.assertEquals("e", queue.poll().getBody());
+		Assert.assertNull(queue.poll());
+	}
+	
+	@Test
+	public void testRemove() {
+		ConcurrentLevelPriorityQueue<QueueMessage> queue = new ConcurrentLevelPriorityQueue<QueueMessage>();
+		QueueMessage first = new QueueMessage("a", 0, 1);
+		QueueMessage second = new QueueMessage("b", 0, 2);
+		queue.offer(first);
+		queue.offer(second);
+		
+		Assert.assertTrue(queue.contains(second.getMessageID()));
+		Assert.assertTrue(queue.remove(second.getMessageID()));
+		Assert.assertFalse(queue.remove(second.getMessageID()));
+		Assert.assertEquals(1, queue.size());
+		Assert.assertEquals("a", queue.poll().getBody());
+	}
+	
+	@Test
+	public void testBlockingPoll() throws InterruptedException {
+		final ConcurrentLevelPriorityQueue<QueueMessage> queue = new ConcurrentLevelPriorityQueue<QueueMessage>();
+		
+		Thread producer = new Thread(new Runnable() {
+			
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(100);
+				} catch (InterruptedException e) {
+					// eat up
+				}
+				
+				queue.offer(new QueueMessage("late", 0, 1));
+			}
+			
+		});
+		producer.start();
+		
+		long start = System.currentTimeMillis();
+		QueueMessage message = queue.poll(5, TimeUnit.SECONDS);
+		Assert.assertNotNull(message);
+		Assert.assertEquals("late", message.getBody());
+		Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+		
+		Assert.assertNull(queue.poll(50, TimeUnit.MILLISECONDS));
+	}
+
+}
@@ -0,0 +1,141 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.sangupta.jerry.ds.BusySpinWaitStrategy;
+import com.sangupta.jerry.ds.ConcurrentRingBuffer;
+import com.sangupta.jerry.ds.ParkingWaitStrategy;
+import com.sangupta.jerry.ds.WaitStrategy;
+import com.sangupta.jerry.ds.YieldingWaitStrategy;
+
+/**
+ * Unit tests for {@link ConcurrentRingBuffer}.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestConcurrentRingBuffer {
+	
+	@Test
+	public void testBounded() {
+		ConcurrentRingBuffer<Integer> buffer = new ConcurrentRingBuffer<Integer>(5);
+		Assert.assertEquals(8, buffer.getCapacity());
+		
+		// fill it up over a few laps
+		for(int lap = 0; lap < 3; lap++) {
+			for(int index = 0; index < 8; index++) {
+				Assert.assertTrue(buffer.offer(index));
+			}
+			
+			Assert.assertFalse(buffer.offer(8));
+			Assert.assertEquals(8, buffer.size());
+			Assert.assertEquals(0, buffer.remainingCapacity());
+			Assert.assertEquals(Integer.valueOf(0), buffer.peek());
+			
+			for(int index = 0; index < 8; index++) {
+				Assert.assertEquals(Integer.valueOf(index), buffer.poll());
+			}
+			
+			Assert.assertNull(buffer.poll());
+			Assert.assertTrue(buffer.isEmpty());
+		}
+	}
+	
+	@Test
+	public void testTimeouts() throws InterruptedException {
+		ConcurrentRingBuffer<Integer> buffer = new ConcurrentRingBuffer<Integer>(1);
+		Assert.assertEquals(2, buffer.getCapacity());
+		Assert.assertNull(buffer.poll(50, TimeUnit.MILLISECONDS));
+		
+		Assert.assertTrue(buffer.offer(1, 50, TimeUnit.MILLISECONDS));
+		Assert.assertTrue(buffer.offer(2, 50, TimeUnit.MILLISECONDS));
+		Assert.assertFalse(buffer.offer(3, 50, TimeUnit.MILLISECONDS));
+	}
+	
+	@Test
+	public void testProducersAndConsumers() throws InterruptedException {
+		runProducersAndConsumers(new ParkingWaitStrategy(), new ParkingWaitStrategy());
+		runProducersAndConsumers(new ParkingWaitStrategy(10), new ParkingWaitStrategy(10));
+		runProducersAndConsumers(new YieldingWaitStrategy(10), new YieldingWaitStrategy(10));
+		runProducersAndConsumers(new BusySpinWaitStrategy(), new BusySpinWaitStrategy());
+	}
+	
+	private void runProducersAndConsumers(WaitStrategy notEmpty, WaitStrategy notFull) throws InterruptedException {
+		final ConcurrentRingBuffer<Long> buffer = new ConcurrentRingBuffer<Long>(16, notEmpty, notFull);
+		final int threads = 2;
+		final int perThread = 5000;
+		final AtomicLong sum = new AtomicLong();
+		
+		Thread[] workers = new Thread[2 * threads];
+		for(int thread = 0; thread < threads; thread++) {
+			workers[thread] = new Thread() {
+				
+				@Override
+				public void run() {
+					try {
+						for(long index = 1; index <= perThread; index++) {
+							buffer.put(index);
+						}
+					} catch(InterruptedException e) {
+						// exit
+					}
+				}
+				
+			};
+			
+			workers[threads + thread] = new Thread() {
+				
+				@Override
+				public void run() {
+					try {
+						for(int index = 0; index < perThread; index++) {
+							sum.addAndGet(buffer.take());
+						}
+					} catch(InterruptedException e) {
+						// exit
+					}
+				}
+				
+			};
+		}
+		
+		for(Thread worker : workers) {
+			worker.start();
+		}
+		
+		for(Thread worker : workers) {
+			worker.join(30000);
+		}
+		
+		long expected = threads * ((long) perThread * (perThread + 1) / 2);
+		Assert.assertEquals(expected, sum.get());
+		Assert.assertTrue(buffer.isEmpty());
+	}
+
+}
@@ -0,0 +1,300 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.sangupta.jerry.ds.HandOffExchanger;
+import com.sangupta.jerry.ds.HandOffExchanger.Waiter;
+import com.sangupta.lineup.async.QueueFuture;
+import com.sangupta.lineup.domain.QueueMessage;
+import com.sangupta.lineup.domain.QueueOptions;
+import com.sangupta.lineup.domain.QueueType;
+import com.sangupta.lineup.queues.DuplicateAcceptingLineUpQueue;
+import com.sangupta.lineup.queues.LineUpQueue;
+import com.sangupta.lineup.queues.MergingPriorityLineUpQueue;
+import com.sangupta.lineup.queues.PriorityLineUpQueue;
+import com.sangupta.lineup.queues.RingBufferLineUpQueue;
+
+/**
+ * Unit tests for the direct hand-off of messages to waiting consumers.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestDirectHandOff {
+	
+	@Test
+	public void testHandOffToWaitingConsumer() throws InterruptedException {
+		testHandOff(new DuplicateAcceptingLineUpQueue("handoff-dups", null, getOptions(QueueType.AllowDuplicates)));
+		testHandOff(new PriorityLineUpQueue("handoff-priority", null, getOptions(QueueType.PriorityQueueWithDuplicates)));
+		testHandOff(new MergingPriorityLineUpQueue("handoff-merging", null, getOptions(QueueType.PriorityQueueMergingDuplicates)));
+	}
+	
+	@Test
+	public void testQueuedWhenNoConsumerWaits() throws InterruptedException {
+		LineUpQueue queue = new DuplicateAcceptingLineUpQueue("handoff-queued", null, getOptions(QueueType.AllowDuplicates));
+		
+		queue.addMessage("one");
+		queue.addMessage("two");
+		Assert.assertEquals(2, queue.numMessages());
+		
+		Assert.assertEquals("one", queue.getMessage(1).getBody());
+		Assert.assertEquals("two", queue.getMessage(1).getBody());
+		Assert.assertEquals(0, queue.numMessages());
+		
+		long start = System.currentTimeMillis();
+		Assert.assertNull(queue.getMessage(1));
+		Assert.assertTrue(System.currentTimeMillis() - start >= 900);
+	}
+	
+	@Test
+	public void testConcurrentProducersAndConsumers() throws InterruptedException {
+		final LineUpQueue queue = new PriorityLineUpQueue("handoff-concurrent", null, getOptions(QueueType.PriorityQueueWithDuplicates));
+		final int threads = 4;
+		final int perThread = 2000;
+		final Set<String> received = new HashSet<String>();
+		final CountDownLatch done = new CountDownLatch(threads * 2);
+		
+		for(int index = 0; index < threads; index++) {
+			final int producer = index;
+			new Thread(new Runnable() {
+				
+				@Override
+				public void run() {
+					for(int count = 0; count < perThread; count++) {
+						queue.addMessage("message-" + producer + "-" + count, 0, count % 3);
+					}
+					
+					done.countDown();
+				}
+				
+			}).start();
+			
+			new Thread(new Runnable() {
+				
+				@Override
+				public void run() {
+					try {
+						QueueMessage message;
+						while((message = queue.getMessage(1)) != null) {
+							synchronized(received) {
+								Assert.assertTrue(received.add(message.getBody()));
+							}
+						}
+					} catch(InterruptedException e) {
+						// exit
+					}
+					
+					done.countDown();
+				}
+				
+			}).start();
+		}
+		
+		done.await();
+		Assert.assertEquals(threads * perThread, received.size());
+		Assert.assertEquals(0, queue.numMessages());
+	}
+	
+	@Test
+	public void testRingBufferPutHandsOff() throws Exception {
+		QueueOptions options = getOptions(QueueType.RingBuffer);
+		options.setRingBufferCapacity(4);
+		final RingBufferLineUpQueue queue = new RingBufferLineUpQueue("handoff-ring", null, options);
+		
+		final QueueMessage[] received = new QueueMessage[1];
+		Thread consumer = new Thread(new Runnable() {
+			
+			@Override
+			public void run() {
+				try {
+					received[0] = queue.getMessage(10);
+				} catch(InterruptedException e) {
+					// exit
+				}
+			}
+			
+		});
+		consumer.start();
+		
+		while(consumer.getState() != Thread.State.TIMED_WAITING) {
+			Thread.sleep(1);
+		}
+		
+		QueueMessage message = new QueueMessage("put", 0, 1);
+		queue.put(message);
+		consumer.join();
+		Assert.assertSame(message, received[0]);
+		Assert.assertEquals(0, queue.numMessages());
+		
+		// a pending receive is completed by a timed offer as well
+		QueueFuture<QueueMessage> future = queue.receiveAsync(10, TimeUnit.SECONDS);
+		Assert.assertFalse(future.isDone());
+		
+		message = new QueueMessage("offer", 0, 1);
+		Assert.assertTrue(queue.offer(message, 1, TimeUnit.SECONDS));
+		Assert.assertTrue(future.isDone());
+		Assert.assertSame(message, future.get());
+		Assert.assertEquals(0, queue.numMessages());
+		Assert.assertNull(queue.getMessage());
+	}
+	
+	@Test
+	public void testClaimedWaiterIsNotCancelled() throws InterruptedException {
+		final HandOffExchanger<String> exchanger = new HandOffExchanger<String>();
+		final Waiter<String> waiter = exchanger.register();
+		Assert.assertSame(waiter, exchanger.claim());
+		Assert.assertNull(exchanger.claim());
+		
+		// a cancel waits till the claim is decided
+		final AtomicBoolean cancelled = new AtomicBoolean(true);
+		Thread canceller = new Thread(new Runnable() {
+			
+			@Override
+			public void run() {
+				cancelled.set(exchanger.cancel(waiter));
+			}
+			
+		});
+		canceller.start();
+		
+		Thread.sleep(50);
+		Assert.assertTrue(canceller.isAlive());
+		
+		exchanger.fulfil(waiter, "claimed");
+		canceller.join();
+		Assert.assertFalse(cancelled.get());
+		Assert.assertEquals("claimed", exchanger.getElement(waiter));
+		
+		// a released waiter waits again, and can be cancelled
+		final Waiter<String> other = exchanger.register();
+		Assert.assertSame(other, exchanger.claim());
+		exchanger.release(other);
+		Assert.assertTrue(exchanger.hasWaiters());
+		Assert.assertTrue(exchanger.cancel(other));
+		Assert.assertFalse(exchanger.transfer("none"));
+	}
+	
+	@Test
+	public void testConcurrentReceivesDoNotDuplicate() throws InterruptedException {
+		final LineUpQueue queue = new DuplicateAcceptingLineUpQueue("handoff-receives", null, getOptions(QueueType.AllowDuplicates));
+		final int threads = 4;
+		final int perThread = 2000;
+		final Set<String> received = new HashSet<String>();
+		final CountDownLatch done = new CountDownLatch(threads * 2);
+		
+		for(int index = 0; index < threads; index++) {
+			final int producer = index;
+			new Thread(new Runnable() {
+				
+				@Override
+				public void run() {
+					for(int count = 0; count < perThread; count++) {
+						queue.addMessage("message-" + producer + "-" + count);
+					}
+					
+					done.countDown();
+				}
+				
+			}).start();
+			
+			// consumers alternate between waiting and asynchronous receives
+			new Thread(new Runnable() {
+				
+				@Override
+				public void run() {
+					try {
+						int count = 0;
+						QueueMessage message;
+						do {
+							if(count++ % 2 == 0) {
+								message = queue.getMessage(1);
+							} else {
+								message = queue.receiveAsync(1, TimeUnit.SECONDS).get();
+							}
+							
+							if(message != null) {
+								synchronized(received) {
+									Assert.assertTrue(received.add(message.getBody()));
+								}
+							}
+						} while(message != null);
+					} catch(Exception e) {
+						// exit
+					}
+					
+					done.countDown();
+				}
+				
+			}).start();
+		}
+		
+		done.await();
+		Assert.assertEquals(threads * perThread, received.size());
+		Assert.assertEquals(0, queue.numMessages());
+	}
+	
+	private void testHandOff(final LineUpQueue queue) throws InterruptedException {
+		final QueueMessage[] received = new QueueMessage[1];
+		Thread consumer = new Thread(new Runnable() {
+			
+			@Override
+			public void run() {
+				try {
+					received[0] = queue.getMessage(10);
+				} catch(InterruptedException e) {
+					// exit
+				}
+			}
+			
+		});
+		consumer.start();
+		
+		// let the consumer start waiting
+		while(consumer.getState() != Thread.State.TIMED_WAITING) {
+			Thread.sleep(1);
+		}
+		
+		QueueMessage message = queue.addMessage("hello");
+		consumer.join();
+		
+		Assert.assertSame(message, received[0]);
+		Assert.assertEquals(0, queue.numMessages());
+		Assert.assertNull(queue.getMessage());
+	}
+	
+	private static QueueOptions getOptions(QueueType type) {
+		QueueOptions options = QueueOptions.getOptions(type);
+		options.setDirectHandOff(true);
+		return options;
+	}
+
+}
@@ -0,0 +1,136 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+package com.sangupta.lineup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.sangupta.lineup.async.HashedWheelTimer;
+
+/**
+ * Unit tests for {@link HashedWheelTimer}.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestHashedWheelTimer {
+	
+	@Test
+	public void testNeverFiresEarly() throws Exception {
+		HashedWheelTimer timer = new HashedWheelTimer("test-timer", 5, TimeUnit.MILLISECONDS, 8);
+		
+		final int count = 20;
+		final long[] fired = new long[count];
+		final CountDownLatch done = new CountDownLatch(count);
+		
+		final long start = System.nanoTime();
+		for(int index = 0; index < count; index++) {
+			final int slot = index;
+			
+			// spans several turns of the wheel
+			timer.schedule(new Runnable() {
+				
+				@Override
+				public void run() {
+					fired[slot] = System.nanoTime() - start;
+					done.countDown();
+				}
+				
+			}, index * 7, TimeUnit.MILLISECONDS);
+		}
+		
+		Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+		for(int index = 0; index < count; index++) {
+			Assert.assertTrue("timeout " + index + " fired early", fired[index] >= TimeUnit.MILLISECONDS.toNanos(index * 7));
+		}
+		
+		Assert.assertEquals(0, timer.getPendingCount());
+	}
+	
+	@Test
+	public void testCancel() throws Exception {
+		HashedWheelTimer timer = new HashedWheelTimer("test-timer", 5, TimeUnit.MILLISECONDS, 8);
+		
+		final AtomicInteger fired = new AtomicInteger();
+		Runnable task = new Runnable() {
+			
+			@Override
+			public void run() {
+				fired.incrementAndGet();
+			}
+			
+		};
+		
+		HashedWheelTimer.Timeout[] timeouts = new HashedWheelTimer.Timeout[1000];
+		for(int index = 0; index < timeouts.length; index++) {
+			timeouts[index] = timer.schedule(task, 50, TimeUnit.MILLISECONDS);
+		}
+		
+		// cancel all but the last
+		for(int index = 0; index < timeouts.length - 1; index++) {
+			Assert.assertTrue(timeouts[index].cancel());
+			Assert.assertTrue(timeouts[index].isCancelled());
+			Assert.assertFalse(timeouts[index].cancel());
+		}
+		
+		Assert.assertEquals(1, timer.getPendingCount());
+		
+		long deadline = System.currentTimeMillis() + 5000;
+		while(!timeouts[timeouts.length - 1].isExpired() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		
+		Assert.assertTrue(timeouts[timeouts.length - 1].isExpired());
+		Assert.assertFalse(timeouts[timeouts.length - 1].cancel());
+		Assert.assertEquals(1, fired.get());
+		Assert.assertEquals(0, timer.getPendingCount());
+	}
+	
+	@Test
+	public void testResumesAfterIdle() throws Exception {
+		HashedWheelTimer timer = new HashedWheelTimer("test-timer", 5, TimeUnit.MILLISECONDS, 8);
+		
+		for(int round = 0; round < 3; round++) {
+			final CountDownLatch done = new CountDownLatch(1);
+			timer.schedule(new Runnable() {
+				
+				@Override
+				public void run() {
+					done.countDown();
+				}
+				
+			}, 10, TimeUnit.MILLISECONDS);
+			
+			Assert.assertTrue(done.await(1, TimeUnit.SECONDS));
+			
+			// let the timer go idle
+			Thread.sleep(100);
+		}
+	}
+
+}
@@ -0,0 +1,308 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup;
+
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.sangupta.jerry.ds.AbstractLazyLinkedQueue;
+import com.sangupta.jerry.ds.MpscLinkedQueue;
+import com.sangupta.jerry.ds.RemovableBlockingQueue;
+import com.sangupta.jerry.ds.SpmcLinkedQueue;
+import com.sangupta.jerry.ds.SpscLinkedQueue;
+import com.sangupta.lineup.domain.QueueCardinality;
+import com.sangupta.lineup.domain.QueueMessage;
+import com.sangupta.lineup.domain.QueueOptions;
+import com.sangupta.lineup.domain.QueueType;
+import com.sangupta.lineup.queues.LineUpQueue;
+import com.sangupta.lineup.service.QueueGenerationFactory;
+
+/**
+ * Unit tests for {@link SpscLinkedQueue}, {@link MpscLinkedQueue} and
+ * {@link SpmcLinkedQueue}.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestLazyLinkedQueues {
+	
+	private static final int PER_THREAD = 20000;
+	
+	@Test
+	public void testSingleThreaded() throws InterruptedException {
+		testSingleThreaded(new SpscLinkedQueue<Integer>());
+		testSingleThreaded(new MpscLinkedQueue<Integer>());
+		testSingleThreaded(new SpmcLinkedQueue<Integer>());
+	}
+	
+	@Test
+	public void testSpsc() throws InterruptedException {
+		final SpscLinkedQueue<Integer> queue = new SpscLinkedQueue<Integer>();
+		Thread producer = new Thread() {
+			
+			@Override
+			public void run() {
+				for(int index = 0; index < PER_THREAD; index++) {
+					queue.offer(index);
+				}
+			}
+			
+		};
+		producer.start();
+		
+		// order must be preserved
+		for(int index = 0; index < PER_THREAD; index++) {
+			Assert.assertEquals(Integer.valueOf(index), queue.poll(5, TimeUnit.SECONDS));
+		}
+		
+		producer.join();
+		Assert.assertTrue(queue.isEmpty());
+	}
+	
+	@Test
+	public void testMpsc() throws InterruptedException {
+		final MpscLinkedQueue<Long> queue = new MpscLinkedQueue<Long>();
+		Thread[] producers = startProducers(queue, 4);
+		
+		long sum = 0;
+		for(int index = 0; index < 4 * PER_THREAD; index++) {
+			sum += queue.take();
+		}
+		
+		for(Thread producer : producers) {
+			producer.join();
+		}
+		
+		Assert.assertEquals(4 * expectedSum(), sum);
+		Assert.assertTrue(queue.isEmpty());
+	}
+	
+	@Test
+	public void testSpmc() throws InterruptedException {
+		final SpmcLinkedQueue<Long> queue = new SpmcLinkedQueue<Long>();
+		final AtomicLong sum = new AtomicLong();
+		
+		Thread[] consumers = new Thread[4];
+		for(int thread = 0; thread < consumers.length; thread++) {
+			consumers[thread] = new Thread() {
+				
+				@Override
+				public void run() {
+					try {
+						for(int index = 0; index < PER_THREAD; index++) {
+							sum.addAndGet(queue.take());
+						}
+					} catch(InterruptedException e) {
+						// exit
+					}
+				}
+				
+			};
+			consumers[thread].start();
+		}
+		
+		for(int thread = 0; thread < consumers.length; thread++) {
+			for(long index = 1; index <= PER_THREAD; index++) {
+				queue.offer(index);
+			}
+		}
+		
+		for(Thread consumer : consumers) {
+			consumer.join(30000);
+		}
+		
+		Assert.assertEquals(4 * expectedSum(), sum.get());
+		Assert.assertTrue(queue.isEmpty());
+	}
+	
+	private void testSingleThreaded(RemovableBlockingQueue<Integer> queue) throws InterruptedException {
+		Assert.assertTrue(queue.isEmpty());
+		Assert.assertNull(queue.peek());
+		Assert.assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+		
+		for(int index = 0; index < 100; index++) {
+			queue.offer(index);
+		}
+		
+		Assert.assertEquals(100, queue.size());
+		Assert.assertEquals(Integer.valueOf(0), queue.peek());
+		Assert.assertTrue(queue.contains(50));
+		
+		for(int index = 0; index < 100; index++) {
+			Assert.assertEquals(Integer.valueOf(index), queue.take());
+		}
+		
+		Assert.assertTrue(queue.isEmpty());
+		Assert.assertEquals(0, queue.size());
+		
+		// removal from the head, middle and tail
+		for(int index = 0; index < 5; index++) {
+			queue.offer(index);
+		}
+		
+		Assert.assertTrue(queue.remove(0));
+		Assert.assertTrue(queue.remove(2));
+		Assert.assertTrue(queue.remove(4));
+		Assert.assertFalse(queue.remove(2));
+		Assert.assertFalse(queue.remove(9));
+		Assert.assertEquals(2, queue.size());
+		Assert.assertEquals(Integer.valueOf(1), queue.peek());
+		
+		Iterator<Integer> iterator = queue.iterator();
+		Assert.assertEquals(Integer.valueOf(1), iterator.next());
+		iterator.remove();
+		Assert.assertEquals(Integer.valueOf(3), queue.peek());
+		
+		Assert.assertEquals(Integer.valueOf(3), queue.removeElement(3));
+		Assert.assertTrue(queue.isEmpty());
+		Assert.assertNull(queue.peek());
+		Assert.assertNull(queue.poll());
+		
+		// removed nodes are passed over
+		queue.offer(5);
+		queue.offer(6);
+		queue.remove(5);
+		Assert.assertEquals(Integer.valueOf(6), queue.poll());
+		Assert.assertTrue(queue.isEmpty());
+	}
+	
+	@Test
+	public void testConcurrentRemove() throws InterruptedException {
+		testConcurrentRemove(new SpscLinkedQueue<Long>());
+		testConcurrentRemove(new MpscLinkedQueue<Long>());
+		testConcurrentRemove(new SpmcLinkedQueue<Long>());
+	}
+	
+	@Test
+	public void testDeleteFromSpecializedLineUpQueues() {
+		for(QueueType type : new QueueType[] { QueueType.AllowDuplicates, QueueType.RejectDuplicates }) {
+			for(QueueCardinality cardinality : new QueueCardinality[] { QueueCardinality.SPSC, QueueCardinality.MPSC, QueueCardinality.SPMC }) {
+				QueueOptions options = QueueOptions.getOptions(type);
+				options.setCardinality(cardinality);
+				LineUpQueue queue = QueueGenerationFactory.getLineUpQueue("lazy-delete-" + type + "-" + cardinality, null, options);
+				
+				QueueMessage first = queue.addMessage("first");
+				QueueMessage second = queue.addMessage("second");
+				Assert.assertTrue(queue.deleteMessage(String.valueOf(second.getMessageID())));
+				Assert.assertFalse(queue.deleteMessage(String.valueOf(second.getMessageID())));
+				Assert.assertEquals(1, queue.numMessages());
+				Assert.assertEquals(first, queue.getMessage());
+				Assert.assertNull(queue.getMessage());
+				
+				// a deleted message can be added again when duplicates are rejected
+				Assert.assertNotNull(queue.addMessage("second"));
+			}
+		}
+	}
+	
+	/**
+	 * A producer adds elements and a consumer then polls them, while another
+	 * thread removes the even ones it finds: each element must be taken
+	 * exactly once.
+	 */
+	private void testConcurrentRemove(final AbstractLazyLinkedQueue<Long> queue) throws InterruptedException {
+		final AtomicLong removedSum = new AtomicLong();
+		final AtomicLong polledSum = new AtomicLong();
+		
+		Thread producer = new Thread() {
+			
+			@Override
+			public void run() {
+				for(long index = 1; index <= PER_THREAD; index++) {
+					queue.offer(index);
+				}
+				
+				// marks the end for the consumer
+				queue.offer(-1L);
+			}
+			
+		};
+		
+		final AtomicBoolean done = new AtomicBoolean();
+		final CountDownLatch removing = new CountDownLatch(1);
+		Thread remover = new Thread() {
+			
+			@Override
+			public void run() {
+				while(!done.get()) {
+					for(Long element : queue) {
+						if(element > 0 && element % 2 == 0 && queue.remove(element)) {
+							removedSum.addAndGet(element);
+							removing.countDown();
+						}
+					}
+				}
+			}
+			
+		};
+		
+		producer.start();
+		remover.start();
+		
+		// race the remover once it has started removing
+		producer.join();
+		Assert.assertTrue(removing.await(5, TimeUnit.SECONDS));
+		
+		long element;
+		while((element = queue.take()) != -1L) {
+			polledSum.addAndGet(element);
+		}
+		
+		done.set(true);
+		remover.join();
+		
+		Assert.assertEquals(expectedSum(), polledSum.get() + removedSum.get());
+		Assert.assertTrue(queue.isEmpty());
+	}
+	
+	private Thread[] startProducers(final BlockingQueue<Long> queue, int count) {
+		Thread[] producers = new Thread[count];
+		for(int thread = 0; thread < count; thread++) {
+			producers[thread] = new Thread() {
+				
+				@Override
+				public void run() {
+					for(long index = 1; index <= PER_THREAD; index++) {
+						queue.offer(index);
+					}
+				}
+				
+			};
+			producers[thread].start();
+		}
+		
+		return producers;
+	}
+	
+	private long expectedSum() {
+		return (long) PER_THREAD * (PER_THREAD + 1) / 2;
+	}
+
+}
@@ -0,0 +1,454 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sangupta.lineup.codec.MessageCodecs;
+import com.sangupta.lineup.domain.QueueMessage;
+import com.sangupta.lineup.http.HttpResponse;
+import com.sangupta.lineup.http.LineUpHttpClient;
+import com.sangupta.lineup.http.PoolMetrics;
+import com.sangupta.lineup.queues.RemoteLineUpQueue;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Unit tests for the pooled HTTP client used by remote queues, against a
+ * simple HTTP server on a local port.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestLineUpHttpClient {
+	
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	private HttpServer server;
+	
+	private String baseURL;
+	
+	private LineUpHttpClient client;
+	
+	private final AtomicInteger closeRequests = new AtomicInteger();
+	
+	@Before
+	public void setUp() throws Exception {
+		this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 50);
+		this.server.createContext("/echo", new HttpHandler() {
+			
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				if("close".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Connection"))) {
+					closeRequests.incrementAndGet();
+				}
+				
+				byte[] body = read(exchange.getRequestBody());
+				if(body.length == 0) {
+					body = exchange.getRequestURI().getQuery().getBytes(UTF_8);
+				}
+				
+				respond(exchange, 200, body, false);
+			}
+			
+		});
+		this.server.createContext("/chunked", new HttpHandler() {
+			
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				StringBuilder builder = new StringBuilder();
+				for(int index = 0; index < 10000; index++) {
+					builder.append(index).append(',');
+				}
+				
+				respond(exchange, 200, builder.toString().getBytes(UTF_8), true);
+			}
+			
+		});
+		this.server.createContext("/slow", new HttpHandler() {
+			
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				try {
+					Thread.sleep(300);
+				} catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				
+				respond(exchange, 200, "slow".getBytes(UTF_8), false);
+			}
+			
+		});
+		this.server.createContext("/missing", new HttpHandler() {
+			
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				respond(exchange, 404, "not found".getBytes(UTF_8), false);
+			}
+			
+		});
+		this.server.createContext("/messages", new HttpHandler() {
+			
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				List<QueueMessage> messages = new ArrayList<QueueMessage>();
+				for(int index = 0; index < 5; index++) {
+					messages.add(new QueueMessage("message-" + index, 0, 1));
+				}
+				
+				ByteArrayOutputStream body = new ByteArrayOutputStream();
+				MessageCodecs.BINARY.writeMessages(messages, body);
+				exchange.getResponseHeaders().set("Content-Type", MessageCodecs.BINARY.getMediaType());
+				respond(exchange, 200, body.toByteArray(), true);
+			}
+			
+		});
+		this.server.start();
+		
+		this.baseURL = "http://localhost:" + this.server.getAddress().getPort();
+		this.client = new LineUpHttpClient(4, 30000, 200);
+	}
+	
+	@After
+	public void tearDown() {
+		this.client.close();
+		this.server.stop(0);
+	}
+	
+	@Test
+	public void testKeepAlive() throws Exception {
+		for(int index = 0; index < 20; index++) {
+			Assert.assertEquals("value=" + index, this.get("/echo?value=" + index));
+		}
+		
+		HttpResponse response = this.client.execute("POST", this.baseURL + "/echo", "text/plain", "posted".getBytes(UTF_8), null, 0);
+		Assert.assertEquals("posted", new String(read(response.getBody()), UTF_8));
+		response.close();
+		
+		PoolMetrics metrics = this.getMetrics();
+		Assert.assertEquals(1, metrics.getCreated());
+		Assert.assertEquals(20, metrics.getReused());
+		Assert.assertEquals(0, metrics.getActive());
+		Assert.assertEquals(1, metrics.getIdle());
+	}
+	
+	@Test
+	public void testChunkedAndUnread() throws Exception {
+		String body = this.get("/chunked");
+		Assert.assertTrue(body.startsWith("0,1,2,"));
+		Assert.assertTrue(body.endsWith(",9999,"));
+		
+		// a response closed without being read is drained to keep the connection
+		this.client.execute("GET", this.baseURL + "/missing", null, null, null, 0).close();
+		HttpResponse response = this.client.execute("GET", this.baseURL + "/chunked", null, null, null, 0);
+		Assert.assertEquals(200, response.getStatus());
+		response.getBody().read();
+		response.close();
+		
+		Assert.assertEquals("value=1", this.get("/echo?value=1"));
+		Assert.assertEquals(1, this.getMetrics().getCreated());
+	}
+	
+	@Test
+	public void testBounded() throws Exception {
+		List<HttpResponse> held = new ArrayList<HttpResponse>();
+		for(int index = 0; index < 4; index++) {
+			held.add(this.client.execute("GET", this.baseURL + "/echo?value=" + index, null, null, null, 0));
+		}
+		
+		Assert.assertEquals(4, this.getMetrics().getActive());
+		
+		try {
+			this.client.execute("GET", this.baseURL + "/echo?value=5", null, null, null, 0);
+			Assert.fail("Pool went past its bound");
+		} catch(IOException e) {
+			// expected
+		}
+		
+		PoolMetrics metrics = this.getMetrics();
+		Assert.assertEquals(1, metrics.getTimeouts());
+		Assert.assertTrue(metrics.getMaxWaitNanos() >= 150000000L);
+		
+		for(HttpResponse response : held) {
+			response.close();
+		}
+		
+		Assert.assertEquals(0, this.getMetrics().getActive());
+		Assert.assertEquals(4, this.getMetrics().getIdle());
+		Assert.assertEquals("value=6", this.get("/echo?value=6"));
+	}
+	
+	@Test
+	public void testWaitingRequestsPooledApart() throws Exception {
+		LineUpHttpClient client = new LineUpHttpClient(1, 1, 30000, 200);
+		try {
+			// a long-poll holds its connection while the server waits
+			HttpResponse waiting = client.execute("GET", this.baseURL + "/echo?value=waiting", null, null, null, 1000);
+			Assert.assertEquals(1, client.getWaitingPool(new URL(this.baseURL)).getMetrics().getActive());
+			
+			// which leaves short requests their own connections
+			HttpResponse response = client.execute("GET", this.baseURL + "/echo?value=short", null, null, null, 0);
+			Assert.assertEquals("value=short", new String(read(response.getBody()), UTF_8));
+			response.close();
+			
+			try {
+				client.execute("GET", this.baseURL + "/echo?value=another", null, null, null, 1000);
+				Assert.fail("Pool for waiting requests went past its bound");
+			} catch(IOException e) {
+				// expected
+			}
+			
+			waiting.close();
+			Assert.assertEquals(1, client.getPool(new URL(this.baseURL)).getMetrics().getCreated());
+			Assert.assertEquals(1, client.getWaitingPool(new URL(this.baseURL)).getMetrics().getCreated());
+		} finally {
+			client.close();
+		}
+	}
+	
+	@Test
+	public void testNoKeepAlive() throws Exception {
+		LineUpHttpClient client = new LineUpHttpClient(4, 0, 200);
+		try {
+			for(int index = 0; index < 5; index++) {
+				HttpResponse response = client.execute("GET", this.baseURL + "/echo?value=" + index, null, null, null, 0);
+				Assert.assertEquals("value=" + index, new String(read(response.getBody()), UTF_8));
+				response.close();
+			}
+			
+			PoolMetrics metrics = client.getPool(new URL(this.baseURL)).getMetrics();
+			Assert.assertEquals(5, metrics.getCreated());
+			Assert.assertEquals(0, metrics.getIdle());
+			Assert.assertEquals(5, this.closeRequests.get());
+		} finally {
+			client.close();
+		}
+	}
+	
+	@Test
+	public void testTimeoutIncludesWait() throws Exception {
+		this.client.setRequestTimeoutMillis(100);
+		
+		try {
+			this.client.execute("GET", this.baseURL + "/slow", null, null, null, 0);
+			Assert.fail("Request did not time out");
+		} catch(SocketTimeoutException e) {
+			// expected
+		}
+		
+		HttpResponse response = this.client.execute("GET", this.baseURL + "/slow", null, null, null, 1000);
+		Assert.assertEquals("slow", new String(read(response.getBody()), UTF_8));
+		response.close();
+	}
+	
+	@Test
+	public void testStaleConnectionReplaced() throws Exception {
+		// a server that closes every connection after one response, without saying so
+		final ServerSocket serverSocket = new ServerSocket(0);
+		final AtomicInteger requests = new AtomicInteger();
+		Thread acceptor = new Thread(new Runnable() {
+			
+			@Override
+			public void run() {
+				try {
+					while(true) {
+						Socket socket = serverSocket.accept();
+						if(readHead(socket.getInputStream())) {
+							requests.incrementAndGet();
+							OutputStream out = socket.getOutputStream();
+							out.write("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok".getBytes(UTF_8));
+							out.flush();
+						}
+						
+						socket.close();
+					}
+				} catch(IOException e) {
+					// server closed
+				}
+			}
+			
+		});
+		acceptor.setDaemon(true);
+		acceptor.start();
+		
+		try {
+			String url = "http://localhost:" + serverSocket.getLocalPort() + "/";
+			for(int index = 0; index < 2; index++) {
+				HttpResponse response = this.client.execute("GET", url, null, null, null, 0);
+				Assert.assertEquals("ok", new String(read(response.getBody()), UTF_8));
+				response.close();
+				
+				// idle for long enough to be checked before reuse
+				Thread.sleep(1200);
+			}
+			
+			Assert.assertEquals(2, this.client.getPool(new URL(url)).getMetrics().getCreated());
+			Assert.assertEquals(2, requests.get());
+		} finally {
+			serverSocket.close();
+		}
+	}
+	
+	@Test
+	public void testSentRequestNotRetried() throws Exception {
+		// a server that reads the second request on a connection but never responds
+		final ServerSocket serverSocket = new ServerSocket(0);
+		final AtomicInteger requests = new AtomicInteger();
+		Thread acceptor = new Thread(new Runnable() {
+			
+			@Override
+			public void run() {
+				try {
+					while(true) {
+						Socket socket = serverSocket.accept();
+						InputStream in = socket.getInputStream();
+						if(readHead(in)) {
+							requests.incrementAndGet();
+							OutputStream out = socket.getOutputStream();
+							out.write("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok".getBytes(UTF_8));
+							out.flush();
+							
+							if(readHead(in)) {
+								requests.incrementAndGet();
+							}
+						}
+						
+						socket.close();
+					}
+				} catch(IOException e) {
+					// server closed
+				}
+			}
+			
+		});
+		acceptor.setDaemon(true);
+		acceptor.start();
+		
+		try {
+			String url = "http://localhost:" + serverSocket.getLocalPort() + "/";
+			HttpResponse response = this.client.execute("GET", url, null, null, null, 0);
+			Assert.assertEquals("ok", new String(read(response.getBody()), UTF_8));
+			response.close();
+			
+			// the server may have added the message, so it is not posted again
+			try {
+				this.client.execute("POST", url, "text/plain", "message".getBytes(UTF_8), null, 0);
+				Assert.fail("Request without a response succeeded");
+			} catch(IOException e) {
+				// expected
+			}
+			
+			Thread.sleep(100);
+			Assert.assertEquals(2, requests.get());
+			Assert.assertEquals(1, this.client.getPool(new URL(url)).getMetrics().getCreated());
+		} finally {
+			serverSocket.close();
+		}
+	}
+	
+	@Test
+	public void testRemoteQueue() throws Exception {
+		RemoteLineUpQueue queue = new RemoteLineUpQueue(this.baseURL, "queue", "secret");
+		queue.setHttpClient(this.client);
+		
+		for(int index = 0; index < 3; index++) {
+			List<QueueMessage> messages = queue.getMessages(5);
+			Assert.assertEquals(5, messages.size());
+			Assert.assertEquals("message-4", messages.get(4).getBody());
+		}
+		
+		PoolMetrics metrics = queue.getPoolMetrics();
+		Assert.assertEquals(1, metrics.getCreated());
+		Assert.assertEquals(2, metrics.getReused());
+	}
+	
+	private String get(String path) throws IOException {
+		HttpResponse response = this.client.execute("GET", this.baseURL + path, null, null, null, 0);
+		try {
+			Assert.assertEquals(200, response.getStatus());
+			return new String(read(response.getBody()), UTF_8);
+		} finally {
+			response.close();
+		}
+	}
+	
+	private PoolMetrics getMetrics() throws IOException {
+		return this.client.getPool(new URL(this.baseURL)).getMetrics();
+	}
+	
+	private static void respond(HttpExchange exchange, int status, byte[] body, boolean chunked) throws IOException {
+		exchange.sendResponseHeaders(status, chunked ? 0 : body.length);
+		OutputStream stream = exchange.getResponseBody();
+		stream.write(body);
+		stream.close();
+	}
+	
+	/**
+	 * Read the head of a request, up to the blank line ending it.
+	 * 
+	 * @return <code>false</code> if the stream ended before it
+	 */
+	private static boolean readHead(InputStream in) throws IOException {
+		int matched = 0;
+		while(matched < 4) {
+			int read = in.read();
+			if(read < 0) {
+				return false;
+			}
+			
+			matched = (read == "\r\n\r\n".charAt(matched)) ? matched + 1 : (read == '\r' ? 1 : 0);
+		}
+		
+		return true;
+	}
+	
+	private static byte[] read(InputStream stream) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int read;
+		while((read = stream.read(buffer)) >= 0) {
+			bytes.write(buffer, 0, read);
+		}
+		
+		return bytes.toByteArray();
+	}
+
+}
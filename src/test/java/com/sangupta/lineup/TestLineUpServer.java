@@ -0,0 +1,115 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sangupta.lineup.server.LineUpServer;
+import com.sangupta.lineup.server.ServerMode;
+
+/**
+ * Smoke tests that start and stop a {@link LineUpServer} on local ports, with
+ * the default webservices loaded.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestLineUpServer {
+	
+	private String baseURL;
+	
+	private LineUpServer server;
+	
+	@Before
+	public void setUp() throws Exception {
+		ServerSocket socket = new ServerSocket(0);
+		int port = socket.getLocalPort();
+		socket.close();
+		
+		this.baseURL = "http://localhost:" + port + "/";
+		this.server = new LineUpServer(this.baseURL, null, ServerMode.ThreadPerRequest);
+		this.server.setBinaryPort(0);
+	}
+	
+	@After
+	public void tearDown() {
+		this.server.stopServer();
+	}
+	
+	@Test
+	public void testStartStop() throws Exception {
+		Assert.assertFalse(this.server.isRunning());
+		Assert.assertEquals(-1, this.server.getBinaryPort());
+		
+		this.server.startServer();
+		Assert.assertTrue(this.server.isRunning());
+		Assert.assertTrue(this.server.getBinaryPort() > 0);
+		
+		HttpURLConnection connection = (HttpURLConnection) new URL(this.baseURL + "lineup/available").openConnection();
+		try {
+			Assert.assertEquals(200, connection.getResponseCode());
+			
+			BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), "UTF-8"));
+			Assert.assertEquals("Yes", reader.readLine());
+			reader.close();
+		} finally {
+			connection.disconnect();
+		}
+		
+		this.server.stopServer();
+		Assert.assertFalse(this.server.isRunning());
+		Assert.assertEquals(-1, this.server.getBinaryPort());
+		
+		try {
+			new URL(this.baseURL + "lineup/available").openConnection().getInputStream().close();
+			Assert.fail("Server still accepting requests after being stopped");
+		} catch(IOException e) {
+			// expected
+		}
+	}
+	
+	@Test
+	public void testStartTwice() throws Exception {
+		this.server.startServer();
+		
+		try {
+			this.server.startServer();
+			Assert.fail("Server started twice");
+		} catch(IllegalStateException e) {
+			// expected
+		}
+		
+		Assert.assertTrue(this.server.isRunning());
+	}
+	
+}
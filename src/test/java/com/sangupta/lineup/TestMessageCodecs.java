@@ -0,0 +1,219 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.sangupta.lineup.codec.MessageCodec;
+import com.sangupta.lineup.codec.MessageCodecs;
+import com.sangupta.lineup.codec.MessageListReader;
+import com.sangupta.lineup.codec.MessageListWriter;
+import com.sangupta.lineup.domain.QueueMessage;
+
+/**
+ * Unit tests for the wire codecs of queue messages.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestMessageCodecs {
+	
+	private static final MessageCodec[] CODECS = { MessageCodecs.XML, MessageCodecs.JSON, MessageCodecs.BINARY };
+	
+	@Test
+	public void testMessageRoundTrip() throws Exception {
+		QueueMessage message = new QueueMessage("hello \"world\"\n\t\\ \u00e9\u4e16 \u0001", 7, 42);
+		for(MessageCodec codec : CODECS) {
+			QueueMessage read = codec.readMessage(new ByteArrayInputStream(write(codec, message)));
+			assertSameMessage(codec, message, read);
+		}
+	}
+	
+	@Test
+	public void testListRoundTrip() throws Exception {
+		List<QueueMessage> messages = new ArrayList<QueueMessage>();
+		for(int index = 0; index < 100; index++) {
+			messages.add(new QueueMessage("message-" + index, index % 3, index));
+		}
+		
+		for(MessageCodec codec : CODECS) {
+			ByteArrayOutputStream stream = new ByteArrayOutputStream();
+			codec.writeMessages(messages, stream);
+			
+			List<QueueMessage> read = codec.readMessages(new ByteArrayInputStream(stream.toByteArray()));
+			Assert.assertEquals(codec.getMediaType(), messages.size(), read.size());
+			for(int index = 0; index < messages.size(); index++) {
+				assertSameMessage(codec, messages.get(index), read.get(index));
+			}
+			
+			stream = new ByteArrayOutputStream();
+			codec.writeMessages(new ArrayList<QueueMessage>(), stream);
+			Assert.assertTrue(codec.readMessages(new ByteArrayInputStream(stream.toByteArray())).isEmpty());
+		}
+	}
+	
+	@Test
+	public void testStreamedList() throws Exception {
+		for(MessageCodec codec : CODECS) {
+			ByteArrayOutputStream stream = new ByteArrayOutputStream();
+			MessageListWriter writer = codec.newListWriter(stream);
+			for(int index = 0; index < 3; index++) {
+				writer.write(new QueueMessage("first-" + index, 0, 1));
+			}
+			
+			// the messages flushed can be read before the list is complete
+			writer.flush();
+			MessageListReader reader = codec.newListReader(new ByteArrayInputStream(stream.toByteArray()));
+			for(int index = 0; index < 3; index++) {
+				Assert.assertEquals(codec.getMediaType(), "first-" + index, reader.next().getBody());
+			}
+			
+			for(int index = 0; index < 2; index++) {
+				writer.write(new QueueMessage("second-" + index, 0, 1));
+			}
+			
+			writer.close();
+			List<QueueMessage> read = codec.readMessages(new ByteArrayInputStream(stream.toByteArray()));
+			Assert.assertEquals(codec.getMediaType(), 5, read.size());
+			Assert.assertEquals(codec.getMediaType(), "second-1", read.get(4).getBody());
+			
+			reader = codec.newListReader(new ByteArrayInputStream(stream.toByteArray()));
+			int count = 0;
+			while(reader.next() != null) {
+				count++;
+			}
+			
+			Assert.assertEquals(codec.getMediaType(), 5, count);
+			Assert.assertNull(reader.next());
+			reader.close();
+		}
+	}
+	
+	@Test
+	public void testPreservesHashAndCreated() throws Exception {
+		QueueMessage message = new QueueMessage(99, "body", 0, 1, "ABCDEF", 1234567890L);
+		for(MessageCodec codec : new MessageCodec[] { MessageCodecs.JSON, MessageCodecs.BINARY }) {
+			QueueMessage read = codec.readMessage(new ByteArrayInputStream(write(codec, message)));
+			Assert.assertEquals(99, read.getMessageID());
+			Assert.assertEquals("ABCDEF", read.getMd5());
+			Assert.assertEquals(1234567890L, read.getCreated());
+		}
+	}
+	
+	@Test
+	public void testJsonLenientReading() throws Exception {
+		String json = " [ { \"extra\" : { \"a\" : [1, 2.5e3, true, null] }, \"body\" : \"b\\u0041\\/\", \"priority\" : -3, \"messageID\" : 5 } , {\"body\":\"x\"} ] ";
+		List<QueueMessage> messages = MessageCodecs.JSON.readMessages(new ByteArrayInputStream(json.getBytes("UTF-8")));
+		Assert.assertEquals(2, messages.size());
+		Assert.assertEquals("bA/", messages.get(0).getBody());
+		Assert.assertEquals(-3, messages.get(0).getPriority());
+		Assert.assertEquals(5, messages.get(0).getMessageID());
+		Assert.assertNotNull(messages.get(1).getMd5());
+		Assert.assertTrue(messages.get(1).getCreated() > 0);
+	}
+	
+	@Test
+	public void testMalformedInput() {
+		String[] inputs = { "", "{", "{\"body\":\"unterminated", "[{\"body\":\"a\"},", "{\"messageID\":1}", "{\"body\":\"a\" \"priority\":1}" };
+		for(String input : inputs) {
+			assertUnreadable(MessageCodecs.JSON, input.getBytes());
+		}
+		
+		assertUnreadable(MessageCodecs.BINARY, new byte[] { 1, 0, 0 });
+		assertUnreadable(MessageCodecs.BINARY, new byte[] { 9 });
+		assertUnreadable(MessageCodecs.XML, "<java.io.File><path>/</path></java.io.File>".getBytes());
+	}
+	
+	@Test
+	public void testJsonNumberRange() throws Exception {
+		String json = "{\"body\":\"a\",\"messageID\":-9223372036854775808,\"created\":9223372036854775807,\"priority\":-2147483648,\"delaySeconds\":2147483647}";
+		QueueMessage message = MessageCodecs.JSON.readMessage(new ByteArrayInputStream(json.getBytes("UTF-8")));
+		Assert.assertEquals(Long.MIN_VALUE, message.getMessageID());
+		Assert.assertEquals(Long.MAX_VALUE, message.getCreated());
+		Assert.assertEquals(Integer.MIN_VALUE, message.getPriority());
+		Assert.assertEquals(Integer.MAX_VALUE, message.getDelaySeconds());
+		
+		String[] inputs = {
+			"{\"body\":\"a\",\"messageID\":9223372036854775808}",
+			"{\"body\":\"a\",\"created\":-9223372036854775809}",
+			"{\"body\":\"a\",\"messageID\":100000000000000000000}",
+			"{\"body\":\"a\",\"priority\":2147483648}",
+			"{\"body\":\"a\",\"priority\":-2147483649}",
+			"{\"body\":\"a\",\"priority\":4294967297}",
+			"{\"body\":\"a\",\"delaySeconds\":4294967296}",
+		};
+		for(String input : inputs) {
+			assertUnreadable(MessageCodecs.JSON, input.getBytes("UTF-8"));
+		}
+	}
+	
+	@Test
+	public void testNegotiation() {
+		Assert.assertSame(MessageCodecs.XML, MessageCodecs.negotiate(null));
+		Assert.assertSame(MessageCodecs.XML, MessageCodecs.negotiate("*/*"));
+		Assert.assertSame(MessageCodecs.JSON, MessageCodecs.negotiate("application/json"));
+		Assert.assertSame(MessageCodecs.BINARY, MessageCodecs.negotiate("application/json;q=0.5, application/x-lineup-binary"));
+		Assert.assertSame(MessageCodecs.JSON, MessageCodecs.negotiate("text/html, application/json;q=0.9, */*;q=0.1"));
+		Assert.assertSame(MessageCodecs.XML, MessageCodecs.negotiate("text/*"));
+		Assert.assertNull(MessageCodecs.negotiate("text/html"));
+		
+		Assert.assertSame(MessageCodecs.XML, MessageCodecs.getCodec("text/xml; charset=UTF-8"));
+		Assert.assertSame(MessageCodecs.JSON, MessageCodecs.getCodec("Application/JSON"));
+		Assert.assertNull(MessageCodecs.getCodec("text/plain"));
+	}
+	
+	private static byte[] write(MessageCodec codec, QueueMessage message) throws IOException {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		codec.writeMessage(message, stream);
+		return stream.toByteArray();
+	}
+	
+	private static void assertSameMessage(MessageCodec codec, QueueMessage expected, QueueMessage actual) {
+		String name = codec.getMediaType();
+		Assert.assertEquals(name, expected.getMessageID(), actual.getMessageID());
+		Assert.assertEquals(name, expected.getBody(), actual.getBody());
+		Assert.assertEquals(name, expected.getDelaySeconds(), actual.getDelaySeconds());
+		Assert.assertEquals(name, expected.getPriority(), actual.getPriority());
+		Assert.assertEquals(name, expected.getMd5(), actual.getMd5());
+		if(codec != MessageCodecs.XML) {
+			Assert.assertEquals(name, expected.getCreated(), actual.getCreated());
+		}
+	}
+	
+	private static void assertUnreadable(MessageCodec codec, byte[] input) {
+		try {
+			codec.readMessage(new ByteArrayInputStream(input));
+			Assert.fail("Expected " + codec.getMediaType() + " to fail on: " + new String(input));
+		} catch(IOException e) {
+			// expected
+		}
+	}
+
+}
@@ -0,0 +1,214 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.sangupta.lineup.domain.QueueMessage;
+import com.sangupta.lineup.domain.QueueOptions;
+import com.sangupta.lineup.domain.QueueType;
+import com.sangupta.lineup.queues.AbstractLineUpQueue;
+import com.sangupta.lineup.queues.LineUpQueue;
+import com.sangupta.lineup.queues.MessageLease;
+import com.sangupta.lineup.service.QueueGenerationFactory;
+
+/**
+ * Unit tests for leasing batches of messages via {@link MessageLease}.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestMessageLease {
+	
+	private static final QueueType[] QUEUE_TYPES = { QueueType.AllowDuplicates, QueueType.RejectDuplicates, QueueType.PriorityQueueWithDuplicates, QueueType.PriorityQueueMergingDuplicates, QueueType.StripedQueue, QueueType.RingBuffer };
+	
+	@Test
+	public void testLeaseAndClose() throws InterruptedException {
+		for(QueueType type : QUEUE_TYPES) {
+			LineUpQueue queue = getQueue(type);
+			for(int index = 0; index < 10; index++) {
+				queue.addMessage("message-" + index);
+			}
+			
+			MessageLease lease = queue.leaseMessages(4, 0);
+			Assert.assertEquals(type.toString(), 4, lease.size());
+			
+			// leased messages stay counted, but are not visible
+			Assert.assertEquals(10, queue.numMessages());
+			Assert.assertEquals(6, queue.getMessages(100).size());
+			Assert.assertEquals(4, queue.numMessages());
+			
+			Assert.assertNotNull(lease.next());
+			Assert.assertNotNull(lease.next());
+			Assert.assertEquals(2, queue.numMessages());
+			Assert.assertEquals(2, lease.remaining());
+			
+			// the rest go back to the queue
+			lease.close();
+			Assert.assertNull(lease.next());
+			Assert.assertEquals(2, queue.numMessages());
+			Assert.assertEquals(2, queue.getMessages(100).size());
+			Assert.assertEquals(0, queue.numMessages());
+		}
+	}
+	
+	@Test
+	public void testEmptyLease() throws InterruptedException {
+		LineUpQueue queue = getQueue(QueueType.AllowDuplicates);
+		
+		MessageLease lease = queue.leaseMessages(10, 0);
+		Assert.assertEquals(0, lease.size());
+		Assert.assertNull(lease.next());
+		lease.close();
+	}
+	
+	@Test
+	public void testLeaseWaitsForMessage() throws InterruptedException {
+		final LineUpQueue queue = getQueue(QueueType.AllowDuplicates);
+		
+		new Thread() {
+			
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(50);
+				} catch(InterruptedException e) {
+					// exit
+				}
+				
+				queue.addMessage("late");
+			}
+			
+		}.start();
+		
+		MessageLease lease = queue.leaseMessages(10, 5);
+		Assert.assertEquals(1, lease.size());
+		Assert.assertEquals(1, queue.numMessages());
+		Assert.assertEquals("late", lease.next().getBody());
+		Assert.assertEquals(0, queue.numMessages());
+	}
+	
+	@Test
+	public void testExpiredLeaseIsReturned() throws InterruptedException {
+		AbstractLineUpQueue queue = (AbstractLineUpQueue) getQueue(QueueType.AllowDuplicates);
+		queue.addMessage("one");
+		queue.addMessage("two");
+		
+		MessageLease lease = queue.leaseMessages(2, 0, 1);
+		Assert.assertEquals(2, lease.size());
+		Assert.assertNull(queue.getMessage());
+		
+		// a waiting consumer picks them up once the lease expires
+		QueueMessage message = queue.getMessage(5);
+		Assert.assertNotNull(message);
+		Assert.assertNotNull(queue.getMessage());
+		Assert.assertNull(lease.next());
+		Assert.assertEquals(0, queue.numMessages());
+	}
+	
+	@Test
+	public void testConcurrentLeases() throws InterruptedException {
+		final LineUpQueue queue = getQueue(QueueType.AllowDuplicates);
+		final int messages = 50000;
+		final Set<String> processed = new HashSet<String>();
+		final AtomicInteger count = new AtomicInteger();
+		
+		Thread[] workers = new Thread[4];
+		for(int index = 0; index < workers.length; index++) {
+			workers[index] = new Thread() {
+				
+				@Override
+				public void run() {
+					try {
+						while(count.get() < messages) {
+							MessageLease lease = queue.leaseMessages(32, 1);
+							
+							QueueMessage message;
+							while((message = lease.next()) != null) {
+								synchronized(processed) {
+									Assert.assertTrue(processed.add(message.getBody()));
+								}
+								count.incrementAndGet();
+							}
+						}
+					} catch(InterruptedException e) {
+						// exit
+					}
+				}
+				
+			};
+			workers[index].start();
+		}
+		
+		for(int index = 0; index < messages; index++) {
+			queue.addMessage("message-" + index);
+		}
+		
+		for(Thread worker : workers) {
+			worker.join(30000);
+		}
+		
+		Assert.assertEquals(messages, processed.size());
+		Assert.assertEquals(0, queue.numMessages());
+	}
+	
+	@Test
+	public void testCloseOnFullQueue() throws InterruptedException {
+		QueueOptions options = QueueOptions.getOptions(QueueType.RingBuffer);
+		options.setRingBufferCapacity(4);
+		LineUpQueue queue = QueueGenerationFactory.getLineUpQueue("lease-full", null, options);
+		
+		for(int index = 0; index < 4; index++) {
+			queue.addMessage("leased-" + index);
+		}
+		
+		MessageLease lease = queue.leaseMessages(4, 0);
+		Assert.assertEquals("leased-0", lease.next().getBody());
+		
+		// fill the slots freed by the lease
+		for(int index = 0; index < 4; index++) {
+			Assert.assertNotNull(queue.addMessage("added-" + index));
+		}
+		
+		// the ring cannot take back the messages not handed out
+		List<QueueMessage> refused = lease.close();
+		Assert.assertEquals(3, refused.size());
+		Assert.assertEquals("leased-1", refused.get(0).getBody());
+		Assert.assertEquals("leased-3", refused.get(2).getBody());
+		Assert.assertEquals(4, queue.numMessages());
+		
+		Assert.assertTrue(lease.close().isEmpty());
+		Assert.assertEquals("added-0", queue.getMessage().getBody());
+	}
+	
+	private static LineUpQueue getQueue(QueueType type) {
+		return QueueGenerationFactory.getLineUpQueue("lease-" + type, null, QueueOptions.getOptions(type));
+	}
+
+}
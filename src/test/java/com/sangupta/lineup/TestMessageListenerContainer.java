@@ -0,0 +1,207 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.sangupta.lineup.domain.QueueMessage;
+import com.sangupta.lineup.domain.QueueOptions;
+import com.sangupta.lineup.domain.QueueType;
+import com.sangupta.lineup.listener.ListenerMetrics;
+import com.sangupta.lineup.listener.MessageListener;
+import com.sangupta.lineup.listener.MessageListenerContainer;
+import com.sangupta.lineup.queues.LineUpQueue;
+import com.sangupta.lineup.service.QueueGenerationFactory;
+
+/**
+ * Unit tests for {@link MessageListenerContainer}.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestMessageListenerContainer {
+	
+	@Test
+	public void testDispatch() throws InterruptedException {
+		LineUpQueue queue = getQueue("listener-dispatch");
+		final int messages = 10000;
+		final Set<String> received = new HashSet<String>();
+		final CountDownLatch latch = new CountDownLatch(messages);
+		
+		MessageListenerContainer container = LineUp.registerListener(queue, new MessageListener() {
+			
+			@Override
+			public void onMessage(QueueMessage message) {
+				synchronized(received) {
+					Assert.assertTrue(received.add(message.getBody()));
+				}
+				latch.countDown();
+			}
+			
+		}, 4);
+		
+		for(int index = 0; index < messages; index++) {
+			queue.addMessage("message-" + index);
+		}
+		
+		Assert.assertTrue(latch.await(30, TimeUnit.SECONDS));
+		Assert.assertTrue(container.shutdown(5, TimeUnit.SECONDS));
+		Assert.assertFalse(container.isRunning());
+		
+		ListenerMetrics metrics = container.getMetrics();
+		Assert.assertEquals(messages, metrics.getProcessed());
+		Assert.assertEquals(0, metrics.getFailed());
+		Assert.assertTrue(metrics.getBatches() > 0);
+		Assert.assertTrue(metrics.getAverageBatchSize() >= 1);
+		Assert.assertEquals(0, queue.numMessages());
+	}
+	
+	@Test
+	public void testFailuresAreCounted() throws InterruptedException {
+		LineUpQueue queue = getQueue("listener-failures");
+		final CountDownLatch latch = new CountDownLatch(10);
+		
+		MessageListenerContainer container = LineUp.registerListener(queue, new MessageListener() {
+			
+			@Override
+			public void onMessage(QueueMessage message) throws Exception {
+				latch.countDown();
+				if(message.getBody().startsWith("bad")) {
+					throw new IllegalStateException("bad message");
+				}
+			}
+			
+		}, 2);
+		
+		for(int index = 0; index < 5; index++) {
+			queue.addMessage("good-" + index);
+			queue.addMessage("bad-" + index);
+		}
+		
+		Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+		Assert.assertTrue(container.shutdown(5, TimeUnit.SECONDS));
+		
+		ListenerMetrics metrics = container.getMetrics();
+		Assert.assertEquals(5, metrics.getProcessed());
+		Assert.assertEquals(5, metrics.getFailed());
+		Assert.assertEquals(10, metrics.getDispatched());
+	}
+	
+	@Test
+	public void testShutdownWakesIdleWorkers() throws InterruptedException {
+		LineUpQueue queue = getQueue("listener-idle");
+		
+		MessageListenerContainer container = LineUp.registerListener(queue, new MessageListener() {
+			
+			@Override
+			public void onMessage(QueueMessage message) {
+				// nothing
+			}
+			
+		}, 8);
+		
+		// let the workers go idle
+		Thread.sleep(100);
+		
+		long start = System.currentTimeMillis();
+		Assert.assertTrue(container.shutdown(5, TimeUnit.SECONDS));
+		Assert.assertTrue(System.currentTimeMillis() - start < 2000);
+	}
+	
+	@Test
+	public void testShutdownFinishesBatchInHand() throws InterruptedException {
+		LineUpQueue queue = getQueue("listener-drain");
+		final CountDownLatch started = new CountDownLatch(1);
+		final AtomicInteger processed = new AtomicInteger();
+		
+		MessageListenerContainer container = new MessageListenerContainer(queue, new MessageListener() {
+			
+			@Override
+			public void onMessage(QueueMessage message) throws Exception {
+				started.countDown();
+				Thread.sleep(20);
+				processed.incrementAndGet();
+			}
+			
+		}, 1, 10);
+		
+		for(int index = 0; index < 10; index++) {
+			queue.addMessage("message-" + index);
+		}
+		
+		container.start();
+		Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+		Assert.assertTrue(container.shutdown(5, TimeUnit.SECONDS));
+		
+		Assert.assertEquals(10, processed.get());
+		Assert.assertEquals(0, queue.numMessages());
+	}
+	
+	@Test
+	public void testResize() throws InterruptedException {
+		LineUpQueue queue = getQueue("listener-resize");
+		final int messages = 1000;
+		final CountDownLatch latch = new CountDownLatch(messages);
+		
+		MessageListenerContainer container = LineUp.registerListener(queue, new MessageListener() {
+			
+			@Override
+			public void onMessage(QueueMessage message) {
+				latch.countDown();
+			}
+			
+		}, 1);
+		
+		container.setConcurrency(6);
+		Assert.assertEquals(6, container.getConcurrency());
+		for(int index = 0; index < messages / 2; index++) {
+			queue.addMessage("message-" + index);
+		}
+		
+		container.setConcurrency(2);
+		Assert.assertEquals(2, container.getConcurrency());
+		for(int index = messages / 2; index < messages; index++) {
+			queue.addMessage("message-" + index);
+		}
+		
+		Assert.assertTrue(latch.await(30, TimeUnit.SECONDS));
+		Assert.assertTrue(container.shutdown(5, TimeUnit.SECONDS));
+		
+		// metrics of the workers let go are not lost
+		ListenerMetrics metrics = container.getMetrics();
+		Assert.assertEquals(messages, metrics.getProcessed());
+		Assert.assertTrue(metrics.getTotalIdleNanos() > 0);
+	}
+	
+	private static LineUpQueue getQueue(String name) {
+		return QueueGenerationFactory.getLineUpQueue(name, null, QueueOptions.getOptions(QueueType.AllowDuplicates));
+	}
+
+}
@@ -0,0 +1,246 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.sangupta.lineup.domain.QueueMessage;
+import com.sangupta.lineup.pipeline.Pipeline;
+import com.sangupta.lineup.pipeline.PipelineStage;
+import com.sangupta.lineup.pipeline.StageHandler;
+
+/**
+ * Unit tests for {@link Pipeline}.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestPipeline {
+	
+	@Test
+	public void testMessagesFlowThroughStages() throws InterruptedException {
+		final int messages = 1000;
+		final Set<String> stored = Collections.synchronizedSet(new HashSet<String>());
+		
+		Pipeline pipeline = new Pipeline("flow", 6);
+		pipeline.addStage("parse", new StageHandler() {
+			
+			@Override
+			public String handle(QueueMessage message) {
+				return message.getBody().substring("raw-".length());
+			}
+			
+		});
+		pipeline.addStage("enrich", new StageHandler() {
+			
+			@Override
+			public String handle(QueueMessage message) {
+				// drop the odd ones
+				if(Integer.parseInt(message.getBody()) % 2 == 1) {
+					return null;
+				}
+				
+				return "enriched-" + message.getBody();
+			}
+			
+		}, 16);
+		pipeline.addStage("store", new StageHandler() {
+			
+			@Override
+			public String handle(QueueMessage message) {
+				stored.add(message.getBody());
+				return "ignored";
+			}
+			
+		}, 16);
+		
+		pipeline.start();
+		for(int index = 0; index < messages; index++) {
+			pipeline.submit("raw-" + index);
+		}
+		
+		Assert.assertTrue(pipeline.shutdown(30, TimeUnit.SECONDS));
+		Assert.assertEquals(messages / 2, stored.size());
+		for(int index = 0; index < messages; index += 2) {
+			Assert.assertTrue(stored.contains("enriched-" + index));
+		}
+		
+		for(PipelineStage stage : pipeline.getStages()) {
+			Assert.assertEquals(0, stage.getQueueDepth());
+			Assert.assertEquals(0, stage.getMetrics().getFailed());
+		}
+	}
+	
+	@Test
+	public void testBackPressureReachesProducer() throws InterruptedException {
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(100);
+		
+		Pipeline pipeline = new Pipeline("pressure", 2);
+		pipeline.setBatchSize(1);
+		PipelineStage first = pipeline.addStage("first", new StageHandler() {
+			
+			@Override
+			public String handle(QueueMessage message) {
+				return message.getBody();
+			}
+			
+		}, 4);
+		pipeline.addStage("stuck", new StageHandler() {
+			
+			@Override
+			public String handle(QueueMessage message) throws Exception {
+				release.await();
+				done.countDown();
+				return null;
+			}
+			
+		}, 4);
+		pipeline.start();
+		
+		// the stuck stage holds one message, and both queues fill up
+		int submitted = 0;
+		while(pipeline.submit("message-" + submitted, 200, TimeUnit.MILLISECONDS)) {
+			submitted++;
+			Assert.assertTrue("producer was never held back", submitted < 100);
+		}
+		
+		Assert.assertTrue(first.getQueueDepth() > 0);
+		
+		release.countDown();
+		for(int index = submitted; index < 100; index++) {
+			pipeline.submit("message-" + index);
+		}
+		
+		Assert.assertTrue(done.await(30, TimeUnit.SECONDS));
+		Assert.assertTrue(pipeline.shutdown(10, TimeUnit.SECONDS));
+		Assert.assertTrue(first.getBlockedNanos() > 0);
+	}
+	
+	@Test
+	public void testThreadsMoveToSlowStage() throws InterruptedException {
+		final int budget = 8;
+		Pipeline pipeline = new Pipeline("scaling", budget);
+		pipeline.setControlIntervalMillis(60000);
+		pipeline.setBatchSize(1);
+		
+		PipelineStage fast = pipeline.addStage("fast", new StageHandler() {
+			
+			@Override
+			public String handle(QueueMessage message) {
+				return message.getBody();
+			}
+			
+		});
+		PipelineStage slow = pipeline.addStage("slow", new StageHandler() {
+			
+			@Override
+			public String handle(QueueMessage message) throws Exception {
+				Thread.sleep(5);
+				return null;
+			}
+			
+		});
+		pipeline.start();
+		
+		for(int index = 0; index < 500; index++) {
+			pipeline.submit("message-" + index);
+		}
+		
+		for(int round = 0; round < 5; round++) {
+			Thread.sleep(100);
+			pipeline.rebalance();
+			Assert.assertTrue(pipeline.getTotalThreads() <= budget);
+		}
+		
+		Assert.assertTrue(slow.getThreads() > fast.getThreads());
+		Assert.assertTrue(slow.getThreads() > 1);
+		
+		Assert.assertTrue(pipeline.shutdown(30, TimeUnit.SECONDS));
+	}
+	
+	@Test
+	public void testIdleThreadsAreLetGo() throws InterruptedException {
+		Pipeline pipeline = new Pipeline("idle", 8);
+		pipeline.setControlIntervalMillis(60000);
+		pipeline.setBatchSize(1);
+		
+		PipelineStage stage = pipeline.addStage("slow", new StageHandler() {
+			
+			@Override
+			public String handle(QueueMessage message) throws Exception {
+				Thread.sleep(5);
+				return null;
+			}
+			
+		});
+		pipeline.start();
+		
+		for(int index = 0; index < 200; index++) {
+			pipeline.submit("message-" + index);
+		}
+		
+		Thread.sleep(100);
+		pipeline.rebalance();
+		int peak = stage.getThreads();
+		Assert.assertTrue(peak > 1);
+		
+		while(stage.getQueueDepth() > 0) {
+			Thread.sleep(10);
+		}
+		
+		for(int round = 0; round < 10 && stage.getThreads() > 1; round++) {
+			Thread.sleep(100);
+			pipeline.rebalance();
+		}
+		
+		Assert.assertEquals(1, stage.getThreads());
+		Assert.assertTrue(pipeline.shutdown(5, TimeUnit.SECONDS));
+		Assert.assertEquals(200, stage.getMetrics().getProcessed());
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void testBudgetCoversStages() {
+		Pipeline pipeline = new Pipeline("budget", 1);
+		StageHandler handler = new StageHandler() {
+			
+			@Override
+			public String handle(QueueMessage message) {
+				return null;
+			}
+			
+		};
+		
+		pipeline.addStage("one", handler);
+		pipeline.addStage("two", handler);
+		pipeline.start();
+	}
+
+}
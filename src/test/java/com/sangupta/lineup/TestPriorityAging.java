@@ -0,0 +1,127 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup;
+
+import java.util.Map;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.sangupta.jerry.ds.ChangingPriorityQueue;
+import com.sangupta.jerry.ds.ConcurrentLevelPriorityQueue;
+import com.sangupta.jerry.ds.ShardedChangingPriorityQueue;
+import com.sangupta.lineup.domain.QueueMessage;
+import com.sangupta.lineup.domain.QueueOptions;
+import com.sangupta.lineup.domain.QueueType;
+import com.sangupta.lineup.queues.PriorityLineUpQueue;
+
+/**
+ * Unit tests for aging of priorities in priority queues.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestPriorityAging {
+	
+	@Test
+	public void testChangingPriorityQueueAging() throws InterruptedException {
+		ChangingPriorityQueue<QueueMessage> queue = new ChangingPriorityQueue<QueueMessage>(10, 10);
+		
+		queue.add(new QueueMessage("low", 0, 1));
+		Thread.sleep(100);
+		queue.add(new QueueMessage("high", 0, 3));
+		
+		Map<Integer, Long> ages = queue.getOldestAges();
+		Assert.assertEquals(2, ages.size());
+		Assert.assertTrue(ages.get(1) >= ages.get(3));
+		
+		// low has waited for 10 intervals and thus is ahead of high
+		Assert.assertEquals("low", queue.poll().getBody());
+		Assert.assertEquals("high", queue.poll().getBody());
+		Assert.assertNull(queue.poll());
+	}
+	
+	@Test
+	public void testChangingPriorityQueueWithoutAging() throws InterruptedException {
+		ChangingPriorityQueue<QueueMessage> queue = new ChangingPriorityQueue<QueueMessage>(10);
+		
+		queue.add(new QueueMessage("low", 0, 1));
+		Thread.sleep(20);
+		queue.add(new QueueMessage("high", 0, 3));
+		
+		Assert.assertEquals("high", queue.poll().getBody());
+		Assert.assertEquals("low", queue.poll().getBody());
+		Assert.assertNull(queue.poll());
+	}
+	
+	@Test
+	public void testConcurrentLevelPriorityQueueAging() throws InterruptedException {
+		ConcurrentLevelPriorityQueue<QueueMessage> queue = new ConcurrentLevelPriorityQueue<QueueMessage>(10);
+		
+		queue.offer(new QueueMessage("low", 0, 1));
+		queue.offer(new QueueMessage("older", 0, 1));
+		Thread.sleep(100);
+		queue.offer(new QueueMessage("high", 0, 3));
+		
+		// the head of the low level has waited for 10 intervals
+		Assert.assertEquals("low", queue.peek().getBody());
+		Assert.assertEquals("low", queue.poll().getBody());
+		Assert.assertEquals("older", queue.poll().getBody());
+		Assert.assertEquals("high", queue.poll().getBody());
+		Assert.assertNull(queue.poll());
+	}
+	
+	@Test
+	public void testShardedChangingPriorityQueueAging() throws InterruptedException {
+		ShardedChangingPriorityQueue<QueueMessage> queue = new ShardedChangingPriorityQueue<QueueMessage>(1, 10, 10);
+		
+		queue.add(new QueueMessage("low", 0, 1));
+		Thread.sleep(100);
+		queue.add(new QueueMessage("high", 0, 3));
+		
+		Assert.assertEquals("low", queue.poll().getBody());
+		Assert.assertEquals("high", queue.poll().getBody());
+		Assert.assertNull(queue.poll());
+	}
+	
+	@Test
+	public void testPriorityQueueAging() throws InterruptedException {
+		QueueOptions options = QueueOptions.getOptions(QueueType.PriorityQueueWithDuplicates);
+		options.setPriorityAgingSeconds(1);
+		PriorityLineUpQueue queue = new PriorityLineUpQueue("test-aging", null, options);
+		
+		queue.addMessage("low", 0, 1);
+		queue.addMessage("high", 0, 10);
+		Assert.assertEquals(2, queue.getOldestMessageAges().size());
+		
+		// not enough time elapsed for low to catch up
+		Assert.assertEquals("high", queue.getMessage().getBody());
+		Assert.assertEquals("low", queue.getMessage().getBody());
+		
+		queue.addMessage("first", 0, 1);
+		queue.addMessage("second", 0, 1);
+		Assert.assertEquals("first", queue.getMessage().getBody());
+		Assert.assertEquals("second", queue.getMessage().getBody());
+	}
+
+}
@@ -0,0 +1,289 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.sangupta.lineup.domain.QueueCardinality;
+import com.sangupta.lineup.domain.QueueMessage;
+import com.sangupta.lineup.domain.QueueOptions;
+import com.sangupta.lineup.domain.QueueType;
+import com.sangupta.lineup.queues.LineUpQueue;
+import com.sangupta.lineup.reactive.Publisher;
+import com.sangupta.lineup.reactive.QueuePublisher;
+import com.sangupta.lineup.reactive.QueueSubscriber;
+import com.sangupta.lineup.reactive.Subscriber;
+import com.sangupta.lineup.reactive.Subscription;
+import com.sangupta.lineup.service.QueueGenerationFactory;
+
+/**
+ * Unit tests for {@link QueuePublisher} and {@link QueueSubscriber}.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestReactiveQueue {
+	
+	@Test
+	public void testPublisherHonoursDemand() {
+		LineUpQueue queue = getQueue("reactive-demand");
+		for(int index = 0; index < 10; index++) {
+			queue.addMessage("message-" + index);
+		}
+		
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		new QueuePublisher(queue).subscribe(subscriber);
+		Assert.assertEquals(0, subscriber.messages.size());
+		
+		subscriber.subscription.request(3);
+		Assert.assertEquals(3, subscriber.messages.size());
+		Assert.assertEquals(7, queue.numMessages());
+		
+		subscriber.subscription.request(4);
+		Assert.assertEquals(7, subscriber.messages.size());
+		Assert.assertEquals(3, queue.numMessages());
+		
+		subscriber.subscription.cancel();
+	}
+	
+	@Test
+	public void testPublisherResumesWhenMessageAdded() {
+		LineUpQueue queue = getQueue("reactive-resume");
+		
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		new QueuePublisher(queue).subscribe(subscriber);
+		subscriber.subscription.request(2);
+		Assert.assertEquals(0, subscriber.messages.size());
+		
+		queue.addMessage("first");
+		queue.addMessage("second");
+		queue.addMessage("third");
+		
+		Assert.assertEquals(2, subscriber.messages.size());
+		Assert.assertEquals("first", subscriber.messages.get(0).getBody());
+		Assert.assertEquals("second", subscriber.messages.get(1).getBody());
+		Assert.assertEquals(1, queue.numMessages());
+		
+		subscriber.subscription.cancel();
+	}
+	
+	@Test
+	public void testCancelledSubscriptionLeavesMessages() {
+		LineUpQueue queue = getQueue("reactive-cancel");
+		
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		new QueuePublisher(queue).subscribe(subscriber);
+		subscriber.subscription.request(5);
+		subscriber.subscription.cancel();
+		
+		queue.addMessage("hello");
+		Assert.assertEquals(0, subscriber.messages.size());
+		Assert.assertEquals(1, queue.numMessages());
+	}
+	
+	@Test
+	public void testInvalidRequestFails() {
+		LineUpQueue queue = getQueue("reactive-invalid");
+		
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		new QueuePublisher(queue).subscribe(subscriber);
+		subscriber.subscription.request(0);
+		
+		Assert.assertTrue(subscriber.error instanceof IllegalArgumentException);
+		
+		queue.addMessage("hello");
+		Assert.assertEquals(1, queue.numMessages());
+	}
+	
+	@Test
+	public void testSingleConsumerQueueRejected() {
+		QueueOptions options = QueueOptions.getOptions(QueueType.AllowDuplicates);
+		options.setCardinality(QueueCardinality.SPSC);
+		LineUpQueue queue = QueueGenerationFactory.getLineUpQueue("reactive-spsc", null, options);
+		
+		// a producer completes the receive of the subscription
+		try {
+			new QueuePublisher(queue);
+			Assert.fail("Publisher accepted a SPSC queue");
+		} catch(IllegalArgumentException e) {
+			// expected
+		}
+	}
+	
+	@Test
+	public void testSubscriberHonoursCapacity() throws InterruptedException {
+		QueueOptions options = QueueOptions.getOptions(QueueType.RingBuffer);
+		options.setRingBufferCapacity(16);
+		LineUpQueue queue = QueueGenerationFactory.getLineUpQueue("reactive-bounded", null, options);
+		
+		final int messages = 1000;
+		CountingPublisher publisher = new CountingPublisher(messages);
+		QueueSubscriber subscriber = new QueueSubscriber(queue);
+		publisher.subscribe(subscriber);
+		
+		for(int index = 0; index < messages; index++) {
+			QueueMessage message = queue.getMessage(5);
+			Assert.assertNotNull(message);
+			Assert.assertEquals("message-" + index, message.getBody());
+			
+			// never more requested than the queue can hold
+			Assert.assertEquals(0, subscriber.getPendingCount());
+		}
+		
+		Assert.assertEquals(0, subscriber.getPendingCount());
+		Assert.assertTrue(publisher.maxInFlight.get() <= 16);
+		
+		// the publisher completes right after sending the last message
+		for(int wait = 0; wait < 100 && !subscriber.isTerminated(); wait++) {
+			Thread.sleep(10);
+		}
+		
+		Assert.assertTrue(subscriber.isTerminated());
+	}
+	
+	@Test
+	public void testQueueToQueue() throws InterruptedException {
+		LineUpQueue source = getQueue("reactive-source");
+		LineUpQueue target = getQueue("reactive-target");
+		
+		QueueSubscriber subscriber = new QueueSubscriber(target, 32);
+		new QueuePublisher(source, 8, null).subscribe(subscriber);
+		
+		for(int index = 0; index < 1000; index++) {
+			source.addMessage("message-" + index);
+		}
+		
+		Assert.assertEquals(0, source.numMessages());
+		Assert.assertEquals(1000, target.numMessages());
+		
+		subscriber.cancel();
+		source.addMessage("late");
+		Assert.assertEquals(1, source.numMessages());
+		Assert.assertEquals(1000, target.numMessages());
+	}
+	
+	private static LineUpQueue getQueue(String name) {
+		return QueueGenerationFactory.getLineUpQueue(name, null, QueueOptions.getOptions(QueueType.AllowDuplicates));
+	}
+	
+	/**
+	 * Records everything it is sent.
+	 * 
+	 */
+	private static class RecordingSubscriber implements Subscriber<QueueMessage> {
+		
+		final List<QueueMessage> messages = new ArrayList<QueueMessage>();
+		
+		Subscription subscription;
+		
+		Throwable error;
+
+		@Override
+		public void onSubscribe(Subscription subscription) {
+			this.subscription = subscription;
+		}
+
+		@Override
+		public synchronized void onNext(QueueMessage item) {
+			this.messages.add(item);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			this.error = throwable;
+		}
+
+		@Override
+		public void onComplete() {
+			// never
+		}
+		
+	}
+	
+	/**
+	 * Publishes a fixed number of messages as requested, and tracks the
+	 * number requested but not yet sent.
+	 * 
+	 */
+	private static class CountingPublisher implements Publisher<QueueMessage> {
+		
+		final int count;
+		
+		final AtomicLong requested = new AtomicLong();
+		
+		final AtomicInteger sent = new AtomicInteger();
+		
+		final AtomicInteger maxInFlight = new AtomicInteger();
+		
+		final AtomicInteger signals = new AtomicInteger();
+		
+		CountingPublisher(int count) {
+			this.count = count;
+		}
+		
+		@Override
+		public void subscribe(final Subscriber<? super QueueMessage> subscriber) {
+			subscriber.onSubscribe(new Subscription() {
+				
+				@Override
+				public void request(long n) {
+					requested.addAndGet(n);
+					maxInFlight.set(Math.max(maxInFlight.get(), (int) requested.get()));
+					
+					if(signals.getAndIncrement() != 0) {
+						return;
+					}
+					
+					int missed = 1;
+					do {
+						while(requested.get() > 0 && sent.get() < count) {
+							requested.decrementAndGet();
+							subscriber.onNext(new QueueMessage("message-" + sent.getAndIncrement(), 0, 1));
+						}
+						
+						if(sent.get() == count) {
+							subscriber.onComplete();
+							return;
+						}
+						
+						missed = signals.addAndGet(-missed);
+					} while(missed != 0);
+				}
+				
+				@Override
+				public void cancel() {
+					// nothing to release
+				}
+				
+			});
+		}
+		
+	}
+
+}
@@ -0,0 +1,85 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.sangupta.jerry.ds.RankErrorStatistics;
+import com.sangupta.jerry.ds.RelaxedPriorityQueue;
+import com.sangupta.lineup.domain.QueueMessage;
+
+/**
+ * Unit tests for {@link RelaxedPriorityQueue}.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestRelaxedPriorityQueue {
+	
+	@Test
+	public void testStrictWithSingleSubQueue() {
+		RelaxedPriorityQueue<QueueMessage> queue = new RelaxedPriorityQueue<QueueMessage>(1);
+		RankErrorStatistics statistics = new RankErrorStatistics();
+		queue.setRankErrorListener(statistics, 1);
+		
+		for(int index = 0; index < 100; index++) {
+			queue.offer(new QueueMessage("message-" + index, 0, index));
+		}
+		
+		Assert.assertEquals(100, queue.size());
+		for(int index = 99; index >= 0; index--) {
+			Assert.assertEquals(index, queue.poll().getPriority());
+		}
+		
+		Assert.assertNull(queue.poll());
+		Assert.assertTrue(queue.isEmpty());
+		Assert.assertEquals(100, statistics.getSamples());
+		Assert.assertEquals(0, statistics.getMaxRankError());
+	}
+	
+	@Test
+	public void testRelaxed() {
+		RelaxedPriorityQueue<QueueMessage> queue = new RelaxedPriorityQueue<QueueMessage>(8);
+		RankErrorStatistics statistics = new RankErrorStatistics();
+		queue.setRankErrorListener(statistics, 1);
+		
+		final int count = 1000;
+		for(int index = 0; index < count; index++) {
+			queue.offer(new QueueMessage("message-" + index, 0, index));
+		}
+		
+		Assert.assertEquals(count, queue.size());
+		Assert.assertEquals(count - 1, queue.peek().getPriority());
+		
+		int read = 0;
+		while(queue.poll() != null) {
+			read++;
+		}
+		
+		Assert.assertEquals(count, read);
+		Assert.assertEquals(count, statistics.getSamples());
+		Assert.assertTrue(statistics.getMeanRankError() < count / 4);
+	}
+
+}
@@ -0,0 +1,312 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.sangupta.jerry.ds.SegmentedArrayQueue;
+import com.sangupta.lineup.domain.QueueMessage;
+import com.sangupta.lineup.domain.QueueType;
+import com.sangupta.lineup.queues.LineUpQueue;
+
+/**
+ * Unit tests for {@link SegmentedArrayQueue}.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestSegmentedArrayQueue {
+	
+	@Test
+	public void testAcrossSegments() {
+		SegmentedArrayQueue<Integer> queue = new SegmentedArrayQueue<Integer>(4, 2);
+		
+		for(int round = 0; round < 3; round++) {
+			Assert.assertTrue(queue.isEmpty());
+			Assert.assertNull(queue.peek());
+			
+			for(int index = 0; index < 50; index++) {
+				queue.offer(index);
+			}
+			
+			Assert.assertEquals(50, queue.size());
+			Assert.assertTrue(queue.contains(21));
+			Assert.assertTrue(queue.remove(21));
+			Assert.assertFalse(queue.remove(21));
+			Assert.assertFalse(queue.contains(21));
+			Assert.assertEquals(49, queue.size());
+			
+			for(int index = 0; index < 50; index++) {
+				if(index != 21) {
+					Assert.assertEquals(Integer.valueOf(index), queue.poll());
+				}
+			}
+			
+			Assert.assertNull(queue.poll());
+		}
+	}
+	
+	@Test
+	public void testProducersAndConsumers() throws InterruptedException {
+		// small segments so that they are recycled all the time
+		final SegmentedArrayQueue<Long> queue = new SegmentedArrayQueue<Long>(8, 2);
+		final int threads = 4;
+		final int perThread = 20000;
+		final AtomicLong sum = new AtomicLong();
+		
+		Thread[] workers = new Thread[2 * threads];
+		for(int thread = 0; thread < threads; thread++) {
+			workers[thread] = new Thread() {
+				
+				@Override
+				public void run() {
+					for(long index = 1; index <= perThread; index++) {
+						queue.offer(index);
+					}
+				}
+				
+			};
+			
+			workers[threads + thread] = new Thread() {
+				
+				@Override
+				public void run() {
+					try {
+						for(int index = 0; index < perThread; index++) {
+							sum.addAndGet(queue.take());
+						}
+					} catch(InterruptedException e) {
+						// exit
+					}
+				}
+				
+			};
+		}
+		
+		for(Thread worker : workers) {
+			worker.start();
+		}
+		
+		for(Thread worker : workers) {
+			worker.join(30000);
+		}
+		
+		Assert.assertEquals(threads * ((long) perThread * (perThread + 1) / 2), sum.get());
+		Assert.assertTrue(queue.isEmpty());
+	}
+	
+	@Test
+	public void testBatchDrain() throws InterruptedException {
+		final SegmentedArrayQueue<Long> queue = new SegmentedArrayQueue<Long>(8, 2);
+		for(long index = 0; index < 50; index++) {
+			queue.offer(index);
+		}
+		queue.remove(Long.valueOf(3));
+		
+		List<Long> drained = new ArrayList<Long>();
+		Assert.assertEquals(20, queue.drainTo(drained, 20));
+		Assert.assertEquals(Long.valueOf(0), drained.get(0));
+		Assert.assertEquals(Long.valueOf(4), drained.get(3));
+		Assert.assertEquals(Long.valueOf(20), drained.get(19));
+		
+		Assert.assertEquals(29, queue.drainTo(drained));
+		Assert.assertEquals(Long.valueOf(49), drained.get(48));
+		Assert.assertNull(queue.poll());
+		
+		// concurrent producers and batch consumers
+		final int threads = 4;
+		final int perThread = 20000;
+		final AtomicLong sum = new AtomicLong();
+		final AtomicLong count = new AtomicLong();
+		
+		Thread[] workers = new Thread[2 * threads];
+		for(int thread = 0; thread < threads; thread++) {
+			workers[thread] = new Thread() {
+				
+				@Override
+				public void run() {
+					for(long index = 1; index <= perThread; index++) {
+						queue.offer(index);
+					}
+				}
+				
+			};
+			
+			workers[threads + thread] = new Thread() {
+				
+				@Override
+				public void run() {
+					List<Long> batch = new ArrayList<Long>();
+					while(count.get() < threads * perThread) {
+						batch.clear();
+						queue.drainTo(batch, 16);
+						for(Long value : batch) {
+							sum.addAndGet(value);
+						}
+						
+						count.addAndGet(batch.size());
+					}
+				}
+				
+			};
+		}
+		
+		for(Thread worker : workers) {
+			worker.start();
+		}
+		
+		for(Thread worker : workers) {
+			worker.join(30000);
+		}
+		
+		Assert.assertEquals(threads * perThread, count.get());
+		Assert.assertEquals(threads * ((long) perThread * (perThread + 1) / 2), sum.get());
+		Assert.assertTrue(queue.isEmpty());
+	}
+	
+	@Test
+	public void testRecycledSegmentsUnderStress() throws InterruptedException {
+		// tiny segments and a single pooled one, so that far more segments
+		// are in flight than the pool holds, and every segment is recycled
+		// while other threads may still hold it
+		final SegmentedArrayQueue<Integer> queue = new SegmentedArrayQueue<Integer>(2, 1);
+		final int threads = 4;
+		final int perThread = 50000;
+		final AtomicIntegerArray seen = new AtomicIntegerArray(threads * perThread);
+		final AtomicLong count = new AtomicLong();
+		final AtomicLong duplicates = new AtomicLong();
+		
+		Thread[] workers = new Thread[2 * threads];
+		for(int thread = 0; thread < threads; thread++) {
+			final int producer = thread;
+			workers[thread] = new Thread() {
+				
+				@Override
+				public void run() {
+					for(int index = 0; index < perThread; index++) {
+						queue.offer(producer * perThread + index);
+					}
+				}
+				
+			};
+			
+			final boolean batches = thread % 2 == 0;
+			workers[threads + thread] = new Thread() {
+				
+				@Override
+				public void run() {
+					List<Integer> batch = new ArrayList<Integer>();
+					while(count.get() < threads * perThread) {
+						batch.clear();
+						if(batches) {
+							queue.drainTo(batch, 3);
+						} else {
+							Integer value = queue.poll();
+							if(value != null) {
+								batch.add(value);
+							}
+						}
+						
+						for(Integer value : batch) {
+							if(seen.getAndIncrement(value) != 0) {
+								duplicates.incrementAndGet();
+							}
+						}
+						
+						count.addAndGet(batch.size());
+					}
+				}
+				
+			};
+		}
+		
+		for(Thread worker : workers) {
+			worker.start();
+		}
+		
+		for(Thread worker : workers) {
+			worker.join(60000);
+		}
+		
+		Assert.assertEquals(0, duplicates.get());
+		Assert.assertEquals(threads * perThread, count.get());
+		for(int index = 0; index < seen.length(); index++) {
+			Assert.assertEquals(1, seen.get(index));
+		}
+		
+		Assert.assertTrue(queue.isEmpty());
+		Assert.assertNull(queue.poll());
+	}
+	
+	@Test
+	public void testRemoveElementByKey() {
+		SegmentedArrayQueue<QueueMessage> queue = new SegmentedArrayQueue<QueueMessage>(4, 1);
+		List<QueueMessage> messages = new ArrayList<QueueMessage>();
+		for(int index = 0; index < 10; index++) {
+			QueueMessage message = new QueueMessage(index + 1, "message-" + index, 0, 1, null, 0);
+			messages.add(message);
+			queue.offer(message);
+		}
+		
+		// a message is found by its ID, and handed back
+		Assert.assertSame(messages.get(6), queue.removeElement(Long.valueOf(7)));
+		Assert.assertNull(queue.removeElement(Long.valueOf(7)));
+		Assert.assertNull(queue.removeElement(Long.valueOf(99)));
+		Assert.assertNull(queue.removeElement(null));
+		Assert.assertEquals(9, queue.size());
+		
+		for(int index = 0; index < 10; index++) {
+			if(index != 6) {
+				Assert.assertSame(messages.get(index), queue.poll());
+			}
+		}
+		
+		Assert.assertNull(queue.poll());
+	}
+	
+	@Test
+	public void testDeleteMessage() throws Exception {
+		LineUpQueue queue = LineUp.createMessageQueue("test-segmented-delete", QueueType.RejectDuplicates);
+		
+		QueueMessage first = queue.addMessage("first");
+		QueueMessage second = queue.addMessage("second");
+		Assert.assertEquals(2, queue.numMessages());
+		
+		Assert.assertTrue(queue.deleteMessage(String.valueOf(first.getMessageID())));
+		Assert.assertFalse(queue.deleteMessage(String.valueOf(first.getMessageID())));
+		Assert.assertEquals(1, queue.numMessages());
+		
+		// the deleted message can be added again
+		Assert.assertNotNull(queue.addMessage("first"));
+		Assert.assertEquals("second", queue.getMessage().getBody());
+		Assert.assertEquals("first", queue.getMessage().getBody());
+		Assert.assertEquals(second.getBody(), "second");
+	}
+
+}
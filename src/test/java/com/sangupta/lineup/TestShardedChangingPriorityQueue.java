@@ -0,0 +1,115 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.sangupta.jerry.ds.ShardedChangingPriorityQueue;
+import com.sangupta.lineup.domain.QueueMessage;
+
+/**
+ * Unit tests for {@link ShardedChangingPriorityQueue}.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestShardedChangingPriorityQueue {
+	
+	@Test
+	public void testMerge() {
+		ShardedChangingPriorityQueue<QueueMessage> queue = new ShardedChangingPriorityQueue<QueueMessage>(8, 50);
+		
+		Assert.assertTrue(queue.add(new QueueMessage("same", 0, 1)));
+		Assert.assertFalse(queue.add(new QueueMessage("same", 0, 1)));
+		Assert.assertFalse(queue.add(new QueueMessage("same", 0, 1)));
+		
+		QueueMessage message = queue.poll();
+		Assert.assertEquals("same", message.getBody());
+		Assert.assertEquals(3, message.getPriority());
+		Assert.assertNull(queue.poll());
+	}
+	
+	@Test
+	public void testOrderAcrossShards() {
+		ShardedChangingPriorityQueue<QueueMessage> queue = new ShardedChangingPriorityQueue<QueueMessage>(8, 50);
+		
+		for(int index = 0; index < 200; index++) {
+			queue.add(new QueueMessage("message-" + index, 0, index % 10));
+		}
+		
+		int last = Integer.MAX_VALUE;
+		for(int index = 0; index < 200; index++) {
+			QueueMessage message = queue.poll();
+			Assert.assertNotNull(message);
+			Assert.assertTrue(message.getPriority() <= last);
+			last = message.getPriority();
+		}
+		
+		Assert.assertNull(queue.poll());
+	}
+	
+	@Test
+	public void testConcurrentMerges() throws InterruptedException {
+		final ShardedChangingPriorityQueue<QueueMessage> queue = new ShardedChangingPriorityQueue<QueueMessage>(4, 1000);
+		final int bodies = 100;
+		final AtomicInteger added = new AtomicInteger();
+		
+		Thread[] producers = new Thread[4];
+		for(int thread = 0; thread < producers.length; thread++) {
+			producers[thread] = new Thread() {
+				
+				@Override
+				public void run() {
+					for(int index = 0; index < 10 * bodies; index++) {
+						if(queue.add(new QueueMessage("body-" + (index % bodies), 0, 1))) {
+							added.incrementAndGet();
+						}
+					}
+				}
+				
+			};
+			producers[thread].start();
+		}
+		
+		for(Thread producer : producers) {
+			producer.join();
+		}
+		
+		// every body is present exactly once, with all merges counted
+		Assert.assertEquals(bodies, added.get());
+		Set<String> seen = new HashSet<String>();
+		QueueMessage message;
+		while((message = queue.poll()) != null) {
+			Assert.assertTrue(seen.add(message.getBody()));
+			Assert.assertEquals(40, message.getPriority());
+		}
+		
+		Assert.assertEquals(bodies, seen.size());
+	}
+
+}
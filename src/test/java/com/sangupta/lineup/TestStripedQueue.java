@@ -0,0 +1,163 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.sangupta.jerry.ds.StripedQueue;
+import com.sangupta.jerry.ds.Timestamped;
+import com.sangupta.lineup.domain.QueueMessage;
+import com.sangupta.lineup.domain.QueueOptions;
+import com.sangupta.lineup.domain.QueueType;
+import com.sangupta.lineup.queues.LineUpQueue;
+import com.sangupta.lineup.queues.StripedLineUpQueue;
+
+/**
+ * Unit tests for {@link StripedQueue} and {@link StripedLineUpQueue}.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestStripedQueue {
+	
+	@Test
+	public void testFifoSkew() throws InterruptedException {
+		// without ordering across lanes the home lane is served first
+		Assert.assertEquals(200, pollAfterOffers(-1));
+		Assert.assertEquals(200, pollAfterOffers(500));
+		
+		// the older element in the other lane is served first
+		Assert.assertEquals(100, pollAfterOffers(0));
+		Assert.assertEquals(100, pollAfterOffers(50));
+	}
+	
+	@Test
+	public void testAcrossLanes() throws InterruptedException {
+		QueueOptions options = QueueOptions.getOptions(QueueType.StripedQueue);
+		options.setStripedLanes(4);
+		final LineUpQueue queue = new StripedLineUpQueue("test-striped-lanes", null, options);
+		
+		// add from many threads so that all lanes are used
+		final List<QueueMessage> added = new ArrayList<QueueMessage>();
+		Thread[] producers = new Thread[8];
+		for(int thread = 0; thread < producers.length; thread++) {
+			final QueueMessage[] messages = new QueueMessage[100];
+			for(int index = 0; index < messages.length; index++) {
+				messages[index] = new QueueMessage("message-" + thread + "-" + index, 0, 1);
+				added.add(messages[index]);
+			}
+			
+			producers[thread] = new Thread() {
+				
+				@Override
+				public void run() {
+					for(QueueMessage message : messages) {
+						queue.addMessage(message);
+					}
+				}
+				
+			};
+			producers[thread].start();
+		}
+		
+		for(Thread producer : producers) {
+			producer.join();
+		}
+		
+		Assert.assertEquals(800, queue.numMessages());
+		
+		// delete messages that may be in any lane
+		for(int index = 0; index < 800; index += 8) {
+			Assert.assertTrue(queue.deleteMessage(String.valueOf(added.get(index).getMessageID())));
+		}
+		
+		Assert.assertEquals(700, queue.numMessages());
+		
+		List<QueueMessage> drained = new ArrayList<QueueMessage>();
+		Assert.assertEquals(300, queue.drainTo(drained, 300));
+		Assert.assertEquals(400, queue.numMessages());
+		Assert.assertEquals(400, queue.drainTo(drained));
+		Assert.assertEquals(0, queue.numMessages());
+		Assert.assertNull(queue.getMessage(0));
+	}
+	
+	@Test
+	public void testRemoveDuplicateByID() {
+		StripedQueue<QueueMessage> queue = new StripedQueue<QueueMessage>(1, -1);
+		
+		QueueMessage first = new QueueMessage("duplicate", 0, 1);
+		QueueMessage second = new QueueMessage("duplicate", 0, 1);
+		Assert.assertEquals(first, second);
+		
+		queue.offer(first);
+		queue.offer(second);
+		
+		// only the message with the given id must go
+		Assert.assertTrue(queue.remove(second.getMessageID()));
+		Assert.assertSame(first, queue.poll());
+		Assert.assertNull(queue.poll());
+	}
+	
+	private long pollAfterOffers(long fifoSkewMillis) throws InterruptedException {
+		final StripedQueue<Element> queue = new StripedQueue<Element>(2, fifoSkewMillis);
+		
+		// find a thread whose home lane is not ours
+		Thread other;
+		do {
+			other = new Thread() {
+				
+				@Override
+				public void run() {
+					queue.offer(new Element(100));
+				}
+				
+			};
+		} while(other.getId() % 2 == Thread.currentThread().getId() % 2);
+		
+		other.start();
+		other.join();
+		
+		queue.offer(new Element(200));
+		return queue.poll().getCreated();
+	}
+	
+	private static class Element implements Timestamped {
+		
+		private final long created;
+		
+		public Element(long created) {
+			this.created = created;
+		}
+		
+		@Override
+		public long getCreated() {
+			return this.created;
+		}
+		
+	}
+
+}
@@ -0,0 +1,131 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.sangupta.jerry.ds.WaitStrategy;
+import com.sangupta.lineup.domain.QueueMessage;
+import com.sangupta.lineup.domain.QueueOptions;
+import com.sangupta.lineup.domain.QueueType;
+import com.sangupta.lineup.domain.WaitStrategyType;
+import com.sangupta.lineup.queues.AbstractLineUpQueue;
+import com.sangupta.lineup.service.QueueGenerationFactory;
+
+/**
+ * Unit tests for the wait strategies honoured by consumers of all local
+ * queue types.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestWaitStrategies {
+	
+	private static final QueueType[] QUEUE_TYPES = { QueueType.AllowDuplicates, QueueType.RejectDuplicates, QueueType.PriorityQueueWithDuplicates, QueueType.PriorityQueueMergingDuplicates, QueueType.StripedQueue, QueueType.RingBuffer };
+	
+	@Test
+	public void testConsumersWakeUp() throws InterruptedException {
+		for(WaitStrategyType strategy : WaitStrategyType.values()) {
+			for(QueueType type : QUEUE_TYPES) {
+				AbstractLineUpQueue queue = getQueue(type, strategy);
+				
+				Assert.assertEquals(strategy + "/" + type, "poll", consume(queue, false).getBody());
+				Assert.assertEquals(strategy + "/" + type, "take", consume(queue, true).getBody());
+				Assert.assertEquals(0, queue.numMessages());
+			}
+		}
+	}
+	
+	@Test
+	public void testTimeout() throws InterruptedException {
+		for(WaitStrategyType strategy : WaitStrategyType.values()) {
+			AbstractLineUpQueue queue = getQueue(QueueType.AllowDuplicates, strategy);
+			
+			long start = System.currentTimeMillis();
+			Assert.assertNull(queue.getMessage(1));
+			Assert.assertTrue(System.currentTimeMillis() - start >= 900);
+		}
+	}
+	
+	@Test
+	public void testPhaseCounters() throws InterruptedException {
+		WaitStrategy strategy = waitOnEmptyQueue(WaitStrategyType.BusySpin);
+		Assert.assertEquals(1, strategy.getSpinPhaseCount());
+		Assert.assertEquals(0, strategy.getYieldPhaseCount());
+		Assert.assertEquals(0, strategy.getParkPhaseCount());
+		
+		strategy = waitOnEmptyQueue(WaitStrategyType.SpinThenYield);
+		Assert.assertEquals(1, strategy.getSpinPhaseCount());
+		Assert.assertEquals(1, strategy.getYieldPhaseCount());
+		Assert.assertEquals(0, strategy.getParkPhaseCount());
+		
+		strategy = waitOnEmptyQueue(WaitStrategyType.SpinThenPark);
+		Assert.assertEquals(1, strategy.getSpinPhaseCount());
+		Assert.assertEquals(0, strategy.getYieldPhaseCount());
+		Assert.assertTrue(strategy.getParkPhaseCount() > 0);
+		
+		strategy = waitOnEmptyQueue(WaitStrategyType.Park);
+		Assert.assertEquals(0, strategy.getSpinPhaseCount());
+		Assert.assertEquals(0, strategy.getYieldPhaseCount());
+		Assert.assertTrue(strategy.getParkPhaseCount() > 0);
+	}
+	
+	private WaitStrategy waitOnEmptyQueue(WaitStrategyType type) throws InterruptedException {
+		AbstractLineUpQueue queue = getQueue(QueueType.AllowDuplicates, type);
+		Assert.assertNull(queue.getMessage(1));
+		return queue.getWaitStrategy();
+	}
+	
+	private QueueMessage consume(final AbstractLineUpQueue queue, final boolean take) throws InterruptedException {
+		final QueueMessage[] received = new QueueMessage[1];
+		Thread consumer = new Thread(new Runnable() {
+			
+			@Override
+			public void run() {
+				try {
+					received[0] = take ? queue.take() : queue.getMessage(10);
+				} catch(InterruptedException e) {
+					// exit
+				}
+			}
+			
+		});
+		consumer.start();
+		
+		Thread.sleep(20);
+		queue.addMessage(take ? "take" : "poll");
+		consumer.join();
+		
+		return received[0];
+	}
+	
+	private AbstractLineUpQueue getQueue(QueueType type, WaitStrategyType strategy) {
+		QueueOptions options = QueueOptions.getOptions(type);
+		options.setWaitStrategy(strategy);
+		options.setWaitSpinCount(10);
+		
+		return (AbstractLineUpQueue) QueueGenerationFactory.getLineUpQueue("wait-" + type + "-" + strategy, null, options);
+	}
+
+}
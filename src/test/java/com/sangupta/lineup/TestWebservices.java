@@ -35,6 +35,10 @@ import com.sangupta.lineup.queues.LineUpQueue;
 import com.sangupta.lineup.queues.MergingPriorityLineUpQueue;
 import com.sangupta.lineup.queues.PriorityLineUpQueue;
 import com.sangupta.lineup.queues.PriorityNoDuplicateLineUpQueue;
+import com.sangupta.lineup.queues.RelaxedPriorityLineUpQueue;
+import com.sangupta.lineup.queues.RingBufferLineUpQueue;
+import com.sangupta.lineup.queues.ShardedMergingPriorityLineUpQueue;
+import com.sangupta.lineup.queues.StripedLineUpQueue;
 import com.sangupta.lineup.web.LineUpHealthCheckWebservice;
 import com.sangupta.lineup.web.QueueWebservice;
 
@@ -106,6 +110,22 @@ public class TestWebservices {
 		q = service.create(getQueueName(), "PriorityQueue");
 		Assert.assertTrue(q != null);
 		Assert.assertTrue(q instanceof MergingPriorityLineUpQueue);
+		
+		q = service.create(getQueueName(), "RelaxedPriorityQueue");
+		Assert.assertTrue(q != null);
+		Assert.assertTrue(q instanceof RelaxedPriorityLineUpQueue);
+		
+		q = service.create(getQueueName(), "RingBuffer");
+		Assert.assertTrue(q != null);
+		Assert.assertTrue(q instanceof RingBufferLineUpQueue);
+		
+		q = service.create(getQueueName(), "StripedQueue");
+		Assert.assertTrue(q != null);
+		Assert.assertTrue(q instanceof StripedLineUpQueue);
+		
+		q = service.create(getQueueName(), "ShardedPriorityQueue");
+		Assert.assertTrue(q != null);
+		Assert.assertTrue(q instanceof ShardedMergingPriorityLineUpQueue);
 	}
 	
 	@Test
@@ -141,6 +161,22 @@ public class TestWebservices {
 		q = service.createPost(getQueueName(), "PriorityQueue");
 		Assert.assertTrue(q != null);
 		Assert.assertTrue(q instanceof MergingPriorityLineUpQueue);
+		
+		q = service.createPost(getQueueName(), "RelaxedPriorityQueue");
+		Assert.assertTrue(q != null);
+		Assert.assertTrue(q instanceof RelaxedPriorityLineUpQueue);
+		
+		q = service.createPost(getQueueName(), "RingBuffer");
+		Assert.assertTrue(q != null);
+		Assert.assertTrue(q instanceof RingBufferLineUpQueue);
+		
+		q = service.createPost(getQueueName(), "StripedQueue");
+		Assert.assertTrue(q != null);
+		Assert.assertTrue(q instanceof StripedLineUpQueue);
+		
+		q = service.createPost(getQueueName(), "ShardedPriorityQueue");
+		Assert.assertTrue(q != null);
+		Assert.assertTrue(q instanceof ShardedMergingPriorityLineUpQueue);
 	}
 	
 	@Test
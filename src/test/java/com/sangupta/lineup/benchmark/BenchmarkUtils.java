@@ -0,0 +1,127 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.benchmark;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Helper methods to run simple multi-threaded throughput benchmarks. These
+ * are not unit tests, and are run manually via their <code>main</code>
+ * methods.
+ * 
+ * @author sangupta
+ *
+ */
+public class BenchmarkUtils {
+	
+	/**
+	 * The thread counts over which scaling is measured
+	 */
+	public static final int[] THREAD_COUNTS = { 1, 2, 4, 8, 16, 32, 64 };
+	
+	/**
+	 * A single unit of work to be run by each benchmark thread.
+	 * 
+	 */
+	public static interface Task {
+		
+		/**
+		 * Run the task.
+		 * 
+		 * @param threadIndex
+		 *            the index of the thread running the task
+		 * 
+		 * @throws Exception
+		 *             if something fails
+		 */
+		public void run(int threadIndex) throws Exception;
+		
+	}
+	
+	/**
+	 * Run the given task over the given number of threads, all of which start
+	 * at the same time.
+	 * 
+	 * @param threads
+	 *            the number of threads to run
+	 * 
+	 * @param task
+	 *            the task to run in each thread
+	 * 
+	 * @return the time taken in nanoseconds for all threads to complete
+	 * 
+	 * @throws InterruptedException
+	 *             if the wait is interrupted
+	 */
+	public static long runThreads(final int threads, final Task task) throws InterruptedException {
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(threads);
+		
+		for(int index = 0; index < threads; index++) {
+			final int threadIndex = index;
+			Thread thread = new Thread(new Runnable() {
+				
+				@Override
+				public void run() {
+					try {
+						start.await();
+						task.run(threadIndex);
+					} catch(Exception e) {
+						e.printStackTrace();
+					} finally {
+						done.countDown();
+					}
+				}
+				
+			});
+			
+			thread.setDaemon(true);
+			thread.start();
+		}
+		
+		long begin = System.nanoTime();
+		start.countDown();
+		done.await();
+		return System.nanoTime() - begin;
+	}
+	
+	/**
+	 * Print the throughput for a benchmark run.
+	 * 
+	 * @param name
+	 *            the name of the benchmark
+	 * 
+	 * @param threads
+	 *            the number of threads used
+	 * 
+	 * @param operations
+	 *            the total number of operations performed
+	 * 
+	 * @param nanos
+	 *            the time taken in nanoseconds
+	 */
+	public static void report(String name, int threads, long operations, long nanos) {
+		double perSecond = operations * 1000000000d / nanos;
+		System.out.println(String.format("%-40s threads=%-3d ops=%-10d time=%8.1f ms  throughput=%,14.0f ops/s", name, threads, operations, nanos / 1000000d, perSecond));
+	}
+
+}
@@ -0,0 +1,146 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.sangupta.lineup.LineUp;
+import com.sangupta.lineup.async.QueueFuture;
+import com.sangupta.lineup.domain.QueueMessage;
+import com.sangupta.lineup.domain.QueueType;
+import com.sangupta.lineup.protocol.BinaryProtocolClient;
+import com.sangupta.lineup.protocol.BinaryProtocolServer;
+import com.sangupta.lineup.protocol.BinaryQueueHandle;
+import com.sangupta.lineup.queues.LineUpQueue;
+
+/**
+ * Measures the throughput of small messages over the native binary protocol,
+ * against a server on a local port: each thread adds batches of messages and
+ * reads them back, keeping a window of requests in flight over a client
+ * shared by all threads. The aim is a million messages a second each way.
+ * 
+ * @author sangupta
+ *
+ */
+public class BinaryProtocolBenchmark {
+	
+	private static final int BATCH_SIZE = 100;
+	
+	private static final int WINDOW = 16;
+	
+	private static final int ROUNDS = 2000;
+	
+	private static final int BODY_SIZE = 32;
+	
+	public static void main(String[] args) throws Exception {
+		BinaryProtocolServer server = new BinaryProtocolServer(0);
+		server.start();
+		
+		final BinaryProtocolClient client = new BinaryProtocolClient("localhost", server.getPort());
+		try {
+			LineUpQueue queue = LineUp.createMessageQueue("binary-benchmark", "secret", QueueType.AllowDuplicates);
+			final BinaryQueueHandle handle = client.openQueue(queue.getName(), "secret");
+			final List<QueueMessage> batch = getBatch();
+			
+			// warm up
+			addAndGet(handle, batch, ROUNDS);
+			
+			for(int threads : new int[] { 1, 2, 4, 8 }) {
+				final long[] received = new long[threads];
+				long nanos = BenchmarkUtils.runThreads(threads, new BenchmarkUtils.Task() {
+					
+					@Override
+					public void run(int threadIndex) throws Exception {
+						received[threadIndex] = addAndGet(handle, batch, ROUNDS);
+					}
+					
+				});
+				
+				long total = 0;
+				for(long count : received) {
+					total += count;
+				}
+				
+				// every message is both added and read
+				BenchmarkUtils.report("binary add+get batch=" + BATCH_SIZE, threads, 2 * total, nanos);
+				
+				queue.clear();
+			}
+		} finally {
+			client.close();
+			server.stop();
+		}
+	}
+	
+	/**
+	 * Add the batch the given number of times, and read as many messages
+	 * back, with a window of requests in flight.
+	 * 
+	 * @return the number of messages read
+	 */
+	private static long addAndGet(BinaryQueueHandle handle, List<QueueMessage> batch, int rounds) throws Exception {
+		List<QueueFuture<boolean[]>> adds = new ArrayList<QueueFuture<boolean[]>>(WINDOW);
+		List<QueueFuture<List<QueueMessage>>> gets = new ArrayList<QueueFuture<List<QueueMessage>>>(WINDOW);
+		
+		long received = 0;
+		for(int round = 0; round < rounds; round += WINDOW) {
+			for(int index = 0; index < WINDOW; index++) {
+				adds.add(handle.addMessages(batch));
+			}
+			
+			for(QueueFuture<boolean[]> add : adds) {
+				add.get();
+			}
+			
+			for(int index = 0; index < WINDOW; index++) {
+				gets.add(handle.getMessages(0, BATCH_SIZE, 0));
+			}
+			
+			for(QueueFuture<List<QueueMessage>> get : gets) {
+				received += get.get().size();
+			}
+			
+			adds.clear();
+			gets.clear();
+		}
+		
+		return received;
+	}
+	
+	private static List<QueueMessage> getBatch() {
+		StringBuilder builder = new StringBuilder(BODY_SIZE);
+		while(builder.length() < BODY_SIZE) {
+			builder.append("payload ");
+		}
+		
+		builder.setLength(BODY_SIZE);
+		
+		List<QueueMessage> batch = new ArrayList<QueueMessage>(BATCH_SIZE);
+		for(int index = 0; index < BATCH_SIZE; index++) {
+			batch.add(new QueueMessage(builder.toString(), 0, 1));
+		}
+		
+		return batch;
+	}
+
+}
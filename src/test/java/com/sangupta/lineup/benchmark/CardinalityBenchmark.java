@@ -0,0 +1,90 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.benchmark;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import com.sangupta.jerry.ds.MpscLinkedQueue;
+import com.sangupta.jerry.ds.SpmcLinkedQueue;
+import com.sangupta.jerry.ds.SpscLinkedQueue;
+import com.sangupta.lineup.domain.QueueMessage;
+
+/**
+ * Measures the enqueue latency and throughput of the queues specialized for a
+ * single producer and a single consumer against {@link LinkedBlockingQueue}.
+ * One thread offers messages while another takes them.
+ * 
+ * @author sangupta
+ *
+ */
+public class CardinalityBenchmark {
+	
+	private static final int NUM_OPERATIONS = 10 * 1000 * 1000;
+	
+	private static final int NUM_MESSAGES = 10 * 1000;
+	
+	public static void main(String[] args) throws InterruptedException {
+		// warm up
+		run("warm-up", new LinkedBlockingQueue<QueueMessage>());
+		run("warm-up", new SpscLinkedQueue<QueueMessage>());
+		
+		run("LinkedBlockingQueue", new LinkedBlockingQueue<QueueMessage>());
+		run("SpscLinkedQueue", new SpscLinkedQueue<QueueMessage>());
+		run("MpscLinkedQueue", new MpscLinkedQueue<QueueMessage>());
+		run("SpmcLinkedQueue", new SpmcLinkedQueue<QueueMessage>());
+	}
+	
+	private static void run(String name, final BlockingQueue<QueueMessage> queue) throws InterruptedException {
+		// messages are created upfront so that only the queue is measured
+		final QueueMessage[] messages = new QueueMessage[NUM_MESSAGES];
+		for(int index = 0; index < NUM_MESSAGES; index++) {
+			messages[index] = new QueueMessage("message-" + index, 0, 1);
+		}
+		
+		final long[] enqueueNanos = new long[1];
+		long nanos = BenchmarkUtils.runThreads(2, new BenchmarkUtils.Task() {
+			
+			@Override
+			public void run(int threadIndex) throws Exception {
+				if(threadIndex == 0) {
+					long start = System.nanoTime();
+					for(int index = 0; index < NUM_OPERATIONS; index++) {
+						queue.offer(messages[index % NUM_MESSAGES]);
+					}
+					
+					enqueueNanos[0] = System.nanoTime() - start;
+					return;
+				}
+				
+				for(int index = 0; index < NUM_OPERATIONS; index++) {
+					queue.take();
+				}
+			}
+			
+		});
+		
+		System.out.println(name + ": mean enqueue latency " + (enqueueNanos[0] / NUM_OPERATIONS) + " ns");
+		BenchmarkUtils.report(name, 2, 2l * NUM_OPERATIONS, nanos);
+	}
+
+}
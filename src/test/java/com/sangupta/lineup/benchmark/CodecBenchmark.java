@@ -0,0 +1,110 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.sangupta.lineup.codec.MessageCodec;
+import com.sangupta.lineup.codec.MessageCodecs;
+import com.sangupta.lineup.domain.QueueMessage;
+
+/**
+ * Measures the round-trip throughput of the wire codecs: writing a batch of
+ * messages and reading it back, for small and large message bodies, along
+ * with the encoded size of a message.
+ * 
+ * @author sangupta
+ *
+ */
+public class CodecBenchmark {
+	
+	private static final int BATCH_SIZE = 100;
+	
+	private static final int WARM_UP_ROUNDS = 500;
+	
+	private static final int ROUNDS = 2000;
+	
+	private static final int[] BODY_SIZES = { 64, 4096 };
+	
+	private static final MessageCodec[] CODECS = { MessageCodecs.XML, MessageCodecs.JSON, MessageCodecs.BINARY };
+	
+	public static void main(String[] args) throws Exception {
+		for(int bodySize : BODY_SIZES) {
+			final List<QueueMessage> batch = getBatch(bodySize);
+			
+			for(final MessageCodec codec : CODECS) {
+				ByteArrayOutputStream sample = new ByteArrayOutputStream();
+				codec.writeMessages(batch, sample);
+				System.out.println(String.format("%-30s body=%-5d encoded=%d bytes/message", codec.getMediaType(), bodySize, sample.size() / BATCH_SIZE));
+				
+				roundTrip(codec, batch, WARM_UP_ROUNDS);
+				
+				for(int threads : new int[] { 1, 4 }) {
+					long nanos = BenchmarkUtils.runThreads(threads, new BenchmarkUtils.Task() {
+						
+						@Override
+						public void run(int threadIndex) throws Exception {
+							roundTrip(codec, batch, ROUNDS);
+						}
+						
+					});
+					
+					BenchmarkUtils.report(codec.getMediaType() + " body=" + bodySize, threads, (long) threads * ROUNDS * BATCH_SIZE, nanos);
+				}
+			}
+		}
+	}
+	
+	private static void roundTrip(MessageCodec codec, List<QueueMessage> batch, int rounds) throws IOException {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream(64 * 1024);
+		for(int round = 0; round < rounds; round++) {
+			stream.reset();
+			codec.writeMessages(batch, stream);
+			
+			List<QueueMessage> read = codec.readMessages(new ByteArrayInputStream(stream.toByteArray()));
+			if(read.size() != batch.size()) {
+				throw new IllegalStateException("Lost messages in round trip");
+			}
+		}
+	}
+	
+	private static List<QueueMessage> getBatch(int bodySize) {
+		StringBuilder builder = new StringBuilder(bodySize);
+		while(builder.length() < bodySize) {
+			builder.append("payload \"quoted\" & <tagged> ");
+		}
+		
+		builder.setLength(bodySize);
+		
+		List<QueueMessage> batch = new ArrayList<QueueMessage>(BATCH_SIZE);
+		for(int index = 0; index < BATCH_SIZE; index++) {
+			batch.add(new QueueMessage(index + " " + builder.toString(), 0, index));
+		}
+		
+		return batch;
+	}
+
+}
@@ -0,0 +1,96 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.benchmark;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sangupta.lineup.domain.QueueMessage;
+import com.sangupta.lineup.domain.QueueOptions;
+import com.sangupta.lineup.domain.QueueType;
+import com.sangupta.lineup.queues.DuplicateAcceptingLineUpQueue;
+import com.sangupta.lineup.queues.LineUpQueue;
+import com.sangupta.lineup.queues.MergingPriorityLineUpQueue;
+
+/**
+ * Measures the latency from adding a message to an empty queue until a
+ * consumer waiting in a long-poll receives it, with and without direct
+ * hand-off.
+ * 
+ * @author sangupta
+ *
+ */
+public class HandOffBenchmark {
+	
+	private static final int MESSAGES = 20 * 1000;
+	
+	public static void main(String[] args) throws InterruptedException {
+		for(boolean handOff : new boolean[] { false, true }) {
+			QueueOptions options = QueueOptions.getOptions(QueueType.AllowDuplicates);
+			options.setDirectHandOff(handOff);
+			run("DuplicateAccepting handOff=" + handOff, new DuplicateAcceptingLineUpQueue("bench", null, options));
+			
+			options = QueueOptions.getOptions(QueueType.PriorityQueueMergingDuplicates);
+			options.setDirectHandOff(handOff);
+			run("MergingPriority handOff=" + handOff, new MergingPriorityLineUpQueue("bench", null, options));
+		}
+	}
+	
+	private static void run(String name, final LineUpQueue queue) throws InterruptedException {
+		final long[] latencies = new long[MESSAGES];
+		final AtomicInteger received = new AtomicInteger();
+		
+		Thread consumer = new Thread(new Runnable() {
+			
+			@Override
+			public void run() {
+				try {
+					for(int index = 0; index < MESSAGES; index++) {
+						QueueMessage message = queue.getMessage(10);
+						latencies[index] = System.nanoTime() - Long.parseLong(message.getBody());
+						received.incrementAndGet();
+					}
+				} catch(InterruptedException e) {
+					// exit
+				}
+			}
+			
+		});
+		consumer.start();
+		
+		for(int index = 0; index < MESSAGES; index++) {
+			// wait for the consumer to go back to waiting
+			while(received.get() < index) {
+				Thread.yield();
+			}
+			
+			Thread.sleep(0, 50000);
+			queue.addMessage(String.valueOf(System.nanoTime()));
+		}
+		
+		consumer.join();
+		
+		Arrays.sort(latencies);
+		System.out.println(String.format("%-40s median=%8.1f us  p99=%8.1f us", name, latencies[MESSAGES / 2] / 1000d, latencies[MESSAGES * 99 / 100] / 1000d));
+	}
+
+}
@@ -0,0 +1,93 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.benchmark;
+
+import com.sangupta.lineup.domain.QueueMessage;
+import com.sangupta.lineup.domain.QueueOptions;
+import com.sangupta.lineup.domain.QueueType;
+import com.sangupta.lineup.queues.LineUpQueue;
+import com.sangupta.lineup.queues.MessageLease;
+import com.sangupta.lineup.service.QueueGenerationFactory;
+
+/**
+ * Measures how fast embedded consumers drain a pre-filled queue when reading
+ * one message at a time, against leasing batches of messages.
+ * 
+ * @author sangupta
+ *
+ */
+public class LeaseBenchmark {
+	
+	private static final int MESSAGES_PER_THREAD = 20 * 1000;
+	
+	private static final int[] LEASE_SIZES = { 0, 8, 32, 128 };
+	
+	public static void main(String[] args) throws InterruptedException {
+		// warm up
+		run(4, 0);
+		run(4, 32);
+		
+		for(int threads : BenchmarkUtils.THREAD_COUNTS) {
+			for(int leaseSize : LEASE_SIZES) {
+				run(threads, leaseSize);
+			}
+		}
+	}
+	
+	private static void run(int threads, final int leaseSize) throws InterruptedException {
+		final LineUpQueue queue = QueueGenerationFactory.getLineUpQueue("lease-benchmark", null, QueueOptions.getOptions(QueueType.AllowDuplicates));
+		for(int index = 0; index < threads * MESSAGES_PER_THREAD; index++) {
+			queue.addMessage("message");
+		}
+		
+		long nanos = BenchmarkUtils.runThreads(threads, new BenchmarkUtils.Task() {
+			
+			@Override
+			public void run(int threadIndex) throws Exception {
+				if(leaseSize == 0) {
+					while(queue.getMessage() != null) {
+						// consume
+					}
+					
+					return;
+				}
+				
+				do {
+					MessageLease lease = queue.leaseMessages(leaseSize, 0);
+					if(lease.size() == 0) {
+						return;
+					}
+					
+					QueueMessage message;
+					do {
+						message = lease.next();
+					} while(message != null);
+				} while(true);
+			}
+			
+		});
+		
+		String name = leaseSize == 0 ? "getMessage" : "leaseMessages(" + leaseSize + ")";
+		BenchmarkUtils.report(name, threads, (long) threads * MESSAGES_PER_THREAD, nanos);
+	}
+
+}
@@ -0,0 +1,294 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+
+package com.sangupta.lineup.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.sangupta.lineup.LineUp;
+import com.sangupta.lineup.queues.LineUpQueue;
+import com.sangupta.lineup.server.LineUpServer;
+import com.sangupta.lineup.server.ServerMode;
+
+/**
+ * Starts an embedded {@link LineUpServer} in each {@link ServerMode}, parks
+ * 10k concurrent HTTP long-polls, <code>GET ...?pollTime=</code>, on a single
+ * queue, and then measures the latency from adding a message until a
+ * long-poll receives it, and the time to drain all of them. The long-polls
+ * are issued over non-blocking connections from a single client thread, so
+ * that the threads counted are those of the server.
+ * 
+ * Each long-poll holds two sockets in this JVM, so run with an open file limit
+ * of more than twice the number of long-polls, and with a reduced stack size,
+ * say <code>-Xss256k</code>.
+ * 
+ * @author sangupta
+ * 
+ */
+public class LongPollBenchmark {
+	
+	private static final String QUEUE_NAME = "long-poll-benchmark";
+	
+	private static final String SECURITY_CODE = "secret";
+	
+	private static final int LONG_POLLS = 10 * 1000;
+	
+	private static final long POLL_SECONDS = 60;
+	
+	/**
+	 * The time given to the server to park the long-polls once issued
+	 */
+	private static final long SETTLE_MILLIS = 2000;
+	
+	/**
+	 * The body of each message, tagged with the time it was added at
+	 */
+	private static final Pattern SENT = Pattern.compile("sent-(-?\\d+)\\D");
+	
+	public static void main(String[] args) throws Exception {
+		int polls = args.length > 0 ? Integer.parseInt(args[0]) : LONG_POLLS;
+		
+		run(ServerMode.ThreadPerRequest, "http://localhost:21002/", polls);
+		run(ServerMode.WorkerPool, "http://localhost:21003/", polls);
+	}
+	
+	private static void run(ServerMode mode, String serverURL, int polls) throws Exception {
+		LineUpServer server = new LineUpServer(serverURL, null, mode);
+		server.setMaxRequestThreads(polls + 100);
+		server.startServer();
+		
+		Selector selector = Selector.open();
+		List<Poll> open = new ArrayList<Poll>(polls);
+		try {
+			LineUpQueue queue = LineUp.createMessageQueue(QUEUE_NAME, SECURITY_CODE);
+			
+			URI uri = URI.create(serverURL);
+			InetSocketAddress address = new InetSocketAddress(uri.getHost(), uri.getPort());
+			byte[] request = ("GET /messages/" + SECURITY_CODE + "/" + QUEUE_NAME + "?pollTime=" + POLL_SECONDS + " HTTP/1.1\r\n"
+					+ "Host: " + uri.getHost() + ":" + uri.getPort() + "\r\n"
+					+ "Accept: text/xml\r\n"
+					+ "Connection: close\r\n\r\n").getBytes("ISO-8859-1");
+			
+			long start = System.nanoTime();
+			for(int index = 0; index < polls; index++) {
+				SocketChannel channel = SocketChannel.open(address);
+				Poll poll = new Poll(channel);
+				open.add(poll);
+				
+				ByteBuffer buffer = ByteBuffer.wrap(request);
+				while(buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+				
+				channel.configureBlocking(false);
+				channel.register(selector, SelectionKey.OP_READ, poll);
+			}
+			long issued = System.nanoTime() - start;
+			
+			// anything answered before a message is added was not parked
+			Results results = new Results(polls);
+			readResponses(selector, results, polls, SETTLE_MILLIS);
+			int early = results.completed;
+			int threads = ManagementFactory.getThreadMXBean().getThreadCount();
+			
+			start = System.nanoTime();
+			for(int index = early; index < polls; index++) {
+				queue.addMessage("sent-" + System.nanoTime());
+			}
+			
+			readResponses(selector, results, polls, TimeUnit.SECONDS.toMillis(POLL_SECONDS));
+			long drain = System.nanoTime() - start;
+			
+			String prefix = String.format("%-20s polls=%d jvm-threads=%d issued in %d ms, answered early=%d, failed=%d", mode, polls, threads, issued / 1000000, early, results.failed);
+			if(results.received == 0) {
+				System.out.println(prefix + ", no long-poll received a message");
+				return;
+			}
+			
+			long[] sorted = Arrays.copyOf(results.latencies, results.received);
+			Arrays.sort(sorted);
+			System.out.println(String.format("%s, received=%d drained in %d ms, median=%.1f ms p99=%.1f ms", prefix, results.received, drain / 1000000, sorted[results.received / 2] / 1000000d, sorted[results.received * 99 / 100] / 1000000d));
+		} finally {
+			for(Poll poll : open) {
+				poll.channel.close();
+			}
+			selector.close();
+			
+			LineUp.deleteMessageQueue(QUEUE_NAME);
+			server.stopServer();
+		}
+	}
+	
+	/**
+	 * Read responses until all long-polls have been answered, or the given
+	 * time has passed.
+	 * 
+	 */
+	private static void readResponses(Selector selector, Results results, int polls, long millis) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(8 * 1024);
+		long deadline = System.currentTimeMillis() + millis;
+		
+		while(results.completed < polls) {
+			long remaining = deadline - System.currentTimeMillis();
+			if(remaining <= 0) {
+				return;
+			}
+			
+			selector.select(remaining);
+			for(SelectionKey key : selector.selectedKeys()) {
+				Poll poll = (Poll) key.attachment();
+				if(poll.read(buffer)) {
+					key.cancel();
+					poll.channel.close();
+					results.add(poll);
+				}
+			}
+			selector.selectedKeys().clear();
+		}
+	}
+	
+	/**
+	 * The outcome of the long-polls answered so far.
+	 * 
+	 */
+	private static class Results {
+		
+		final long[] latencies;
+		
+		int completed;
+		
+		int received;
+		
+		int failed;
+		
+		Results(int polls) {
+			this.latencies = new long[polls];
+		}
+		
+		void add(Poll poll) {
+			this.completed++;
+			
+			long sent = poll.getSentNanos();
+			if(sent == 0) {
+				this.failed++;
+				return;
+			}
+			
+			this.latencies[this.received++] = poll.received - sent;
+		}
+		
+	}
+	
+	/**
+	 * A single long-poll, collecting its response as it arrives.
+	 * 
+	 */
+	private static class Poll {
+		
+		final SocketChannel channel;
+		
+		final ByteArrayOutputStream response = new ByteArrayOutputStream();
+		
+		/**
+		 * When the response was read in full
+		 */
+		long received;
+		
+		Poll(SocketChannel channel) {
+			this.channel = channel;
+		}
+		
+		/**
+		 * Read what has arrived of the response.
+		 * 
+		 * @return <code>true</code> if the response is complete, or the
+		 *         connection was closed
+		 */
+		boolean read(ByteBuffer buffer) throws IOException {
+			buffer.clear();
+			int read;
+			try {
+				read = this.channel.read(buffer);
+			} catch(IOException e) {
+				read = -1;
+			}
+			
+			if(read > 0) {
+				this.response.write(buffer.array(), 0, read);
+			}
+			
+			if(read < 0 || isComplete()) {
+				this.received = System.nanoTime();
+				return true;
+			}
+			
+			return false;
+		}
+		
+		private boolean isComplete() throws IOException {
+			String text = this.response.toString("ISO-8859-1");
+			int headers = text.indexOf("\r\n\r\n");
+			if(headers < 0) {
+				return false;
+			}
+			
+			if(!text.startsWith("HTTP/1.1 200") && !text.startsWith("HTTP/1.0 200")) {
+				return true;
+			}
+			
+			return SENT.matcher(text.substring(headers)).find();
+		}
+		
+		/**
+		 * @return the time the received message was added at, or
+		 *         <code>0</code> if no message was received
+		 */
+		long getSentNanos() {
+			try {
+				Matcher matcher = SENT.matcher(this.response.toString("ISO-8859-1"));
+				if(matcher.find()) {
+					return Long.parseLong(matcher.group(1));
+				}
+			} catch(IOException e) {
+				// not received
+			}
+			
+			return 0;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,93 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.benchmark;
+
+import com.sangupta.jerry.ds.ChangingPriorityQueue;
+import com.sangupta.jerry.ds.ShardedChangingPriorityQueue;
+import com.sangupta.lineup.domain.QueueMessage;
+
+/**
+ * Measures how the merge throughput of {@link ShardedChangingPriorityQueue}
+ * scales against {@link ChangingPriorityQueue} from 1 to 64 threads. Each
+ * thread adds messages whose bodies repeat, so that most adds are merges,
+ * and polls a message after every few adds.
+ * 
+ * @author sangupta
+ *
+ */
+public class MergingQueueBenchmark {
+	
+	private static final int OPERATIONS_PER_THREAD = 20 * 1000;
+	
+	private static final int NUM_BODIES = 10 * 1000;
+	
+	private static final int ADDS_PER_POLL = 4;
+	
+	private static final int MAX_PRIORITY = 50;
+	
+	public static void main(String[] args) throws InterruptedException {
+		// warm up
+		run("warm-up", new ChangingPriorityQueue<QueueMessage>(MAX_PRIORITY), null, 4);
+		run("warm-up", null, new ShardedChangingPriorityQueue<QueueMessage>(4, MAX_PRIORITY), 4);
+		
+		for(int threads : BenchmarkUtils.THREAD_COUNTS) {
+			run("ChangingPriorityQueue", new ChangingPriorityQueue<QueueMessage>(MAX_PRIORITY), null, threads);
+			run("ShardedChangingPriorityQueue", null, new ShardedChangingPriorityQueue<QueueMessage>(threads, MAX_PRIORITY), threads);
+		}
+	}
+	
+	private static void run(String name, final ChangingPriorityQueue<QueueMessage> queue, final ShardedChangingPriorityQueue<QueueMessage> sharded, int threads) throws InterruptedException {
+		// bodies are created upfront, messages need to be fresh as merges
+		// change their priority
+		final String[] bodies = new String[NUM_BODIES];
+		for(int index = 0; index < NUM_BODIES; index++) {
+			bodies[index] = "message-" + index;
+		}
+		
+		long nanos = BenchmarkUtils.runThreads(threads, new BenchmarkUtils.Task() {
+			
+			@Override
+			public void run(int threadIndex) throws Exception {
+				for(int index = 0; index < OPERATIONS_PER_THREAD; index++) {
+					QueueMessage message = new QueueMessage(bodies[(threadIndex * 7919 + index) % NUM_BODIES], 0, 1);
+					boolean poll = index % ADDS_PER_POLL == 0;
+					
+					if(queue != null) {
+						queue.add(message);
+						if(poll) {
+							queue.poll();
+						}
+					} else {
+						sharded.add(message);
+						if(poll) {
+							sharded.poll();
+						}
+					}
+				}
+			}
+			
+		});
+		
+		BenchmarkUtils.report(name, threads, (long) threads * OPERATIONS_PER_THREAD, nanos);
+	}
+
+}
@@ -0,0 +1,82 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.benchmark;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+
+import com.sangupta.jerry.ds.ConcurrentLevelPriorityQueue;
+import com.sangupta.jerry.ds.RelaxedPriorityQueue;
+import com.sangupta.lineup.domain.QueueMessage;
+
+/**
+ * Measures how the throughput of {@link ConcurrentLevelPriorityQueue} and
+ * {@link RelaxedPriorityQueue} scales against {@link PriorityBlockingQueue}
+ * from 1 to 64 threads. Each thread
+ * offers a message and polls a message in a loop.
+ * 
+ * @author sangupta
+ *
+ */
+public class PriorityQueueBenchmark {
+	
+	private static final int OPERATIONS_PER_THREAD = 100 * 1000;
+	
+	private static final int NUM_PRIORITIES = 8;
+	
+	private static final int NUM_MESSAGES = 10 * 1000;
+	
+	public static void main(String[] args) throws InterruptedException {
+		// warm up
+		run("warm-up", new PriorityBlockingQueue<QueueMessage>(), 4);
+		run("warm-up", new ConcurrentLevelPriorityQueue<QueueMessage>(), 4);
+		
+		for(int threads : BenchmarkUtils.THREAD_COUNTS) {
+			run("PriorityBlockingQueue", new PriorityBlockingQueue<QueueMessage>(), threads);
+			run("ConcurrentLevelPriorityQueue", new ConcurrentLevelPriorityQueue<QueueMessage>(), threads);
+			run("RelaxedPriorityQueue", new RelaxedPriorityQueue<QueueMessage>(2 * threads), threads);
+		}
+	}
+	
+	private static void run(String name, final BlockingQueue<QueueMessage> queue, int threads) throws InterruptedException {
+		// messages are created upfront so that only the queue is measured
+		final QueueMessage[] messages = new QueueMessage[NUM_MESSAGES];
+		for(int index = 0; index < NUM_MESSAGES; index++) {
+			messages[index] = new QueueMessage("message-" + index, 0, index % NUM_PRIORITIES);
+		}
+		
+		long nanos = BenchmarkUtils.runThreads(threads, new BenchmarkUtils.Task() {
+			
+			@Override
+			public void run(int threadIndex) throws Exception {
+				for(int index = 0; index < OPERATIONS_PER_THREAD; index++) {
+					queue.offer(messages[(threadIndex + index) % NUM_MESSAGES]);
+					queue.poll();
+				}
+			}
+			
+		});
+		
+		BenchmarkUtils.report(name, threads, 2l * threads * OPERATIONS_PER_THREAD, nanos);
+	}
+
+}
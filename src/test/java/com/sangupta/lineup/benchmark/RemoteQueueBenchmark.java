@@ -0,0 +1,107 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.benchmark;
+
+import com.sangupta.lineup.LineUp;
+import com.sangupta.lineup.http.LineUpHttpClient;
+import com.sangupta.lineup.queues.RemoteLineUpQueue;
+import com.sangupta.lineup.server.LineUpServer;
+
+/**
+ * Measures the cost of a call from a {@link RemoteLineUpQueue} to an embedded
+ * {@link LineUpServer}, with the connections to the server kept alive and
+ * pooled, and with a new connection made for every call, as before the pool.
+ * Each call adds a message and reads it back, and the average time per call
+ * is printed along with the metrics of the pool.
+ * 
+ * @author sangupta
+ *
+ */
+public class RemoteQueueBenchmark {
+	
+	private static final String SERVER_URL = "http://localhost:21001/";
+	
+	private static final String QUEUE_NAME = "remote-benchmark";
+	
+	private static final String SECURITY_CODE = "secret";
+	
+	private static final int WARM_UP_CALLS = 1000;
+	
+	private static final int CALLS = 5000;
+	
+	private static final int[] THREADS = { 1, 4, 16 };
+	
+	public static void main(String[] args) throws Exception {
+		LineUpServer server = new LineUpServer(SERVER_URL);
+		server.startServer();
+		
+		try {
+			LineUp.createMessageQueue(QUEUE_NAME, SECURITY_CODE);
+			
+			run("pooled", new LineUpHttpClient());
+			run("connection-per-call", new LineUpHttpClient(LineUpHttpClient.DEFAULT_MAX_CONNECTIONS, 0, LineUpHttpClient.DEFAULT_MAX_WAIT_MILLIS));
+		} finally {
+			server.stopServer();
+		}
+	}
+	
+	private static void run(String name, LineUpHttpClient client) throws Exception {
+		final RemoteLineUpQueue queue = new RemoteLineUpQueue(SERVER_URL, QUEUE_NAME, SECURITY_CODE);
+		queue.setHttpClient(client);
+		
+		try {
+			call(queue, WARM_UP_CALLS);
+			
+			for(int threads : THREADS) {
+				long nanos = BenchmarkUtils.runThreads(threads, new BenchmarkUtils.Task() {
+					
+					@Override
+					public void run(int threadIndex) throws Exception {
+						call(queue, CALLS);
+					}
+					
+				});
+				
+				long calls = 2L * threads * CALLS;
+				BenchmarkUtils.report("remote " + name, threads, calls, nanos);
+				System.out.println(String.format("%-40s %.1f us/call, pool %s", "", nanos * threads / 1000d / calls, queue.getPoolMetrics()));
+			}
+		} finally {
+			client.close();
+		}
+	}
+	
+	/**
+	 * Add a message and read it back, the given number of times.
+	 * 
+	 */
+	private static void call(RemoteLineUpQueue queue, int calls) {
+		for(int index = 0; index < calls; index++) {
+			if(queue.addMessage("message-" + index) == null) {
+				throw new IllegalStateException("Unable to add message");
+			}
+			
+			queue.getMessage();
+		}
+	}
+
+}
@@ -0,0 +1,104 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sangupta.jerry.ds.SegmentedArrayQueue;
+import com.sangupta.lineup.domain.QueueMessage;
+
+/**
+ * Measures the throughput and allocation rate of {@link SegmentedArrayQueue}
+ * against {@link LinkedBlockingQueue} from 1 to 64 threads. Each thread
+ * offers a message and polls a message in a loop.
+ * 
+ * Allocation is read from the HotSpot specific thread bean, and is not
+ * reported on other virtual machines.
+ * 
+ * @author sangupta
+ *
+ */
+public class SegmentedQueueBenchmark {
+	
+	private static final int OPERATIONS_PER_THREAD = 100 * 1000;
+	
+	private static final int NUM_MESSAGES = 10 * 1000;
+	
+	public static void main(String[] args) throws InterruptedException {
+		// warm up
+		run("warm-up", new LinkedBlockingQueue<QueueMessage>(), 4);
+		run("warm-up", new SegmentedArrayQueue<QueueMessage>(), 4);
+		
+		for(int threads : BenchmarkUtils.THREAD_COUNTS) {
+			run("LinkedBlockingQueue", new LinkedBlockingQueue<QueueMessage>(), threads);
+			run("SegmentedArrayQueue", new SegmentedArrayQueue<QueueMessage>(), threads);
+		}
+	}
+	
+	private static void run(String name, final BlockingQueue<QueueMessage> queue, int threads) throws InterruptedException {
+		// messages are created upfront so that only the queue is measured
+		final QueueMessage[] messages = new QueueMessage[NUM_MESSAGES];
+		for(int index = 0; index < NUM_MESSAGES; index++) {
+			messages[index] = new QueueMessage("message-" + index, 0, 1);
+		}
+		
+		final AtomicLong allocated = new AtomicLong();
+		long nanos = BenchmarkUtils.runThreads(threads, new BenchmarkUtils.Task() {
+			
+			@Override
+			public void run(int threadIndex) throws Exception {
+				final long start = allocatedBytes();
+				for(int index = 0; index < OPERATIONS_PER_THREAD; index++) {
+					queue.offer(messages[(threadIndex + index) % NUM_MESSAGES]);
+					queue.poll();
+				}
+				
+				allocated.addAndGet(allocatedBytes() - start);
+			}
+			
+		});
+		
+		final long operations = 2l * threads * OPERATIONS_PER_THREAD;
+		BenchmarkUtils.report(name, threads, operations, nanos);
+		if(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+			System.out.println(name + ": allocated " + (allocated.get() / operations) + " bytes/op");
+		}
+	}
+	
+	/**
+	 * Return the bytes allocated by the current thread so far, or zero if this
+	 * is not supported by the virtual machine.
+	 * 
+	 */
+	private static long allocatedBytes() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if(!(bean instanceof com.sun.management.ThreadMXBean)) {
+			return 0;
+		}
+		
+		return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+}
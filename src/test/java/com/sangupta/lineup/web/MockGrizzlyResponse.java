@@ -0,0 +1,269 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.web;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.grizzly.tcp.CompletionHandler;
+import com.sun.grizzly.tcp.http11.GrizzlyOutputBuffer;
+import com.sun.grizzly.tcp.http11.GrizzlyOutputStream;
+import com.sun.grizzly.tcp.http11.GrizzlyResponse;
+
+/**
+ * A Grizzly response that is not bound to a connection, and that records
+ * what is written to it. It is suspended, resumed and cancelled the way
+ * Grizzly does, and the client can be made to go away either with Grizzly
+ * noticing, via {@link #cancel()}, or without, via {@link #close()}.
+ * 
+ * @author sangupta
+ *
+ * @param <A>
+ *            the type of the attachment the response is suspended with
+ */
+class MockGrizzlyResponse<A> extends GrizzlyResponse<A> {
+	
+	private static final Timer TIMEOUTS = new Timer("mock-grizzly-timeouts", true);
+	
+	private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+	
+	private final Map<String, String> headers = new ConcurrentHashMap<String, String>();
+	
+	private final CountDownLatch resumed = new CountDownLatch(1);
+	
+	private final GrizzlyOutputStream stream = new GrizzlyOutputStream(new GrizzlyOutputBuffer()) {
+		
+		@Override
+		public void write(int b) throws IOException {
+			checkOpen();
+			
+			synchronized (body) {
+				body.write(b);
+			}
+		}
+		
+		@Override
+		public void write(byte[] bytes, int offset, int length) throws IOException {
+			checkOpen();
+			
+			synchronized (body) {
+				body.write(bytes, offset, length);
+			}
+		}
+		
+		@Override
+		public void write(byte[] bytes) throws IOException {
+			this.write(bytes, 0, bytes.length);
+		}
+		
+		@Override
+		public void flush() throws IOException {
+			checkOpen();
+		}
+		
+		@Override
+		public void close() throws IOException {
+			// left to the response
+		}
+		
+	};
+	
+	private volatile int status = 200;
+	
+	private volatile String contentType;
+	
+	private volatile boolean suspended;
+	
+	private volatile boolean closed;
+	
+	private volatile long suspendTimeout = -1;
+	
+	private A attachment;
+	
+	private CompletionHandler<? super A> handler;
+	
+	@Override
+	public synchronized void suspend(long timeout, A attachment, CompletionHandler<? super A> handler) {
+		if(this.suspended) {
+			throw new IllegalStateException("Already Suspended");
+		}
+		
+		this.suspended = true;
+		this.suspendTimeout = timeout;
+		this.attachment = attachment;
+		this.handler = handler;
+		
+		if(timeout > 0) {
+			TIMEOUTS.schedule(new TimerTask() {
+				
+				@Override
+				public void run() {
+					giveUp();
+				}
+				
+			}, timeout);
+		}
+	}
+	
+	@Override
+	public synchronized void resume() {
+		if(!this.suspended) {
+			throw new IllegalStateException("Not Suspended");
+		}
+		
+		this.suspended = false;
+		this.handler.resumed(this.attachment);
+		this.resumed.countDown();
+	}
+	
+	/**
+	 * Give up on the response, as Grizzly does when the suspension times out
+	 * or the client closes the connection.
+	 * 
+	 */
+	@Override
+	public void cancel() {
+		if(!this.giveUp()) {
+			throw new IllegalStateException("Not Suspended");
+		}
+	}
+	
+	/**
+	 * Break the connection without Grizzly noticing: the response stays
+	 * suspended, but nothing can be written to it any more.
+	 * 
+	 */
+	public void close() {
+		this.closed = true;
+	}
+	
+	@Override
+	public boolean isSuspended() {
+		return this.suspended;
+	}
+	
+	@Override
+	public GrizzlyOutputStream getOutputStream() throws IOException {
+		this.checkOpen();
+		return this.stream;
+	}
+	
+	@Override
+	public void setStatus(int status) {
+		this.status = status;
+	}
+	
+	@Override
+	public int getStatus() {
+		return this.status;
+	}
+	
+	@Override
+	public void setContentType(String contentType) {
+		this.contentType = contentType;
+	}
+	
+	@Override
+	public String getContentType() {
+		return this.contentType;
+	}
+	
+	@Override
+	public void addHeader(String name, String value) {
+		this.headers.put(name, value);
+	}
+	
+	public String getHeader(String name) {
+		return this.headers.get(name);
+	}
+	
+	public long getSuspendTimeout() {
+		return this.suspendTimeout;
+	}
+	
+	/**
+	 * Return what has been written to the response so far.
+	 * 
+	 * @return the body written, in UTF-8
+	 */
+	public String getBody() {
+		synchronized (this.body) {
+			try {
+				return this.body.toString("UTF-8");
+			} catch(IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+	
+	/**
+	 * Wait for the response to be resumed.
+	 * 
+	 * @param millis
+	 *            the time to wait in milliseconds
+	 * 
+	 * @return <code>true</code> if the response was resumed
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	public boolean awaitResumed(long millis) throws InterruptedException {
+		return this.resumed.await(millis, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Give up on the response if it is still suspended, and tell its
+	 * completion handler.
+	 * 
+	 * @return <code>true</code> if the response was suspended
+	 */
+	private boolean giveUp() {
+		final CompletionHandler<? super A> handler;
+		final A attachment;
+		synchronized (this) {
+			if(!this.suspended) {
+				return false;
+			}
+			
+			this.suspended = false;
+			this.closed = true;
+			handler = this.handler;
+			attachment = this.attachment;
+		}
+		
+		handler.cancelled(attachment);
+		return true;
+	}
+	
+	private void checkOpen() throws IOException {
+		if(this.closed) {
+			throw new IOException("Connection closed");
+		}
+	}
+
+}
@@ -0,0 +1,323 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.web;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sangupta.lineup.LineUp;
+import com.sangupta.lineup.domain.QueueMessage;
+import com.sangupta.lineup.queues.LineUpQueue;
+import com.sun.grizzly.tcp.http11.GrizzlyResponse;
+
+/**
+ * Unit tests for subscriptions that push messages as Server-Sent Events, and
+ * for the webservice methods that manage them, with the response faked by a
+ * {@link MockGrizzlyResponse}.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestEventStreamSubscription {
+	
+	private static int counter = 0;
+	
+	private final QueueMessageWebservice webservice = new QueueMessageWebservice();
+	
+	private LineUpQueue queue;
+	
+	private List<QueueMessage> messages;
+	
+	@Before
+	public void setUp() throws Exception {
+		this.queue = LineUp.createMessageQueue("event-stream-" + (counter++), "secret");
+		
+		this.messages = new ArrayList<QueueMessage>();
+		for(int index = 0; index < 5; index++) {
+			this.messages.add(this.queue.addMessage("message-" + index));
+		}
+	}
+	
+	@After
+	public void tearDown() throws Exception {
+		LineUp.deleteMessageQueue(this.queue.getName());
+	}
+	
+	@Test
+	public void testCreditExhaustionAndReplenishment() throws Exception {
+		MockGrizzlyResponse<EventStreamSubscription> response = new MockGrizzlyResponse<EventStreamSubscription>();
+		EventStreamSubscription subscription = this.subscribe(response, 2, false);
+		
+		Assert.assertEquals(200, response.getStatus());
+		Assert.assertEquals(EventStreamSubscription.TEXT_EVENT_STREAM, response.getContentType());
+		Assert.assertEquals("no-cache", response.getHeader("Cache-Control"));
+		Assert.assertTrue(response.getBody().startsWith("event: subscribed\ndata: " + subscription.getId() + "\n\n"));
+		
+		// credit exhausted after two messages
+		Assert.assertTrue(awaitEvents(response, 2));
+		Thread.sleep(200);
+		Assert.assertEquals(2, countEvents(response));
+		Assert.assertEquals(2, subscription.getInFlightCount());
+		Assert.assertEquals(3, this.queue.size());
+		Assert.assertTrue(response.getBody().contains("id: " + this.messages.get(1).getMessageID() + "\nevent: message\ndata: "));
+		
+		// acknowledge both and grant two more
+		this.update(subscription, 2, this.messages.get(0), this.messages.get(1));
+		Assert.assertTrue(awaitEvents(response, 4));
+		Thread.sleep(200);
+		Assert.assertEquals(4, countEvents(response));
+		Assert.assertEquals(2, subscription.getInFlightCount());
+		Assert.assertEquals(1, this.queue.size());
+		Assert.assertTrue(response.isSuspended());
+		
+		this.webservice.unsubscribe("secret", this.queue.getName(), subscription.getId());
+	}
+	
+	@Test
+	public void testZeroCreditPushesNothing() throws Exception {
+		MockGrizzlyResponse<EventStreamSubscription> response = new MockGrizzlyResponse<EventStreamSubscription>();
+		EventStreamSubscription subscription = this.subscribe(response, 0, false);
+		
+		Thread.sleep(200);
+		Assert.assertEquals(0, countEvents(response));
+		Assert.assertEquals(5, this.queue.size());
+		
+		this.update(subscription, 1);
+		Assert.assertTrue(awaitEvents(response, 1));
+		Assert.assertEquals(4, this.queue.size());
+		
+		this.webservice.unsubscribe("secret", this.queue.getName(), subscription.getId());
+	}
+	
+	@Test
+	public void testUnsubscribeResumesAndRedelivers() throws Exception {
+		MockGrizzlyResponse<EventStreamSubscription> response = new MockGrizzlyResponse<EventStreamSubscription>();
+		EventStreamSubscription subscription = this.subscribe(response, 2, false);
+		Assert.assertTrue(awaitEvents(response, 2));
+		
+		this.update(subscription, 0, this.messages.get(0));
+		Assert.assertEquals(1, subscription.getInFlightCount());
+		
+		this.webservice.unsubscribe("secret", this.queue.getName(), subscription.getId());
+		Assert.assertTrue(response.awaitResumed(0));
+		Assert.assertNull(EventStreamSubscription.get(subscription.getId()));
+		
+		// the unacknowledged message is back, the acknowledged one is not
+		Assert.assertEquals(4, this.queue.size());
+		List<QueueMessage> remaining = this.queue.getMessages(5);
+		Assert.assertTrue(remaining.contains(this.messages.get(1)));
+		Assert.assertFalse(remaining.contains(this.messages.get(0)));
+		
+		try {
+			this.update(subscription, 1);
+			Assert.fail("Ended subscription granted credit");
+		} catch(WebApplicationException e) {
+			Assert.assertEquals(404, e.getResponse().getStatus());
+		}
+	}
+	
+	@Test
+	public void testTimeoutRedeliversUnacknowledged() throws Exception {
+		MockGrizzlyResponse<EventStreamSubscription> response = new MockGrizzlyResponse<EventStreamSubscription>();
+		EventStreamSubscription subscription = new EventStreamSubscription(this.queue, 2, false, 300, response);
+		subscription.finish();
+		Assert.assertTrue(awaitEvents(response, 2));
+		
+		subscription.acknowledge(Arrays.asList(this.messages.get(0).getMessageID()));
+		Assert.assertEquals(3, this.queue.size());
+		
+		// grizzly gives up on the response once the subscription times out
+		Assert.assertTrue(awaitQueueSize(this.queue, 4));
+		Assert.assertFalse(response.isSuspended());
+		Assert.assertNull(EventStreamSubscription.get(subscription.getId()));
+		Assert.assertTrue(this.queue.getMessages(5).contains(this.messages.get(1)));
+	}
+	
+	@Test
+	public void testAutoAcknowledge() throws Exception {
+		MockGrizzlyResponse<EventStreamSubscription> response = new MockGrizzlyResponse<EventStreamSubscription>();
+		EventStreamSubscription subscription = this.subscribe(response, 2, true);
+		Assert.assertTrue(awaitEvents(response, 2));
+		Assert.assertTrue(awaitInFlight(subscription, 0));
+		
+		this.webservice.unsubscribe("secret", this.queue.getName(), subscription.getId());
+		Assert.assertEquals(3, this.queue.size());
+	}
+	
+	@Test
+	public void testClientDisconnect() throws Exception {
+		MockGrizzlyResponse<EventStreamSubscription> response = new MockGrizzlyResponse<EventStreamSubscription>();
+		EventStreamSubscription subscription = this.subscribe(response, 2, false);
+		Assert.assertTrue(awaitEvents(response, 2));
+		
+		// the client closed the connection and grizzly noticed
+		response.cancel();
+		Assert.assertNull(EventStreamSubscription.get(subscription.getId()));
+		Assert.assertEquals(5, this.queue.size());
+		
+		// nothing more is taken from the queue
+		this.queue.addMessage("after");
+		Thread.sleep(200);
+		Assert.assertEquals(6, this.queue.size());
+	}
+	
+	@Test
+	public void testClientGoneUnnoticed() throws Exception {
+		MockGrizzlyResponse<EventStreamSubscription> response = new MockGrizzlyResponse<EventStreamSubscription>();
+		EventStreamSubscription subscription = this.subscribe(response, 0, false);
+		
+		// the client went away before grizzly noticed: the next push fails
+		response.close();
+		this.update(subscription, 1);
+		
+		Assert.assertTrue(response.awaitResumed(5000));
+		Assert.assertNull(EventStreamSubscription.get(subscription.getId()));
+		Assert.assertTrue(awaitQueueSize(this.queue, 5));
+		Assert.assertTrue(this.queue.getMessages(5).contains(this.messages.get(0)));
+	}
+	
+	@Test
+	public void testBadRequests() throws Exception {
+		MockGrizzlyResponse<EventStreamSubscription> response = new MockGrizzlyResponse<EventStreamSubscription>();
+		
+		try {
+			this.subscribe(response, -1, false);
+			Assert.fail("Subscribed with negative credit");
+		} catch(WebApplicationException e) {
+			Assert.assertEquals(400, e.getResponse().getStatus());
+		}
+		Assert.assertFalse(response.isSuspended());
+		
+		try {
+			this.webservice.unsubscribe("secret", this.queue.getName(), "no-such-subscription");
+			Assert.fail("Unsubscribed from an unknown subscription");
+		} catch(WebApplicationException e) {
+			Assert.assertEquals(404, e.getResponse().getStatus());
+		}
+		
+		EventStreamSubscription subscription = this.subscribe(response, 0, false);
+		try {
+			this.webservice.updateSubscription("secret", this.queue.getName(), subscription.getId(), -1, null);
+			Assert.fail("Granted negative credit");
+		} catch(WebApplicationException e) {
+			Assert.assertEquals(400, e.getResponse().getStatus());
+		}
+		
+		try {
+			this.webservice.updateSubscription("secret", this.queue.getName(), subscription.getId(), 0, Arrays.asList("not-a-number"));
+			Assert.fail("Acknowledged a malformed message ID");
+		} catch(WebApplicationException e) {
+			Assert.assertEquals(400, e.getResponse().getStatus());
+		}
+		
+		this.webservice.unsubscribe("secret", this.queue.getName(), subscription.getId());
+	}
+	
+	/**
+	 * Subscribe to the queue over the given response, as Jersey would.
+	 */
+	@SuppressWarnings("rawtypes")
+	private EventStreamSubscription subscribe(MockGrizzlyResponse<EventStreamSubscription> response, int credit, boolean autoAck) throws Exception {
+		ThreadLocal<GrizzlyResponse> responses = new ThreadLocal<GrizzlyResponse>();
+		responses.set(response);
+		
+		EventStreamSubscription subscription = (EventStreamSubscription) this.webservice.subscribe("secret", this.queue.getName(), credit, autoAck, 300, responses);
+		Assert.assertTrue(response.isSuspended());
+		
+		subscription.setMediaType(MediaType.valueOf(EventStreamSubscription.TEXT_EVENT_STREAM));
+		subscription.finish();
+		Assert.assertSame(subscription, EventStreamSubscription.get(subscription.getId()));
+		return subscription;
+	}
+	
+	/**
+	 * Grant credit to the subscription and acknowledge the given messages.
+	 */
+	private void update(EventStreamSubscription subscription, int credit, QueueMessage... acknowledged) {
+		List<String> messageIDs = new ArrayList<String>();
+		for(QueueMessage message : acknowledged) {
+			messageIDs.add(String.valueOf(message.getMessageID()));
+		}
+		
+		Assert.assertEquals("done", this.webservice.updateSubscription("secret", this.queue.getName(), subscription.getId(), credit, messageIDs));
+	}
+	
+	private static int countEvents(MockGrizzlyResponse<EventStreamSubscription> response) {
+		String body = response.getBody();
+		int count = 0;
+		for(int index = body.indexOf("event: message\n"); index >= 0; index = body.indexOf("event: message\n", index + 1)) {
+			count++;
+		}
+		
+		return count;
+	}
+	
+	private static boolean awaitEvents(MockGrizzlyResponse<EventStreamSubscription> response, int count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while(countEvents(response) < count) {
+			if(System.currentTimeMillis() > deadline) {
+				return false;
+			}
+			
+			Thread.sleep(10);
+		}
+		
+		return true;
+	}
+	
+	private static boolean awaitInFlight(EventStreamSubscription subscription, int count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while(subscription.getInFlightCount() != count) {
+			if(System.currentTimeMillis() > deadline) {
+				return false;
+			}
+			
+			Thread.sleep(10);
+		}
+		
+		return true;
+	}
+	
+	private static boolean awaitQueueSize(LineUpQueue queue, int size) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while(queue.size() != size) {
+			if(System.currentTimeMillis() > deadline) {
+				return false;
+			}
+			
+			Thread.sleep(10);
+		}
+		
+		return true;
+	}
+
+}
@@ -0,0 +1,280 @@
+/**
+ *
+ * lineup - In-Memory high-throughput queue
+ * Copyright (c) 2013-2014, Sandeep Gupta
+ * 
+ * http://sangupta.com/projects/lineup
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.lineup.web;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.GenericEntity;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.ext.ContextResolver;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Providers;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sangupta.lineup.LineUp;
+import com.sangupta.lineup.async.QueueFuture;
+import com.sangupta.lineup.domain.QueueCardinality;
+import com.sangupta.lineup.domain.QueueMessage;
+import com.sangupta.lineup.domain.QueueOptions;
+import com.sangupta.lineup.domain.QueueType;
+import com.sangupta.lineup.queues.LineUpQueue;
+import com.sun.grizzly.tcp.http11.GrizzlyResponse;
+
+/**
+ * Unit tests for the long-poll over a suspended response, with the response
+ * faked by a {@link MockGrizzlyResponse}.
+ * 
+ * @author sangupta
+ *
+ */
+public class TestSuspendedReceive {
+	
+	private static int counter = 0;
+	
+	private final Providers providers = new MessageProviders();
+	
+	private LineUpQueue queue;
+	
+	@Before
+	public void setUp() throws Exception {
+		this.queue = LineUp.createMessageQueue("suspended-receive-" + (counter++), "secret");
+	}
+	
+	@After
+	public void tearDown() throws Exception {
+		LineUp.deleteMessageQueue(this.queue.getName());
+	}
+	
+	@Test
+	public void testMessageResumesResponse() throws Exception {
+		MockGrizzlyResponse<SuspendedReceive<QueueMessage>> response = new MockGrizzlyResponse<SuspendedReceive<QueueMessage>>();
+		this.suspend(response, 5000);
+		Assert.assertTrue(response.isSuspended());
+		Assert.assertTrue(response.getSuspendTimeout() > 5000);
+		
+		this.queue.addMessage("hello");
+		
+		Assert.assertTrue(response.awaitResumed(5000));
+		Assert.assertEquals(200, response.getStatus());
+		Assert.assertEquals(MediaType.APPLICATION_JSON, response.getContentType());
+		Assert.assertTrue(response.getBody().contains("hello"));
+		Assert.assertEquals(0, this.queue.size());
+	}
+	
+	@Test
+	public void testMessageBeforeJerseyFinished() throws Exception {
+		MockGrizzlyResponse<SuspendedReceive<QueueMessage>> response = new MockGrizzlyResponse<SuspendedReceive<QueueMessage>>();
+		QueueFuture<QueueMessage> future = this.queue.receiveAsync(5, TimeUnit.SECONDS);
+		SuspendedReceive<QueueMessage> receive = new SuspendedReceive<QueueMessage>(this.queue, future, 5000, response, this.providers);
+		receive.setMediaType(MediaType.APPLICATION_JSON_TYPE);
+		
+		this.queue.addMessage("hello");
+		Assert.assertTrue(future.isDone());
+		Assert.assertTrue(response.isSuspended());
+		
+		// written by the request thread itself
+		receive.finish();
+		Assert.assertTrue(response.awaitResumed(0));
+		Assert.assertEquals(200, response.getStatus());
+		Assert.assertTrue(response.getBody().contains("hello"));
+	}
+	
+	@Test
+	public void testTimeoutReturnsEmpty() throws Exception {
+		MockGrizzlyResponse<SuspendedReceive<QueueMessage>> response = new MockGrizzlyResponse<SuspendedReceive<QueueMessage>>();
+		this.suspend(response, 200);
+		
+		Assert.assertTrue(response.awaitResumed(5000));
+		Assert.assertEquals(404, response.getStatus());
+		Assert.assertEquals("", response.getBody());
+		
+		// a message added after the poll is left in the queue
+		this.queue.addMessage("late");
+		Assert.assertEquals(1, this.queue.size());
+	}
+	
+	@Test
+	public void testBatchResumesResponse() throws Exception {
+		MockGrizzlyResponse<SuspendedReceive<List<QueueMessage>>> response = new MockGrizzlyResponse<SuspendedReceive<List<QueueMessage>>>();
+		QueueFuture<List<QueueMessage>> future = this.queue.receiveBatchAsync(2, 5, 5, TimeUnit.SECONDS);
+		SuspendedReceive<List<QueueMessage>> receive = new SuspendedReceive<List<QueueMessage>>(this.queue, future, 5000, response, this.providers);
+		receive.setMediaType(MediaType.APPLICATION_JSON_TYPE);
+		receive.finish();
+		
+		this.queue.addMessage("first");
+		Assert.assertFalse(response.awaitResumed(100));
+		
+		this.queue.addMessage("second");
+		Assert.assertTrue(response.awaitResumed(5000));
+		Assert.assertEquals(200, response.getStatus());
+		Assert.assertTrue(response.getBody().contains("first"));
+		Assert.assertTrue(response.getBody().contains("second"));
+		Assert.assertEquals(0, this.queue.size());
+	}
+	
+	@Test
+	public void testCancelledResponseDoesNotConsume() throws Exception {
+		MockGrizzlyResponse<SuspendedReceive<QueueMessage>> response = new MockGrizzlyResponse<SuspendedReceive<QueueMessage>>();
+		QueueFuture<QueueMessage> future = this.suspend(response, 5000);
+		
+		// the client went away and grizzly noticed
+		response.cancel();
+		Assert.assertTrue(future.isCancelled());
+		
+		this.queue.addMessage("hello");
+		Assert.assertEquals(1, this.queue.size());
+		Assert.assertEquals("hello", this.queue.getMessage().getBody());
+		Assert.assertEquals("", response.getBody());
+	}
+	
+	@Test
+	public void testClosedConnectionGivesBackMessage() throws Exception {
+		MockGrizzlyResponse<SuspendedReceive<QueueMessage>> response = new MockGrizzlyResponse<SuspendedReceive<QueueMessage>>();
+		this.suspend(response, 5000);
+		
+		// the client went away before grizzly noticed
+		response.close();
+		this.queue.addMessage("hello");
+		
+		// handed to the receive, and given back once it cannot be written
+		QueueMessage message = this.queue.getMessage(5);
+		Assert.assertNotNull(message);
+		Assert.assertEquals("hello", message.getBody());
+		Assert.assertFalse(response.awaitResumed(0));
+	}
+	
+	@Test
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public void testSingleConsumerQueueHoldsRequest() throws Exception {
+		QueueOptions options = QueueOptions.getOptions(QueueType.AllowDuplicates);
+		options.setCardinality(QueueCardinality.SPSC);
+		final LineUpQueue queue = LineUp.createMessageQueue("suspended-receive-spsc-" + (counter++), "secret", options);
+		
+		MockGrizzlyResponse<Object> response = new MockGrizzlyResponse<Object>();
+		ThreadLocal<GrizzlyResponse> responses = new ThreadLocal<GrizzlyResponse>();
+		responses.set(response);
+		
+		Thread producer = new Thread(new Runnable() {
+			
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(200);
+					queue.addMessage("hello");
+					
+					Thread.sleep(200);
+					queue.addMessage("first");
+					queue.addMessage("second");
+				} catch(InterruptedException e) {
+					// test ends
+				}
+			}
+			
+		});
+		
+		try {
+			producer.start();
+			QueueMessageWebservice webservice = new QueueMessageWebservice();
+			
+			// the long-poll waits on the request thread
+			Object message = webservice.getMessage("secret", queue.getName(), 1, 5, 0, 0, responses, this.providers);
+			Assert.assertEquals("hello", ((QueueMessage) message).getBody());
+			
+			// and so does the batch
+			Object batch = webservice.getMessage("secret", queue.getName(), 5, 0, 2, 5000, responses, this.providers);
+			Assert.assertEquals(2, ((GenericEntity<List<QueueMessage>>) batch).getEntity().size());
+			Assert.assertFalse(response.isSuspended());
+		} finally {
+			producer.interrupt();
+			LineUp.deleteMessageQueue(queue.getName());
+		}
+	}
+	
+	/**
+	 * Start a long-poll on the queue over the given response, once Jersey
+	 * has finished with the request.
+	 */
+	private QueueFuture<QueueMessage> suspend(MockGrizzlyResponse<SuspendedReceive<QueueMessage>> response, long pollMillis) throws Exception {
+		QueueFuture<QueueMessage> future = this.queue.receiveAsync(pollMillis, TimeUnit.MILLISECONDS);
+		Assert.assertFalse(future.isDone());
+		
+		SuspendedReceive<QueueMessage> receive = new SuspendedReceive<QueueMessage>(this.queue, future, pollMillis, response, this.providers);
+		receive.setMediaType(MediaType.APPLICATION_JSON_TYPE);
+		receive.finish();
+		return future;
+	}
+	
+	/**
+	 * Supplies the message body writers Jersey would have found for a
+	 * message and a list of them.
+	 * 
+	 * @author sangupta
+	 *
+	 */
+	private static class MessageProviders implements Providers {
+		
+		private final QueueMessageProvider messageProvider = new QueueMessageProvider();
+		
+		private final QueueMessageListProvider listProvider = new QueueMessageListProvider();
+		
+		@Override
+		@SuppressWarnings("unchecked")
+		public <T> MessageBodyWriter<T> getMessageBodyWriter(Class<T> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+			if(this.messageProvider.isWriteable(type, genericType, annotations, mediaType)) {
+				return (MessageBodyWriter<T>) this.messageProvider;
+			}
+			
+			if(this.listProvider.isWriteable(type, genericType, annotations, mediaType)) {
+				return (MessageBodyWriter<T>) this.listProvider;
+			}
+			
+			return null;
+		}
+		
+		@Override
+		public <T> MessageBodyReader<T> getMessageBodyReader(Class<T> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+			return null;
+		}
+		
+		@Override
+		public <T extends Throwable> ExceptionMapper<T> getExceptionMapper(Class<T> type) {
+			return null;
+		}
+		
+		@Override
+		public <T> ContextResolver<T> getContextResolver(Class<T> contextType, MediaType mediaType) {
+			return null;
+		}
+		
+	}
+
+}